@@ -22,13 +22,21 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
 
+import org.jwat.common.FixedWidthDateParser;
+import org.jwat.common.FixedWidthDateParser.CachedDate;
+
 /**
  * ARC Date parser and format validator ("yyyyMMddHHmmss").
+ * Dates are parsed by a fixed width parser straight from characters or bytes
+ * and the last date parsed is cached.
  *
  * @author lbihanic, selghissassi
  */
 public final class ArcDateParser {
 
+    /** Length of an ARC date. */
+    private static final int DATE_LENGTH = ArcConstants.ARC_DATE_FORMAT.length();
+
     /** ARC <code>DateFormat</code> as specified in the ARC documentation. */
     private final DateFormat dateFormat;
 
@@ -41,6 +49,9 @@ public final class ArcDateParser {
         }
     };
 
+    /** Last valid date parsed. */
+    private static volatile CachedDate cachedDate;
+
     /**
      * Creates a new <code>DateParser</code>.
      */
@@ -50,22 +61,6 @@ public final class ArcDateParser {
         dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
-    /**
-     * Parses a date.
-     * @param dateStr date to parse
-     * @return the formatted date or null if unable to parse date
-     */
-    private Date parseDate(String dateStr) {
-        Date date = null;
-        try {
-            if ((dateStr != null)
-                            && dateStr.length() == ArcConstants.ARC_DATE_FORMAT.length()) {
-                date = dateFormat.parse(dateStr);
-            }
-        } catch (Exception e) { /* Ignore */ }
-        return date;
-    }
-
     /**
      * Parses the date using the format yyyyMMddHHmmss.
      * @param dateStr the date to parse
@@ -73,10 +68,72 @@ public final class ArcDateParser {
      * to parse is compliant with the format yyyyMMddHHmmss or not
      */
     public static Date getDate(String dateStr) {
-        Date date = DateParserTL.get().parseDate(dateStr);
-        boolean isValid = (date == null) ? false
-                                         : (date.getTime() > 0);
-        return isValid ? date : null;
+        long millis = getDateMillis(dateStr);
+        return (millis > 0) ? new Date(millis) : null;
+    }
+
+    /**
+     * Parses the date using the format yyyyMMddHHmmss without creating a
+     * <code>Date</code> object.
+     * @param dateStr the date to parse
+     * @return milliseconds since the epoch or -1 if the date is not
+     * compliant with the format yyyyMMddHHmmss
+     */
+    public static long getDateMillis(String dateStr) {
+        if (dateStr == null || dateStr.length() != DATE_LENGTH) {
+            return -1;
+        }
+        CachedDate cached = cachedDate;
+        if (cached != null && cached.dateStr.equals(dateStr)) {
+            return cached.millis;
+        }
+        long millis = FixedWidthDateParser.toMillis(
+                FixedWidthDateParser.parseDigits(dateStr, 0, 4),
+                FixedWidthDateParser.parseDigits(dateStr, 4, 2),
+                FixedWidthDateParser.parseDigits(dateStr, 6, 2),
+                FixedWidthDateParser.parseDigits(dateStr, 8, 2),
+                FixedWidthDateParser.parseDigits(dateStr, 10, 2),
+                FixedWidthDateParser.parseDigits(dateStr, 12, 2));
+        if (millis <= 0) {
+            return -1;
+        }
+        cachedDate = new CachedDate(dateStr, millis);
+        return millis;
+    }
+
+    /**
+     * Parses the date using the format yyyyMMddHHmmss straight from an array
+     * of US-ASCII bytes.
+     * @param b byte array
+     * @param off offset of the date
+     * @param len length of the date
+     * @return milliseconds since the epoch or -1 if the date is not
+     * compliant with the format yyyyMMddHHmmss
+     */
+    public static long getDateMillis(byte[] b, int off, int len) {
+        if (b == null || len != DATE_LENGTH) {
+            return -1;
+        }
+        CachedDate cached = cachedDate;
+        if (cached != null && cached.equals(b, off, len)) {
+            return cached.millis;
+        }
+        long millis = FixedWidthDateParser.toMillis(
+                FixedWidthDateParser.parseDigits(b, off, 4),
+                FixedWidthDateParser.parseDigits(b, off + 4, 2),
+                FixedWidthDateParser.parseDigits(b, off + 6, 2),
+                FixedWidthDateParser.parseDigits(b, off + 8, 2),
+                FixedWidthDateParser.parseDigits(b, off + 10, 2),
+                FixedWidthDateParser.parseDigits(b, off + 12, 2));
+        if (millis <= 0) {
+            return -1;
+        }
+        char[] chars = new char[len];
+        for (int i=0; i<len; ++i) {
+            chars[i] = (char)b[off + i];
+        }
+        cachedDate = new CachedDate(new String(chars), millis);
+        return millis;
     }
 
     /**
@@ -30,6 +30,7 @@ import org.jwat.common.HeaderLine;
 import org.jwat.common.Scheme;
 import org.jwat.common.Uri;
 import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
 
 /**
  * Class for parsing and validating the common ARC record header present in
@@ -54,6 +55,9 @@ public class ArcHeader {
      * Must be set prior to calling the various methods. */
     protected ArcFieldParsers fieldParsers;
 
+    /** Amount of validation done while reading. */
+    protected ValidationLevel validationLevel = ValidationLevel.FULL;
+
     /** ARC record starting offset relative to the source ARC file input
      *  stream. The offset is correct for both compressed and uncompressed streams. */
     protected long startOffset = -1;
@@ -170,6 +174,7 @@ public class ArcHeader {
         header.uriProfile = reader.uriProfile;
         header.fieldParsers = reader.fieldParsers;
         header.diagnostics = diagnostics;
+        header.validationLevel = reader.validationLevel;
         // This is only relevant for uncompressed sequentially read records
         header.startOffset = startOffset;
         return header;
@@ -284,7 +289,8 @@ public class ArcHeader {
                 }
                 resultCode = fieldParsers.parseInteger(
                         resultCodeStr, ArcConstants.FN_RESULT_CODE, false);
-                if (resultCode != null && (resultCode < 100 || resultCode > 999)) {
+                if (resultCode != null && (resultCode < 100 || resultCode > 999)
+                        && validationLevel == ValidationLevel.FULL) {
                     diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_RESULT_CODE + "' value", resultCodeStr, "A number between 100 and 999"));
                 }
 
@@ -306,7 +312,7 @@ public class ArcHeader {
                 }
                 offset = fieldParsers.parseLong(
                         offsetStr, ArcConstants.FN_OFFSET, false);
-                if (offset != null && offset < 0) {
+                if (offset != null && offset < 0 && validationLevel == ValidationLevel.FULL) {
                     diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_OFFSET + "' value", offsetStr, "A non negative number"));
                 }
 
@@ -335,6 +341,19 @@ public class ArcHeader {
         return startOffset;
     }
 
+    /**
+     * Returns the archive date as milliseconds since the epoch without
+     * creating a <code>Date</code> object.
+     * @return archive date in milliseconds since the epoch or -1 if the
+     * date is missing or invalid
+     */
+    public long getArchiveDateMillis() {
+        if (archiveDate != null) {
+            return archiveDate.getTime();
+        }
+        return ArcDateParser.getDateMillis(archiveDateStr);
+    }
+
     /**
      * Add object information to <code>StringBuilder</code>.
      * @param sb <code>StringBuilder</code> where to add information
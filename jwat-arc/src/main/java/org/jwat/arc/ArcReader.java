@@ -26,8 +26,10 @@ import java.util.NoSuchElementException;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.Digest;
+import org.jwat.common.DigestWorker;
 import org.jwat.common.HeaderLineReader;
 import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
 
 /**
  * ARC Reader base class.
@@ -54,6 +56,10 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
     /** Optional block digest algorithm to use. */
     protected String blockDigestAlgorithm;
 
+    /** Block digest algorithms computed in the same pass over every record,
+     *  the first is also the optional block digest algorithm. */
+    protected String[] blockDigestAlgorithms;
+
     /** Encoding scheme used to encode block digest into a string. */
     protected String blockDigestEncoding = "base32";
 
@@ -63,9 +69,29 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
     /** Optional payload digest algorithm to use. */
     protected String payloadDigestAlgorithm;
 
+    /** Payload digest algorithms computed in the same pass over every record,
+     *  the first is also the optional payload digest algorithm. */
+    protected String[] payloadDigestAlgorithms;
+
     /** Encoding scheme used to encode payload digest into a string. */
     protected String payloadDigestEncoding = "base32";
 
+    /** Digest worker computing digests on another thread, null unless
+     *  asynchronous digesting is enabled. */
+    protected DigestWorker digestWorker;
+
+    /** Amount of validation done while reading. */
+    protected ValidationLevel validationLevel = ValidationLevel.FULL;
+
+    /** Skip unread record data instead of reading it. */
+    protected boolean bHeaderScan = false;
+
+    /** Defer HTTP header parsing until it is requested. */
+    protected boolean bLazyHttpHeaderParsing = false;
+
+    /** Filter deciding which records are returned or null. */
+    protected ArcRecordFilter recordFilter;
+
     /** Max size allowed for a record header. */
     protected int recordHeaderMaxSize;
 
@@ -224,6 +250,131 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
         bPayloadDigest = enabled;
     }
 
+    /**
+     * Get the readers validation level.
+     * @return validation level
+     */
+    public ValidationLevel getValidationLevel() {
+        return validationLevel;
+    }
+
+    /**
+     * Set the readers validation level. Below <code>FULL</code> the field
+     * and record compliance checks are skipped. At <code>NONE</code> no
+     * diagnoses are reported for trailing newlines either.
+     * @param level validation level
+     */
+    public void setValidationLevel(ValidationLevel level) {
+        if (level == null) {
+            throw new IllegalArgumentException("level is null!");
+        }
+        validationLevel = level;
+    }
+
+    /**
+     * Get the readers header scan on/off status.
+     * @return boolean indicating header scan on/off
+     */
+    public boolean isHeaderScanEnabled() {
+        return bHeaderScan;
+    }
+
+    /**
+     * Set the readers header scan on/off status. In header scan mode block
+     * and payload digests are not computed, so the unread data of a record
+     * is skipped instead of read when the record is closed.
+     * Uncompressed readers skip by seeking if the input stream supports it,
+     * as a <code>FileInputStream</code> or
+     * <code>RandomAccessFileInputStream</code> does.
+     * Compressed readers skip the rest of a GZip entry without inflating it
+     * if the entry header includes the compressed length subfield, the
+     * trailing newlines of such a record are not validated. Otherwise the
+     * rest of the entry is inflated and discarded.
+     * @param enabled boolean indicating header scan on/off
+     */
+    public void setHeaderScanEnabled(boolean enabled) {
+        bHeaderScan = enabled;
+    }
+
+    /**
+     * Get the readers lazy HTTP header parsing on/off status.
+     * @return boolean indicating lazy HTTP header parsing on/off
+     */
+    public boolean getLazyHttpHeaderParsingEnabled() {
+        return bLazyHttpHeaderParsing;
+    }
+
+    /**
+     * Set the readers lazy HTTP header parsing on/off status. When enabled
+     * the HTTP header of a record is parsed the first time it is requested
+     * through <code>getHttpHeader()</code> or the record payload, instead of
+     * when the record is read. If neither is requested, the HTTP header is
+     * only parsed when the record is closed if payload digests are enabled,
+     * so the computed payload digests are the same either way. An HTTP header
+     * which is never parsed is not validated.
+     * @param enabled boolean indicating lazy HTTP header parsing on/off
+     */
+    public void setLazyHttpHeaderParsingEnabled(boolean enabled) {
+        bLazyHttpHeaderParsing = enabled;
+    }
+
+    /**
+     * Returns the filter deciding which records are returned or null.
+     * @return the filter deciding which records are returned or null
+     */
+    public ArcRecordFilter getRecordFilter() {
+        return recordFilter;
+    }
+
+    /**
+     * Set the filter deciding which records are returned by
+     * <code>getNextRecord</code> and the iterator. The filter is evaluated
+     * right after a record header has been parsed. The data of a rejected
+     * record is skipped, without computing digests or parsing the HTTP
+     * header, and the next record is read. Records read by the
+     * <code>getNextRecordFrom</code> methods are not filtered. ARC version blocks are never filtered.
+     * @param filter record filter or null to return all records
+     */
+    public void setRecordFilter(ArcRecordFilter filter) {
+        recordFilter = filter;
+    }
+
+    /**
+     * Get the readers asynchronous digest on/off status.
+     * @return boolean indicating asynchronous digest on/off
+     */
+    public boolean getAsyncDigestEnabled() {
+        return digestWorker != null;
+    }
+
+    /**
+     * Set the readers asynchronous digest on/off status. When enabled block
+     * and payload digests are computed on a separate worker thread while
+     * the record is being read. The digests are awaited and validated when
+     * the record is closed.
+     * @param enabled boolean indicating asynchronous digest on/off
+     */
+    public void setAsyncDigestEnabled(boolean enabled) {
+        if (enabled) {
+            if (digestWorker == null) {
+                digestWorker = new DigestWorker();
+            }
+        } else {
+            closeDigestWorker();
+        }
+    }
+
+    /**
+     * Stop the digest worker thread, if any, once the queued data has been
+     * digested.
+     */
+    protected void closeDigestWorker() {
+        if (digestWorker != null) {
+            digestWorker.close();
+            digestWorker = null;
+        }
+    }
+
     /**
      * Get the optional block digest algorithm.
      * @return optional block digest algorithm
@@ -242,15 +393,51 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
     public boolean setBlockDigestAlgorithm(String digestAlgorithm) {
         if (digestAlgorithm == null || digestAlgorithm.length() == 0) {
             blockDigestAlgorithm = null;
+            blockDigestAlgorithms = null;
             return true;
         }
         if (Digest.digestAlgorithmLength(digestAlgorithm) > 0) {
             blockDigestAlgorithm = digestAlgorithm;
+            blockDigestAlgorithms = null;
             return true;
         }
         return false;
     }
 
+    /**
+     * Get the block digest algorithms computed for every record.
+     * @return block digest algorithms computed for every record or null
+     */
+    public String[] getBlockDigestAlgorithms() {
+        return (blockDigestAlgorithms != null) ? blockDigestAlgorithms.clone() : null;
+    }
+
+    /**
+     * Tries to set the block digest algorithms computed in the same pass over
+     * every record and returns a boolean indicating whether all the
+     * algorithms were accepted or not. The first algorithm is also used as
+     * the optional block digest algorithm.
+     * @param digestAlgorithms block digest algorithms
+     * (null means no block digest algorithms are selected)
+     * @return boolean indicating the validity of the algorithms supplied
+     */
+    public boolean setBlockDigestAlgorithms(String[] digestAlgorithms) {
+        if (digestAlgorithms == null || digestAlgorithms.length == 0) {
+            blockDigestAlgorithm = null;
+            blockDigestAlgorithms = null;
+            return true;
+        }
+        for (int i=0; i<digestAlgorithms.length; ++i) {
+            if (digestAlgorithms[i] == null || digestAlgorithms[i].length() == 0
+                    || Digest.digestAlgorithmLength(digestAlgorithms[i]) <= 0) {
+                return false;
+            }
+        }
+        blockDigestAlgorithm = digestAlgorithms[0];
+        blockDigestAlgorithms = digestAlgorithms.clone();
+        return true;
+    }
+
     /**
      * Get the optional payload digest algorithm.
      * @return optional payload digest algorithm
@@ -269,15 +456,51 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
     public boolean setPayloadDigestAlgorithm(String digestAlgorithm) {
         if (digestAlgorithm == null || digestAlgorithm.length() == 0) {
             payloadDigestAlgorithm = null;
+            payloadDigestAlgorithms = null;
             return true;
         }
         if (Digest.digestAlgorithmLength(digestAlgorithm) > 0) {
             payloadDigestAlgorithm = digestAlgorithm;
+            payloadDigestAlgorithms = null;
             return true;
         }
         return false;
     }
 
+    /**
+     * Get the payload digest algorithms computed for every record.
+     * @return payload digest algorithms computed for every record or null
+     */
+    public String[] getPayloadDigestAlgorithms() {
+        return (payloadDigestAlgorithms != null) ? payloadDigestAlgorithms.clone() : null;
+    }
+
+    /**
+     * Tries to set the payload digest algorithms computed in the same pass over
+     * every record and returns a boolean indicating whether all the
+     * algorithms were accepted or not. The first algorithm is also used as
+     * the optional payload digest algorithm.
+     * @param digestAlgorithms payload digest algorithms
+     * (null means no payload digest algorithms are selected)
+     * @return boolean indicating the validity of the algorithms supplied
+     */
+    public boolean setPayloadDigestAlgorithms(String[] digestAlgorithms) {
+        if (digestAlgorithms == null || digestAlgorithms.length == 0) {
+            payloadDigestAlgorithm = null;
+            payloadDigestAlgorithms = null;
+            return true;
+        }
+        for (int i=0; i<digestAlgorithms.length; ++i) {
+            if (digestAlgorithms[i] == null || digestAlgorithms[i].length() == 0
+                    || Digest.digestAlgorithmLength(digestAlgorithms[i]) <= 0) {
+                return false;
+            }
+        }
+        payloadDigestAlgorithm = digestAlgorithms[0];
+        payloadDigestAlgorithms = digestAlgorithms.clone();
+        return true;
+    }
+
     /**
      * Get the optional block digest encoding scheme.
      * @return optional block digest encoding scheme
@@ -362,6 +585,17 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
      */
     protected abstract void recordClosed();
 
+    /**
+     * Skip the rest of the current record without reading it, if possible.
+     * Called in header scan mode when a record is closed, the default
+     * implementation skips nothing.
+     * @return boolean indicating whether the rest of the record was skipped
+     * @throws IOException if an I/O error occurs while skipping
+     */
+    protected boolean skipRecordData() throws IOException {
+        return false;
+    }
+
     /**
      * Get the offset of the current ARC record or -1 if none have been read.
      * @return offset of the current ARC record or -1
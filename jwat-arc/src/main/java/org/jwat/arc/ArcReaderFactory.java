@@ -20,17 +20,26 @@ package org.jwat.arc;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 
 import org.jwat.archive.common.ReaderFactoryAbstract;
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.CompressedReader;
+import org.jwat.common.CompressionCodec;
+import org.jwat.common.CompressionCodecs;
+import org.jwat.common.RandomAccessFileInputStream;
 import org.jwat.common.Scheme;
+import org.jwat.gzip.GzipCodec;
 import org.jwat.gzip.GzipReader;
 
 /**
  * Factory used for creating <code>ArcReader</code> instances.
- * The general <code>getReader</code> methods will auto-detect Gzip'ed data
- * and return the appropriate <code>ArcReader</code> instances.
+ * The general <code>getReader</code> methods will auto-detect compressed
+ * data using the codecs registered with <code>CompressionCodecs</code>, GZip
+ * is always registered, and return the appropriate <code>ArcReader</code>
+ * instances.
  * The other factory methods can be used to return specific
  * <code>ArcReader</code> instances for compressed or uncompressed records.
  * Readers are available for both sequential and random reading of records.
@@ -43,6 +52,10 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
     /** Buffer size used by <code>PushbackInputStream</code>. */
     public static final int PUSHBACK_BUFFER_SIZE = 32;
 
+    static {
+        CompressionCodecs.register(GzipCodec.getDefault());
+    }
+
     /**
      * Private constructor to enforce factory methods.
      */
@@ -82,7 +95,7 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
      * Creates a new <code>ArcReader</code> from an <code>InputStream</code>
      * wrapped by a <code>BufferedInputStream</code>.
      * The <code>WarcReader</code> implementation returned is chosen based on
-     * GZip auto detection.
+     * compression auto detection.
      * @param in ARC File represented as <code>InputStream</code>
      * @param buffer_size buffer size to use
      * @return appropriate <code>ArcReader</code> based on data read from
@@ -101,20 +114,44 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
                     + buffer_size);
         }
         ByteCountingPushBackInputStream pbin =
-                new ByteCountingPushBackInputStream(
-                        new BufferedInputStream(in, buffer_size),
-                                                PUSHBACK_BUFFER_SIZE);
-        if (GzipReader.isGzipped(pbin)) {
-            return new ArcReaderCompressed(new GzipReader(pbin),
+                new BufferedByteCountingPushBackInputStream(
+                        in, PUSHBACK_BUFFER_SIZE, buffer_size);
+        CompressionCodec codec = CompressionCodecs.detect(pbin);
+        if (codec != null) {
+            return new ArcReaderCompressed(codec, codec.newReader(pbin),
                                            buffer_size);
         }
         return new ArcReaderUncompressed(pbin);
     }
 
+    /**
+     * Creates a new <code>ArcReader</code> in header scan mode from a
+     * <code>RandomAccessFile</code>, starting at its current file pointer.
+     * The <code>ArcReader</code> implementation returned is chosen based on
+     * compression auto detection. Unread record data is skipped by seeking
+     * instead of being read, which makes indexing a file cost little more
+     * than reading its record headers.
+     * The <code>RandomAccessFile</code> is not closed by the reader.
+     * @param raf ARC file represented as <code>RandomAccessFile</code>
+     * @param buffer_size buffer size to use
+     * @return appropriate <code>ArcReader</code> in header scan mode
+     * @throws IOException if an I/O exception occurs during initialization
+     */
+    public static ArcReader getHeaderScanReader(RandomAccessFile raf, int buffer_size)
+                                                        throws IOException {
+        if (raf == null) {
+            throw new IllegalArgumentException(
+                    "The file 'raf' is null");
+        }
+        ArcReader reader = getReader(new RandomAccessFileInputStream(raf), buffer_size);
+        reader.setHeaderScanEnabled(true);
+        return reader;
+    }
+
     /**
      * Creates a new <code>ArcReader</code> from an <code>InputStream</code>.
      * The <code>WarcReader</code> implementation returned is chosen based on
-     * GZip auto detection.
+     * compression auto detection.
      * @param in ARC File represented as <code>InputStream</code>
      * @return appropriate <code>ArcReader</code> based on data read from
      * <code>InputStream</code>
@@ -127,8 +164,9 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
         }
         ByteCountingPushBackInputStream pbin =
                 new ByteCountingPushBackInputStream(in, PUSHBACK_BUFFER_SIZE);
-        if (GzipReader.isGzipped(pbin)) {
-            return new ArcReaderCompressed(new GzipReader(pbin));
+        CompressionCodec codec = CompressionCodecs.detect(pbin);
+        if (codec != null) {
+            return new ArcReaderCompressed(codec, codec.newReader(pbin));
         }
         return new ArcReaderUncompressed(pbin);
     }
@@ -184,9 +222,8 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
                     + buffer_size);
         }
         ByteCountingPushBackInputStream pbin =
-                new ByteCountingPushBackInputStream(
-                        new BufferedInputStream(in, buffer_size),
-                        PUSHBACK_BUFFER_SIZE);
+                new BufferedByteCountingPushBackInputStream(
+                        in, PUSHBACK_BUFFER_SIZE, buffer_size);
         return new ArcReaderUncompressed(pbin);
     }
 
@@ -242,4 +279,59 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
                                 new BufferedInputStream(in, buffer_size)));
     }
 
+    /**
+     * Creates a new <code>ArcReader</code> from an <code>InputStream</code>
+     * primarily for random access to records compressed by the supplied
+     * codec.
+     * @param codec compression codec
+     * @param in ARC File represented as <code>InputStream</code>
+     * @return <code>ArcReader</code> for compressed records read from
+     * <code>InputStream</code>
+     * @throws IOException I/O exception while initializing reader
+     */
+    public static ArcReaderCompressed getReaderCompressed(CompressionCodec codec,
+                                        InputStream in) throws IOException {
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "The 'codec' is null");
+        }
+        if (in == null) {
+            throw new IllegalArgumentException(
+                    "The inputstream 'in' is null");
+        }
+        CompressedReader reader = codec.newReader(in);
+        return new ArcReaderCompressed(codec, reader);
+    }
+
+    /**
+     * Creates a new <code>ArcReader</code> from an <code>InputStream</code>
+     * wrapped by a <code>BufferedInputStream</code> primarily for random
+     * access to records compressed by the supplied codec.
+     * @param codec compression codec
+     * @param in ARC File represented as <code>InputStream</code>
+     * @param buffer_size buffer size to use
+     * @return <code>ArcReader</code> for compressed records read from
+     * <code>InputStream</code>
+     * @throws IOException I/O exception while initializing reader
+     */
+    public static ArcReaderCompressed getReaderCompressed(CompressionCodec codec,
+                        InputStream in, int buffer_size) throws IOException {
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "The 'codec' is null");
+        }
+        if (in == null) {
+            throw new IllegalArgumentException(
+                    "The inputstream 'in' is null");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'buffer_size' is less than or equal to zero: " +
+                    buffer_size);
+        }
+        CompressedReader reader = codec.newReader(
+                new BufferedInputStream(in, buffer_size));
+        return new ArcReaderCompressed(codec, reader);
+    }
+
 }
@@ -17,10 +17,10 @@
  */
 package org.jwat.arc;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
 
 /**
@@ -80,6 +80,7 @@ public class ArcReaderUncompressed extends ArcReader {
             } catch (IOException e) { /* ignore */ }
             in = null;
         }
+        closeDigestWorker();
     }
 
     @Override
@@ -123,7 +124,11 @@ public class ArcReaderUncompressed extends ArcReader {
             throw new IllegalStateException(
                     "This reader has been initialized with an incompatible constructor, 'in' is null");
         }
-        currentRecord = ArcRecordBase.parseRecord(in, this);
+        currentRecord = ArcRecordBase.parseRecord(in, this, recordFilter);
+        while (currentRecord != null && currentRecord.bFiltered) {
+            currentRecord.close();
+            currentRecord = ArcRecordBase.parseRecord(in, this, recordFilter);
+        }
         if (currentRecord != null) {
             startOffset = currentRecord.header.startOffset;
         }
@@ -182,9 +187,8 @@ public class ArcReaderUncompressed extends ArcReader {
                     + buffer_size);
         }
         ByteCountingPushBackInputStream pbin =
-                new ByteCountingPushBackInputStream(
-                        new BufferedInputStream(rin, buffer_size),
-                        PUSHBACK_BUFFER_SIZE);
+                new BufferedByteCountingPushBackInputStream(
+                        rin, PUSHBACK_BUFFER_SIZE, buffer_size);
         currentRecord = ArcRecordBase.parseRecord(pbin, this);
         if (currentRecord != null) {
             startOffset = offset;
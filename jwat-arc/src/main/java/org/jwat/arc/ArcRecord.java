@@ -25,6 +25,7 @@ import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.HttpHeader;
 import org.jwat.common.Payload;
+import org.jwat.common.PayloadOnHeaderRequestedHandler;
 
 /**
  * This class represents an ARC record and header including possible
@@ -35,7 +36,7 @@ import org.jwat.common.Payload;
  *
  * @author lbihanic, selghissassi, nicl
  */
-public class ArcRecord extends ArcRecordBase {
+public class ArcRecord extends ArcRecordBase implements PayloadOnHeaderRequestedHandler {
 
     /** Buffer size used in toString(). */
     public static final int TOSTRING_BUFFER_SIZE = 256;
@@ -76,13 +77,34 @@ public class ArcRecord extends ArcRecordBase {
             Diagnostics<Diagnosis> diagnostics,
             ArcHeader header, ByteCountingPushBackInputStream in)
                                                           throws IOException {
+        return parseArcRecord(reader, diagnostics, header, in, true);
+    }
+
+    /**
+     * Creates a new <code>ArcRecord</code> based on the supplied header and
+     * optionally starts processing the payload, if present.
+     * @param reader <code>ArcReader</code> used, with access to user defined
+     * options
+     * @param diagnostics diagnostics used to report errors and/or warnings
+     * @param header record header that has already been processed
+     * @param in <code>InputStream</code> used to read possible payload
+     * @param bProcessPayload process the payload or leave it for skipping
+     * @return an <code>ArcRecord</code>
+     * @throws IOException I/O exception while processing possible payload
+     */
+    public static ArcRecord parseArcRecord(ArcReader reader,
+            Diagnostics<Diagnosis> diagnostics,
+            ArcHeader header, ByteCountingPushBackInputStream in,
+            boolean bProcessPayload) throws IOException {
         ArcRecord ar = new ArcRecord();
         ar.recordType = RT_ARC_RECORD;
         ar.reader = reader;
         ar.diagnostics = diagnostics;
         ar.header = header;
         ar.in = in;
-        ar.processPayload(in, reader);
+        if (bProcessPayload) {
+            ar.processPayload(in, reader);
+        }
         ar.consumed = in.getConsumed() - ar.header.startOffset;
         return ar;
     }
@@ -92,33 +114,29 @@ public class ArcRecord extends ArcRecordBase {
                                         ArcReader reader) throws IOException {
         payload = null;
         if (header.archiveLength != null && header.archiveLength > 0L) {
-            String digestAlgorithm = null;
-            if (reader.bBlockDigest) {
-                digestAlgorithm = reader.blockDigestAlgorithm;
+            String[] digestAlgorithms = null;
+            if (reader.bBlockDigest && !reader.bHeaderScan) {
+                digestAlgorithms = digestAlgorithms(reader.blockDigestAlgorithm,
+                        reader.blockDigestAlgorithms);
             }
-            payload = Payload.processPayload(in, header.archiveLength.longValue(),
-                    reader.payloadHeaderMaxSize, digestAlgorithm);
+            payload = Payload.processPayloadDigests(in, header.archiveLength.longValue(),
+                    reader.payloadHeaderMaxSize, digestAlgorithms, reader.digestWorker);
             payload.setOnClosedHandler(this);
             // HttpHeader.
             if (HttpHeader.isSupported(header.urlScheme)) {
                 // Never! -> && !ArcConstants.CONTENT_TYPE_NO_TYPE.equals(header.contentTypeStr)
-                digestAlgorithm = null;
-                if (reader.bPayloadDigest) {
-                    digestAlgorithm = reader.payloadDigestAlgorithm;
+                digestAlgorithms = null;
+                if (reader.bPayloadDigest && !reader.bHeaderScan) {
+                    digestAlgorithms = digestAlgorithms(reader.payloadDigestAlgorithm,
+                            reader.payloadDigestAlgorithms);
                 }
-                // Try to read a valid HTTP response header from the payload.
-                httpHeader = HttpHeader.processPayload(HttpHeader.HT_RESPONSE,
-                            payload.getInputStream(), header.archiveLength.longValue(),
-                            digestAlgorithm);
-                if (httpHeader != null) {
-                    if (httpHeader.isValid()) {
-                        payload.setPayloadHeaderWrapped(httpHeader);
-                    } else {
-                        diagnostics.addError(
-                                new Diagnosis(DiagnosisType.ERROR,
-                                        "http header",
-                                        "Unable to parse http header!"));
-                    }
+                if (reader.bLazyHttpHeaderParsing) {
+                    // Processed when the header or payload is requested.
+                    bHttpHeaderDeferred = true;
+                    httpHeaderDigestAlgorithms = digestAlgorithms;
+                    payload.setOnHeaderRequestedHandler(this);
+                } else {
+                    processHttpHeader(digestAlgorithms);
                 }
             }
         } else if (HttpHeader.isSupported(header.urlScheme)) {
@@ -130,6 +148,43 @@ public class ArcRecord extends ArcRecordBase {
         return;
     }
 
+    /**
+     * Try to read a valid HTTP response header from the payload.
+     * @param digestAlgorithms payload digest algorithms or null
+     * @throws IOException I/O exception while reading the HTTP header
+     */
+    protected void processHttpHeader(String[] digestAlgorithms) throws IOException {
+        httpHeader = HttpHeader.processPayloadDigests(HttpHeader.HT_RESPONSE,
+                    payload.getInputStream(), header.archiveLength.longValue(),
+                    digestAlgorithms, reader.digestWorker);
+        if (httpHeader != null) {
+            if (httpHeader.isValid()) {
+                payload.setPayloadHeaderWrapped(httpHeader);
+            } else {
+                diagnostics.addError(
+                        new Diagnosis(DiagnosisType.ERROR,
+                                "http header",
+                                "Unable to parse http header!"));
+            }
+        }
+    }
+
+    /**
+     * Called the first time the deferred HTTP header or the payload is
+     * requested, or when the payload is closed. On close the HTTP header is
+     * only processed if payload digests are to be computed.
+     * @param bClosing true if the payload is being closed
+     * @throws IOException I/O exception while reading the HTTP header
+     */
+    @Override
+    public void payloadHeaderRequested(boolean bClosing) throws IOException {
+        if (bHttpHeaderDeferred && (!bClosing || httpHeaderDigestAlgorithms != null)) {
+            processHttpHeader(httpHeaderDigestAlgorithms);
+        }
+        bHttpHeaderDeferred = false;
+        httpHeaderDigestAlgorithms = null;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder(TOSTRING_BUFFER_SIZE);
@@ -21,23 +21,24 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
-import org.jwat.common.Base16;
-import org.jwat.common.Base32;
-import org.jwat.common.Base64;
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.common.ContentType;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.Digest;
+import org.jwat.common.DigestEncoding;
 import org.jwat.common.HttpHeader;
 import org.jwat.common.NewlineParser;
 import org.jwat.common.Payload;
 import org.jwat.common.PayloadOnClosedHandler;
 import org.jwat.common.PayloadWithHeaderAbstract;
 import org.jwat.common.Uri;
+import org.jwat.common.ValidationLevel;
 
 /**
  * This abstract class represents the common base ARC data which is present in
@@ -91,6 +92,12 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
     /** Number of trailing newlines after record. */
     public int trailingNewLines;
 
+    /** Was the rest of the record data skipped in header scan mode. */
+    protected boolean bDataSkipped;
+
+    /** Was the record rejected by the reader record filter. */
+    protected boolean bFiltered;
+
     /*
      * Header-Fields.
      */
@@ -120,12 +127,26 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
     /** HTTP header content parsed from payload. */
     protected HttpHeader httpHeader;
 
+    /** Is HTTP header parsing deferred until it is requested. */
+    protected boolean bHttpHeaderDeferred;
+
+    /** Payload digest algorithms of the deferred HTTP header, or null. */
+    protected String[] httpHeaderDigestAlgorithms;
+
     /** Computed block digest. */
     public Digest computedBlockDigest;
 
     /** Computed payload digest. */
     public Digest computedPayloadDigest;
 
+    /** All the computed block digests, the first is the computed block
+     *  digest. Null if no block digest was computed. */
+    public List<Digest> computedBlockDigests;
+
+    /** All the computed payload digests, the first is the computed payload
+     *  digest. Null if no payload digest was computed. */
+    public List<Digest> computedPayloadDigests;
+
     /** This array is used to store metadata which should not be present.
      *  Only available for forensic purposes. */
     public byte[] excessiveMetadata;
@@ -139,6 +160,22 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
      * @throws IOException I/O exception while parsing ARC record data
      */
     public static ArcRecordBase parseRecord(ByteCountingPushBackInputStream in, ArcReader reader) throws IOException {
+        return parseRecord(in, reader, null);
+    }
+
+    /**
+     * Reads from the input stream and tries to parse and identify an
+     * <code>ArcRecord</code> or <code>ArcVersionBlock</code> record.
+     * If an <code>ArcRecord</code> is rejected by the filter, its payload is
+     * not processed and the record data is skipped when it is closed.
+     * @param in input stream with ARC record data
+     * @param reader ARC reader used with access to overall configuration and status
+     * @param filter record filter or null
+     * @return <code>ArcRecord</code>, <code>ArcVersionBlock</code> or null
+     * @throws IOException I/O exception while parsing ARC record data
+     */
+    public static ArcRecordBase parseRecord(ByteCountingPushBackInputStream in, ArcReader reader,
+            ArcRecordFilter filter) throws IOException {
         ArcRecordBase record = null;
         long startOffset = in.getConsumed();
         // Initialize ArcHeader with required context.
@@ -159,7 +196,10 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
                 }
             }
             if (record == null) {
-                record = ArcRecord.parseArcRecord(reader, diagnostics, header, in);
+                boolean bFiltered = filter != null && !filter.accept(reader,
+                        reader.isCompressed() ? reader.getStartOffset() : startOffset, header);
+                record = ArcRecord.parseArcRecord(reader, diagnostics, header, in, !bFiltered);
+                record.bFiltered = bFiltered;
                 if (record != null && reader.versionHeader != null) {
                     record.version = reader.versionHeader.version;
                 }
@@ -169,34 +209,37 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
         if (record != null) {
             ++reader.records;
             record.startOffset = startOffset;
-            // Check read and computed offset value only if we're reading
-            // a plain ARC file, not a GZipped ARC.
-            if ((header.offset != null) && (header.startOffset > 0L)
-                                && (header.offset.longValue() != header.startOffset)) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED,
-                        "'" + ArcConstants.FN_OFFSET + "' value",
-                        header.offset.toString(),
-                        Long.toString(header.startOffset)));
-            }
-            if (reader.records == 1) {
-                if (record.recordType == ArcRecordBase.RT_ARC_RECORD) {
-                    diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                            ArcConstants.ARC_FILE,
-                            "Expected a version block as the first record."));
+            // Record compliance checks, skipped below full validation.
+            if (reader.validationLevel == ValidationLevel.FULL) {
+                // Check read and computed offset value only if we're reading
+                // a plain ARC file, not a GZipped ARC.
+                if ((header.offset != null) && (header.startOffset > 0L)
+                                    && (header.offset.longValue() != header.startOffset)) {
+                    diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED,
+                            "'" + ArcConstants.FN_OFFSET + "' value",
+                            header.offset.toString(),
+                            Long.toString(header.startOffset)));
                 }
-            } else {
-                if (record.recordType == ArcRecordBase.RT_VERSION_BLOCK) {
-                    diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                            ArcConstants.ARC_FILE,
-                            "Expected an ARC record not version block."));
+                if (reader.records == 1) {
+                    if (record.recordType == ArcRecordBase.RT_ARC_RECORD) {
+                        diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
+                                ArcConstants.ARC_FILE,
+                                "Expected a version block as the first record."));
+                    }
+                } else {
+                    if (record.recordType == ArcRecordBase.RT_VERSION_BLOCK) {
+                        diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
+                                ArcConstants.ARC_FILE,
+                                "Expected an ARC record not version block."));
+                    }
+                }
+                if (reader.versionHeader != null && reader.versionHeader.blockDescVersion > 0
+                        && record.header.recordFieldVersion != reader.versionHeader.blockDescVersion) {
+                    diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED,
+                            "ARC record does not match the version block definition",
+                            Integer.toString(record.header.recordFieldVersion),
+                            Integer.toString(reader.versionHeader.blockDescVersion)));
                 }
-            }
-            if (reader.versionHeader != null && reader.versionHeader.blockDescVersion > 0
-                    && record.header.recordFieldVersion != reader.versionHeader.blockDescVersion) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED,
-                        "ARC record does not match the version block definition",
-                        Integer.toString(record.header.recordFieldVersion),
-                        Integer.toString(reader.versionHeader.blockDescVersion)));
             }
             // Preliminary compliance status, will be updated when the
             // payload/record is closed.
@@ -229,6 +272,42 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
         return record;
     }
 
+    /**
+     * Returns the digest algorithms to compute given the optional digest
+     * algorithm and digest algorithms reader settings.
+     * @param digestAlgorithm optional digest algorithm
+     * @param digestAlgorithms optional digest algorithms
+     * @return digest algorithms to compute or null
+     */
+    protected static String[] digestAlgorithms(String digestAlgorithm, String[] digestAlgorithms) {
+        if (digestAlgorithms != null) {
+            return digestAlgorithms;
+        }
+        if (digestAlgorithm != null) {
+            return new String[] {digestAlgorithm};
+        }
+        return null;
+    }
+
+    /**
+     * Create a computed digest object and encode the digest using the
+     * supplied encoding scheme, if it is known.
+     * @param digestBytes computed digest bytes
+     * @param algorithm digest algorithm
+     * @param encoding encoding scheme or null
+     * @return computed digest object
+     */
+    protected static Digest newComputedDigest(byte[] digestBytes, String algorithm, String encoding) {
+        Digest digest = new Digest();
+        digest.digestBytes = digestBytes;
+        digest.algorithm = algorithm;
+        digest.digestString = DigestEncoding.encode(digestBytes, encoding);
+        if (digest.digestString != null) {
+            digest.encoding = encoding;
+        }
+        return digest;
+    }
+
     /**
      * Called when the payload object is closed and final steps in the
      * validation process can be performed.
@@ -239,7 +318,7 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
         if (!bPayloadClosed) {
             if (payload != null) {
                 // Check for truncated payload.
-                if (payload.getUnavailable() > 0) {
+                if (payload.getUnavailable() > 0 && !bDataSkipped) {
                     // Payload length mismatch - Payload truncated
                     addErrorDiagnosis(DiagnosisType.INVALID_DATA, "Payload length mismatch", "Payload truncated");
                 }
@@ -248,25 +327,20 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
                  */
                 byte[] digest = payload.getDigest();
                 if (digest != null) {
-                    computedBlockDigest = new Digest();
-                    computedBlockDigest.digestBytes = digest;
-                    computedBlockDigest.algorithm = reader.blockDigestAlgorithm;
-                    if (reader.blockDigestEncoding != null) {
-                        if ("base32".equals(reader.blockDigestEncoding)) {
-                            computedBlockDigest.encoding = "base32";
-                            computedBlockDigest.digestString = Base32.encodeArray(computedBlockDigest.digestBytes);
-                        } else if ("base64".equals(reader.blockDigestEncoding)) {
-                            computedBlockDigest.encoding = "base64";
-                            computedBlockDigest.digestString = Base64.encodeArray(computedBlockDigest.digestBytes);
-                        } else if ("base16".equals(reader.blockDigestEncoding)) {
-                            computedBlockDigest.encoding = "base16";
-                            computedBlockDigest.digestString = Base16.encodeArray(computedBlockDigest.digestBytes);
-                        } else {
-                            // Encoding - Unknown block digest encoding scheme ..
-                            addErrorDiagnosis(DiagnosisType.INVALID_DATA,
-                                    "Block digest encoding scheme",
-                                    reader.blockDigestEncoding);
-                        }
+                    computedBlockDigest = newComputedDigest(digest,
+                            reader.blockDigestAlgorithm, reader.blockDigestEncoding);
+                    if (reader.blockDigestEncoding != null && computedBlockDigest.encoding == null) {
+                        // Encoding - Unknown block digest encoding scheme ..
+                        addErrorDiagnosis(DiagnosisType.INVALID_DATA,
+                                "Block digest encoding scheme",
+                                reader.blockDigestEncoding);
+                    }
+                    List<String> algorithms = payload.getDigestAlgorithms();
+                    computedBlockDigests = new ArrayList<Digest>(algorithms.size());
+                    computedBlockDigests.add(computedBlockDigest);
+                    for (int i=1; i<algorithms.size(); ++i) {
+                        computedBlockDigests.add(newComputedDigest(payload.getDigest(algorithms.get(i)),
+                                algorithms.get(i), reader.blockDigestEncoding));
                     }
                 }
                 PayloadWithHeaderAbstract payloadHeaderWrapped = payload.getPayloadHeaderWrapped();
@@ -276,32 +350,34 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
                      */
                     digest = payloadHeaderWrapped.getDigest();
                     if (digest != null) {
-                        computedPayloadDigest = new Digest();
-                        computedPayloadDigest.digestBytes = digest;
-                        computedPayloadDigest.algorithm = reader.payloadDigestAlgorithm;
-                        if (reader.payloadDigestEncoding != null) {
-                            if ("base32".equals(reader.payloadDigestEncoding)) {
-                                computedPayloadDigest.encoding = "base32";
-                                computedPayloadDigest.digestString = Base32.encodeArray(computedPayloadDigest.digestBytes);
-                            } else if ("base64".equals(reader.payloadDigestEncoding)) {
-                                computedPayloadDigest.encoding = "base64";
-                                computedPayloadDigest.digestString = Base64.encodeArray(computedPayloadDigest.digestBytes);
-                            } else if ("base16".equals(reader.payloadDigestEncoding)) {
-                                computedPayloadDigest.encoding = "base16";
-                                computedPayloadDigest.digestString = Base16.encodeArray(computedPayloadDigest.digestBytes);
-                            } else {
-                                // Encoding - Unknown payload digest encoding scheme ..
-                                addErrorDiagnosis(DiagnosisType.INVALID_DATA,
-                                        "Payload digest encoding scheme",
-                                        reader.payloadDigestEncoding);
-                            }
+                        computedPayloadDigest = newComputedDigest(digest,
+                                reader.payloadDigestAlgorithm, reader.payloadDigestEncoding);
+                        if (reader.payloadDigestEncoding != null && computedPayloadDigest.encoding == null) {
+                            // Encoding - Unknown payload digest encoding scheme ..
+                            addErrorDiagnosis(DiagnosisType.INVALID_DATA,
+                                    "Payload digest encoding scheme",
+                                    reader.payloadDigestEncoding);
+                        }
+                        List<String> algorithms = payloadHeaderWrapped.getDigestAlgorithms();
+                        computedPayloadDigests = new ArrayList<Digest>(algorithms.size());
+                        computedPayloadDigests.add(computedPayloadDigest);
+                        for (int i=1; i<algorithms.size(); ++i) {
+                            computedPayloadDigests.add(newComputedDigest(payloadHeaderWrapped.getDigest(algorithms.get(i)),
+                                    algorithms.get(i), reader.payloadDigestEncoding));
                         }
                     }
                 }
             }
-            // Check for trailing newlines.
-            trailingNewLines = nlp.parseLFs(in, diagnostics);
-            if (reader.bStrict && trailingNewLines != ArcConstants.ARC_RECORD_TRAILING_NEWLINES) {
+            // Check for trailing newlines, unless skipped with the data.
+            if (bDataSkipped) {
+                trailingNewLines = 0;
+            } else if (reader.validationLevel != ValidationLevel.NONE) {
+                trailingNewLines = nlp.parseLFs(in, diagnostics);
+            } else {
+                trailingNewLines = nlp.parseLFs(in, null);
+            }
+            if (reader.bStrict && reader.validationLevel != ValidationLevel.NONE && !bDataSkipped
+                    && trailingNewLines != ArcConstants.ARC_RECORD_TRAILING_NEWLINES) {
                 addErrorDiagnosis(DiagnosisType.INVALID_EXPECTED,
                         "Trailing newlines",
                         Integer.toString(trailingNewLines),
@@ -342,7 +418,23 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
         if (!bClosed) {
             // Ensure input stream is at the end of the record payload.
             if (payload != null) {
+                if (reader.bHeaderScan) {
+                    bDataSkipped = reader.skipRecordData();
+                }
                 payload.close();
+            } else if (bFiltered && header.archiveLength != null && header.archiveLength > 0) {
+                bDataSkipped = reader.skipRecordData();
+                if (!bDataSkipped) {
+                    long remaining = header.archiveLength;
+                    long skipped;
+                    while (remaining > 0 && (skipped = in.skip(remaining)) > 0) {
+                        remaining -= skipped;
+                    }
+                    if (remaining > 0) {
+                        // Payload length mismatch - Payload truncated
+                        addErrorDiagnosis(DiagnosisType.INVALID_DATA, "Payload length mismatch", "Payload truncated");
+                    }
+                }
             }
             payloadClosed();
             reader = null;
@@ -419,10 +511,15 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
 
     /**
      * Returns the <code>HttpHeader</code> object if identified in the payload,
-     * or null.
+     * or null. A deferred HTTP header is processed by the first call, unless
+     * the record has already been closed.
      * @return the <code>HttpHeader</code> object if identified or null
      */
     public HttpHeader getHttpHeader() {
+        if (bHttpHeaderDeferred && payload != null) {
+            // Processes the deferred HTTP header.
+            payload.getPayloadHeaderWrapped();
+        }
         return httpHeader;
     }
 
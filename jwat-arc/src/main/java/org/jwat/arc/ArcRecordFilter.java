@@ -0,0 +1,41 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+/**
+ * Decides which records are returned by the <code>getNextRecord</code>
+ * method and iterator of a <code>ArcReader</code>. The filter is evaluated
+ * right after a record header has been parsed, so the data of a rejected
+ * record is skipped without being processed. No digests are computed and
+ * no HTTP header is parsed for a rejected record.
+ *
+ * @author nicl
+ */
+public interface ArcRecordFilter {
+
+    /**
+     * Returns a boolean indicating whether a record should be returned to the
+     * caller or skipped.
+     * @param reader reader used to read the record
+     * @param startOffset offset of the record in the ARC file
+     * @param header parsed record header
+     * @return a boolean indicating whether the record should be returned
+     */
+    public boolean accept(ArcReader reader, long startOffset, ArcHeader header);
+
+}
@@ -0,0 +1,255 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+
+import org.jwat.archive.common.SplitReaderAbstract;
+import org.jwat.common.ValidationLevel;
+import org.jwat.gzip.GzipEntry;
+import org.jwat.gzip.GzipReader;
+import org.jwat.gzip.GzipScanner;
+
+/**
+ * Reads an ARC file in parallel by dividing it into byte ranges which are
+ * parsed on separate threads. Records are passed to a thread safe
+ * <code>ArcRecordHandler</code> with offsets relative to the start of
+ * the file.
+ * GZip compressed files are split at entry boundaries, found by scanning
+ * for entry headers which inflate without errors.
+ * Uncompressed files are split at record boundaries, found by scanning for
+ * lines with the fields of an ARC record header and checking that the
+ * Archive-length of the candidate record ends at another record or EOF.
+ * Boundaries are verified before any record is handled, as described in
+ * <code>SplitReaderAbstract</code>.
+ * The readers of all but the first range are initialized with the version
+ * block of the file.
+ *
+ * @author nicl
+ */
+public class ArcSplitReader extends SplitReaderAbstract<ArcRecordHandler> {
+
+    /** Version block header shared with the readers of the ranges. */
+    protected ArcVersionHeader versionHeader;
+
+    /** Has the version block been read. */
+    protected boolean bVersionHeaderRead;
+
+    /**
+     * Construct a split reader using the specified number of threads and a
+     * default range size of DEFAULT_SPLIT_SIZE.
+     * @param file ARC file
+     * @param threads number of reader threads
+     * @throws IOException if an I/O error occurs while examining the file
+     */
+    public ArcSplitReader(File file, int threads) throws IOException {
+        this(file, newExecutor(threads), DEFAULT_SPLIT_SIZE);
+        bOwnExecutor = true;
+    }
+
+    /**
+     * Construct a split reader using the supplied executor.
+     * The executor is not shutdown when the reader is closed.
+     * @param file ARC file
+     * @param executor executor used to read ranges
+     * @param split_size size of the byte ranges
+     * @throws IOException if an I/O error occurs while examining the file
+     */
+    public ArcSplitReader(File file, ExecutorService executor, long split_size) throws IOException {
+        super(file, executor, split_size);
+    }
+
+    /**
+     * Create and configure the reader used to read from a record boundary.
+     * Override to change the reader settings, each thread uses its own reader.
+     * @param offset record boundary
+     * @return reader positioned at the record boundary
+     * @throws IOException if an I/O error occurs while creating the reader
+     */
+    protected ArcReader createReader(long offset) throws IOException {
+        if (bCompressed) {
+            return ArcReaderFactory.getReaderCompressed(openAt(offset), DEFAULT_BUFFER_SIZE);
+        } else {
+            return new ArcReaderUncompressed(openStream(offset, ArcReaderFactory.PUSHBACK_BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Create a reader which only frames records, used when looking for
+     * and verifying record boundaries.
+     * @param offset record boundary
+     * @return reader positioned at the record boundary
+     * @throws IOException if an I/O error occurs while creating the reader
+     */
+    protected ArcReader createFramingReader(long offset) throws IOException {
+        ArcReader reader = new ArcReaderUncompressed(openStream(offset, ArcReaderFactory.PUSHBACK_BUFFER_SIZE));
+        reader.setValidationLevel(ValidationLevel.NONE);
+        return reader;
+    }
+
+    /**
+     * Returns the version block header of the file, reading it the first
+     * time this method is called.
+     * @return version block header or null if the file does not start with
+     * a version block
+     * @throws IOException if an I/O error occurs while reading the version block
+     */
+    protected synchronized ArcVersionHeader getVersionHeader() throws IOException {
+        if (!bVersionHeaderRead) {
+            ArcReader reader = bCompressed ? createReader(0) : createFramingReader(0);
+            try {
+                ArcRecordBase record = reader.getNextRecord();
+                if (record != null) {
+                    versionHeader = record.versionHeader;
+                }
+            } finally {
+                reader.close();
+            }
+            bVersionHeaderRead = true;
+        }
+        return versionHeader;
+    }
+
+    @Override
+    protected long findRecordStart(long from, long to) throws IOException {
+        if (bCompressed) {
+            InputStream in = openAt(from);
+            try {
+                return GzipScanner.findEntry(in, from, to);
+            } finally {
+                in.close();
+            }
+        }
+        return super.findRecordStart(from, to);
+    }
+
+    @Override
+    protected boolean isCandidateLine(byte[] line, int len) {
+        if (line[len - 1] != '\n') {
+            return false;
+        }
+        --len;
+        // Count the fields and check that the last field is a number.
+        int fields = 1;
+        int digits = 0;
+        byte c;
+        for (int i=0; i<len; ++i) {
+            c = line[i];
+            if (c == ' ') {
+                ++fields;
+                digits = 0;
+            } else if (digits >= 0 && c >= '0' && c <= '9') {
+                ++digits;
+            } else {
+                digits = -1;
+            }
+        }
+        return digits > 0 && (fields == ArcConstants.VERSION_1_BLOCK_NUMBER_FIELDS
+                || fields == ArcConstants.VERSION_2_BLOCK_NUMBER_FIELDS);
+    }
+
+    @Override
+    protected boolean isRecordStart(long offset) throws IOException {
+        ArcReader reader = createFramingReader(offset);
+        try {
+            ArcRecordBase record = reader.getNextRecord();
+            if (record == null || record.getStartOffset() != offset
+                    || record.header.archiveLength == null) {
+                return false;
+            }
+            record.close();
+            long end = reader.getConsumed();
+            if (end == length) {
+                return true;
+            }
+            record = reader.getNextRecord();
+            return record != null && record.getStartOffset() == end;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Override
+    protected long nextRecordStart(long from, long limit) throws IOException {
+        long offset;
+        if (bCompressed) {
+            GzipReader reader = new GzipReader(openAt(from));
+            try {
+                GzipEntry entry;
+                while ((entry = reader.getNextEntry()) != null) {
+                    offset = from + entry.getStartOffset();
+                    if (offset >= limit) {
+                        return offset;
+                    }
+                    reader.skipEntry();
+                }
+            } finally {
+                reader.close();
+            }
+        } else {
+            ArcReader reader = createFramingReader(from);
+            try {
+                ArcRecordBase record;
+                while ((record = reader.getNextRecord()) != null) {
+                    offset = record.getStartOffset();
+                    if (offset >= limit) {
+                        return offset;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return length;
+    }
+
+    @Override
+    protected long readRange(long from, long to, ArcRecordHandler handler) throws IOException {
+        ArcReader reader = createReader(from);
+        if (from > 0) {
+            // The version block was read by the reader of the first range.
+            reader.versionHeader = getVersionHeader();
+            reader.records = 1;
+        }
+        long records = 0;
+        try {
+            ArcRecordBase record;
+            long offset;
+            while ((record = reader.getNextRecord()) != null) {
+                if (bCompressed) {
+                    // Entry offsets are relative to the start of the range.
+                    record.header.startOffset += from;
+                }
+                offset = record.getStartOffset();
+                if (offset >= to) {
+                    break;
+                }
+                handler.handleRecord(reader, record);
+                record.close();
+                ++records;
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+}
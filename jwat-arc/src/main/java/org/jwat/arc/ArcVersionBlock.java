@@ -27,6 +27,7 @@ import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.Payload;
+import org.jwat.common.ValidationLevel;
 
 /**
  * This class represents an ARC version block and header including possible
@@ -125,24 +126,28 @@ public class ArcVersionBlock extends ArcRecordBase {
     protected void processPayload(ByteCountingPushBackInputStream in,
                                         ArcReader reader) throws IOException {
         payload = null;
-        validateContentType();
+        if (reader.validationLevel == ValidationLevel.FULL) {
+            validateContentType();
+        }
         if (header.archiveLength != null && header.archiveLength > 0L) {
-            String digestAlgorithm = null;
-            if (reader.bBlockDigest) {
-                digestAlgorithm = reader.blockDigestAlgorithm;
+            String[] digestAlgorithms = null;
+            if (reader.bBlockDigest && !reader.bHeaderScan) {
+                digestAlgorithms = digestAlgorithms(reader.blockDigestAlgorithm,
+                        reader.blockDigestAlgorithms);
             }
-            payload = Payload.processPayload(in, header.archiveLength.longValue(),
-                    reader.payloadHeaderMaxSize, digestAlgorithm);
+            payload = Payload.processPayloadDigests(in, header.archiveLength.longValue(),
+                    reader.payloadHeaderMaxSize, digestAlgorithms, reader.digestWorker);
             payload.setOnClosedHandler(this);
             // ArcVersionHeader.
-            digestAlgorithm = null;
-            if (reader.bPayloadDigest) {
-                digestAlgorithm = reader.payloadDigestAlgorithm;
+            digestAlgorithms = null;
+            if (reader.bPayloadDigest && !reader.bHeaderScan) {
+                digestAlgorithms = digestAlgorithms(reader.payloadDigestAlgorithm,
+                        reader.payloadDigestAlgorithms);
             }
             // Try to read a valid ARC version block from the payload.
-            versionHeader = ArcVersionHeader.processPayload(
+            versionHeader = ArcVersionHeader.processPayloadDigests(
                     payload.getInputStream(), header.archiveLength.longValue(),
-                    digestAlgorithm, reader.fieldParsers, diagnostics);
+                    digestAlgorithms, reader.fieldParsers, diagnostics);
             if (versionHeader != null) {
                 version = versionHeader.version;
                 if (versionHeader.isValid()) {
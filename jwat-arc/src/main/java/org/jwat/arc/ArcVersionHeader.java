@@ -152,6 +152,29 @@ public class ArcVersionHeader extends PayloadWithHeaderAbstract {
     public static ArcVersionHeader processPayload(ByteCountingPushBackInputStream pbin,
             long length, String digestAlgorithm, ArcFieldParsers fieldParsers,
             Diagnostics<Diagnosis> diagnostics) throws IOException {
+        String[] digestAlgorithms = null;
+        if (digestAlgorithm != null) {
+            digestAlgorithms = new String[] {digestAlgorithm};
+        }
+        return processPayloadDigests(pbin, length, digestAlgorithms, fieldParsers, diagnostics);
+    }
+
+    /**
+     * Method called to parse and validate an ARC version block.
+     * This method never returns null so validity and extra state information
+     * is kept even in failure. All the digest algorithms are computed in the
+     * same pass over the payload.
+     * @param pbin payload input stream
+     * @param length length of payload
+     * @param digestAlgorithms digest algorithms for payload minus header
+     * @param fieldParsers parser used for the different field types
+     * @param diagnostics object used to report errors and/or warnings
+     * @return <code>ArcVersionHeader</code> object
+     * @throws IOException if an I/O exception occurs while parsing the version block
+     */
+    public static ArcVersionHeader processPayloadDigests(ByteCountingPushBackInputStream pbin,
+            long length, String[] digestAlgorithms, ArcFieldParsers fieldParsers,
+            Diagnostics<Diagnosis> diagnostics) throws IOException {
         if (pbin == null) {
             throw new IllegalArgumentException(
                     "The inputstream 'pbin' is null");
@@ -171,7 +194,7 @@ public class ArcVersionHeader extends PayloadWithHeaderAbstract {
         ArcVersionHeader avh = new ArcVersionHeader();
         avh.in_pb = pbin;
         avh.totalLength = length;
-        avh.digestAlgorithm = digestAlgorithm;
+        avh.digestAlgorithms = digestAlgorithms;
         avh.fieldParsers = fieldParsers;
         avh.diagnostics = diagnostics;
         avh.initProcess();
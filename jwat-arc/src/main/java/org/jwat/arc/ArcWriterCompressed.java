@@ -22,22 +22,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import org.jwat.gzip.GzipConstants;
-import org.jwat.gzip.GzipEntry;
+import org.jwat.common.CompressedWriter;
+import org.jwat.common.CompressionCodec;
+import org.jwat.gzip.GzipReader;
 import org.jwat.gzip.GzipWriter;
+import org.jwat.gzip.GzipWriterParallel;
 
 /**
- * ARC Writer implementation for writing GZip compressed files.
+ * ARC Writer implementation for writing compressed files.
+ * GZip is the default compression codec, others can be plugged in using
+ * <code>CompressionCodec</code> implementations.
  *
  * @author nicl
  */
 public class ArcWriterCompressed extends ArcWriter {
 
-    /** GZip Writer used. */
-    protected GzipWriter writer;
+    /** Compressed writer used, a GZip writer by default. */
+    protected CompressedWriter writer;
 
-    /** Current GZip entry. */
-    protected GzipEntry entry;
+    /** Is a compressed entry open for the current record. */
+    protected boolean bEntryOpen;
 
     /**
      * Construct an unbuffered ARC writer used to write compressed records.
@@ -68,7 +72,77 @@ public class ArcWriterCompressed extends ArcWriter {
             throw new IllegalArgumentException(
                     "The 'buffer_size' parameter is less than or equal to zero!");
         }
-        writer = new GzipWriter(new BufferedOutputStream(out, buffer_size));
+        writer = new GzipWriter(out, buffer_size);
+        init();
+    }
+
+    /**
+     * Construct a buffered ARC writer used to write compressed records.
+     * Records are compressed by the supplied number of threads and appended
+     * in the order they were written.
+     * @param out outputstream to stream to
+     * @param buffer_size outputstream buffer size
+     * @param threads number of compressing threads
+     * @throws IllegalArgumentException if out is null or buffer_size or threads is less than or equal to zero
+     */
+    ArcWriterCompressed(OutputStream out, int buffer_size, int threads) {
+        if (out == null) {
+            throw new IllegalArgumentException(
+                    "The 'out' parameter is null!");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'buffer_size' parameter is less than or equal to zero!");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'threads' parameter is less than or equal to zero!");
+        }
+        writer = new GzipWriterParallel(new BufferedOutputStream(out, buffer_size), threads);
+        init();
+    }
+
+    /**
+     * Construct an unbuffered ARC writer used to write records compressed by
+     * the supplied codec.
+     * @param out outputstream to write to
+     * @param codec compression codec
+     */
+    ArcWriterCompressed(OutputStream out, CompressionCodec codec) {
+        if (out == null) {
+            throw new IllegalArgumentException(
+                    "The 'out' parameter is null!");
+        }
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "The 'codec' parameter is null!");
+        }
+        writer = codec.newWriter(out);
+        init();
+    }
+
+    /**
+     * Construct a buffered ARC writer used to write records compressed by the
+     * supplied codec.
+     * @param out outputstream to stream to
+     * @param buffer_size outputstream buffer size
+     * @param codec compression codec
+     * @throws IllegalArgumentException if out or codec is null or buffer_size <= 0
+     */
+    ArcWriterCompressed(OutputStream out, int buffer_size, CompressionCodec codec) {
+        if (out == null) {
+            throw new IllegalArgumentException(
+                    "The 'out' parameter is null!");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'buffer_size' parameter is less than or equal to zero!");
+        }
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "The 'codec' parameter is null!");
+        }
+        writer = codec.newWriter(new BufferedOutputStream(out, buffer_size));
         init();
     }
 
@@ -77,9 +151,34 @@ public class ArcWriterCompressed extends ArcWriter {
         return true;
     }
 
+    /**
+     * Returns a boolean indicating whether the compressed length of each
+     * record is written in the GZip entry header. Always false for other
+     * compression codecs.
+     * @return a boolean indicating whether the compressed length is written
+     */
+    public boolean getCompressedLengthEnabled() {
+        if (writer instanceof GzipWriter) {
+            return ((GzipWriter)writer).getCompressedLengthEnabled();
+        }
+        return false;
+    }
+
+    /**
+     * Enable or disable writing the compressed length of each record in the
+     * GZip entry header, allowing readers to skip records without inflating.
+     * Ignored by other compression codecs.
+     * @param enabled boolean to enable or disable the compressed length
+     */
+    public void setCompressedLengthEnabled(boolean enabled) {
+        if (writer instanceof GzipWriter) {
+            ((GzipWriter)writer).setCompressedLengthEnabled(enabled);
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        if (entry != null) {
+        if (bEntryOpen) {
             closeRecord();
         }
         if (out != null) {
@@ -87,6 +186,10 @@ public class ArcWriterCompressed extends ArcWriter {
             out.close();
             out = null;
         }
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
     }
 
     @Override
@@ -94,16 +197,16 @@ public class ArcWriterCompressed extends ArcWriter {
         if (state == S_INIT) {
             throw new IllegalStateException("Write a record before closing it!");
         }
-        if (entry != null) {
+        if (bEntryOpen) {
             closeRecord_impl();
             state = S_RECORD_CLOSED;
-            entry.close();
-            entry = null;
+            writer.closeEntry();
+            bEntryOpen = false;
         }
     }
 
     /*
-     * In this class "out" is the GZip output stream of the current GZip entry.
+     * In this class "out" is the output stream of the current compressed entry.
      * @see org.jwat.arc.ArcWriter#writeHeader(byte[], java.lang.Long)
      */
     @Override
@@ -121,15 +224,8 @@ public class ArcWriterCompressed extends ArcWriter {
         } else if (state == S_PAYLOAD_WRITTEN) {
             closeRecord();
         }
-        entry = new GzipEntry();
-        entry.magic = GzipConstants.GZIP_MAGIC;
-        entry.cm = GzipConstants.CM_DEFLATE;
-        entry.flg = 0;
-        entry.mtime = System.currentTimeMillis() / 1000;
-        entry.xfl = 0;
-        entry.os = GzipConstants.OS_UNKNOWN;
-        writer.writeEntryHeader(entry);
-        out = entry.getOutputStream();
+        out = writer.openEntry();
+        bEntryOpen = true;
         out.write(header_bytes);
         state = S_HEADER_WRITTEN;
         header = null;
@@ -138,7 +234,7 @@ public class ArcWriterCompressed extends ArcWriter {
     }
 
     /*
-     * In this class "out" is the GZip output stream of the current GZip entry.
+     * In this class "out" is the output stream of the current compressed entry.
      * state changed to S_HEADER_WRITTEN
      * Sets the header and headerContentLength fields.
      * payloadWrittenTotal is set to 0
@@ -155,25 +251,48 @@ public class ArcWriterCompressed extends ArcWriter {
         } else if (state == S_PAYLOAD_WRITTEN) {
             closeRecord();
         }
-        entry = new GzipEntry();
-        entry.magic = GzipConstants.GZIP_MAGIC;
-        entry.cm = GzipConstants.CM_DEFLATE;
-        entry.flg = 0;
-        entry.mtime = System.currentTimeMillis() / 1000;
-        entry.xfl = 0;
-        entry.os = GzipConstants.OS_UNKNOWN;
-        writer.writeEntryHeader(entry);
-        out = entry.getOutputStream();
+        out = writer.openEntry();
+        bEntryOpen = true;
         return writeHeader_impl(record);
     }
 
+    /**
+     * Append the current entry of a GZip reader as a record unchanged,
+     * without inflating and deflating it. The current record is closed first.
+     * Only supported when the records are written using GZip.
+     * @see GzipWriter#writeRawEntry(GzipReader, boolean)
+     * @param reader GZip reader positioned at an unread entry
+     * @param bVerify inflate the data to validate the CRC32 and ISize values
+     * @return number of bytes appended
+     * @throws IOException if an I/O error occurs while appending record
+     */
+    public long writeRawRecord(GzipReader reader, boolean bVerify) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException(
+                    "The 'reader' parameter is null!");
+        }
+        if (!(writer instanceof GzipWriter)) {
+            throw new IllegalStateException(
+                    "Records can only be appended unchanged to a GZip writer");
+        }
+        if (state == S_HEADER_WRITTEN) {
+            throw new IllegalStateException("Header written without a payload!");
+        } else if (state == S_PAYLOAD_WRITTEN) {
+            closeRecord();
+        }
+        long written = ((GzipWriter)writer).writeRawEntry(reader, bVerify);
+        state = S_RECORD_CLOSED;
+        header = null;
+        return written;
+    }
+
     /*
      * state changed to S_PAYLOAD_WRITTEN
      * @see org.jwat.arc.ArcWriter#streamPayload(java.io.InputStream)
      */
     @Override
     public long streamPayload(InputStream in) throws IOException {
-        if (entry == null) {
+        if (!bEntryOpen) {
             throw new IllegalStateException();
         }
         return super.streamPayload(in);
@@ -185,7 +304,7 @@ public class ArcWriterCompressed extends ArcWriter {
      */
     @Override
     public long writePayload(byte[] b) throws IOException {
-        if (entry == null) {
+        if (!bEntryOpen) {
             throw new IllegalStateException();
         }
         return super.writePayload(b);
@@ -197,7 +316,7 @@ public class ArcWriterCompressed extends ArcWriter {
      */
     @Override
     public long writePayload(byte[] b, int offset, int len) throws IOException {
-        if (entry == null) {
+        if (!bEntryOpen) {
             throw new IllegalStateException();
         }
         return super.writePayload(b, offset, len);
@@ -0,0 +1,150 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.gzip.GzipReader;
+
+@RunWith(JUnit4.class)
+public class TestArcCopyRecord {
+
+    @Test
+    public void test_arc_copyrecord() throws IOException {
+        byte[] bytes = readAll(TestHelpers.getTestResourceAsStream("IAH-20080430204825-00000-blackbook.arc.gz"));
+        int records = countRecords(bytes);
+        Assert.assertEquals(300, records);
+
+        for (int i=0; i<4; ++i) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ArcWriterCompressed writer;
+            if (i < 2) {
+                writer = (ArcWriterCompressed)ArcWriterFactory.getWriterCompressed(out, 8192);
+            } else {
+                writer = (ArcWriterCompressed)ArcWriterFactory.getWriterCompressedParallel(out, 8192, 2);
+            }
+            ArcReaderCompressed reader = ArcReaderFactory.getReaderCompressed(new ByteArrayInputStream(bytes));
+            long total = 0;
+            int copied = 0;
+            long written;
+            while ((written = reader.copyNextRecord(writer, (i & 1) == 1)) != -1) {
+                Assert.assertTrue(written > 0);
+                total += written;
+                ++copied;
+            }
+            Assert.assertEquals(-1, reader.copyNextRecord(writer, false));
+            Assert.assertEquals(bytes.length, reader.getConsumed());
+            reader.close();
+            writer.close();
+            Assert.assertEquals(records, copied);
+            Assert.assertEquals(bytes.length, total);
+            Assert.assertArrayEquals(bytes, out.toByteArray());
+        }
+    }
+
+    @Test
+    public void test_arc_copyrecord_mixed() throws IOException {
+        byte[] bytes = readAll(TestHelpers.getTestResourceAsStream("IAH-20080430204825-00000-blackbook.arc.gz"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ArcWriterCompressed writer = (ArcWriterCompressed)ArcWriterFactory.getWriterCompressed(out, 8192);
+        ArcReaderCompressed reader = ArcReaderFactory.getReaderCompressed(new ByteArrayInputStream(bytes));
+        ArcRecordBase record;
+        int records = 0;
+        boolean bRaw = false;
+        do {
+            if (bRaw) {
+                if (reader.copyNextRecord(writer, false) == -1) {
+                    break;
+                }
+            } else {
+                record = reader.getNextRecord();
+                if (record == null) {
+                    break;
+                }
+                writer.writeHeader(record);
+                if (record.hasPayload()) {
+                    writer.streamPayload(record.getPayload().getInputStreamComplete());
+                }
+            }
+            bRaw = !bRaw;
+            ++records;
+        } while (true);
+        reader.close();
+        writer.close();
+        Assert.assertEquals(300, records);
+        Assert.assertEquals(records, countRecords(out.toByteArray()));
+
+        writer = (ArcWriterCompressed)ArcWriterFactory.getWriterCompressed(out, 8192);
+        reader = ArcReaderFactory.getReaderCompressed(new ByteArrayInputStream(bytes));
+        try {
+            reader.copyNextRecord(null, false);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            writer.writeRawRecord(null, false);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        record = reader.getNextRecord();
+        writer.writeHeader(record);
+        try {
+            writer.writeRawRecord(new GzipReader(new ByteArrayInputStream(bytes)), false);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        reader.close();
+        try {
+            ArcReaderFactory.getReaderCompressed().copyNextRecord(writer, false);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+
+    }
+
+    protected static int countRecords(byte[] bytes) throws IOException {
+        ArcReader reader = ArcReaderFactory.getReader(new ByteArrayInputStream(bytes));
+        Assert.assertTrue(reader.isCompressed());
+        int records = 0;
+        while (reader.getNextRecord() != null) {
+            ++records;
+        }
+        reader.close();
+        Assert.assertTrue(reader.isCompliant());
+        return records;
+    }
+
+    protected static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+}
@@ -17,6 +17,7 @@
  */
 package org.jwat.arc;
 
+import java.text.ParseException;
 import java.util.Date;
 
 import org.junit.Assert;
@@ -28,7 +29,7 @@ import org.junit.runners.JUnit4;
 public class TestArcDateParser {
 
     @Test
-    public void test_arcdateparser() {
+    public void test_arcdateparser() throws ParseException {
         /*
          * Date.
          */
@@ -54,6 +55,31 @@ public class TestArcDateParser {
         String dateStr = ArcDateParser.getDateFormat().format(date);
         arcDate = ArcDateParser.getDate(dateStr);
         Assert.assertNull(arcDate);
+
+        /*
+         * Milliseconds.
+         */
+
+        Assert.assertEquals(1324755000000L, ArcDateParser.getDateMillis("20111224193000"));
+        Assert.assertEquals(1324755000000L, ArcDateParser.getDateMillis("20111224193000"));
+        Assert.assertEquals(1324755000000L, ArcDateParser.getDateMillis("_20111224193000".getBytes(), 1, 14));
+        Assert.assertEquals(1324755000000L, ArcDateParser.getDateMillis("20111224193000".getBytes(), 0, 14));
+        Assert.assertEquals(-1, ArcDateParser.getDateMillis((String)null));
+        Assert.assertEquals(-1, ArcDateParser.getDateMillis(null, 0, 14));
+        Assert.assertEquals(-1, ArcDateParser.getDateMillis("20111224193060"));
+        Assert.assertEquals(-1, ArcDateParser.getDateMillis("20110229193000"));
+        Assert.assertEquals(-1, ArcDateParser.getDateMillis("2011122419300"));
+        Assert.assertEquals(-1, ArcDateParser.getDateMillis("2011122419300x".getBytes(), 0, 14));
+        Assert.assertEquals(1330543800000L, ArcDateParser.getDateMillis("20120229193000"));
+        Assert.assertEquals(ArcDateParser.getDateFormat().parse("20120229193000").getTime(),
+                ArcDateParser.getDateMillis("20120229193000"));
+
+        ArcHeader header = ArcHeader.initHeader(new ArcFieldParsers(), null, null);
+        Assert.assertEquals(-1, header.getArchiveDateMillis());
+        header.archiveDateStr = "20111224193000";
+        Assert.assertEquals(1324755000000L, header.getArchiveDateMillis());
+        header.archiveDate = new Date(1000);
+        Assert.assertEquals(1000, header.getArchiveDateMillis());
     }
 
 }
@@ -0,0 +1,128 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.gzip.GzipEntry;
+import org.jwat.gzip.GzipReader;
+import org.jwat.gzip.GzipWriter;
+
+@RunWith(JUnit4.class)
+public class TestArcReaderHeaderScan {
+
+    static final String[] FILES = {
+        "IAH-20080430204825-00000-blackbook.arc.gz",
+        "1-1-20110922131213-00000-svc-VirtualBox.arc",
+        "small_BNF.arc"
+    };
+
+    @Test
+    public void test_arcreader_headerscan() throws IOException {
+        for (int i=0; i<FILES.length; ++i) {
+            assertHeaderScan(TestHelpers.getTestResourceFile(FILES[i]), false);
+        }
+        // Recompress with the compressed length subfield, skipped without
+        // inflating the payloads.
+        File file = File.createTempFile("jwat-", ".arc.gz");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        GzipWriter writer = new GzipWriter(out);
+        writer.setCompressedLengthEnabled(true);
+        GzipReader reader = new GzipReader(TestHelpers.getTestResourceAsStream(FILES[0]));
+        GzipEntry entry;
+        GzipEntry newEntry;
+        InputStream in;
+        OutputStream entryOut;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        while ((entry = reader.getNextEntry()) != null) {
+            newEntry = new GzipEntry();
+            writer.writeEntryHeader(newEntry);
+            entryOut = newEntry.getOutputStream();
+            in = entry.getInputStream();
+            while ((read = in.read(tmpBuf)) != -1) {
+                entryOut.write(tmpBuf, 0, read);
+            }
+            entryOut.close();
+            newEntry.close();
+            entry.close();
+        }
+        reader.close();
+        writer.close();
+        assertHeaderScan(file, true);
+        try {
+            ArcReaderFactory.getHeaderScanReader(null, 8192);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    static void assertHeaderScan(File file, boolean bSkipped) throws IOException {
+        List<Object[]> expected = new ArrayList<Object[]>();
+        ArcReader reader = ArcReaderFactory.getReader(new FileInputStream(file), 8192);
+        ArcRecordBase record;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            expected.add(new Object[] {record.getStartOffset(), record.header.urlStr, record.isCompliant()});
+        }
+        reader.close();
+        Assert.assertTrue(expected.size() > 1);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        reader = ArcReaderFactory.getHeaderScanReader(raf, 8192);
+        Assert.assertTrue(reader.isHeaderScanEnabled());
+        reader.setBlockDigestEnabled(true);
+        reader.setPayloadDigestEnabled(true);
+        List<Object[]> actual = new ArrayList<Object[]>();
+        int skipped = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            actual.add(new Object[] {record.getStartOffset(), record.header.urlStr, record.isCompliant()});
+            Assert.assertNull(record.computedBlockDigest);
+            Assert.assertNull(record.computedPayloadDigest);
+            if (record.bDataSkipped) {
+                ++skipped;
+            }
+        }
+        reader.close();
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); ++i) {
+            Assert.assertArrayEquals(expected.get(i), actual.get(i));
+        }
+        Assert.assertEquals(raf.length(), raf.getFilePointer());
+        raf.close();
+        if (bSkipped) {
+            Assert.assertEquals(expected.size(), skipped);
+        } else {
+            Assert.assertEquals(0, skipped);
+        }
+    }
+
+}
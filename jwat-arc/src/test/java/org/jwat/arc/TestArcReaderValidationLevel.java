@@ -0,0 +1,140 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.ValidationLevel;
+
+@RunWith(JUnit4.class)
+public class TestArcReaderValidationLevel {
+
+    static final String[] FILES = {
+        "IAH-20080430204825-00000-blackbook.arc.gz",
+        "1-1-20110922131213-00000-svc-VirtualBox.arc",
+        "small_BNF.arc",
+        "test-arc-1.0-dashed-fields.arc",
+        "test-arc-1.0-invalid-fields.arc",
+        "invalid-arcfile-record-then-garbage.arc"
+    };
+
+    int errors;
+
+    @Test
+    public void test_arcreader_validationlevel() throws IOException {
+        for (String file : FILES) {
+            List<Object[]> full = readRecords(file, ValidationLevel.FULL);
+            int fullErrors = errors;
+            List<Object[]> structural = readRecords(file, ValidationLevel.STRUCTURAL);
+            int structuralErrors = errors;
+            List<Object[]> none = readRecords(file, ValidationLevel.NONE);
+            int noneErrors = errors;
+            Assert.assertTrue(full.size() > 0);
+            Assert.assertEquals(full.size(), structural.size());
+            Assert.assertEquals(full.size(), none.size());
+            for (int i=0; i<full.size(); ++i) {
+                Assert.assertArrayEquals(full.get(i), structural.get(i));
+                Assert.assertArrayEquals(full.get(i), none.get(i));
+            }
+            Assert.assertTrue(structuralErrors <= fullErrors);
+            Assert.assertTrue(noneErrors <= structuralErrors);
+        }
+        ArcReader reader = ArcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream(FILES[0]));
+        Assert.assertEquals(ValidationLevel.FULL, reader.getValidationLevel());
+        reader.setValidationLevel(ValidationLevel.STRUCTURAL);
+        Assert.assertEquals(ValidationLevel.STRUCTURAL, reader.getValidationLevel());
+        try {
+            reader.setValidationLevel(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        reader.close();
+    }
+
+    @Test
+    public void test_arcreader_validationlevel_url() throws IOException {
+        ArcReader reader = ArcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream(FILES[1]));
+        reader.setValidationLevel(ValidationLevel.STRUCTURAL);
+        ArcRecordBase record;
+        int records = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            // The URL field is parsed regardless of the validation level.
+            Assert.assertNotNull(record.header.urlUri);
+            Assert.assertNotNull(record.header.urlScheme);
+            Assert.assertNotNull(record.getUrl());
+            Assert.assertSame(record.header.urlUri, record.getUrl());
+            record.close();
+            ++records;
+        }
+        reader.close();
+        Assert.assertTrue(records > 0);
+    }
+
+    /**
+     * Read all the records of a file and return the framing and the fields
+     * which must not depend on the validation level.
+     */
+    List<Object[]> readRecords(String file, ValidationLevel level) throws IOException {
+        ArcReader reader = ArcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(file));
+        reader.setValidationLevel(level);
+        List<Object[]> records = new ArrayList<Object[]>();
+        ArcRecordBase record;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        errors = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (record.getPayload() != null) {
+                InputStream in = record.getPayload().getInputStreamComplete();
+                while ((read = in.read(tmpBuf)) != -1) {
+                    out.write(tmpBuf, 0, read);
+                }
+            }
+            record.close();
+            ArcHeader header = record.header;
+            records.add(new Object[] {
+                    record.getStartOffset(),
+                    record.getConsumed(),
+                    record.recordType,
+                    header.urlStr,
+                    header.urlScheme,
+                    (record.getUrl() != null) ? record.getUrl().toString() : null,
+                    header.archiveDate,
+                    header.archiveLength,
+                    header.contentTypeStr,
+                    record.getHttpHeader() != null,
+                    new String(out.toByteArray(), "ISO-8859-1")
+            });
+            errors += record.diagnostics.getErrors().size();
+        }
+        errors += reader.diagnostics.getErrors().size();
+        reader.close();
+        return records;
+    }
+
+}
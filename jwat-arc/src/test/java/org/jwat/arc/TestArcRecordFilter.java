@@ -0,0 +1,114 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestArcRecordFilter {
+
+    static final String[] FILES = {
+        "IAH-20080430204825-00000-blackbook.arc.gz",
+        "1-1-20110922131213-00000-svc-VirtualBox.arc",
+        "small_BNF.arc"
+    };
+
+    @Test
+    public void test_arcrecordfilter() throws IOException {
+        for (int i=0; i<FILES.length; ++i) {
+            File file = TestHelpers.getTestResourceFile(FILES[i]);
+            // Records and offsets expected without filtering.
+            List<Long> offsets = new ArrayList<Long>();
+            List<String> expected = new ArrayList<String>();
+            ArcReader reader = ArcReaderFactory.getReader(new FileInputStream(file), 8192);
+            ArcRecordBase record;
+            boolean bCompliant;
+            while ((record = reader.getNextRecord()) != null) {
+                if (record.recordType == ArcRecordBase.RT_VERSION_BLOCK) {
+                    expected.add(toString(record));
+                } else {
+                    offsets.add(record.getStartOffset());
+                    if (accept(record.header)) {
+                        expected.add(toString(record));
+                    }
+                }
+                record.close();
+            }
+            reader.close();
+            bCompliant = reader.isCompliant();
+            Assert.assertTrue(expected.size() > 1 && expected.size() < offsets.size() + 1);
+
+            final List<Long> filterOffsets = new ArrayList<Long>();
+            ArcRecordFilter filter = new ArcRecordFilter() {
+                @Override
+                public boolean accept(ArcReader reader, long startOffset, ArcHeader header) {
+                    filterOffsets.add(startOffset);
+                    return TestArcRecordFilter.accept(header);
+                }
+            };
+            reader = ArcReaderFactory.getReader(new FileInputStream(file), 8192);
+            Assert.assertNull(reader.getRecordFilter());
+            reader.setRecordFilter(filter);
+            Assert.assertSame(filter, reader.getRecordFilter());
+            List<String> actual = new ArrayList<String>();
+            while ((record = reader.getNextRecord()) != null) {
+                Assert.assertFalse(record.bFiltered);
+                actual.add(toString(record));
+                record.close();
+            }
+            reader.close();
+            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(offsets, filterOffsets);
+            Assert.assertEquals(bCompliant, reader.isCompliant());
+            Assert.assertEquals(file.length(), reader.getConsumed());
+        }
+    }
+
+    static boolean accept(ArcHeader header) {
+        return header.contentTypeStr != null && header.contentTypeStr.startsWith("text/");
+    }
+
+    static String toString(ArcRecordBase record) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Long.toString(record.getStartOffset()).getBytes());
+        out.write(record.header.headerBytes);
+        if (record.getPayload() != null) {
+            InputStream in = record.getPayload().getInputStreamComplete();
+            byte[] tmpBuf = new byte[8192];
+            int read;
+            while ((read = in.read(tmpBuf)) != -1) {
+                out.write(tmpBuf, 0, read);
+            }
+        }
+        record.close();
+        out.write(Boolean.toString(record.isCompliant()).getBytes());
+        return new String(out.toByteArray(), "ISO-8859-1");
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.Base16;
+
+@RunWith(JUnit4.class)
+public class TestArcRecordLazyHttpHeader {
+
+    static final String FILE = "IAH-20080430204825-00000-blackbook.arc.gz";
+
+    @Test
+    public void test_arcrecord_lazyhttpheader() throws IOException {
+        List<String> expected = readRecords(false, true);
+        Assert.assertTrue(expected.size() > 1);
+        Assert.assertEquals(expected, readRecords(true, true));
+        // Nothing requested, digests are still computed on close.
+        List<String> actual = readRecords(true, false);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); ++i) {
+            Assert.assertTrue(expected.get(i).startsWith(actual.get(i)));
+        }
+
+        // Not parsed at all without payload digests.
+        ArcReader reader = ArcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(FILE));
+        Assert.assertFalse(reader.getLazyHttpHeaderParsingEnabled());
+        reader.setLazyHttpHeaderParsingEnabled(true);
+        Assert.assertTrue(reader.getLazyHttpHeaderParsingEnabled());
+        ArcRecordBase record;
+        int deferred = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            if (record.bHttpHeaderDeferred) {
+                ++deferred;
+            }
+            record.close();
+            Assert.assertNull(record.getHttpHeader());
+        }
+        reader.close();
+        Assert.assertTrue(deferred > 0);
+    }
+
+    static List<String> readRecords(boolean bLazy, boolean bRequest) throws IOException {
+        List<String> records = new ArrayList<String>();
+        ArcReader reader = ArcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(FILE));
+        reader.setLazyHttpHeaderParsingEnabled(bLazy);
+        reader.setPayloadDigestEnabled(true);
+        Assert.assertTrue(reader.setPayloadDigestAlgorithm("sha1"));
+        ArcRecordBase record;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        int digests = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (bRequest) {
+                if (record.getHttpHeader() != null) {
+                    out.write(record.getHttpHeader().getHeader());
+                }
+                if (record.getPayload() != null) {
+                    InputStream in = record.getPayloadContent();
+                    while ((read = in.read(tmpBuf)) != -1) {
+                        out.write(tmpBuf, 0, read);
+                    }
+                }
+            }
+            record.close();
+            String digest = "";
+            if (record.computedPayloadDigest != null) {
+                digest = Base16.encodeArray(record.computedPayloadDigest.digestBytes);
+                ++digests;
+            }
+            records.add(record.getStartOffset() + ":" + record.isCompliant() + ":" + digest + ":"
+                    + new String(out.toByteArray(), "ISO-8859-1"));
+        }
+        reader.close();
+        Assert.assertTrue(digests > 0);
+        return records;
+    }
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestArcSplitReader {
+
+    static final String[] FILES = {
+        "IAH-20080430204825-00000-blackbook.arc.gz",
+        "1-1-20110922131213-00000-svc-VirtualBox.arc",
+        "small_BNF.arc"
+    };
+
+    @Test
+    public void test_arcsplitreader() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i=0; i<FILES.length; ++i) {
+            File file = TestHelpers.getTestResourceFile(FILES[i]);
+            List<String> expected = readSequential(file);
+            Assert.assertTrue(expected.size() > 1);
+            long[] splitSizes = {file.length() + 1, 65536, 4321, 500};
+            for (int j=0; j<splitSizes.length; ++j) {
+                ArcSplitReader splitReader = new ArcSplitReader(file, executor, splitSizes[j]);
+                Assert.assertEquals(FILES[i].endsWith(".gz"), splitReader.isCompressed());
+                Assert.assertEquals(expected, readSplit(splitReader));
+                if (splitSizes[j] < file.length() / 4) {
+                    Assert.assertTrue(splitReader.getBoundaries().length > 1);
+                }
+                splitReader.close();
+            }
+        }
+        Assert.assertFalse(executor.isShutdown());
+        executor.shutdown();
+    }
+
+    @Test
+    public void test_arcsplitreader_embedded_record() throws IOException {
+        String embedded = "http://example.org/fake 127.0.0.1 20110922131213 text/plain 5\nfake!";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeRecord(bytes, "filedesc://test.arc", "1 0 JWAT\nURL IP-address Archive-date Content-type Archive-length\n");
+        writeRecord(bytes, "http://example.org/1", "first");
+        // The embedded record is followed by the trailing newline of the
+        // outer record and the next record, so it looks like a real record.
+        writeRecord(bytes, "http://example.org/2", embedded);
+        writeRecord(bytes, "http://example.org/3", "last");
+        File file = File.createTempFile("jwat-", ".arc");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write(bytes.toByteArray());
+        out.close();
+        List<String> expected = readSequential(file);
+        Assert.assertEquals(4, expected.size());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ArcSplitReader splitReader;
+        for (long splitSize=1; splitSize<=file.length(); splitSize+=3) {
+            splitReader = new ArcSplitReader(file, executor, splitSize);
+            Assert.assertEquals(expected, readSplit(splitReader));
+            Assert.assertTrue(splitReader.getBoundaries().length <= 4);
+            splitReader.close();
+        }
+        // The embedded record is found by the scan but rejected.
+        splitReader = new ArcSplitReader(file, executor, 10);
+        long fake = bytes.toString("ISO-8859-1").indexOf(embedded);
+        Assert.assertEquals(fake, splitReader.findRecordStart(fake - 5, fake + 5));
+        Assert.assertTrue(splitReader.isRecordStart(fake));
+        Assert.assertEquals(-1, splitReader.findRecordStart(fake + 1, fake + 20));
+        for (long offset : splitReader.getBoundaries()) {
+            Assert.assertTrue(offset != fake);
+        }
+        Assert.assertNotNull(splitReader.getVersionHeader());
+        executor.shutdown();
+        file.delete();
+    }
+
+    @Test
+    public void test_arcsplitreader_candidate_line() throws IOException {
+        File file = TestHelpers.getTestResourceFile("small_BNF.arc");
+        ArcSplitReader splitReader = new ArcSplitReader(file, 1);
+        String[] lines = {
+            "http://example.org/ 127.0.0.1 20110922131213 text/plain 42\n",
+            "http://example.org/ 127.0.0.1 20110922131213 text/html 200 - - 0 test.arc 42\n"
+        };
+        String[] invalid = {
+            "http://example.org/ 127.0.0.1 20110922131213 text/plain 42",
+            "http://example.org/ 127.0.0.1 20110922131213 text/plain 42\r\n",
+            "http://example.org/ 127.0.0.1 20110922131213 text/plain x42\n",
+            "http://example.org/ 127.0.0.1 20110922131213 text/plain \n",
+            "http://example.org/ 127.0.0.1 20110922131213 42\n",
+            "\n"
+        };
+        for (int i=0; i<lines.length; ++i) {
+            byte[] line = lines[i].getBytes("ISO-8859-1");
+            Assert.assertTrue(splitReader.isCandidateLine(line, line.length));
+        }
+        for (int i=0; i<invalid.length; ++i) {
+            byte[] line = invalid[i].getBytes("ISO-8859-1");
+            Assert.assertFalse(splitReader.isCandidateLine(line, line.length));
+        }
+        try {
+            splitReader.read(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        splitReader.close();
+        try {
+            splitReader.getBoundaries();
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    static void writeRecord(OutputStream out, String url, String content) throws IOException {
+        byte[] contentBytes = content.getBytes("ISO-8859-1");
+        String header = url + " 127.0.0.1 20110922131213 text/plain " + contentBytes.length + "\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        out.write(contentBytes);
+        out.write('\n');
+    }
+
+    static String describe(ArcRecordBase record) throws IOException {
+        long length = 0;
+        if (record.getPayload() != null) {
+            InputStream in = record.getPayload().getInputStreamComplete();
+            byte[] tmpBuf = new byte[8192];
+            int read;
+            while ((read = in.read(tmpBuf)) != -1) {
+                length += read;
+            }
+        }
+        return record.getStartOffset() + " " + record.header.urlStr + " " + length
+                + " " + record.diagnostics.getErrors().size();
+    }
+
+    static List<String> readSequential(File file) throws IOException {
+        List<String> records = new ArrayList<String>();
+        InputStream in = new FileInputStream(file);
+        ArcReader reader = ArcReaderFactory.getReader(in, 8192);
+        ArcRecordBase record;
+        while ((record = reader.getNextRecord()) != null) {
+            records.add(describe(record));
+        }
+        reader.close();
+        in.close();
+        return records;
+    }
+
+    static List<String> readSplit(ArcSplitReader splitReader) throws IOException {
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        splitReader.read(new ArcRecordHandler() {
+            @Override
+            public void handleRecord(ArcReader reader, ArcRecordBase record) throws IOException {
+                records.add(describe(record));
+            }
+        });
+        List<String> sorted = new ArrayList<String>(records);
+        Collections.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                return Long.valueOf(s1.substring(0, s1.indexOf(' '))).compareTo(
+                        Long.valueOf(s2.substring(0, s2.indexOf(' '))));
+            }
+        });
+        return sorted;
+    }
+
+}
@@ -0,0 +1,473 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive.common;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
+import org.jwat.common.ByteCountingPushBackInputStream;
+
+/**
+ * Base class for readers which read an archive file in parallel by dividing
+ * it into byte ranges which are parsed on separate threads.
+ * GZip compressed files are split at entry boundaries and uncompressed files
+ * at record boundaries. The first boundary in each range is found by the
+ * format specific <code>findRecordStart</code> method.
+ * A candidate can still be found inside the data of a record, so before any
+ * record is handled every boundary is verified by walking the records of the
+ * preceding range, skipping their data, until the boundary is reached.
+ * Boundaries which are not reached are dropped and their range is merged
+ * with the preceding one. Every record is therefore handled exactly once,
+ * as if the file was read sequentially.
+ * Records are passed to a handler on the thread reading their range, so
+ * each record is only valid inside the handler.
+ *
+ * @param <H> record handler type
+ *
+ * @author nicl
+ */
+public abstract class SplitReaderAbstract<H> {
+
+    /** Default size of the byte ranges. */
+    public static final long DEFAULT_SPLIT_SIZE = 256L * 1024L * 1024L;
+
+    /** Buffer size used when scanning and reading ranges. */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /** Maximum number of bytes of a line passed to <code>isCandidateLine</code>. */
+    public static final int MAX_CANDIDATE_LINE = 8192;
+
+    /** Archive file. */
+    protected File file;
+
+    /** Length of the archive file. */
+    protected long length;
+
+    /** Is the archive file GZip compressed. */
+    protected boolean bCompressed;
+
+    /** Size of the byte ranges. */
+    protected long splitSize;
+
+    /** Executor used to read ranges. */
+    protected ExecutorService executor;
+
+    /** Is the executor owned and shutdown by this reader. */
+    protected boolean bOwnExecutor;
+
+    /** Verified record boundaries, one for each non empty range. */
+    protected long[] boundaries;
+
+    /**
+     * Construct a split reader using the supplied executor.
+     * The executor is not shutdown when the reader is closed.
+     * @param file archive file
+     * @param executor executor used to read ranges
+     * @param split_size size of the byte ranges
+     * @throws IOException if an I/O error occurs while examining the file
+     */
+    protected SplitReaderAbstract(File file, ExecutorService executor, long split_size) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null!");
+        }
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("file is not a file: " + file.getPath());
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null!");
+        }
+        if (split_size <= 0) {
+            throw new IllegalArgumentException(
+                    "split_size is less or equals to zero: " + split_size);
+        }
+        this.file = file;
+        this.length = file.length();
+        this.executor = executor;
+        this.splitSize = split_size;
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(
+                new FileInputStream(file), 16);
+        try {
+            bCompressed = ReaderFactoryAbstract.isGzipped(pbin);
+        } finally {
+            pbin.close();
+        }
+    }
+
+    /**
+     * Create a fixed size pool of daemon threads.
+     * @param threads number of threads
+     * @return executor service
+     */
+    protected static ExecutorService newExecutor(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "threads is less or equals to zero: " + threads);
+        }
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "SplitReader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns a boolean indicating whether the archive file is GZip compressed.
+     * @return a boolean indicating whether the archive file is GZip compressed
+     */
+    public boolean isCompressed() {
+        return bCompressed;
+    }
+
+    /**
+     * Shutdown the executor, if it is owned by this reader.
+     */
+    public void close() {
+        if (executor != null) {
+            if (bOwnExecutor) {
+                executor.shutdownNow();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Open the file positioned at an offset.
+     * @param offset file offset
+     * @return input stream positioned at the offset
+     * @throws IOException if an I/O error occurs while opening the file
+     */
+    protected InputStream openAt(long offset) throws IOException {
+        FileInputStream fin = new FileInputStream(file);
+        fin.getChannel().position(offset);
+        return fin;
+    }
+
+    /**
+     * Open the file positioned at an offset, returning a buffered stream
+     * which counts consumed bytes from the offset. Records parsed from the
+     * stream have offsets relative to the start of the file.
+     * @param offset file offset
+     * @param pushback_size push back buffer size
+     * @return buffered stream positioned at the offset
+     * @throws IOException if an I/O error occurs while opening the file
+     */
+    protected ByteCountingPushBackInputStream openStream(final long offset, int pushback_size) throws IOException {
+        return new BufferedByteCountingPushBackInputStream(openAt(offset), pushback_size, DEFAULT_BUFFER_SIZE) {
+            {
+                consumed = offset;
+                counter = offset;
+            }
+        };
+    }
+
+    /**
+     * Returns the verified record boundaries of the ranges, computing them
+     * the first time this method is called.
+     * @return verified record boundaries in file order
+     * @throws IOException if an I/O error occurs while looking for boundaries
+     */
+    public long[] getBoundaries() throws IOException {
+        if (boundaries == null) {
+            if (executor == null) {
+                throw new IllegalStateException("Reader is closed!");
+            }
+            // Find candidate boundaries in parallel.
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (long from = splitSize; from < length; from += splitSize) {
+                futures.add(executor.submit(new FindCallable(from, Math.min(from + splitSize, length))));
+            }
+            List<Long> candidates = new ArrayList<Long>();
+            candidates.add(0L);
+            long candidate;
+            for (int i=0; i<futures.size(); ++i) {
+                candidate = get(futures.get(i));
+                if (candidate != -1) {
+                    candidates.add(candidate);
+                }
+            }
+            // Walk from each candidate to the next in parallel.
+            futures.clear();
+            for (int i=0; i<candidates.size() - 1; ++i) {
+                futures.add(executor.submit(new WalkCallable(candidates.get(i), candidates.get(i + 1))));
+            }
+            List<Long> verified = new ArrayList<Long>();
+            verified.add(0L);
+            long reached = (futures.size() > 0) ? get(futures.get(0)) : length;
+            for (int i=1; i<candidates.size(); ++i) {
+                candidate = candidates.get(i);
+                if (reached != candidate) {
+                    // Not a record boundary, walk on from the last verified
+                    // boundary instead.
+                    reached = nextRecordStart(verified.get(verified.size() - 1), candidate);
+                }
+                if (reached == candidate) {
+                    verified.add(candidate);
+                    reached = (i < futures.size()) ? get(futures.get(i)) : length;
+                }
+            }
+            boundaries = new long[verified.size()];
+            for (int i=0; i<boundaries.length; ++i) {
+                boundaries[i] = verified.get(i);
+            }
+        }
+        return boundaries.clone();
+    }
+
+    /**
+     * Read all the records in the file on the reader threads and pass them
+     * to the handler. The method returns when all the ranges have been read.
+     * @param handler handler receiving the records
+     * @throws IOException if an I/O error occurs while reading or handling
+     * records
+     */
+    public void read(H handler) throws IOException {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler is null!");
+        }
+        if (executor == null) {
+            throw new IllegalStateException("Reader is closed!");
+        }
+        long[] boundaries = getBoundaries();
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        for (int i=0; i<boundaries.length; ++i) {
+            long end = (i + 1 < boundaries.length) ? boundaries[i + 1] : length;
+            futures.add(executor.submit(new ReadCallable(boundaries[i], end, handler)));
+        }
+        IOException exception = null;
+        for (int i=0; i<futures.size(); ++i) {
+            try {
+                get(futures.get(i));
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Wait for a worker and return its result.
+     * @param future future result of worker
+     * @return result of worker
+     * @throws IOException if the worker failed or the wait was interrupted
+     */
+    protected static long get(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Scan a byte range of an uncompressed file for the first candidate
+     * record boundary. Lines starting in the range are passed to
+     * <code>isCandidateLine</code> and the lines accepted are checked by
+     * <code>isRecordStart</code>.
+     * Compressed files must be handled by the format specific subclass.
+     * @param from start of range
+     * @param to end of range
+     * @return offset of first candidate record boundary or -1 if none was found
+     * @throws IOException if an I/O error occurs while scanning
+     */
+    protected long findRecordStart(long from, long to) throws IOException {
+        InputStream in = new BufferedInputStream(openAt(from > 0 ? from - 1 : 0), DEFAULT_BUFFER_SIZE);
+        try {
+            byte[] line = new byte[MAX_CANDIDATE_LINE];
+            int prev = '\n';
+            if (from > 0) {
+                prev = in.read();
+            }
+            long pos = from;
+            int len;
+            int b;
+            while (prev != -1 && pos < to) {
+                if (prev == '\n') {
+                    in.mark(line.length);
+                    len = 0;
+                    while (len < line.length && (b = in.read()) != -1) {
+                        line[len++] = (byte)b;
+                        if (b == '\n') {
+                            break;
+                        }
+                    }
+                    in.reset();
+                    if (len > 0 && isCandidateLine(line, len) && isRecordStart(pos)) {
+                        return pos;
+                    }
+                }
+                prev = in.read();
+                ++pos;
+            }
+            return -1;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns a boolean indicating whether a line could be the first line of
+     * a record. The check should be cheap, since it is done for every line.
+     * @param line line bytes, including the LF if it was reached
+     * @param len number of line bytes, at most MAX_CANDIDATE_LINE
+     * @return a boolean indicating whether a line could be the first line of a record
+     */
+    protected abstract boolean isCandidateLine(byte[] line, int len);
+
+    /**
+     * Check whether a candidate line starts a record, by parsing the record
+     * and the start of the following record.
+     * @param offset offset of candidate
+     * @return boolean indicating whether the candidate looks like a record boundary
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected abstract boolean isRecordStart(long offset) throws IOException;
+
+    /**
+     * Walk the records from a record boundary, skipping their data, until a
+     * record starting at or after the limit is reached.
+     * @param from record boundary
+     * @param limit offset to reach
+     * @return start of the first record at or after the limit or the file
+     * length if there are no more records
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected abstract long nextRecordStart(long from, long limit) throws IOException;
+
+    /**
+     * Read the records of a range and pass them to the handler.
+     * @param from verified record boundary
+     * @param to next verified record boundary or the file length
+     * @param handler handler receiving the records
+     * @return number of records read
+     * @throws IOException if an I/O error occurs while reading or handling
+     * records
+     */
+    protected abstract long readRange(long from, long to, H handler) throws IOException;
+
+    /**
+     * Worker looking for the first candidate record boundary in a range.
+     */
+    protected class FindCallable implements Callable<Long> {
+
+        /** Start of range. */
+        long from;
+
+        /** End of range. */
+        long to;
+
+        /**
+         * Construct worker for a range.
+         * @param from start of range
+         * @param to end of range
+         */
+        FindCallable(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            return findRecordStart(from, to);
+        }
+    }
+
+    /**
+     * Worker walking the records from one candidate boundary to the next.
+     */
+    protected class WalkCallable implements Callable<Long> {
+
+        /** Candidate boundary to walk from. */
+        long from;
+
+        /** Candidate boundary to reach. */
+        long limit;
+
+        /**
+         * Construct worker for a pair of candidate boundaries.
+         * @param from candidate boundary to walk from
+         * @param limit candidate boundary to reach
+         */
+        WalkCallable(long from, long limit) {
+            this.from = from;
+            this.limit = limit;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            return nextRecordStart(from, limit);
+        }
+    }
+
+    /**
+     * Worker reading the records of a range.
+     */
+    protected class ReadCallable implements Callable<Long> {
+
+        /** Verified record boundary. */
+        long from;
+
+        /** Next verified record boundary or the file length. */
+        long to;
+
+        /** Handler receiving the records. */
+        H handler;
+
+        /**
+         * Construct worker for a range.
+         * @param from verified record boundary
+         * @param to next verified record boundary or the file length
+         * @param handler handler receiving the records
+         */
+        ReadCallable(long from, long to, H handler) {
+            this.from = from;
+            this.to = to;
+            this.handler = handler;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            return readRange(from, to, handler);
+        }
+    }
+
+}
@@ -17,7 +17,6 @@
  */
 package org.jwat.archive;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
@@ -25,6 +24,7 @@ import java.io.RandomAccessFile;
 import org.jwat.arc.ArcReader;
 import org.jwat.arc.ArcReaderFactory;
 import org.jwat.arc.ArcRecordBase;
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.common.RandomAccessFileInputStream;
 import org.jwat.common.UriProfile;
@@ -105,13 +105,13 @@ public class ArchiveParser {
         try {
             raf = new RandomAccessFile( file, "r" );
             rafin = new RandomAccessFileInputStream( raf );
-            pbin = new ByteCountingPushBackInputStream( new BufferedInputStream( rafin, DEFAULT_READER_BUFFER_SIZE ), DEFAULT_PUSHBASH_BUFFER_SIZE );
+            pbin = new BufferedByteCountingPushBackInputStream( rafin, DEFAULT_PUSHBASH_BUFFER_SIZE, DEFAULT_READER_BUFFER_SIZE );
             if ( GzipReader.isGzipped( pbin ) ) {
                 gzipReader = new GzipReader( pbin );
                 ByteCountingPushBackInputStream in;
                 int gzipEntries = 0;
                 while ( (gzipEntry = gzipReader.getNextEntry()) != null ) {
-                    in = new ByteCountingPushBackInputStream( new BufferedInputStream( gzipEntry.getInputStream(), DEFAULT_READER_BUFFER_SIZE ), DEFAULT_PUSHBASH_BUFFER_SIZE );
+                    in = new BufferedByteCountingPushBackInputStream( gzipEntry.getInputStream(), DEFAULT_PUSHBASH_BUFFER_SIZE, DEFAULT_READER_BUFFER_SIZE );
                     ++gzipEntries;
                     //System.out.println(gzipEntries + " - " + gzipEntry.getStartOffset() + " (0x" + (Long.toHexString(gzipEntry.getStartOffset())) + ")");
                     if ( gzipEntries == 1 ) {
@@ -17,13 +17,13 @@
  */
 package org.jwat.archive;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import org.jwat.arc.ArcReaderFactory;
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.common.RandomAccessFileInputStream;
 import org.jwat.gzip.GzipEntry;
@@ -93,7 +93,7 @@ public final class FileIdent {
                     gzipReader = new GzipReader( pbin );
                     ByteCountingPushBackInputStream in;
                     if ( (gzipEntry = gzipReader.getNextEntry()) != null ) {
-                        in = new ByteCountingPushBackInputStream( new BufferedInputStream( gzipEntry.getInputStream(), DEFAULT_READER_BUFFER_SIZE ), DEFAULT_PUSHBASH_BUFFER_SIZE );
+                        in = new BufferedByteCountingPushBackInputStream( gzipEntry.getInputStream(), DEFAULT_PUSHBASH_BUFFER_SIZE, DEFAULT_READER_BUFFER_SIZE );
                         if (ArcReaderFactory.isArcRecord(in)) {
                             fileId = FILEID_ARC_GZ;
                         } else if (WarcReaderFactory.isWarcRecord(in)) {
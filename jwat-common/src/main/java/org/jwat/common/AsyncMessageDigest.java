@@ -0,0 +1,113 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.security.MessageDigest;
+
+/**
+ * <code>MessageDigest</code> which hands the data to a
+ * <code>DigestWorker</code> and updates the wrapped message digest on the
+ * worker thread. Completing or resetting the digest waits for the worker
+ * to catch up.
+ *
+ * @author nicl
+ */
+public class AsyncMessageDigest extends MessageDigest {
+
+    /** Worker updating the wrapped message digest. */
+    protected DigestWorker worker;
+
+    /** Wrapped message digest. */
+    protected MessageDigest md;
+
+    /**
+     * Construct a message digest updated by a digest worker.
+     * @param worker digest worker
+     * @param md message digest to update asynchronously
+     */
+    protected AsyncMessageDigest(DigestWorker worker, MessageDigest md) {
+        super(md.getAlgorithm());
+        this.worker = worker;
+        this.md = md;
+    }
+
+    /**
+     * Returns the wrapped message digest. Call <code>await()</code> before
+     * using it.
+     * @return wrapped message digest
+     */
+    public MessageDigest getMessageDigest() {
+        return md;
+    }
+
+    /**
+     * Returns the worker updating the wrapped message digest.
+     * @return digest worker
+     */
+    public DigestWorker getWorker() {
+        return worker;
+    }
+
+    /**
+     * Queue a range of bytes to be digested without copying it, if the
+     * worker accepts it.
+     * @see DigestWorker#handOff(MessageDigest, byte[], int, int)
+     * @param input byte array
+     * @param offset offset of the range
+     * @param len length of the range
+     * @return a boolean indicating whether the array has been handed off
+     */
+    public boolean handOff(byte[] input, int offset, int len) {
+        return worker.handOff(md, input, offset, len);
+    }
+
+    /**
+     * Wait until the worker has digested all the data queued so far.
+     */
+    public void await() {
+        worker.await();
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        worker.update(md, input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        worker.update(md, input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        worker.await();
+        return md.digest();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return md.getDigestLength();
+    }
+
+    @Override
+    protected void engineReset() {
+        worker.await();
+        md.reset();
+    }
+
+}
@@ -0,0 +1,370 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Buffered <code>ByteCountingPushBackInputStream</code> which combines
+ * buffering, push back and byte counting in a single unsynchronized byte
+ * array, replacing a <code>ByteCountingPushBackInputStream</code> on top of
+ * a <code>BufferedInputStream</code>.
+ * Pushed back bytes are stored in front of the buffered data, so the push
+ * back capacity is at least the push back size specified.
+ * The stream is intended to be used by a single thread.
+ *
+ * @author nicl
+ */
+public class BufferedByteCountingPushBackInputStream extends ByteCountingPushBackInputStream {
+
+    /** Default buffer size. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** Buffer with room for pushed back bytes in front of the buffered data. */
+    protected byte[] buffer;
+
+    /** Position of the next byte to read from the buffer. */
+    protected int bufferPos;
+
+    /** Position after the last valid byte in the buffer. */
+    protected int bufferLimit;
+
+    /** Digest worker the buffer has been handed off to or null. */
+    protected DigestWorker lentTo;
+
+    /**
+     * Given an <code>InputStream</code> and a push back buffer size returns
+     * a buffered input stream with push back capabilities and a buffer size
+     * of DEFAULT_BUFFER_SIZE.
+     * @param in <code>InputStream</code> to wrap
+     * @param size push back buffer size
+     */
+    public BufferedByteCountingPushBackInputStream(InputStream in, int size) {
+        this(in, size, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Given an <code>InputStream</code>, a push back buffer size and a buffer
+     * size returns a buffered input stream with push back capabilities.
+     * @param in <code>InputStream</code> to wrap
+     * @param size push back buffer size
+     * @param buffer_size buffer size
+     */
+    public BufferedByteCountingPushBackInputStream(InputStream in, int size, int buffer_size) {
+        // The push back buffer of the super class is not used.
+        super(in, 1);
+        if (size <= 0) {
+            throw new IllegalArgumentException("size <= 0");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException("buffer_size <= 0");
+        }
+        pushback_size = size;
+        buffer = new byte[size + buffer_size];
+        bufferPos = size;
+        bufferLimit = size;
+    }
+
+    /**
+     * Refill the empty buffer from the underlying stream.
+     * @return number of bytes read or -1 on EOF
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected int fill() throws IOException {
+        InputStream in = this.in;
+        if (in == null) {
+            throw new IOException("Stream closed");
+        }
+        if (lentTo != null) {
+            reclaimBuffer();
+        }
+        int read = in.read(buffer, pushback_size, buffer.length - pushback_size);
+        if (read > 0) {
+            bufferPos = pushback_size;
+            bufferLimit = pushback_size + read;
+        }
+        return read;
+    }
+
+    /**
+     * Take the buffer back from the digest worker it has been handed off to
+     * before modifying it. If the worker is still using the buffer it is
+     * exchanged for a free one and the unread bytes are copied.
+     */
+    protected void reclaimBuffer() {
+        byte[] b = lentTo.exchange(buffer);
+        if (b != buffer) {
+            System.arraycopy(buffer, bufferPos, b, bufferPos, bufferLimit - bufferPos);
+            buffer = b;
+        }
+        lentTo = null;
+    }
+
+    /**
+     * Read directly from the underlying stream into an array, bypassing the
+     * empty buffer. The bytes read are not counted.
+     * @param b byte array to read bytes into
+     * @param off offset in byte array
+     * @param len maximum number of bytes to read
+     * @return number of bytes read or -1 on EOF
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected int readDirect(byte[] b, int off, int len) throws IOException {
+        InputStream in = this.in;
+        if (in == null) {
+            throw new IOException("Stream closed");
+        }
+        return in.read(b, off, len);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (bufferPos >= bufferLimit && fill() <= 0) {
+            return -1;
+        }
+        ++consumed;
+        ++counter;
+        return buffer[bufferPos++] & 255;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        // Same as BufferedInputStream, keep reading while data is available.
+        int read = 0;
+        int avail;
+        int n;
+        while (read < len) {
+            avail = bufferLimit - bufferPos;
+            if (avail <= 0) {
+                InputStream in = this.in;
+                if (in == null) {
+                    throw new IOException("Stream closed");
+                }
+                if (read > 0 && in.available() <= 0) {
+                    break;
+                }
+                if (len - read >= buffer.length - pushback_size) {
+                    // Large reads go directly to the array.
+                    n = in.read(b, off + read, len - read);
+                    if (n <= 0) {
+                        break;
+                    }
+                    read += n;
+                    continue;
+                }
+                if (fill() <= 0) {
+                    break;
+                }
+                avail = bufferLimit - bufferPos;
+            }
+            n = Math.min(len - read, avail);
+            System.arraycopy(buffer, bufferPos, b, off + read, n);
+            bufferPos += n;
+            read += n;
+        }
+        if (read == 0) {
+            return -1;
+        }
+        consumed += read;
+        counter += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = bufferLimit - bufferPos;
+        if (skipped > n) {
+            skipped = n;
+        }
+        bufferPos += (int)skipped;
+        if (skipped < n) {
+            InputStream in = this.in;
+            if (in == null) {
+                throw new IOException("Stream closed");
+            }
+            skipped += in.skip(n - skipped);
+        }
+        consumed += skipped;
+        counter += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        InputStream in = this.in;
+        if (in == null) {
+            throw new IOException("Stream closed");
+        }
+        int avail = bufferLimit - bufferPos;
+        int available = in.available();
+        return (avail > Integer.MAX_VALUE - available) ? Integer.MAX_VALUE : avail + available;
+    }
+
+    @Override
+    public void unread(int b) throws IOException {
+        if (bufferPos == 0) {
+            throw new IOException("Push back buffer is full");
+        }
+        if (lentTo != null) {
+            reclaimBuffer();
+        }
+        buffer[--bufferPos] = (byte)b;
+        --consumed;
+        --counter;
+    }
+
+    @Override
+    public void unread(byte[] b, int off, int len) throws IOException {
+        if (len > bufferPos) {
+            throw new IOException("Push back buffer is full");
+        }
+        if (lentTo != null) {
+            reclaimBuffer();
+        }
+        bufferPos -= len;
+        System.arraycopy(b, off, buffer, bufferPos, len);
+        consumed -= len;
+        counter -= len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        InputStream in = this.in;
+        if (in != null) {
+            this.in = null;
+            bufferPos = bufferLimit;
+            in.close();
+        }
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder(READLINE_INITIAL_SIZE);
+        int idx;
+        int b;
+        while (true) {
+            if (bufferPos >= bufferLimit && fill() <= 0) {
+                return null;    //Unexpected EOF
+            }
+            idx = bufferPos;
+            while (idx < bufferLimit) {
+                b = buffer[idx++] & 255;
+                if (b == '\n') {
+                    consumed += idx - bufferPos;
+                    counter += idx - bufferPos;
+                    bufferPos = idx;
+                    return sb.toString();
+                }
+                if (b != '\r') {
+                    sb.append((char) b);
+                }
+            }
+            consumed += idx - bufferPos;
+            counter += idx - bufferPos;
+            bufferPos = idx;
+        }
+    }
+
+    /**
+     * Read bytes into an array until and including the delimiter, the array
+     * is full or EOF is reached. The buffer is scanned for the delimiter
+     * instead of reading one byte at a time.
+     * @param b byte array to read bytes into
+     * @param off offset in byte array
+     * @param len maximum number of bytes to read
+     * @param delimiter delimiter byte value
+     * @return number of bytes read or -1 if EOF was reached before any bytes
+     * were read
+     * @throws IOException if an I/O error occurs while reading
+     */
+    public int readUntil(byte[] b, int off, int len, int delimiter) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        byte d = (byte)delimiter;
+        int read = 0;
+        boolean bFound = false;
+        int idx;
+        int end;
+        int n;
+        while (!bFound && read < len) {
+            if (bufferPos >= bufferLimit && fill() <= 0) {
+                break;
+            }
+            idx = bufferPos;
+            end = Math.min(bufferLimit, bufferPos + len - read);
+            while (idx < end && buffer[idx] != d) {
+                ++idx;
+            }
+            if (idx < end) {
+                // Include the delimiter.
+                ++idx;
+                bFound = true;
+            }
+            n = idx - bufferPos;
+            System.arraycopy(buffer, bufferPos, b, off + read, n);
+            bufferPos = idx;
+            read += n;
+        }
+        consumed += read;
+        counter += read;
+        return (read == 0 && len > 0) ? -1 : read;
+    }
+
+    /**
+     * Skip bytes until and including the delimiter or until EOF is reached.
+     * The buffer is scanned for the delimiter instead of reading one byte
+     * at a time.
+     * @param delimiter delimiter byte value
+     * @return number of bytes skipped
+     * @throws IOException if an I/O error occurs while reading
+     */
+    public long skipUntil(int delimiter) throws IOException {
+        byte d = (byte)delimiter;
+        long skipped = 0;
+        int idx;
+        while (bufferPos < bufferLimit || fill() > 0) {
+            idx = bufferPos;
+            while (idx < bufferLimit && buffer[idx] != d) {
+                ++idx;
+            }
+            if (idx < bufferLimit) {
+                ++idx;
+                skipped += idx - bufferPos;
+                bufferPos = idx;
+                break;
+            }
+            skipped += idx - bufferPos;
+            bufferPos = idx;
+        }
+        consumed += skipped;
+        counter += skipped;
+        return skipped;
+    }
+
+}
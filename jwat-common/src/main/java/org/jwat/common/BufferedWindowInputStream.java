@@ -0,0 +1,307 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+
+/**
+ * Fixed length window on a <code>BufferedByteCountingPushBackInputStream</code>.
+ * Data is read straight from the buffer of the underlying stream, so length
+ * limiting, counting and digesting is done on the shared buffer instead of
+ * copying the data through a chain of streams.
+ * The optional digest is updated exactly once for each byte in the window,
+ * even if bytes are pushed back and read again.
+ * Pushed back bytes are returned to the buffer of the underlying stream
+ * when there is room for them, otherwise they are kept in a local push back
+ * buffer of the specified size.
+ * Closing the window does not close the underlying stream.
+ *
+ * @author nicl
+ */
+public class BufferedWindowInputStream extends ByteCountingPushBackInputStream {
+
+    /** Underlying buffered stream. */
+    protected BufferedByteCountingPushBackInputStream bin;
+
+    /** Window length. */
+    protected long length;
+
+    /** Number of window bytes not yet read from the underlying stream. */
+    protected long remaining;
+
+    /** Optional message digest updated with the window bytes. */
+    protected MessageDigest md;
+
+    /** Number of window bytes digested. */
+    protected long digested;
+
+    /** Local push back buffer, allocated when needed. */
+    protected byte[] pbBuf;
+
+    /** Position of the next byte to read from the local push back buffer. */
+    protected int pbPos;
+
+    /**
+     * Construct a fixed length window on a buffered stream.
+     * @param bin buffered stream to read from
+     * @param length window length
+     * @param size push back buffer size
+     * @param md message digest to update or null
+     */
+    public BufferedWindowInputStream(BufferedByteCountingPushBackInputStream bin,
+            long length, int size, MessageDigest md) {
+        // The push back buffer of the super class is not used.
+        super(bin, 1);
+        if (length < 0) {
+            throw new IllegalArgumentException("length < 0");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("size <= 0");
+        }
+        this.bin = bin;
+        this.length = length;
+        this.remaining = length;
+        this.md = md;
+        pushback_size = size;
+    }
+
+    /**
+     * Returns the number of window bytes not yet read from the underlying
+     * stream. After the window has been skipped this is the number of bytes
+     * missing due to unexpected EOF.
+     * @return number of window bytes not yet read from the underlying stream
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Update the digest with the part of a buffer range which has not been
+     * digested before. Ranges of the buffer of the underlying stream are
+     * handed off to an asynchronous digest without copying, the underlying
+     * stream takes the buffer back before modifying it.
+     * @param b byte array
+     * @param off offset of the range
+     * @param n length of the range
+     */
+    protected void digest(byte[] b, int off, int n) {
+        long pos = length - remaining;
+        if (md != null && pos + n > digested) {
+            int skip = (int)Math.max(0, digested - pos);
+            if (b == bin.buffer && md instanceof AsyncMessageDigest) {
+                AsyncMessageDigest md_async = (AsyncMessageDigest)md;
+                if (md_async.handOff(b, off + skip, n - skip)) {
+                    bin.lentTo = md_async.getWorker();
+                }
+            } else {
+                md.update(b, off + skip, n - skip);
+            }
+            digested = pos + n;
+        }
+    }
+
+    /**
+     * Make buffered window bytes available in the underlying stream.
+     * @return number of buffered window bytes or -1 if none are available
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected int fillWindow() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        if (bin.bufferPos >= bin.bufferLimit && bin.fill() <= 0) {
+            return -1;
+        }
+        return (int)Math.min(bin.bufferLimit - bin.bufferPos, remaining);
+    }
+
+    /**
+     * Consume buffered window bytes from the underlying stream.
+     * @param n number of bytes to consume
+     */
+    protected void advance(int n) {
+        digest(bin.buffer, bin.bufferPos, n);
+        bin.bufferPos += n;
+        bin.consumed += n;
+        bin.counter += n;
+        remaining -= n;
+        consumed += n;
+        counter += n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pbBuf != null && pbPos < pbBuf.length) {
+            ++consumed;
+            ++counter;
+            return pbBuf[pbPos++] & 255;
+        }
+        if (fillWindow() <= 0) {
+            return -1;
+        }
+        int b = bin.buffer[bin.bufferPos] & 255;
+        advance(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int read = 0;
+        int n;
+        if (pbBuf != null && pbPos < pbBuf.length) {
+            n = Math.min(len, pbBuf.length - pbPos);
+            System.arraycopy(pbBuf, pbPos, b, off, n);
+            pbPos += n;
+            consumed += n;
+            counter += n;
+            read += n;
+        }
+        // Same as FixedLengthInputStream on a buffered stream, keep reading
+        // until the array is full or the window has been read.
+        while (read < len && remaining > 0) {
+            if (bin.bufferPos >= bin.bufferLimit
+                    && len - read >= bin.buffer.length - bin.pushback_size) {
+                // Large reads go directly to the array.
+                n = bin.readDirect(b, off + read, (int)Math.min(len - read, remaining));
+                if (n <= 0) {
+                    break;
+                }
+                digest(b, off + read, n);
+                bin.consumed += n;
+                bin.counter += n;
+                remaining -= n;
+                consumed += n;
+                counter += n;
+            } else {
+                n = fillWindow();
+                if (n <= 0) {
+                    break;
+                }
+                n = Math.min(len - read, n);
+                System.arraycopy(bin.buffer, bin.bufferPos, b, off + read, n);
+                advance(n);
+            }
+            read += n;
+        }
+        return (read == 0) ? -1 : read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        int len;
+        if (n > 0 && pbBuf != null && pbPos < pbBuf.length) {
+            len = (int)Math.min(n, pbBuf.length - pbPos);
+            pbPos += len;
+            consumed += len;
+            counter += len;
+            skipped += len;
+        }
+        long seek;
+        while (skipped < n && remaining > 0) {
+            if (md == null && bin.bufferPos >= bin.bufferLimit) {
+                // Nothing to digest, let the underlying stream skip.
+                seek = bin.skip(Math.min(n - skipped, remaining));
+                if (seek > 0) {
+                    remaining -= seek;
+                    consumed += seek;
+                    counter += seek;
+                    skipped += seek;
+                    continue;
+                }
+            }
+            len = fillWindow();
+            if (len <= 0) {
+                break;
+            }
+            len = (int)Math.min(n - skipped, len);
+            advance(len);
+            skipped += len;
+        }
+        return skipped;
+    }
+
+    /**
+     * Skip the rest of the window, digesting the skipped bytes if required.
+     * @return number of bytes skipped
+     * @throws IOException if an I/O error occurs while reading
+     */
+    public long skipRemaining() throws IOException {
+        return skip(Long.MAX_VALUE);
+    }
+
+    @Override
+    public int available() throws IOException {
+        long available = remaining;
+        if (pbBuf != null) {
+            available += pbBuf.length - pbPos;
+        }
+        return (available > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)available;
+    }
+
+    @Override
+    public void unread(int b) throws IOException {
+        if ((pbBuf == null || pbPos == pbBuf.length) && bin.bufferPos > 0) {
+            bin.unread(b);
+            ++remaining;
+        } else {
+            if (pbBuf == null) {
+                pbBuf = new byte[pushback_size];
+                pbPos = pbBuf.length;
+            }
+            if (pbPos == 0) {
+                throw new IOException("Push back buffer is full");
+            }
+            pbBuf[--pbPos] = (byte)b;
+        }
+        --consumed;
+        --counter;
+    }
+
+    @Override
+    public void unread(byte[] b, int off, int len) throws IOException {
+        if ((pbBuf == null || pbPos == pbBuf.length) && len <= bin.bufferPos) {
+            bin.unread(b, off, len);
+            remaining += len;
+        } else {
+            if (pbBuf == null) {
+                pbBuf = new byte[pushback_size];
+                pbPos = pbBuf.length;
+            }
+            if (len > pbPos) {
+                throw new IOException("Push back buffer is full");
+            }
+            pbPos -= len;
+            System.arraycopy(b, off, pbBuf, pbPos, len);
+        }
+        consumed -= len;
+        counter -= len;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+}
@@ -0,0 +1,333 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed case insensitive lookup table mapping a fixed set of names
+ * to integer values. The table is a collision free (perfect) hash table,
+ * so a lookup hashes the name once and compares it with at most one entry,
+ * without lower casing the name or boxing the result.
+ * Names can be looked up as strings, character arrays or raw bytes.
+ * Only US-ASCII letters are folded, which is sufficient for header names
+ * and other protocol tokens.
+ *
+ * @author nicl
+ */
+public class CaseInsensitiveIndex {
+
+    /** Maximum number of multipliers tried before the table is enlarged. */
+    protected static final int MAX_SEEDS = 1024;
+
+    /** Hash multiplier giving a collision free table. */
+    protected int seed;
+
+    /** Table size minus one. */
+    protected int mask;
+
+    /** Lower case names indexed by slot, null for unused slots. */
+    protected char[][] slotNames;
+
+    /** Lower case name strings indexed by slot. */
+    protected String[] slotKeys;
+
+    /** Values indexed by slot. */
+    protected int[] slotValues;
+
+    /** Number of names in the table. */
+    protected int size;
+
+    /**
+     * Construct a lookup table for the supplied names and values.
+     * @param names names to look up, case insensitive
+     * @param values value of each name
+     */
+    public CaseInsensitiveIndex(String[] names, int[] values) {
+        if (names == null) {
+            throw new IllegalArgumentException("names is null!");
+        }
+        if (values == null) {
+            throw new IllegalArgumentException("values is null!");
+        }
+        if (names.length != values.length) {
+            throw new IllegalArgumentException("names.length != values.length");
+        }
+        char[][] lcNames = new char[names.length][];
+        for (int i=0; i<names.length; ++i) {
+            if (names[i] == null) {
+                throw new IllegalArgumentException("names[" + i + "] is null!");
+            }
+            lcNames[i] = names[i].toCharArray();
+            for (int j=0; j<lcNames[i].length; ++j) {
+                lcNames[i][j] = fold(lcNames[i][j]);
+            }
+            for (int j=0; j<i; ++j) {
+                if (equals(lcNames[j], lcNames[i], 0, lcNames[i].length)) {
+                    throw new IllegalArgumentException("Duplicate name: " + names[i]);
+                }
+            }
+        }
+        size = names.length;
+        int tableSize = 1;
+        while (tableSize < names.length * 2) {
+            tableSize <<= 1;
+        }
+        int[] slots = new int[names.length];
+        boolean bFound = false;
+        while (!bFound) {
+            mask = tableSize - 1;
+            boolean[] used = new boolean[tableSize];
+            for (seed = 31; seed < 31 + MAX_SEEDS && !bFound; ++seed) {
+                Arrays.fill(used, false);
+                bFound = true;
+                for (int i=0; i<lcNames.length && bFound; ++i) {
+                    slots[i] = hash(lcNames[i], 0, lcNames[i].length) & mask;
+                    bFound = !used[slots[i]];
+                    used[slots[i]] = true;
+                }
+            }
+            if (bFound) {
+                --seed;
+            } else {
+                tableSize <<= 1;
+            }
+        }
+        slotNames = new char[tableSize][];
+        slotKeys = new String[tableSize];
+        slotValues = new int[tableSize];
+        for (int i=0; i<lcNames.length; ++i) {
+            slotNames[slots[i]] = lcNames[i];
+            slotKeys[slots[i]] = new String(lcNames[i]);
+            slotValues[slots[i]] = values[i];
+        }
+    }
+
+    /**
+     * Construct a lookup table from an id to name mapping table, mapping
+     * each non null name to its index in the array.
+     * @param idxStrings id to name mapping table
+     * @return lookup table for the names in the mapping table
+     */
+    public static CaseInsensitiveIndex fromIdxStrings(String[] idxStrings) {
+        if (idxStrings == null) {
+            throw new IllegalArgumentException("idxStrings is null!");
+        }
+        int count = 0;
+        for (int i=0; i<idxStrings.length; ++i) {
+            if (idxStrings[i] != null) {
+                ++count;
+            }
+        }
+        String[] names = new String[count];
+        int[] values = new int[count];
+        count = 0;
+        for (int i=0; i<idxStrings.length; ++i) {
+            if (idxStrings[i] != null) {
+                names[count] = idxStrings[i];
+                values[count++] = i;
+            }
+        }
+        return new CaseInsensitiveIndex(names, values);
+    }
+
+    /**
+     * Fold an US-ASCII upper case letter to lower case.
+     * @param c character
+     * @return lower case character
+     */
+    protected static char fold(int c) {
+        return (char)((c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c);
+    }
+
+    /**
+     * Compare a lower case name with a range of characters, ignoring case.
+     * @param lcName lower case name
+     * @param c character array
+     * @param off offset of the range
+     * @param len length of the range
+     * @return a boolean indicating whether the name and range are equal
+     */
+    protected static boolean equals(char[] lcName, char[] c, int off, int len) {
+        if (lcName.length != len) {
+            return false;
+        }
+        for (int i=0; i<len; ++i) {
+            if (lcName[i] != fold(c[off + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spread the bits of a hash value before masking.
+     * @param h hash value
+     * @return spread hash value
+     */
+    protected static int spread(int h) {
+        return h ^ (h >>> 16) ^ (h >>> 8);
+    }
+
+    /**
+     * Compute the case insensitive hash of a range of characters.
+     * @param c character array
+     * @param off offset of the range
+     * @param len length of the range
+     * @return hash value
+     */
+    protected int hash(char[] c, int off, int len) {
+        int h = len;
+        for (int i=0; i<len; ++i) {
+            h = h * seed + fold(c[off + i]);
+        }
+        return spread(h);
+    }
+
+    /**
+     * Returns the table slot of a name or -1 if the name is not in the table.
+     * @param name name to look up
+     * @return table slot or -1
+     */
+    protected int slot(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int len = name.length();
+        int h = len;
+        for (int i=0; i<len; ++i) {
+            h = h * seed + fold(name.charAt(i));
+        }
+        int slot = spread(h) & mask;
+        char[] lcName = slotNames[slot];
+        if (lcName == null || lcName.length != len) {
+            return -1;
+        }
+        for (int i=0; i<len; ++i) {
+            if (lcName[i] != fold(name.charAt(i))) {
+                return -1;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the table slot of a name held in a character array or -1 if
+     * the name is not in the table.
+     * @param c character array
+     * @param off offset of the name
+     * @param len length of the name
+     * @return table slot or -1
+     */
+    protected int slot(char[] c, int off, int len) {
+        if (c == null) {
+            return -1;
+        }
+        int slot = hash(c, off, len) & mask;
+        char[] lcName = slotNames[slot];
+        if (lcName == null || !equals(lcName, c, off, len)) {
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the value of a name, ignoring case.
+     * @param name name to look up
+     * @return value of the name or -1 if the name is not in the table
+     */
+    public int get(String name) {
+        int slot = slot(name);
+        return (slot != -1) ? slotValues[slot] : -1;
+    }
+
+    /**
+     * Returns the value of a name held in a character array, ignoring case.
+     * @param c character array
+     * @param off offset of the name
+     * @param len length of the name
+     * @return value of the name or -1 if the name is not in the table
+     */
+    public int get(char[] c, int off, int len) {
+        int slot = slot(c, off, len);
+        return (slot != -1) ? slotValues[slot] : -1;
+    }
+
+    /**
+     * Returns the value of a name held in a byte array, ignoring case.
+     * Each byte is treated as one ISO-8859-1 character.
+     * @param b byte array
+     * @param off offset of the name
+     * @param len length of the name
+     * @return value of the name or -1 if the name is not in the table
+     */
+    public int get(byte[] b, int off, int len) {
+        if (b == null) {
+            return -1;
+        }
+        int h = len;
+        for (int i=0; i<len; ++i) {
+            h = h * seed + fold(b[off + i] & 255);
+        }
+        int slot = spread(h) & mask;
+        char[] lcName = slotNames[slot];
+        if (lcName == null || lcName.length != len) {
+            return -1;
+        }
+        for (int i=0; i<len; ++i) {
+            if (lcName[i] != fold(b[off + i] & 255)) {
+                return -1;
+            }
+        }
+        return slotValues[slot];
+    }
+
+    /**
+     * Returns the lower case form of a name in the table. The returned
+     * string is shared, so it can be used as a map key without allocating.
+     * @param name name to look up
+     * @return lower case name or null if the name is not in the table
+     */
+    public String getKey(String name) {
+        int slot = slot(name);
+        return (slot != -1) ? slotKeys[slot] : null;
+    }
+
+    /**
+     * Returns the lower case form of a name held in a character array.
+     * The returned string is shared, so it can be used as a map key without
+     * allocating.
+     * @param c character array
+     * @param off offset of the name
+     * @param len length of the name
+     * @return lower case name or null if the name is not in the table
+     */
+    public String getKey(char[] c, int off, int len) {
+        int slot = slot(c, off, len);
+        return (slot != -1) ? slotKeys[slot] : null;
+    }
+
+    /**
+     * Returns the number of names in the table.
+     * @return number of names in the table
+     */
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A single compressed member read by a <code>CompressedReader</code>.
+ *
+ * @author nicl
+ */
+public interface CompressedEntry extends Closeable {
+
+    /**
+     * Returns an input stream used to read the uncompressed data.
+     * @return input stream to read uncompressed data
+     * @throws IOException if an I/O error occurs while opening stream
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * Returns this member's offset relative to the start of the input stream.
+     * @return this member's offset relative to the start of the input stream
+     */
+    long getStartOffset();
+
+    /**
+     * Returns the number of compressed bytes consumed by this member,
+     * once it has been closed.
+     * @return number of compressed bytes consumed by this member
+     */
+    long getConsumed();
+
+    /**
+     * Returns a boolean indicating whether this member is compliant.
+     * @return a boolean indicating whether this member is compliant
+     */
+    boolean isCompliant();
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reader of the independently compressed members of a stream, as returned by
+ * a <code>CompressionCodec</code>.
+ *
+ * @author nicl
+ */
+public interface CompressedReader extends Closeable {
+
+    /**
+     * Get the next compressed member, closing the current one, or null
+     * if there are no more members.
+     * @return next compressed member or null
+     * @throws IOException if an I/O error occurs while reading member
+     */
+    CompressedEntry getNextEntry() throws IOException;
+
+    /**
+     * Get the offset of the current member or -1 if no members have been
+     * read yet.
+     * @return offset of the current member or -1
+     */
+    long getStartOffset();
+
+    /**
+     * Get the current offset in the compressed stream.
+     * @return current offset in the compressed stream
+     */
+    long getOffset();
+
+    /**
+     * Get the number of compressed bytes consumed by the closed members.
+     * @return number of compressed bytes consumed
+     */
+    long getConsumed();
+
+    /**
+     * Returns a boolean indicating whether all members read so far are
+     * compliant.
+     * @return a boolean indicating whether all members read so far are compliant
+     */
+    boolean isCompliant();
+
+    /**
+     * Release the resources of this reader without closing the input stream.
+     * @throws IOException if an I/O error occurs while releasing resources
+     */
+    void release() throws IOException;
+
+}
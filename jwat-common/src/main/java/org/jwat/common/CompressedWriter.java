@@ -0,0 +1,52 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writer of independently compressed members, as returned by a
+ * <code>CompressionCodec</code>.
+ *
+ * @author nicl
+ */
+public interface CompressedWriter extends Closeable {
+
+    /**
+     * Start a new compressed member, closing the current one.
+     * @return output stream used to write the uncompressed data
+     * @throws IOException if an I/O error occurs while starting member
+     */
+    OutputStream openEntry() throws IOException;
+
+    /**
+     * Close the current member, if any.
+     * @throws IOException if an I/O error occurs while closing member
+     */
+    void closeEntry() throws IOException;
+
+    /**
+     * Returns a boolean indicating whether all members written so far are
+     * compliant.
+     * @return a boolean indicating whether all members written so far are compliant
+     */
+    boolean isCompliant();
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression codec used by the ARC and WARC readers and writers to store
+ * each record in its own independently compressed member. A codec detects
+ * its own magic number and supplies readers and writers for the member
+ * framing, which lets formats other than GZip be used without changing the
+ * record readers and writers.
+ * Codecs are registered with <code>CompressionCodecs</code>.
+ *
+ * @author nicl
+ */
+public interface CompressionCodec {
+
+    /**
+     * Returns the unique name of this codec, for example "gzip".
+     * @return unique name of this codec
+     */
+    String getName();
+
+    /**
+     * Check head of <code>PushBackInputStream</code> for the magic number of
+     * this codec. The stream is left unchanged.
+     * @param pbin <code>PushBackInputStream</code> with compressed data
+     * @return boolean indicating presence of the magic number of this codec
+     * @throws IOException if an I/O error occurs while examining head of stream
+     */
+    boolean isCompressed(ByteCountingPushBackInputStream pbin) throws IOException;
+
+    /**
+     * Construct a reader returning each compressed member of the supplied
+     * input stream as an entry.
+     * @param in input stream with compressed members
+     * @return reader of compressed members
+     * @throws IOException if an I/O error occurs while initializing reader
+     */
+    CompressedReader newReader(InputStream in) throws IOException;
+
+    /**
+     * Construct a writer compressing each entry as a separate member on the
+     * supplied output stream.
+     * @param out output stream to write compressed members to
+     * @return writer of compressed members
+     */
+    CompressedWriter newWriter(OutputStream out);
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the compression codecs used to auto detect compressed ARC and
+ * WARC files. Codecs are registered explicitly or discovered through
+ * <code>ServiceLoader</code> using a
+ * <code>META-INF/services/org.jwat.common.CompressionCodec</code> file.
+ * Detection tries the explicitly registered codecs first, in the order they
+ * were registered, followed by the <code>ServiceLoader</code> codecs.
+ *
+ * @author nicl
+ */
+public class CompressionCodecs {
+
+    /** Registered codecs in detection order. */
+    protected static final List<CompressionCodec> codecs = new ArrayList<CompressionCodec>();
+
+    /** Number of explicitly registered codecs at the head of the list. */
+    protected static int registered;
+
+    /** Have the <code>ServiceLoader</code> codecs been loaded. */
+    protected static boolean bLoaded;
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    protected CompressionCodecs() {
+    }
+
+    /**
+     * Register a codec unless a codec with the same name is already registered.
+     * The codec is tried after the previously registered codecs but before
+     * any codec discovered through <code>ServiceLoader</code>.
+     * @param codec compression codec
+     * @return a boolean indicating whether the codec was registered
+     */
+    public static synchronized boolean register(CompressionCodec codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("The 'codec' parameter is null!");
+        }
+        if (getCodec0(codec.getName()) != null) {
+            return false;
+        }
+        codecs.add(registered++, codec);
+        return true;
+    }
+
+    /**
+     * Returns the registered codec with the supplied name or null.
+     * @param name codec name
+     * @return registered codec with the supplied name or null
+     */
+    public static synchronized CompressionCodec getCodec(String name) {
+        load();
+        return getCodec0(name);
+    }
+
+    /**
+     * Returns a list of the registered codecs in detection order.
+     * @return list of the registered codecs
+     */
+    public static synchronized List<CompressionCodec> getCodecs() {
+        load();
+        return new ArrayList<CompressionCodec>(codecs);
+    }
+
+    /**
+     * Find the first registered codec which recognizes the head of the
+     * <code>PushBackInputStream</code>. The stream is left unchanged.
+     * @param pbin <code>PushBackInputStream</code> to examine
+     * @return codec recognizing the stream or null
+     * @throws IOException if an I/O error occurs while examining head of stream
+     */
+    public static CompressionCodec detect(ByteCountingPushBackInputStream pbin) throws IOException {
+        List<CompressionCodec> list = getCodecs();
+        for (int i=0; i<list.size(); ++i) {
+            CompressionCodec codec = list.get(i);
+            if (codec.isCompressed(pbin)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the registered codec with the supplied name or null.
+     * @param name codec name
+     * @return registered codec with the supplied name or null
+     */
+    protected static CompressionCodec getCodec0(String name) {
+        for (int i=0; i<codecs.size(); ++i) {
+            if (codecs.get(i).getName().equals(name)) {
+                return codecs.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Register the codecs found by <code>ServiceLoader</code> the first time
+     * the registry is used. Codecs which fail to load are ignored.
+     */
+    protected static void load() {
+        if (!bLoaded) {
+            bLoaded = true;
+            Iterator<CompressionCodec> iter = ServiceLoader.load(CompressionCodec.class,
+                    CompressionCodecs.class.getClassLoader()).iterator();
+            while (true) {
+                try {
+                    if (!iter.hasNext()) {
+                        break;
+                    }
+                } catch (ServiceConfigurationError e) {
+                    break;
+                }
+                try {
+                    CompressionCodec codec = iter.next();
+                    if (getCodec0(codec.getName()) == null) {
+                        codecs.add(codec);
+                    }
+                } catch (ServiceConfigurationError e) {
+                    // Ignore codecs which can not be instantiated.
+                }
+            }
+        }
+    }
+
+}
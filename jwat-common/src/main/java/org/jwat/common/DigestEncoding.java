@@ -0,0 +1,278 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Table driven detection, verification and encoding of digests in the
+ * base16, base32 and base64 encodings used in ARC/WARC headers.
+ * The encoding of a digest string is detected from its length and alphabet,
+ * and a digest string is compared against digest bytes while it is being
+ * decoded, so verifying a digest does not allocate intermediate arrays.
+ * The accepted syntax is the same as the strict decoders in
+ * <code>Base16</code>, <code>Base32</code> and <code>Base64</code>.
+ *
+ * @author nicl
+ */
+public class DigestEncoding {
+
+    /** Table used to encode base16. */
+    protected static final char[] base16EncodeTab = "0123456789ABCDEF".toCharArray();
+
+    /** Table used to encode base32. */
+    protected static final char[] base32EncodeTab = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+
+    /** Table used to encode base64. */
+    protected static final char[] base64EncodeTab = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /**
+     * Static class.
+     */
+    protected DigestEncoding() {
+    }
+
+    /**
+     * Detect the encoding of a digest string given the length of the
+     * digest. Base16 is preferred over base32 which is preferred over
+     * base64.
+     * @param digestString encoded digest
+     * @param digestLength digest length in bytes
+     * @return "base16", "base32", "base64" or null if the digest string
+     * is not a valid encoding of a digest of the given length
+     */
+    public static String detectEncoding(String digestString, int digestLength) {
+        if (digestString == null || digestLength <= 0) {
+            return null;
+        }
+        if (dataLength(digestString, 4) == digestLength * 2) {
+            return "base16";
+        }
+        if (decodedLength(digestString, 5) == digestLength) {
+            return "base32";
+        }
+        if (decodedLength(digestString, 6) == digestLength) {
+            return "base64";
+        }
+        return null;
+    }
+
+    /**
+     * Compare an encoded digest with digest bytes without decoding it into
+     * an array.
+     * @param digestString encoded digest
+     * @param encoding "base16", "base32" or "base64"
+     * @param digestBytes digest bytes
+     * @return true if the digest string is a valid encoding of the digest bytes
+     */
+    public static boolean matches(String digestString, String encoding, byte[] digestBytes) {
+        int bits = bitsPerChar(encoding);
+        if (digestString == null || digestBytes == null || bits == -1) {
+            return false;
+        }
+        int dataLength = dataLength(digestString, bits);
+        if (dataLength == -1 || ((dataLength * bits) >> 3) != digestBytes.length) {
+            return false;
+        }
+        byte[] decodeTab = decodeTab(bits);
+        int acc = 0;
+        int accBits = 0;
+        int idx = 0;
+        for (int i=0; i<dataLength; ++i) {
+            acc = (acc << bits) | decodeTab[digestString.charAt(i)];
+            accBits += bits;
+            if (accBits >= 8) {
+                accBits -= 8;
+                if (((acc >> accBits) & 255) != (digestBytes[idx++] & 255)) {
+                    return false;
+                }
+            }
+            acc &= (1 << accBits) - 1;
+        }
+        return true;
+    }
+
+    /**
+     * Decode an encoded digest into an array of exactly the decoded length.
+     * @param digestString encoded digest
+     * @param encoding "base16", "base32" or "base64"
+     * @return decoded digest or null if the digest string is not valid
+     */
+    public static byte[] decode(String digestString, String encoding) {
+        int bits = bitsPerChar(encoding);
+        if (digestString == null || bits == -1) {
+            return null;
+        }
+        int dataLength = dataLength(digestString, bits);
+        if (dataLength == -1) {
+            return null;
+        }
+        byte[] decodeTab = decodeTab(bits);
+        byte[] digestBytes = new byte[(dataLength * bits) >> 3];
+        int acc = 0;
+        int accBits = 0;
+        int idx = 0;
+        for (int i=0; i<dataLength; ++i) {
+            acc = (acc << bits) | decodeTab[digestString.charAt(i)];
+            accBits += bits;
+            if (accBits >= 8) {
+                accBits -= 8;
+                digestBytes[idx++] = (byte)(acc >> accBits);
+            }
+            acc &= (1 << accBits) - 1;
+        }
+        return digestBytes;
+    }
+
+    /**
+     * Encode digest bytes, the result is identical to the
+     * <code>encodeArray</code> method of the corresponding encoder.
+     * @param digestBytes digest bytes
+     * @param encoding "base16", "base32" or "base64"
+     * @return encoded digest or null if the encoding is unknown
+     */
+    public static String encode(byte[] digestBytes, String encoding) {
+        int bits = bitsPerChar(encoding);
+        if (digestBytes == null || bits == -1) {
+            return null;
+        }
+        char[] encodeTab;
+        int block;
+        switch (bits) {
+        case 4:
+            encodeTab = base16EncodeTab;
+            block = 1;
+            break;
+        case 5:
+            encodeTab = base32EncodeTab;
+            block = 8;
+            break;
+        default:
+            encodeTab = base64EncodeTab;
+            block = 4;
+            break;
+        }
+        int dataLength = (digestBytes.length * 8 + bits - 1) / bits;
+        int mod = dataLength % block;
+        char[] out = new char[(mod == 0) ? dataLength : dataLength + block - mod];
+        int mask = (1 << bits) - 1;
+        int acc = 0;
+        int accBits = 0;
+        int idx = 0;
+        for (int i=0; i<digestBytes.length; ++i) {
+            acc = (acc << 8) | (digestBytes[i] & 255);
+            accBits += 8;
+            while (accBits >= bits) {
+                accBits -= bits;
+                out[idx++] = encodeTab[(acc >> accBits) & mask];
+            }
+            acc &= (1 << accBits) - 1;
+        }
+        if (accBits > 0) {
+            out[idx++] = encodeTab[(acc << (bits - accBits)) & mask];
+        }
+        while (idx < out.length) {
+            out[idx++] = '=';
+        }
+        return new String(out);
+    }
+
+    /**
+     * Returns the number of bits encoded by each character of an encoding.
+     * @param encoding "base16", "base32" or "base64"
+     * @return number of bits per character or -1 if the encoding is unknown
+     */
+    protected static int bitsPerChar(String encoding) {
+        if ("base16".equals(encoding)) {
+            return 4;
+        } else if ("base32".equals(encoding)) {
+            return 5;
+        } else if ("base64".equals(encoding)) {
+            return 6;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the decode table of an encoding.
+     * @param bits number of bits per character
+     * @return decode table
+     */
+    protected static byte[] decodeTab(int bits) {
+        switch (bits) {
+        case 4:
+            return Base16.decodeTab;
+        case 5:
+            return Base32.decodeTab;
+        default:
+            return Base64.decodeTab;
+        }
+    }
+
+    /**
+     * Returns the number of bytes an encoded string decodes to.
+     * @param str encoded string
+     * @param bits number of bits per character
+     * @return number of decoded bytes or -1 if the string is not valid
+     */
+    protected static int decodedLength(String str, int bits) {
+        int dataLength = dataLength(str, bits);
+        return (dataLength != -1) ? (dataLength * bits) >> 3 : -1;
+    }
+
+    /**
+     * Validate the alphabet and padding of an encoded string and return the
+     * number of characters before the padding.
+     * @param str encoded string
+     * @param bits number of bits per character, 4 for base16, 5 for base32
+     * and 6 for base64
+     * @return number of data characters or -1 if the string is not valid
+     */
+    protected static int dataLength(String str, int bits) {
+        byte[] decodeTab = decodeTab(bits);
+        int len = str.length();
+        int dataLength = 0;
+        char c;
+        while (dataLength < len && (c = str.charAt(dataLength)) != '=') {
+            if (c > 255 || decodeTab[c] == -1) {
+                return -1;
+            }
+            ++dataLength;
+        }
+        if (bits == 4) {
+            // Base16 is never padded and encodes whole bytes.
+            return (dataLength == len && (dataLength & 1) == 0) ? dataLength : -1;
+        }
+        int block = (bits == 5) ? 8 : 4;
+        int mod = dataLength % block;
+        // The bits left over in a partial block must not make up a whole
+        // character.
+        if ((mod * bits) % 8 >= bits) {
+            return -1;
+        }
+        // Padded to a whole block.
+        if (((mod == 0) ? dataLength : dataLength + block - mod) != len) {
+            return -1;
+        }
+        for (int i=dataLength + 1; i<len; ++i) {
+            if (str.charAt(i) != '=') {
+                return -1;
+            }
+        }
+        return dataLength;
+    }
+
+}
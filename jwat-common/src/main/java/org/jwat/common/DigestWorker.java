@@ -0,0 +1,397 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.Closeable;
+import java.security.MessageDigest;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Background thread updating message digests, so digesting can run on
+ * another core than the thread parsing and consuming the record data.
+ * Data is copied into a bounded ring of buffers which the worker thread
+ * drains in order. The producer blocks when the ring is full.
+ * Larger segments of an array the producer can give up, such as the buffer
+ * of a record stream, are handed off without copying. The producer then
+ * calls <code>exchange(byte[])</code> before writing to the array again.
+ * Data queued after the worker has been closed is digested on the calling
+ * thread.
+ * Digests are updated through <code>AsyncMessageDigest</code> wrappers
+ * obtained from <code>wrap(MessageDigest)</code>.
+ * A worker is fed by a single thread, typically the thread using an
+ * ARC or WARC reader.
+ *
+ * @author nicl
+ */
+public class DigestWorker implements Runnable, Closeable {
+
+    /** Default number of buffers in the ring. */
+    public static final int DEFAULT_BUFFERS = 16;
+
+    /** Default size of each buffer in the ring. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** Minimum length of a segment handed off instead of copied. */
+    public static final int MIN_HAND_OFF_SIZE = 1024;
+
+    /** Ring of buffers. */
+    protected final byte[][] buffers;
+
+    /** Array to digest for each ring slot, a ring buffer or a handed off array. */
+    protected final byte[][] data;
+
+    /** Offset of the bytes to digest in each ring slot. */
+    protected final int[] offsets;
+
+    /** Number of bytes used in each buffer. */
+    protected final int[] lengths;
+
+    /** Message digest to update with each buffer. */
+    protected final MessageDigest[] targets;
+
+    /** Index of the next buffer to digest. */
+    protected int head;
+
+    /** Number of buffers waiting to be digested. */
+    protected int count;
+
+    /** Index of the buffer being filled by the producer. */
+    protected int tail;
+
+    /** Number of bytes in the buffer being filled by the producer. */
+    protected int tailLength;
+
+    /** Message digest of the buffer being filled or null. */
+    protected MessageDigest tailTarget;
+
+    /** Number of buffers handed to the worker thread. */
+    protected long published;
+
+    /** Number of buffers digested by the worker thread. */
+    protected long completed;
+
+    /** Worker thread, started on first use. */
+    protected Thread thread;
+
+    /** Exception thrown while digesting or null. */
+    protected RuntimeException exception;
+
+    /** Boolean indicating whether this worker has been closed. */
+    protected volatile boolean bClosed;
+
+    /** Handed off arrays and the number of the last buffer using them. */
+    protected final Map<byte[], Long> lent = new IdentityHashMap<byte[], Long>();
+
+    /** Exchanged arrays and the number of the last buffer using them. */
+    protected final Map<byte[], Long> retired = new IdentityHashMap<byte[], Long>();
+
+    /**
+     * Construct a digest worker with the default number and size of buffers.
+     */
+    public DigestWorker() {
+        this(DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a digest worker with the specified number and size of buffers.
+     * @param buffers number of buffers in the ring
+     * @param bufferSize size of each buffer
+     */
+    public DigestWorker(int buffers, int bufferSize) {
+        if (buffers <= 0) {
+            throw new IllegalArgumentException("buffers <= 0");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize <= 0");
+        }
+        this.buffers = new byte[buffers][bufferSize];
+        data = new byte[buffers][];
+        offsets = new int[buffers];
+        lengths = new int[buffers];
+        targets = new MessageDigest[buffers];
+    }
+
+    /**
+     * Returns a message digest which is updated by this worker.
+     * @param md message digest to update asynchronously
+     * @return asynchronous message digest
+     */
+    public AsyncMessageDigest wrap(MessageDigest md) {
+        if (md == null) {
+            throw new IllegalArgumentException("md is null!");
+        }
+        return new AsyncMessageDigest(this, md);
+    }
+
+    /**
+     * Queue a byte to be digested.
+     * @param md message digest to update
+     * @param b byte to digest
+     */
+    public void update(MessageDigest md, byte b) {
+        if (bClosed) {
+            await();
+            md.update(b);
+            return;
+        }
+        if (tailTarget != md || tailLength == buffers[tail].length) {
+            acquire(md);
+        }
+        buffers[tail][tailLength++] = b;
+    }
+
+    /**
+     * Queue a range of bytes to be digested.
+     * @param md message digest to update
+     * @param b byte array
+     * @param off offset of the range
+     * @param len length of the range
+     */
+    public void update(MessageDigest md, byte[] b, int off, int len) {
+        if (bClosed) {
+            await();
+            md.update(b, off, len);
+            return;
+        }
+        int n;
+        while (len > 0) {
+            if (tailTarget != md || tailLength == buffers[tail].length) {
+                acquire(md);
+            }
+            n = Math.min(len, buffers[tail].length - tailLength);
+            System.arraycopy(b, off, buffers[tail], tailLength, n);
+            tailLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Queue a range of bytes to be digested without copying it, if it is
+     * long enough. If the array is handed off the caller must not modify it
+     * before calling <code>exchange(byte[])</code>.
+     * @param md message digest to update
+     * @param b byte array
+     * @param off offset of the range
+     * @param len length of the range
+     * @return a boolean indicating whether the array has been handed off
+     */
+    public boolean handOff(MessageDigest md, byte[] b, int off, int len) {
+        if (bClosed || len < MIN_HAND_OFF_SIZE) {
+            update(md, b, off, len);
+            return false;
+        }
+        publish();
+        waitForBuffer();
+        synchronized (this) {
+            data[tail] = b;
+            offsets[tail] = off;
+            lengths[tail] = len;
+            targets[tail] = md;
+            tail = (tail + 1) % buffers.length;
+            ++count;
+            ++published;
+            notifyAll();
+            if (lent.size() >= buffers.length) {
+                // Forget arrays which have been digested.
+                Iterator<Long> iter = lent.values().iterator();
+                while (iter.hasNext()) {
+                    if (iter.next() <= completed) {
+                        iter.remove();
+                    }
+                }
+            }
+            lent.put(b, published);
+        }
+        return true;
+    }
+
+    /**
+     * Returns an array of the same length, which is not used by the worker
+     * thread, in exchange for an array handed off earlier. The supplied
+     * array is returned if it has already been digested. Exchanged arrays
+     * are reused once they have been digested.
+     * @param b array handed off earlier
+     * @return array which can be modified by the caller
+     */
+    public byte[] exchange(byte[] b) {
+        byte[] free = null;
+        synchronized (this) {
+            Long last = lent.remove(b);
+            if (last == null || last <= completed) {
+                return b;
+            }
+            Iterator<Map.Entry<byte[], Long>> iter = retired.entrySet().iterator();
+            Map.Entry<byte[], Long> entry;
+            while (iter.hasNext()) {
+                entry = iter.next();
+                if (entry.getValue() <= completed) {
+                    if (free == null && entry.getKey().length == b.length) {
+                        free = entry.getKey();
+                    }
+                    iter.remove();
+                }
+            }
+            retired.put(b, last);
+        }
+        return (free != null) ? free : new byte[b.length];
+    }
+
+    /**
+     * Hand the current buffer to the worker thread and wait for a free
+     * buffer to fill for the supplied message digest.
+     * @param md message digest to update with the next buffer
+     */
+    protected void acquire(MessageDigest md) {
+        publish();
+        waitForBuffer();
+        tailTarget = md;
+        tailLength = 0;
+    }
+
+    /**
+     * Start the worker thread if required and wait for a free buffer.
+     */
+    protected void waitForBuffer() {
+        boolean bInterrupted = false;
+        synchronized (this) {
+            if (bClosed) {
+                throw new IllegalStateException("Digest worker is closed");
+            }
+            if (thread == null) {
+                thread = new Thread(this, "DigestWorker");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            while (count == buffers.length && exception == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    bInterrupted = true;
+                }
+            }
+            checkException();
+        }
+        if (bInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hand the current buffer, if any, to the worker thread.
+     */
+    protected void publish() {
+        if (tailTarget != null) {
+            synchronized (this) {
+                data[tail] = buffers[tail];
+                offsets[tail] = 0;
+                lengths[tail] = tailLength;
+                targets[tail] = tailTarget;
+                tail = (tail + 1) % buffers.length;
+                ++count;
+                ++published;
+                notifyAll();
+            }
+            tailTarget = null;
+            tailLength = 0;
+        }
+    }
+
+    /**
+     * Wait until all the queued data has been digested.
+     */
+    public void await() {
+        publish();
+        boolean bInterrupted = false;
+        synchronized (this) {
+            while (completed < published && exception == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    bInterrupted = true;
+                }
+            }
+            checkException();
+        }
+        if (bInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Rethrow an exception thrown by the worker thread.
+     */
+    protected void checkException() {
+        if (exception != null) {
+            throw new IllegalStateException("Exception in digest worker", exception);
+        }
+    }
+
+    @Override
+    public void run() {
+        int idx;
+        while (true) {
+            synchronized (this) {
+                while (count == 0 && !bClosed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only exit when closed.
+                    }
+                }
+                if (count == 0) {
+                    return;
+                }
+                idx = head;
+            }
+            try {
+                targets[idx].update(data[idx], offsets[idx], lengths[idx]);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    exception = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                data[idx] = null;
+                targets[idx] = null;
+                head = (head + 1) % buffers.length;
+                --count;
+                ++completed;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stop the worker thread once the queued data has been digested.
+     * Data queued afterwards is digested on the calling thread.
+     */
+    @Override
+    public void close() {
+        publish();
+        synchronized (this) {
+            bClosed = true;
+            notifyAll();
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Helpers used to parse fixed width UTC dates, like the ARC and WARC date
+ * formats, directly from characters or bytes to milliseconds since the
+ * epoch without going through <code>SimpleDateFormat</code>.
+ * Validation is as strict as a non-lenient <code>SimpleDateFormat</code>
+ * using the Gregorian calendar.
+ *
+ * @author nicl
+ */
+public class FixedWidthDateParser {
+
+    /** Cumulative number of days before each month in a non leap year. */
+    protected static final int[] DAYS_BEFORE_MONTH = {
+        0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334
+    };
+
+    /** Number of days in each month in a non leap year. */
+    protected static final int[] DAYS_IN_MONTH = {
+        31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31
+    };
+
+    /** Number of days from 0000-03-01 to 1970-01-01 in the proleptic
+     *  Gregorian calendar. */
+    protected static final long DAYS_0000_TO_1970 = 719468L;
+
+    /**
+     * Static class.
+     */
+    protected FixedWidthDateParser() {
+    }
+
+    /**
+     * Last date parsed, shared by all threads. Instances are immutable so
+     * they can be replaced without synchronization.
+     */
+    public static final class CachedDate {
+
+        /** Date string. */
+        public final String dateStr;
+
+        /** Milliseconds since the epoch. */
+        public final long millis;
+
+        /**
+         * Construct an immutable cached date.
+         * @param dateStr date string
+         * @param millis milliseconds since the epoch
+         */
+        public CachedDate(String dateStr, long millis) {
+            this.dateStr = dateStr;
+            this.millis = millis;
+        }
+
+        /**
+         * Compare the cached date string with a byte range.
+         * @param b byte array
+         * @param off offset of the range
+         * @param len length of the range
+         * @return true if the byte range is equal to the cached date string
+         */
+        public boolean equals(byte[] b, int off, int len) {
+            if (len != dateStr.length()) {
+                return false;
+            }
+            for (int i=0; i<len; ++i) {
+                if ((b[off + i] & 255) != dateStr.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Parse a fixed number of decimal digits.
+     * @param str string to parse
+     * @param off offset of the first digit
+     * @param len number of digits
+     * @return parsed value or -1 if one of the characters is not a digit
+     */
+    public static int parseDigits(String str, int off, int len) {
+        int value = 0;
+        int c;
+        while (len > 0) {
+            c = str.charAt(off++) - '0';
+            if (c < 0 || c > 9) {
+                return -1;
+            }
+            value = value * 10 + c;
+            --len;
+        }
+        return value;
+    }
+
+    /**
+     * Parse a fixed number of decimal digits.
+     * @param b byte array to parse
+     * @param off offset of the first digit
+     * @param len number of digits
+     * @return parsed value or -1 if one of the bytes is not a digit
+     */
+    public static int parseDigits(byte[] b, int off, int len) {
+        int value = 0;
+        int c;
+        while (len > 0) {
+            c = b[off++] - '0';
+            if (c < 0 || c > 9) {
+                return -1;
+            }
+            value = value * 10 + c;
+            --len;
+        }
+        return value;
+    }
+
+    /**
+     * Returns true if the year is a leap year in the Gregorian calendar.
+     * @param year year
+     * @return true if the year is a leap year
+     */
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Validate the date fields and convert them to milliseconds since the
+     * epoch, UTC.
+     * @param year year, 1 or later
+     * @param month month, 1-12
+     * @param day day of month
+     * @param hour hour, 0-23
+     * @param minute minute, 0-59
+     * @param second second, 0-59
+     * @return milliseconds since the epoch or <code>Long.MIN_VALUE</code> if
+     * one of the fields is invalid
+     */
+    public static long toMillis(int year, int month, int day, int hour, int minute, int second) {
+        if (year < 1 || month < 1 || month > 12 || day < 1
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+        int daysInMonth = DAYS_IN_MONTH[month - 1];
+        if (month == 2 && isLeapYear(year)) {
+            ++daysInMonth;
+        }
+        if (day > daysInMonth) {
+            return Long.MIN_VALUE;
+        }
+        // Days since 0000-03-01, years start in March so leap days come last.
+        int y = (month > 2) ? year : year - 1;
+        long days = 365L * y + y / 4 - y / 100 + y / 400
+                + ((month > 2) ? DAYS_BEFORE_MONTH[month - 1] - 59 : DAYS_BEFORE_MONTH[month - 1] + 306)
+                + day - 1;
+        days -= DAYS_0000_TO_1970;
+        return ((days * 24L + hour) * 60L + minute) * 60000L + second * 1000L;
+    }
+
+}
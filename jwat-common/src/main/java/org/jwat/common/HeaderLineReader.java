@@ -18,7 +18,6 @@
 package org.jwat.common;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PushbackInputStream;
 
 /**
@@ -32,6 +31,9 @@ import java.io.PushbackInputStream;
  * After calling the readLine method additional information is available from
  * public fields on the reader.
  *
+ * The readLineSlice method reads into a reusable <code>HeaderLineSlice</code>
+ * and only creates strings when they are requested from the slice.
+ *
  * @author nicl
  */
 public class HeaderLineReader {
@@ -100,9 +102,6 @@ public class HeaderLineReader {
     /** UTF-8 encoding identifier. */
     public static final int ENC_UTF8 = 3;
 
-    /** Reusable UTF-8 validation object instance. */
-    protected final UTF8 utf8 = new UTF8();
-
     /*
      * EOL.
      */
@@ -129,12 +128,8 @@ public class HeaderLineReader {
     /** Support encoded words. */
     public boolean bEncodedWords;
 
-    /** Reusable <code>StringBuffer</code> for lines. */
-    protected final StringBuffer lineSb = new StringBuffer();
-    /** Reusable <code>StringBuffer</code> for name/value strings. */
-    protected final StringBuffer nvSb = new StringBuffer();
-    /** Stream used to record the raw characters read by the parser. */
-    protected ByteArrayOutputStreamWithUnread bytesOut = new ByteArrayOutputStreamWithUnread();
+    /** Reusable slice with the result of the last line read. */
+    protected final HeaderLineSlice slice = new HeaderLineSlice();
 
     /*
      * Error reporting.
@@ -175,6 +170,27 @@ public class HeaderLineReader {
     /** Used by decode method to indicated valid or non valid character. */
     protected boolean bValidChar;
 
+    /** Maximum number of bytes to read from the stream at a time. */
+    protected int readAhead;
+
+    /** Maximum number of bytes to read for the current line. */
+    protected long maxLength;
+
+    /** Position of the next unprocessed byte in the raw buffer. */
+    protected int rawPos;
+
+    /** Number of bytes read into the raw buffer. */
+    protected int rawLimit;
+
+    /** Number of characters in the line buffer. */
+    protected int lineLen;
+
+    /** Number of characters in the name/value buffer. */
+    protected int nvLen;
+
+    /** Offset of the value characters in the name/value buffer. */
+    protected int valueStart;
+
     /*
      * Exposed state.
      */
@@ -239,43 +255,106 @@ public class HeaderLineReader {
      * @throws IOException if an I/O error occurs in the underlying input stream
      */
     public HeaderLine readLine(PushbackInputStream in) throws IOException {
-        HeaderLine headerLine = new HeaderLine();
+        readSlice(in, 1, Long.MAX_VALUE);
+        return slice.toHeaderLine();
+    }
+
+    /**
+     * Reads a header/line according to the configuration into the reusable
+     * slice of this reader. The stream is read one byte at a time, so no
+     * bytes past the end of the line are consumed.
+     * After calling the readLineSlice method additional information is
+     * available from public fields on the reader.
+     * @param in <code>InputStream</code> with characters
+     * @return the reusable slice of this reader
+     * @throws IOException if an I/O error occurs in the underlying input stream
+     */
+    public HeaderLineSlice readLineSlice(PushbackInputStream in) throws IOException {
+        readSlice(in, 1, Long.MAX_VALUE);
+        return slice;
+    }
+
+    /**
+     * Reads a header/line according to the configuration into the reusable
+     * slice of this reader. The stream is read in chunks of up to the size of
+     * its push back buffer and any bytes read past the end of the line are
+     * pushed back into the stream.
+     * After calling the readLineSlice method additional information is
+     * available from public fields on the reader.
+     * @param in <code>InputStream</code> with characters
+     * @return the reusable slice of this reader
+     * @throws IOException if an I/O error occurs in the underlying input stream
+     */
+    public HeaderLineSlice readLineSlice(ByteCountingPushBackInputStream in) throws IOException {
+        return readLineSlice(in, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads a header/line according to the configuration into the reusable
+     * slice of this reader, reading at most the specified number of bytes.
+     * Reaching the limit is treated as EOF. The stream is read in chunks of
+     * up to the size of its push back buffer and any bytes read past the end
+     * of the line are pushed back into the stream.
+     * After calling the readLineSlice method additional information is
+     * available from public fields on the reader.
+     * @param in <code>InputStream</code> with characters
+     * @param maxLength maximum number of bytes to read
+     * @return the reusable slice of this reader
+     * @throws IOException if an I/O error occurs in the underlying input stream
+     */
+    public HeaderLineSlice readLineSlice(ByteCountingPushBackInputStream in, long maxLength) throws IOException {
+        readSlice(in, in.getPushbackSize(), maxLength);
+        return slice;
+    }
+
+    /**
+     * Reads a header/line according to the configuration into the reusable
+     * slice of this reader.
+     * @param in <code>InputStream</code> with characters
+     * @param readAhead maximum number of bytes to read from the stream at a time
+     * @param maxLength maximum number of bytes to read
+     * @throws IOException if an I/O error occurs in the underlying input stream
+     */
+    protected void readSlice(PushbackInputStream in, int readAhead, long maxLength) throws IOException {
         int state;
         if (!bNameValue) {
             state = S_LINE;
         } else {
             state = S_NAME;
         }
-        lineSb.setLength(0);
-        nvSb.setLength(0);
-        bytesOut = new ByteArrayOutputStreamWithUnread();
+        this.readAhead = Math.max(readAhead, 1);
+        this.maxLength = maxLength;
+        rawPos = 0;
+        rawLimit = 0;
+        lineLen = 0;
+        nvLen = 0;
+        slice.type = 0;
+        slice.lineLength = 0;
+        slice.nameLength = 0;
+        slice.valueOffset = 0;
+        slice.valueLength = 0;
         bfErrors = 0;
         int c;
         bCr = false;
         boolean bLoop = true;
         while (bLoop) {
-            c = in.read();
-            if (c != -1) {
-                bytesOut.write(c);
-            }
+            c = readByte(in);
             switch (state) {
             case S_LINE:
                 switch (c) {
                 case -1:
                     // EOF.
                     bfErrors |= E_BIT_EOF;
-                    headerLine.type = HeaderLine.HLT_LINE;
-                    headerLine.line = lineSb.toString();
-                    lineSb.setLength(0);
+                    slice.type = HeaderLine.HLT_LINE;
+                    slice.lineLength = lineLen;
                     bLoop = false;
                     break;
                 case '\r':
                     bCr = true;
                     break;
                 case '\n':
-                    headerLine.type = HeaderLine.HLT_LINE;
-                    headerLine.line = lineSb.toString();
-                    lineSb.setLength(0);
+                    slice.type = HeaderLine.HLT_LINE;
+                    slice.lineLength = lineLen;
                     // Check EOL.
                     check_eol();
                     bLoop = false;
@@ -291,9 +370,8 @@ public class HeaderLineReader {
                     if (c == -1) {
                         // EOF.
                         bfErrors |= E_BIT_EOF;
-                        headerLine.type = HeaderLine.HLT_LINE;
-                        headerLine.line = lineSb.toString();
-                        lineSb.setLength(0);
+                        slice.type = HeaderLine.HLT_LINE;
+                        slice.lineLength = lineLen;
                         bLoop = false;
                     } else {
                         if (bValidChar && encoding != ENC_RAW) {
@@ -304,7 +382,7 @@ public class HeaderLineReader {
                             }
                         }
                         if (bValidChar) {
-                            lineSb.append((char) c);
+                            appendLine((char) c);
                         }
                     }
                     break;
@@ -315,29 +393,24 @@ public class HeaderLineReader {
                 case -1:
                     // EOF.
                     bfErrors |= E_BIT_EOF;
-                    headerLine.type = HeaderLine.HLT_LINE;
-                    headerLine.line = lineSb.toString();
-                    lineSb.setLength(0);
-                    nvSb.setLength(0);
+                    slice.type = HeaderLine.HLT_LINE;
+                    slice.lineLength = lineLen;
                     bLoop = false;
                     break;
                 case '\r':
                     bCr = true;
                     break;
                 case '\n':
-                    headerLine.type = HeaderLine.HLT_LINE;
-                    headerLine.line = lineSb.toString();
-                    lineSb.setLength(0);
-                    nvSb.setLength(0);
+                    slice.type = HeaderLine.HLT_LINE;
+                    slice.lineLength = lineLen;
                     // Check EOL.
                     check_eol();
                     bLoop = false;
                     break;
                 case ':':
-                    headerLine.type = HeaderLine.HLT_HEADERLINE;
-                    headerLine.name = nvSb.toString();
-                    lineSb.setLength(0);
-                    nvSb.setLength(0);
+                    slice.type = HeaderLine.HLT_HEADERLINE;
+                    slice.nameLength = nvLen;
+                    valueStart = nvLen;
                     if (bCr) {
                         // Misplaced CR.
                         bfErrors |= E_BIT_MISPLACED_CR;
@@ -356,10 +429,8 @@ public class HeaderLineReader {
                     if (c == -1) {
                         // EOF.
                         bfErrors |= E_BIT_EOF;
-                        headerLine.type = HeaderLine.HLT_LINE;
-                        headerLine.line = lineSb.toString();
-                        lineSb.setLength(0);
-                        nvSb.setLength(0);
+                        slice.type = HeaderLine.HLT_LINE;
+                        slice.lineLength = lineLen;
                         bLoop = false;
                     } else {
                         if (bValidChar && encoding != ENC_RAW) {
@@ -370,7 +441,7 @@ public class HeaderLineReader {
                             }
                         }
                         if (bValidChar) {
-                            lineSb.append((char) c);
+                            appendLine((char) c);
                             if (c < 256 && ((charCharacteristicsTab[c] & CC_SEPARATOR_WS) == CC_SEPARATOR_WS)) {
                                 bValidChar = false;
                                 // Invalid separator in name
@@ -378,7 +449,7 @@ public class HeaderLineReader {
                             }
                         }
                         if (bValidChar) {
-                            nvSb.append((char) c);
+                            appendNv((char) c);
                         }
                     }
                     break;
@@ -389,8 +460,7 @@ public class HeaderLineReader {
                 case -1:
                     // EOF.
                     bfErrors |= E_BIT_EOF;
-                    headerLine.value = trim(nvSb);
-                    nvSb.setLength(0);
+                    trimValue();
                     bLoop = false;
                     break;
                 case '\r':
@@ -402,8 +472,7 @@ public class HeaderLineReader {
                     if (bLWS) {
                         state = S_LWS;
                     } else {
-                        headerLine.value = trim(nvSb);
-                        nvSb.setLength(0);
+                        trimValue();
                         bLoop = false;
                     }
                     break;
@@ -418,8 +487,7 @@ public class HeaderLineReader {
                     if (c == -1) {
                         // EOF.
                         bfErrors |= E_BIT_EOF;
-                        headerLine.value = trim(nvSb);
-                        nvSb.setLength(0);
+                        trimValue();
                         bLoop = false;
                     } else {
                         if (bValidChar && encoding != ENC_RAW) {
@@ -432,7 +500,7 @@ public class HeaderLineReader {
                         if (bValidChar) {
                             switch (c) {
                             case '\"':
-                                nvSb.append((char)c);
+                                appendNv((char)c);
                                 if (bQuotedText) {
                                     state = S_QUOTED_TEXT;
                                 }
@@ -447,7 +515,7 @@ public class HeaderLineReader {
                                 break;
 */
                             default:
-                                nvSb.append((char)c);
+                                appendNv((char)c);
                                 break;
                             }
                         }
@@ -460,20 +528,18 @@ public class HeaderLineReader {
                 case -1:
                     // EOF.
                     //bfErrors |= E_BIT_EOF;
-                    headerLine.value = trim(nvSb);
-                    nvSb.setLength(0);
+                    trimValue();
                     bLoop = false;
                     break;
                 case ' ':
                 case '\t':
-                    nvSb.append(" ");
+                    appendNv(' ');
                     state = S_VALUE;
                     break;
                 default:
-                    in.unread(c);
-                    bytesOut.unread(c);
-                    headerLine.value = trim(nvSb);
-                    nvSb.setLength(0);
+                    // Leave the character for the next line.
+                    --rawPos;
+                    trimValue();
                     bLoop = false;
                     break;
                 }
@@ -483,8 +549,7 @@ public class HeaderLineReader {
                 case -1:
                     // EOF.
                     bfErrors |= E_BIT_MISSING_QUOTE | E_BIT_EOF;
-                    headerLine.value = trim(nvSb);
-                    nvSb.setLength(0);
+                    trimValue();
                     bLoop = false;
                     break;
                 case '\"':
@@ -493,7 +558,7 @@ public class HeaderLineReader {
                         bfErrors |= E_BIT_MISPLACED_CR;
                         bCr = false;
                     }
-                    nvSb.append((char)c);
+                    appendNv((char)c);
                     state = S_VALUE;
                     break;
                 case '\\':
@@ -513,8 +578,7 @@ public class HeaderLineReader {
                     if (bLWS) {
                         state = S_QUOTED_LWS;
                     } else {
-                        headerLine.value = trim(nvSb);
-                        nvSb.setLength(0);
+                        trimValue();
                         bLoop = false;
                     }
                     break;
@@ -529,8 +593,7 @@ public class HeaderLineReader {
                     if (c == -1) {
                         // EOF.
                         bfErrors |= E_BIT_MISSING_QUOTE | E_BIT_EOF;
-                        headerLine.value = trim(nvSb);
-                        nvSb.setLength(0);
+                        trimValue();
                         bLoop = false;
                     } else {
                         if (bValidChar && encoding != ENC_RAW) {
@@ -541,7 +604,7 @@ public class HeaderLineReader {
                             }
                         }
                         if (bValidChar) {
-                            nvSb.append((char)c);
+                            appendNv((char)c);
                         }
                     }
                     break;
@@ -550,11 +613,10 @@ public class HeaderLineReader {
             case S_QUOTED_PAIR:
                 switch (c) {
                 case -1:
-                    nvSb.append('\\');
+                    appendNv('\\');
                     // EOF.
                     bfErrors |= E_BIT_MISSING_QUOTED_PAIR_CHAR | E_BIT_MISSING_QUOTE | E_BIT_EOF;
-                    headerLine.value = trim(nvSb);
-                    nvSb.setLength(0);
+                    trimValue();
                     bLoop = false;
                     break;
                 default:
@@ -563,12 +625,11 @@ public class HeaderLineReader {
                     if (c == -1) {
                         // EOF.
                         bfErrors |= E_BIT_MISSING_QUOTED_PAIR_CHAR | E_BIT_MISSING_QUOTE | E_BIT_EOF;
-                        headerLine.value = trim(nvSb);
-                        nvSb.setLength(0);
+                        trimValue();
                         bLoop = false;
                     } else {
-                        nvSb.append('\\');
-                        nvSb.append((char)c);
+                        appendNv('\\');
+                        appendNv((char)c);
                         if (!bValidChar) {
                             bfErrors |= E_BIT_INVALID_QUOTED_PAIR_CHAR;
                         }
@@ -582,21 +643,19 @@ public class HeaderLineReader {
                 case -1:
                     // EOF.
                     bfErrors |= E_BIT_MISSING_QUOTE;
-                    headerLine.value = trim(nvSb);
-                    nvSb.setLength(0);
+                    trimValue();
                     bLoop = false;
                     break;
                 case ' ':
                 case '\t':
-                    nvSb.append(" ");
+                    appendNv(' ');
                     state = S_QUOTED_TEXT;
                     break;
                 default:
-                    in.unread(c);
-                    bytesOut.unread(c);
+                    // Leave the character for the next line.
+                    --rawPos;
                     bfErrors |= E_BIT_MISSING_QUOTE;
-                    headerLine.value = trim(nvSb);
-                    nvSb.setLength(0);
+                    trimValue();
                     bLoop = false;
                     break;
                 }
@@ -647,10 +706,98 @@ public class HeaderLineReader {
 */
             }
         }
-        headerLine.raw = bytesOut.toByteArray();
-        headerLine.bfErrors = bfErrors;
-        bEof = (headerLine.raw.length == 0);
-        return headerLine;
+        if (rawPos < rawLimit) {
+            // Push back the bytes read past the end of the line.
+            in.unread(slice.raw, rawPos, rawLimit - rawPos);
+        }
+        slice.rawLength = rawPos;
+        slice.bfErrors = bfErrors;
+        bEof = (rawPos == 0);
+    }
+
+    /**
+     * Read the next byte, refilling the raw buffer from the stream if needed.
+     * @param in <code>InputStream</code> with characters
+     * @return next byte or -1 on EOF
+     * @throws IOException if an I/O error occurs in the underlying input stream
+     */
+    protected int readByte(PushbackInputStream in) throws IOException {
+        if (rawPos < rawLimit) {
+            return slice.raw[rawPos++] & 255;
+        }
+        long remaining = maxLength - rawLimit;
+        if (remaining <= 0) {
+            return -1;
+        }
+        int len = (int)Math.min(readAhead, remaining);
+        byte[] raw = slice.raw;
+        if (rawLimit + len > raw.length) {
+            raw = new byte[Math.max(raw.length * 2, rawLimit + len)];
+            System.arraycopy(slice.raw, 0, raw, 0, rawLimit);
+            slice.raw = raw;
+        }
+        int read;
+        if (len == 1) {
+            int c = in.read();
+            if (c == -1) {
+                return -1;
+            }
+            raw[rawLimit] = (byte)c;
+            read = 1;
+        } else {
+            read = in.read(raw, rawLimit, len);
+            if (read <= 0) {
+                return -1;
+            }
+        }
+        rawLimit += read;
+        return raw[rawPos++] & 255;
+    }
+
+    /**
+     * Append a character to the line buffer of the slice.
+     * @param c character to append
+     */
+    protected void appendLine(char c) {
+        char[] line = slice.line;
+        if (lineLen == line.length) {
+            line = new char[line.length * 2];
+            System.arraycopy(slice.line, 0, line, 0, lineLen);
+            slice.line = line;
+        }
+        line[lineLen++] = c;
+    }
+
+    /**
+     * Append a character to the name/value buffer of the slice.
+     * @param c character to append
+     */
+    protected void appendNv(char c) {
+        char[] nv = slice.nv;
+        if (nvLen == nv.length) {
+            nv = new char[nv.length * 2];
+            System.arraycopy(slice.nv, 0, nv, 0, nvLen);
+            slice.nv = nv;
+        }
+        nv[nvLen++] = c;
+    }
+
+    /**
+     * Set the value of the slice to the value characters read with spaces
+     * trimmed from the beginning and end.
+     */
+    protected void trimValue() {
+        char[] nv = slice.nv;
+        int sIdx = valueStart;
+        int eIdx = nvLen;
+        while (sIdx < eIdx && nv[sIdx] == ' ') {
+            ++sIdx;
+        }
+        while (eIdx > sIdx && nv[eIdx - 1] == ' ') {
+            --eIdx;
+        }
+        slice.valueOffset = sIdx;
+        slice.valueLength = eIdx - sIdx;
     }
 
     /**
@@ -660,12 +807,10 @@ public class HeaderLineReader {
      * @return decoded character
      * @throws IOException if an I/O error occurs in the underlying input stream
      */
-    protected int decode(int c, InputStream in) throws IOException {
+    protected int decode(int c, PushbackInputStream in) throws IOException {
         switch (encoding) {
         case ENC_UTF8:
-            c = utf8.readUtf8(c, in);
-            bytesOut.write(utf8.chars_read);
-            bValidChar = utf8.bValidChar;
+            c = readUtf8(c, in);
             if (c != -1) {
                 if (!bValidChar) {
                     // Invalid UTF-8 char
@@ -691,6 +836,85 @@ public class HeaderLineReader {
         return c;
     }
 
+    /**
+     * Decode an UTF-8 character reading the remaining octets from the raw
+     * buffer, same as <code>UTF8.readUtf8</code> without the allocations.
+     * @param c first octet of the encoded character
+     * @param in <code>InputStream</code> with possible extra encoded characters.
+     * @return decoded character or -1 on EOF
+     * @throws IOException if an I/O error occurs in the underlying input stream
+     */
+    protected int readUtf8(int c, PushbackInputStream in) throws IOException {
+        int utf8_c;
+        int utf8_read;
+        int utf8_octets;
+        if ((c & 0x80) == 0x00) {
+            // US-ASCII/UTF-8: 0000 0000-0000 007F | 0xxxxxxx
+            bValidChar = true;
+            return c;
+        }
+        utf8_read = 1;
+        bValidChar = true;
+        if ((c & 0xE0) == 0xC0) {
+            // UTF-8: 0000 0080-0000 07FF | 110xxxxx 10xxxxxx
+            utf8_c = c & 0x1F;
+            utf8_octets = 2;
+        } else if ((c & 0xF0) == 0xE0) {
+            // UTF-8: 0000 0800-0000 FFFF | 1110xxxx 10xxxxxx 10xxxxxx
+            utf8_c = c & 0x0F;
+            utf8_octets = 3;
+        } else if ((c & 0xF8) == 0xF0) {
+            // UTF-8: 0001 0000-0010 FFFF | 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+            utf8_c = c & 0x07;
+            utf8_octets = 4;
+        } else {
+            // Invalid UTF-8 octet.
+            utf8_c = 0;
+            utf8_read = 0;
+            utf8_octets = 0;
+            bValidChar = false;
+        }
+        // Read the remaining octets.
+        while (bValidChar && utf8_read < utf8_octets) {
+            c = readByte(in);
+            if (c == -1) {
+                // EOF.
+                bValidChar = false;
+                return -1;
+            } else if ((c & 0xC0) == 0x80) {
+                utf8_c = (utf8_c << 6) | (c & 0x3F);
+                ++utf8_read;
+            } else {
+                // Invalid UTF-8 octet.
+                bValidChar = false;
+            }
+        }
+        // Correctly encoded.
+        if (utf8_read == utf8_octets) {
+            switch (utf8_octets) {
+            case 2:
+                if (utf8_c < 0x00000080) {
+                    // Incorrectly encoded value.
+                    bValidChar = false;
+                }
+                break;
+            case 3:
+                if (utf8_c < 0x00000800) {
+                    // Incorrectly encoded value.
+                    bValidChar = false;
+                }
+                break;
+            case 4:
+                if (utf8_c < 0x00010000) {
+                    // Incorrectly encoded value.
+                    bValidChar = false;
+                }
+                break;
+            }
+        }
+        return utf8_c;
+    }
+
     /**
      * Check and report whether the line ended as expected.
      */
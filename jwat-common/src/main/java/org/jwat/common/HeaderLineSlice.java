@@ -0,0 +1,181 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Reusable result of reading a line with <code>HeaderLineReader</code>.
+ * The raw bytes and the decoded line, name and value characters are kept
+ * in buffers owned by the slice and identified by offsets and lengths.
+ * Strings are only created when requested, and the content is overwritten
+ * by the next line read with the same reader.
+ *
+ * @author nicl
+ */
+public class HeaderLineSlice {
+
+    /** Initial size of the slice buffers. */
+    public static final int INITIAL_SIZE = 256;
+
+    /** Type of the parsed line. */
+    public byte type = 0;
+
+    /** Bit field of errors encountered while attempting to read a line. */
+    public int bfErrors;
+
+    /** Buffer with the original byte stream. */
+    public byte[] raw = new byte[INITIAL_SIZE];
+
+    /** Number of raw bytes in the line. */
+    public int rawLength;
+
+    /** Buffer with the decoded characters of a normal line. */
+    public char[] line = new char[INITIAL_SIZE];
+
+    /** Number of decoded characters in a normal line. */
+    public int lineLength;
+
+    /** Buffer with the decoded characters of a header name and value. */
+    public char[] nv = new char[INITIAL_SIZE];
+
+    /** Number of header name characters, starting at index 0. */
+    public int nameLength;
+
+    /** Offset of the trimmed header value characters. */
+    public int valueOffset;
+
+    /** Number of trimmed header value characters. */
+    public int valueLength;
+
+    /**
+     * Returns the header name or null if this is not a header line.
+     * @return header name or null
+     */
+    public String getName() {
+        if (type != HeaderLine.HLT_HEADERLINE) {
+            return null;
+        }
+        return new String(nv, 0, nameLength);
+    }
+
+    /**
+     * Returns the header name or null if this is not a header line.
+     * The known name is returned instead of a new string if it is equal to
+     * the header name, case included.
+     * @param knownName known header name or null
+     * @return header name or null
+     */
+    public String getName(String knownName) {
+        if (type != HeaderLine.HLT_HEADERLINE) {
+            return null;
+        }
+        if (knownName != null && knownName.length() == nameLength) {
+            int i = 0;
+            while (i < nameLength && nv[i] == knownName.charAt(i)) {
+                ++i;
+            }
+            if (i == nameLength) {
+                return knownName;
+            }
+        }
+        return new String(nv, 0, nameLength);
+    }
+
+    /**
+     * Returns the header value or null if this is not a header line.
+     * @return header value or null
+     */
+    public String getValue() {
+        if (type != HeaderLine.HLT_HEADERLINE) {
+            return null;
+        }
+        return new String(nv, valueOffset, valueLength);
+    }
+
+    /**
+     * Returns the normal line or null if this is a header line.
+     * @return normal line or null
+     */
+    public String getLine() {
+        if (type != HeaderLine.HLT_LINE) {
+            return null;
+        }
+        return new String(line, 0, lineLength);
+    }
+
+    /**
+     * Compare the header name with a string, ignoring case, without
+     * creating a string for the header name.
+     * @param name name to compare with
+     * @return a boolean indicating whether this is a header line with the name
+     */
+    public boolean isName(String name) {
+        if (type != HeaderLine.HLT_HEADERLINE || name == null || name.length() != nameLength) {
+            return false;
+        }
+        char c1;
+        char c2;
+        for (int i=0; i<nameLength; ++i) {
+            c1 = nv[i];
+            c2 = name.charAt(i);
+            if (c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2)
+                    && Character.toLowerCase(c1) != Character.toLowerCase(c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a copy of the slice as a <code>HeaderLine</code> object.
+     * @return a copy of the slice as a <code>HeaderLine</code> object
+     */
+    public HeaderLine toHeaderLine() {
+        HeaderLine headerLine = new HeaderLine();
+        headerLine.type = type;
+        if (type == HeaderLine.HLT_HEADERLINE) {
+            headerLine.name = new String(nv, 0, nameLength);
+            headerLine.value = new String(nv, valueOffset, valueLength);
+        } else {
+            headerLine.line = new String(line, 0, lineLength);
+        }
+        headerLine.raw = new byte[rawLength];
+        System.arraycopy(raw, 0, headerLine.raw, 0, rawLength);
+        headerLine.bfErrors = bfErrors;
+        return headerLine;
+    }
+
+    /**
+     * Returns a header line as a <code>HeaderLine</code> object without a
+     * copy of the raw bytes, for callers which keep the raw header bytes
+     * themselves. The known name is used if it is equal to the header name.
+     * @param knownName known header name or null
+     * @return header line object or null if this is not a header line
+     */
+    public HeaderLine toHeaderLine(String knownName) {
+        if (type != HeaderLine.HLT_HEADERLINE) {
+            return null;
+        }
+        HeaderLine headerLine = new HeaderLine();
+        headerLine.type = type;
+        headerLine.name = getName(knownName);
+        headerLine.value = new String(nv, valueOffset, valueLength);
+        headerLine.bfErrors = bfErrors;
+        return headerLine;
+    }
+
+}
@@ -50,6 +50,20 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
     /** Content-type header name. */
     protected static final String CONTENT_TYPE = "Content-Type".toUpperCase();
 
+    /** Common header names, looked up to avoid lower casing their map keys. */
+    protected static final String[] HEADER_NAMES = {
+        "Content-Type", "Content-Length", "Content-Encoding", "Content-Language",
+        "Content-Location", "Content-Range", "Content-Disposition", "Transfer-Encoding",
+        "Date", "Server", "Last-Modified", "ETag", "Expires", "Cache-Control", "Pragma",
+        "Connection", "Keep-Alive", "Location", "Set-Cookie", "Cookie", "Vary", "Age",
+        "Accept-Ranges", "Host", "User-Agent", "Accept", "Accept-Encoding",
+        "Accept-Language", "Accept-Charset", "Referer", "If-Modified-Since",
+        "If-None-Match", "Via", "X-Powered-By"
+    };
+
+    /** Common header name lookup table, mapping names to indexes in <code>HEADER_NAMES</code>. */
+    protected static final CaseInsensitiveIndex headerNameIdxTable = CaseInsensitiveIndex.fromIdxStrings(HEADER_NAMES);
+
     /** Header type of this object. */
     public int headerType;
 
@@ -133,6 +147,45 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
      */
     public static HttpHeader processPayload(int headerType, ByteCountingPushBackInputStream pbin,
                     long length, String digestAlgorithm) throws IOException {
+        String[] digestAlgorithms = null;
+        if (digestAlgorithm != null) {
+            digestAlgorithms = new String[] {digestAlgorithm};
+        }
+        return processPayloadDigests(headerType, pbin, length, digestAlgorithms);
+    }
+
+    /**
+     * Reads the HTTP protocol response or request and returns it as an object.
+     * All the digest algorithms are computed in the same pass over the
+     * payload.
+     * @param headerType HTTP header type to parse, request or response
+     * @param pbin payload input stream
+     * @param length payload length
+     * @param digestAlgorithms digest algorithms to use on payload or null if
+     * we don't want a digest of the payload
+     * @return <code>HttpResponse</code> based on the http headers
+     * @throws IOException if an error occur while processing http header.
+     */
+    public static HttpHeader processPayloadDigests(int headerType, ByteCountingPushBackInputStream pbin,
+                    long length, String[] digestAlgorithms) throws IOException {
+        return processPayloadDigests(headerType, pbin, length, digestAlgorithms, null);
+    }
+
+    /**
+     * Reads the HTTP protocol response or request and returns it as an object.
+     * All the digest algorithms are computed in the same pass over the
+     * payload, on the digest worker thread if one is supplied.
+     * @param headerType HTTP header type to parse, request or response
+     * @param pbin payload input stream
+     * @param length payload length
+     * @param digestAlgorithms digest algorithms to use on payload or null if
+     * we don't want a digest of the payload
+     * @param digestWorker digest worker or null to digest on the reading thread
+     * @return <code>HttpResponse</code> based on the http headers
+     * @throws IOException if an error occur while processing http header.
+     */
+    public static HttpHeader processPayloadDigests(int headerType, ByteCountingPushBackInputStream pbin,
+                    long length, String[] digestAlgorithms, DigestWorker digestWorker) throws IOException {
         if (headerType != HT_RESPONSE && headerType != HT_REQUEST) {
             throw new IllegalArgumentException(
                     "Invalid 'headerType' argument: " + headerType);
@@ -149,7 +202,8 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
         hh.headerType = headerType;
         hh.in_pb = pbin;
         hh.totalLength = length;
-        hh.digestAlgorithm = digestAlgorithm;
+        hh.digestAlgorithms = digestAlgorithms;
+        hh.digestWorker = digestWorker;
         hh.diagnostics = new Diagnostics<Diagnosis>();
         hh.initProcess();
         return hh;
@@ -167,14 +221,14 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
         hlr.bQuotedText = false;
         hlr.bEncodedWords = false;
         boolean bValidHttpHeader = false;
-        HeaderLine line = hlr.readLine(pbin);
+        HeaderLineSlice line = hlr.readLineSlice(pbin);
         int bfErrors = 0;
-        if (!hlr.bEof && line.type == HeaderLine.HLT_LINE && line.line != null && line.line.length() > 0) {
+        if (!hlr.bEof && line.type == HeaderLine.HLT_LINE && line.lineLength > 0) {
             bfErrors = (line.bfErrors & ~HeaderLineReader.E_BIT_INVALID_SEPARATOR_CHAR);
             if (headerType == HT_RESPONSE) {
-                bValidHttpHeader = isHttpStatusLineValid(line.line);
+                bValidHttpHeader = isHttpStatusLineValid(line.getLine());
             } else if (headerType == HT_REQUEST) {
-                bValidHttpHeader = isHttpRequestLineValid(line.line);
+                bValidHttpHeader = isHttpRequestLineValid(line.getLine());
             } else {
                 throw new IllegalStateException("Invalid headerType!");
             }
@@ -183,30 +237,42 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
         hlr.bLWS = true;
         hlr.bQuotedText = true;
         hlr.bEncodedWords = true;
+        HeaderLine headerLine;
         HeaderLine tmpLine;
+        int idx;
+        String key;
         boolean bLoop = bValidHttpHeader;
         while (bLoop) {
-            line = hlr.readLine(pbin);
+            line = hlr.readLineSlice(pbin);
             bfErrors |= line.bfErrors;
             if (!hlr.bEof) {
                 switch (line.type) {
                 case HeaderLine.HLT_HEADERLINE:
-                    //System.out.println(line.name);
-                    //System.out.println(line.value);
-                    if (CONTENT_TYPE.equals(line.name.toUpperCase())) {
-                        contentType = line.value;
+                    //System.out.println(line.getName());
+                    //System.out.println(line.getValue());
+                    // The raw bytes are kept by the recording input stream.
+                    idx = headerNameIdxTable.get(line.nv, 0, line.nameLength);
+                    if (idx != -1) {
+                        headerLine = line.toHeaderLine(HEADER_NAMES[idx]);
+                        key = headerNameIdxTable.getKey(line.nv, 0, line.nameLength);
+                    } else {
+                        headerLine = line.toHeaderLine(null);
+                        key = headerLine.name.toLowerCase();
+                    }
+                    if (line.isName(CONTENT_TYPE)) {
+                        contentType = headerLine.value;
                     }
                     // A HeaderLine object contains a list of additional lines.
-                    tmpLine = headerMap.get(line.name.toLowerCase());
+                    tmpLine = headerMap.get(key);
                     if (tmpLine == null) {
-                        headerMap.put(line.name.toLowerCase(), line);
+                        headerMap.put(key, headerLine);
                     } else {
-                        tmpLine.lines.add(line);
+                        tmpLine.lines.add(headerLine);
                     }
-                    headerList.add(line);
+                    headerList.add(headerLine);
                     break;
                 case HeaderLine.HLT_LINE:
-                    if (line.line.length() == 0) {
+                    if (line.lineLength == 0) {
                         bLoop = false;
                     } else {
                         // Errors reported by bfErrors.
@@ -367,10 +433,21 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
         return Collections.unmodifiableList(headerList);
     }
 
+    /**
+     * Returns the lower case header map key of a header name. The shared
+     * key of a common header name is used to avoid lower casing it.
+     * @param name header name
+     * @return lower case header map key
+     */
+    protected static String headerKey(String name) {
+        String key = headerNameIdxTable.getKey(name);
+        return (key != null) ? key : name.toLowerCase();
+    }
+
     @Override
     public HeaderLine getHeader(String field) {
         if (field != null && field.length() > 0) {
-            return headerMap.get(field.toLowerCase());
+            return headerMap.get(headerKey(field));
         } else {
             return null;
         }
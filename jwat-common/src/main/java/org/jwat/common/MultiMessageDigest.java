@@ -0,0 +1,186 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * <code>MessageDigest</code> which updates several message digests with the
+ * same data, so more than one digest algorithm can be computed in a single
+ * pass over a record. <code>digest()</code> returns the digest of the first
+ * algorithm, the digests of all the algorithms are available through
+ * <code>getDigest(String)</code>.
+ *
+ * @author nicl
+ */
+public class MultiMessageDigest extends MessageDigest {
+
+    /** Digest algorithms. */
+    protected String[] algorithms;
+
+    /** Message digests, one for each algorithm. */
+    protected MessageDigest[] mds;
+
+    /** Completed digests or null. */
+    protected byte[][] digests;
+
+    /**
+     * Returns a message digest computing all the available digest algorithms
+     * in the supplied array. A plain <code>MessageDigest</code> is returned
+     * if only one of the algorithms is available.
+     * @param algorithms digest algorithms, duplicates and nulls are ignored
+     * @param available list the available digest algorithms are added to
+     * @return message digest or null if none of the algorithms are available
+     */
+    public static MessageDigest getInstance(String[] algorithms, List<String> available) {
+        if (algorithms == null) {
+            throw new IllegalArgumentException("algorithms is null!");
+        }
+        if (available == null) {
+            throw new IllegalArgumentException("available is null!");
+        }
+        MessageDigest[] mds = new MessageDigest[algorithms.length];
+        String[] names = new String[algorithms.length];
+        int count = 0;
+        String algorithm;
+        boolean bDuplicate;
+        for (int i=0; i<algorithms.length; ++i) {
+            algorithm = algorithms[i];
+            if (algorithm != null) {
+                bDuplicate = false;
+                for (int j=0; j<count && !bDuplicate; ++j) {
+                    bDuplicate = names[j].equalsIgnoreCase(algorithm);
+                }
+                if (!bDuplicate) {
+                    try {
+                        mds[count] = MessageDigest.getInstance(algorithm);
+                        names[count++] = algorithm;
+                        available.add(algorithm);
+                    } catch (NoSuchAlgorithmException e) {
+                    }
+                }
+            }
+        }
+        switch (count) {
+        case 0:
+            return null;
+        case 1:
+            return mds[0];
+        default:
+            MessageDigest[] tmpMds = new MessageDigest[count];
+            String[] tmpNames = new String[count];
+            System.arraycopy(mds, 0, tmpMds, 0, count);
+            System.arraycopy(names, 0, tmpNames, 0, count);
+            return new MultiMessageDigest(tmpNames, tmpMds);
+        }
+    }
+
+    /**
+     * Construct a message digest which updates all the supplied message
+     * digests.
+     * @param algorithms digest algorithms
+     * @param mds message digests, one for each algorithm
+     */
+    public MultiMessageDigest(String[] algorithms, MessageDigest[] mds) {
+        super(algorithms[0]);
+        if (algorithms.length != mds.length) {
+            throw new IllegalArgumentException("algorithms.length != mds.length");
+        }
+        this.algorithms = algorithms;
+        this.mds = mds;
+    }
+
+    /**
+     * Returns the digest algorithms computed by this message digest.
+     * @return digest algorithms computed by this message digest
+     */
+    public String[] getAlgorithms() {
+        return algorithms.clone();
+    }
+
+    /**
+     * Returns the digest computed by one of the algorithms. The digests of
+     * all the algorithms are completed the first time this method or
+     * <code>digest()</code> is called.
+     * @param algorithm digest algorithm
+     * @return digest bytes or null if the algorithm is not computed
+     */
+    public byte[] getDigest(String algorithm) {
+        if (digests == null) {
+            digest();
+        }
+        for (int i=0; i<algorithms.length; ++i) {
+            if (algorithms[i].equalsIgnoreCase(algorithm)) {
+                return digests[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        digests = null;
+        for (int i=0; i<mds.length; ++i) {
+            mds[i].update(input);
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        digests = null;
+        for (int i=0; i<mds.length; ++i) {
+            mds[i].update(input, offset, len);
+        }
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        digests = null;
+        int position = input.position();
+        for (int i=0; i<mds.length; ++i) {
+            input.position(position);
+            mds[i].update(input);
+        }
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        digests = new byte[mds.length][];
+        for (int i=0; i<mds.length; ++i) {
+            digests[i] = mds[i].digest();
+        }
+        return digests[0];
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return mds[0].getDigestLength();
+    }
+
+    @Override
+    protected void engineReset() {
+        digests = null;
+        for (int i=0; i<mds.length; ++i) {
+            mds[i].reset();
+        }
+    }
+
+}
@@ -17,13 +17,13 @@
  */
 package org.jwat.common;
 
-import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class makes the archived payload of an ARC/WARC record accessible
@@ -53,14 +53,21 @@ public class Payload implements Closeable {
     /** Digest bytes. */
     protected byte[] digest;
 
+    /** Digest algorithms computed by the message digest object. */
+    protected List<String> digestAlgorithms = new ArrayList<String>();
+
+    /** Asynchronous wrapper of the message digest or null. */
+    protected AsyncMessageDigest md_async;
+
     /** Automatic digesting of payload input stream. */
     protected DigestInputStream in_digest;
 
     /** Boolean indicating no such algorithm exception under initialization. */
     protected boolean bNoSuchAlgorithmException;
 
-    /** Payload content. */
-    protected BufferedInputStream in_buffered;
+    /** Window on the buffer of the record stream, used instead of the
+     * length limiting, digest and pushback streams when possible. */
+    protected BufferedWindowInputStream in_window;
 
     /** Pushback input stream exposed to the outside, usable by payload processors. */
     protected ByteCountingPushBackInputStream in_pb_exposed;
@@ -74,6 +81,9 @@ public class Payload implements Closeable {
     /** Handler called when this payloads stream has been fully consumed. */
     protected PayloadOnClosedHandler onClosedHandler;
 
+    /** Handler called to process a deferred payload header, if any. */
+    protected PayloadOnHeaderRequestedHandler onHeaderRequestedHandler;
+
     /**
      * Non public constructor.
      */
@@ -91,6 +101,42 @@ public class Payload implements Closeable {
      */
     public static Payload processPayload(InputStream in, long length,
             int pushback_size, String digestAlgorithm) throws IOException {
+        String[] digestAlgorithms = null;
+        if (digestAlgorithm != null) {
+            digestAlgorithms = new String[] {digestAlgorithm};
+        }
+        return processPayloadDigests(in, length, pushback_size, digestAlgorithms);
+    }
+
+    /**
+     * Creates new <code>ArcPayload</code> instance. All the digest algorithms
+     * are computed in the same pass over the payload.
+     * @param in the input stream to parse.
+     * @param length payload length.
+     * @param pushback_size   pushback size
+     * @param digestAlgorithms digest algorithms to use on payload or null
+     * @return the payload
+     * @throws IOException if an I/O error occurs while initializing
+     */
+    public static Payload processPayloadDigests(InputStream in, long length,
+            int pushback_size, String[] digestAlgorithms) throws IOException {
+        return processPayloadDigests(in, length, pushback_size, digestAlgorithms, null);
+    }
+
+    /**
+     * Creates new <code>ArcPayload</code> instance. All the digest algorithms
+     * are computed in the same pass over the payload. If a digest worker is
+     * supplied the digests are computed on the worker thread.
+     * @param in the input stream to parse.
+     * @param length payload length.
+     * @param pushback_size   pushback size
+     * @param digestAlgorithms digest algorithms to use on payload or null
+     * @param digestWorker digest worker or null to digest on the reading thread
+     * @return the payload
+     * @throws IOException if an I/O error occurs while initializing
+     */
+    public static Payload processPayloadDigests(InputStream in, long length,
+            int pushback_size, String[] digestAlgorithms, DigestWorker digestWorker) throws IOException {
         if (in == null) {
             throw new IllegalArgumentException(
                     "The inputstream 'in' is null");
@@ -107,27 +153,40 @@ public class Payload implements Closeable {
         Payload pl = new Payload();
         pl.length = length;
         pl.pushback_size = pushback_size;
-        pl.in_fl = new FixedLengthInputStream(in, length);
         /*
          * Block Digest.
          */
-        if (digestAlgorithm != null) {
-            try {
-                pl.md = MessageDigest.getInstance(digestAlgorithm);
-            } catch (NoSuchAlgorithmException e) {
+        if (digestAlgorithms != null && digestAlgorithms.length > 0) {
+            pl.md = MultiMessageDigest.getInstance(digestAlgorithms, pl.digestAlgorithms);
+            if (pl.md == null) {
                 pl.bNoSuchAlgorithmException = true;
+            } else if (digestWorker != null) {
+                pl.md_async = digestWorker.wrap(pl.md);
             }
         }
+        MessageDigest md_update = (pl.md_async != null) ? pl.md_async : pl.md;
+        if (in instanceof BufferedByteCountingPushBackInputStream) {
+            /*
+             * Read, limit and digest the payload straight from the buffer
+             * of the record stream.
+             */
+            pl.in_window = new BufferedWindowInputStream(
+                    (BufferedByteCountingPushBackInputStream)in, length, pushback_size, md_update);
+            pl.in_pb_exposed = pl.in_window;
+            return pl;
+        }
+        pl.in_fl = new FixedLengthInputStream(in, length);
+        InputStream in_payload;
         if (pl.md != null) {
-            pl.in_digest = new DigestInputStreamNoSkip(pl.in_fl, pl.md);
-            pl.in_buffered = new BufferedInputStream(pl.in_digest, BUFFER_SIZE);
+            pl.in_digest = new DigestInputStreamNoSkip(pl.in_fl, md_update);
+            in_payload = pl.in_digest;
         } else {
-            pl.in_buffered = new BufferedInputStream(pl.in_fl, BUFFER_SIZE);
+            in_payload = pl.in_fl;
         }
         /*
          * Ensure close() is not called on the payload stream!
          */
-        pl.in_pb_exposed = new ByteCountingPushBackInputStream(pl.in_buffered, pushback_size) {
+        pl.in_pb_exposed = new BufferedByteCountingPushBackInputStream(in_payload, pushback_size, BUFFER_SIZE) {
             @Override
             public void close() throws IOException {
             }
@@ -150,11 +209,38 @@ public class Payload implements Closeable {
      */
     public byte[] getDigest() {
         if (digest == null && md != null) {
+            if (md_async != null) {
+                md_async.await();
+            }
             digest = md.digest();
         }
         return digest;
     }
 
+    /**
+     * Returns the digest algorithms computed on the payload.
+     * @return digest algorithms computed on the payload
+     */
+    public List<String> getDigestAlgorithms() {
+        return digestAlgorithms;
+    }
+
+    /**
+     * Returns the digest calculated by one of the digest algorithms.
+     * @param digestAlgorithm digest algorithm
+     * @return the calculated digest or null if the algorithm was not used
+     */
+    public byte[] getDigest(String digestAlgorithm) {
+        if (md instanceof MultiMessageDigest) {
+            getDigest();
+            return ((MultiMessageDigest)md).getDigest(digestAlgorithm);
+        }
+        if (md != null && digestAlgorithms.get(0).equalsIgnoreCase(digestAlgorithm)) {
+            return getDigest();
+        }
+        return null;
+    }
+
     /**
      * Get payload total length.
      * @return payload total length
@@ -170,6 +256,9 @@ public class Payload implements Closeable {
      * @throws IOException if an I/O error occurs calling available method on stream
      */
     public long getUnavailable() throws IOException {
+        if (in_window != null) {
+            return in_window.getRemaining();
+        }
         return in_fl.available();
     }
 
@@ -181,6 +270,43 @@ public class Payload implements Closeable {
         return pushback_size;
     }
 
+    /**
+     * Set the handler used to process a deferred payload header. The handler
+     * is called once, the first time the payload header or stream is
+     * requested, or when the payload is closed.
+     * @param onHeaderRequestedHandler handler processing the payload header
+     */
+    public void setOnHeaderRequestedHandler(PayloadOnHeaderRequestedHandler onHeaderRequestedHandler) {
+        this.onHeaderRequestedHandler = onHeaderRequestedHandler;
+    }
+
+    /**
+     * Process a deferred payload header, if any.
+     * @param bClosing true if the payload is being closed
+     * @throws IOException if an I/O error occurs processing the header
+     */
+    protected void processPayloadHeader(boolean bClosing) throws IOException {
+        if (onHeaderRequestedHandler != null) {
+            PayloadOnHeaderRequestedHandler handler = onHeaderRequestedHandler;
+            onHeaderRequestedHandler = null;
+            handler.payloadHeaderRequested(bClosing);
+        }
+    }
+
+    /**
+     * Process a deferred payload header, if any, before the payload header
+     * or stream is returned.
+     */
+    protected void requestPayloadHeader() {
+        if (onHeaderRequestedHandler != null) {
+            try {
+                processPayloadHeader(false);
+            } catch (IOException e) {
+                throw new IllegalStateException("Exception processing payload header", e);
+            }
+        }
+    }
+
     /**
      * Set <code>PayloadHeaderWrapper</code> object in case of recognized payload content.
      * This method should not be called by the payload consumer.
@@ -195,6 +321,7 @@ public class Payload implements Closeable {
      * @return <code>PayloadHeaderWrapper</code> object or null
      */
     public PayloadWithHeaderAbstract getPayloadHeaderWrapped() {
+        requestPayloadHeader();
         return payloadHeaderWrapped;
     }
 
@@ -204,6 +331,7 @@ public class Payload implements Closeable {
      * @return <code>InputStream</code> to read payload data (in)directly.
      */
     public InputStream getInputStreamComplete() {
+        requestPayloadHeader();
         if (payloadHeaderWrapped != null) {
             return payloadHeaderWrapped.getInputStreamComplete();
         } else {
@@ -219,6 +347,7 @@ public class Payload implements Closeable {
      * @return <code>InputStream</code> to read payload data.
      */
     public ByteCountingPushBackInputStream getInputStream() {
+        requestPayloadHeader();
         if (payloadHeaderWrapped != null) {
             return payloadHeaderWrapped.getPayloadInputStream();
         } else {
@@ -232,6 +361,7 @@ public class Payload implements Closeable {
      * @throws IOException if an I/O error occurs calling available method on stream
      */
     public long getRemaining() throws IOException {
+        processPayloadHeader(false);
         if (payloadHeaderWrapped != null) {
             return payloadHeaderWrapped.getPayloadInputStream().available();
         } else {
@@ -253,19 +383,23 @@ public class Payload implements Closeable {
      */
     public void close() throws IOException {
         if (!bClosed) {
+            processPayloadHeader(true);
             if (payloadHeaderWrapped != null) {
                 payloadHeaderWrapped.close();
             }
-            if (md != null) {
-                // Skip remaining unread bytes to ensure payload is completely
-                // digested. Skipping because the DigestInputStreamNoSkip
-                // has been altered to read when skipping.
-                while (in_digest.skip(length) > 0) {
+            if (in_window != null) {
+                // Skip remaining unread bytes, digesting them if required.
+                in_window.skipRemaining();
+            } else {
+                if (md != null) {
+                    // Skip remaining unread bytes to ensure payload is completely
+                    // digested. Skipping because the DigestInputStreamNoSkip
+                    // has been altered to read when skipping.
+                    while (in_digest.skip(length) > 0) {
+                    }
                 }
-            }
-            if (in_buffered != null) {
-                in_buffered.close();
-                in_buffered = null;
+                // Skip remaining unread bytes.
+                in_fl.close();
             }
             if (onClosedHandler != null) {
                 onClosedHandler.payloadClosed();
@@ -0,0 +1,41 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+
+/**
+ * Callback handler used by the payload implementation to let the initiating
+ * caller process a deferred payload header, such as an HTTP header, the
+ * first time the header or the payload stream is requested.
+ *
+ * @author nicl
+ */
+public interface PayloadOnHeaderRequestedHandler {
+
+    /**
+     * Method called once, before any payload data has been read, when the
+     * payload header or stream is first requested or when the payload is
+     * closed without either having been requested.
+     * @param bClosing true if the payload is being closed, in which case the
+     * header only needs to be processed if it is required, for digests
+     * @throws IOException I/O exception while processing the payload header
+     */
+    void payloadHeaderRequested(boolean bClosing) throws IOException;
+
+}
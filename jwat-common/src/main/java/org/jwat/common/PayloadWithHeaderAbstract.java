@@ -25,7 +25,7 @@ import java.io.InputStream;
 import java.io.SequenceInputStream;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -53,6 +53,13 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
 
     protected String digestAlgorithm;
 
+    /** Digest algorithms to use, used instead of the single algorithm if
+     *  not null. */
+    protected String[] digestAlgorithms;
+
+    /** Digest worker computing the digest on another thread or null. */
+    protected DigestWorker digestWorker;
+
     /** Could the header be validated. */
     protected boolean bIsValid;
 
@@ -66,9 +73,15 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
     /** Message digest object. */
     protected MessageDigest md;
 
+    /** Asynchronous wrapper of the message digest object or null. */
+    protected AsyncMessageDigest md_async;
+
     /** Digest bytes. */
     protected byte[] digest;
 
+    /** Digest algorithms computed by the message digest object. */
+    protected List<String> computedDigestAlgorithms = new ArrayList<String>();
+
     /** Automatic digesting of payload input stream. */
     protected DigestInputStream in_digest;
 
@@ -98,15 +111,20 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
             /*
              * Payload Digest.
              */
-            if (digestAlgorithm != null) {
-                try {
-                    md = MessageDigest.getInstance(digestAlgorithm);
-                } catch (NoSuchAlgorithmException e) {
+            String[] algorithms = digestAlgorithms;
+            if (algorithms == null && digestAlgorithm != null) {
+                algorithms = new String[] {digestAlgorithm};
+            }
+            if (algorithms != null && algorithms.length > 0) {
+                md = MultiMessageDigest.getInstance(algorithms, computedDigestAlgorithms);
+                if (md == null) {
                     bNoSuchAlgorithmException = true;
+                } else if (digestWorker != null) {
+                    md_async = digestWorker.wrap(md);
                 }
             }
             if (md != null) {
-                in_digest = new DigestInputStreamNoSkip(in_pb, md);
+                in_digest = new DigestInputStreamNoSkip(in_pb, (md_async != null) ? md_async : md);
                 in_payload = in_digest;
             } else {
                 in_payload = in_pb;
@@ -182,11 +200,39 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
      */
     public byte[] getDigest() {
         if (digest == null && md != null) {
+            if (md_async != null) {
+                md_async.await();
+            }
             digest = md.digest();
         }
         return digest;
     }
 
+    /**
+     * Returns the digest algorithms computed on the payload stream.
+     * @return digest algorithms computed on the payload stream
+     */
+    public List<String> getDigestAlgorithms() {
+        return computedDigestAlgorithms;
+    }
+
+    /**
+     * Returns the digest computed on the payload stream by one of the
+     * digest algorithms.
+     * @param algorithm digest algorithm
+     * @return digest bytes or null if the algorithm was not used
+     */
+    public byte[] getDigest(String algorithm) {
+        if (md instanceof MultiMessageDigest) {
+            getDigest();
+            return ((MultiMessageDigest)md).getDigest(algorithm);
+        }
+        if (md != null && computedDigestAlgorithms.get(0).equalsIgnoreCase(algorithm)) {
+            return getDigest();
+        }
+        return null;
+    }
+
     /**
      * Get HTTP payload length.
      * @return HTTP payload length
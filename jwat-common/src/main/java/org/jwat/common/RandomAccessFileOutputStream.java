@@ -60,6 +60,24 @@ public class RandomAccessFileOutputStream extends OutputStream {
     public void flush() throws IOException {
     }
 
+    /**
+     * Returns the current position in the file.
+     * @return current position in the file
+     * @throws IOException if an I/O error occurs while getting position
+     */
+    public long getFilePointer() throws IOException {
+        return raf.getFilePointer();
+    }
+
+    /**
+     * Set the position in the file where the next byte is written.
+     * @param pos position in the file
+     * @throws IOException if an I/O error occurs while setting position
+     */
+    public void seek(long pos) throws IOException {
+        raf.seek(pos);
+    }
+
     @Override
     public void write(int b) throws IOException {
         raf.write(b);
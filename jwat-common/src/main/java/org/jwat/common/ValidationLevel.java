@@ -0,0 +1,42 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Amount of validation done by the ARC and WARC readers.
+ * The lower levels are meant for trusted archives, where only the framing
+ * of the records and access to their fields are needed. The compliance
+ * status and diagnoses of a reader only cover the checks done at the
+ * selected level.
+ *
+ * @author nicl
+ */
+public enum ValidationLevel {
+
+    /** Validate records and fields and report all diagnoses. */
+    FULL,
+
+    /** Validate the record structure only. Compliance checks of the field
+     *  values are skipped. */
+    STRUCTURAL,
+
+    /** Only frame the records. Diagnoses are not reported for the record
+     *  structure either and encoded words are not decoded. */
+    NONE
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestBufferedByteCountingPushBackInputStream {
+
+    /** Remaining bytes expected from the stream, pushed back bytes first. */
+    LinkedList<Byte> expected = new LinkedList<Byte>();
+
+    @Test
+    public void test_bufferedbytecountingpushbackinputstream() throws IOException {
+        Random random = new Random(1);
+        byte[] tmpBuf = new byte[64];
+        for (int r=0; r<200; ++r) {
+            byte[] srcArr = new byte[random.nextInt(1024)];
+            random.nextBytes(srcArr);
+            for (int i=0; i<srcArr.length; ++i) {
+                if (random.nextInt(10) == 0) {
+                    srcArr[i] = '\n';
+                }
+            }
+            expected.clear();
+            for (int i=0; i<srcArr.length; ++i) {
+                expected.add(srcArr[i]);
+            }
+            int pushbackSize = random.nextInt(16) + 1;
+            BufferedByteCountingPushBackInputStream in = new BufferedByteCountingPushBackInputStream(
+                    new ByteArrayInputStream(srcArr), pushbackSize, random.nextInt(20) + 1);
+            Assert.assertEquals(pushbackSize, in.getPushbackSize());
+            Assert.assertFalse(in.markSupported());
+            long consumed = 0;
+            long pending = 0;
+            long before;
+            int read;
+            int len;
+            while (!expected.isEmpty()) {
+                Assert.assertEquals(expected.size(), in.available());
+                before = consumed;
+                switch (random.nextInt(7)) {
+                case 0:
+                    read = in.read();
+                    Assert.assertEquals(expected.removeFirst() & 255, read);
+                    ++consumed;
+                    break;
+                case 1:
+                    len = random.nextInt(tmpBuf.length);
+                    read = in.read(tmpBuf, 0, len);
+                    Assert.assertEquals(len == 0 ? 0 : Math.min(len, expected.size()), read);
+                    for (int i=0; i<read; ++i) {
+                        Assert.assertEquals(expected.removeFirst().byteValue(), tmpBuf[i]);
+                    }
+                    consumed += read;
+                    break;
+                case 2:
+                    len = random.nextInt(32);
+                    read = (int)in.skip(len);
+                    Assert.assertTrue(read <= len);
+                    for (int i=0; i<read; ++i) {
+                        expected.removeFirst();
+                    }
+                    consumed += read;
+                    break;
+                case 3:
+                    len = random.nextInt(pushbackSize - (int)pending + 1);
+                    random.nextBytes(tmpBuf);
+                    if (len == 1) {
+                        in.unread(tmpBuf[0]);
+                    } else {
+                        in.unread(tmpBuf, 0, len);
+                    }
+                    for (int i=len - 1; i>=0; --i) {
+                        expected.addFirst(tmpBuf[i]);
+                    }
+                    consumed -= len;
+                    pending += len;
+                    break;
+                case 4:
+                    len = random.nextInt(tmpBuf.length);
+                    read = in.readUntil(tmpBuf, 0, len, '\n');
+                    if (len == 0) {
+                        Assert.assertEquals(0, read);
+                    }
+                    for (int i=0; i<read; ++i) {
+                        Assert.assertEquals(expected.removeFirst().byteValue(), tmpBuf[i]);
+                    }
+                    Assert.assertTrue(read == len || tmpBuf[read - 1] == '\n' || expected.isEmpty());
+                    consumed += read;
+                    break;
+                case 5:
+                    StringBuilder sb = new StringBuilder();
+                    int idx = expected.indexOf((byte)'\n');
+                    String line = in.readLine();
+                    if (idx == -1) {
+                        Assert.assertNull(line);
+                        consumed += expected.size();
+                        expected.clear();
+                    } else {
+                        for (int i=0; i<=idx; ++i) {
+                            byte b = expected.removeFirst();
+                            if (b != '\r' && b != '\n') {
+                                sb.append((char)(b & 255));
+                            }
+                        }
+                        Assert.assertEquals(sb.toString(), line);
+                        consumed += idx + 1;
+                    }
+                    break;
+                case 6:
+                    idx = expected.indexOf((byte)'\n');
+                    len = (idx == -1) ? expected.size() : idx + 1;
+                    Assert.assertEquals(len, in.skipUntil('\n'));
+                    for (int i=0; i<len; ++i) {
+                        expected.removeFirst();
+                    }
+                    consumed += len;
+                    break;
+                }
+                if (consumed > before) {
+                    pending = Math.max(0, pending - (consumed - before));
+                }
+                Assert.assertEquals(consumed, in.getConsumed());
+                Assert.assertEquals(consumed, in.getCounter());
+            }
+            Assert.assertEquals(-1, in.read());
+            Assert.assertEquals(-1, in.read(tmpBuf, 0, tmpBuf.length));
+            Assert.assertEquals(-1, in.readUntil(tmpBuf, 0, tmpBuf.length, '\n'));
+            Assert.assertEquals(0, in.skipUntil('\n'));
+            Assert.assertEquals(0, in.skip(10));
+            Assert.assertEquals(srcArr.length, in.getConsumed());
+            in.close();
+            try {
+                in.read();
+                Assert.fail("Exception expected!");
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    @Test
+    public void test_bufferedbytecountingpushbackinputstream_peek() throws IOException {
+        byte[] srcArr = "0123456789abcdef".getBytes("ISO-8859-1");
+        BufferedByteCountingPushBackInputStream in = new BufferedByteCountingPushBackInputStream(
+                new ByteArrayInputStream(srcArr), 8, 3);
+        byte[] tmpBuf = new byte[8];
+        Assert.assertEquals(8, in.peek(tmpBuf));
+        Assert.assertEquals(0, in.getConsumed());
+        Assert.assertEquals(8, in.readFully(tmpBuf));
+        Assert.assertEquals("01234567", new String(tmpBuf, "ISO-8859-1"));
+        Assert.assertEquals(8, in.getConsumed());
+        byte[] largeBuf = new byte[16];
+        Assert.assertEquals(0, in.readFully(largeBuf));
+        Assert.assertEquals(8, in.getConsumed());
+        try {
+            in.unread(largeBuf);
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        try {
+            new BufferedByteCountingPushBackInputStream(new ByteArrayInputStream(srcArr), 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new BufferedByteCountingPushBackInputStream(new ByteArrayInputStream(srcArr), 1, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestBufferedWindowInputStream {
+
+    @Test
+    public void test_bufferedwindowinputstream() throws IOException, NoSuchAlgorithmException {
+        Random random = new Random(1);
+        byte[] tmpBuf = new byte[100];
+        for (int r=0; r<500; ++r) {
+            byte[] srcArr = new byte[random.nextInt(2048)];
+            random.nextBytes(srcArr);
+            int offset = random.nextInt(srcArr.length + 1);
+            long length = random.nextInt(srcArr.length - offset + 1);
+            if (random.nextInt(10) == 0) {
+                // Truncated window.
+                length += random.nextInt(100) + 1;
+            }
+            int available = (int)Math.min(length, srcArr.length - offset);
+            MessageDigest expectedMd = MessageDigest.getInstance("SHA1");
+            expectedMd.update(srcArr, offset, available);
+            int pushbackSize = random.nextInt(64) + 1;
+            BufferedByteCountingPushBackInputStream in = new BufferedByteCountingPushBackInputStream(
+                    new ByteArrayInputStream(srcArr), 16, random.nextInt(200) + 1);
+            Assert.assertEquals(offset, in.skip(offset));
+            Payload payload = Payload.processPayload(in, length, pushbackSize, "SHA1");
+            Assert.assertNotNull(payload.in_window);
+            ByteCountingPushBackInputStream pin = payload.getInputStream();
+            Assert.assertEquals(length, pin.available());
+            // Random reads, skips and push backs of previously read bytes.
+            int pos = 0;
+            int len;
+            int read;
+            while (pos < available && random.nextInt(50) != 0) {
+                switch (random.nextInt(4)) {
+                case 0:
+                    Assert.assertEquals(srcArr[offset + pos] & 255, pin.read());
+                    ++pos;
+                    break;
+                case 1:
+                    len = random.nextInt(tmpBuf.length) + 1;
+                    read = pin.read(tmpBuf, 0, len);
+                    Assert.assertEquals(Math.min(len, available - pos), read);
+                    for (int i=0; i<read; ++i) {
+                        Assert.assertEquals(srcArr[offset + pos + i], tmpBuf[i]);
+                    }
+                    pos += read;
+                    break;
+                case 2:
+                    len = random.nextInt(tmpBuf.length);
+                    Assert.assertEquals(Math.min(len, available - pos), pin.skip(len));
+                    pos += Math.min(len, available - pos);
+                    break;
+                case 3:
+                    // Room left in the local push back buffer.
+                    len = pushbackSize - (int)(pin.available() - payload.in_window.getRemaining());
+                    len = random.nextInt(Math.min(pos, len) + 1);
+                    pin.unread(srcArr, offset + pos - len, len);
+                    pos -= len;
+                    break;
+                }
+                Assert.assertEquals(pos, pin.getConsumed());
+                Assert.assertEquals(offset + pos, in.getConsumed() - (pin.available() - payload.in_window.getRemaining()));
+            }
+            payload.close();
+            Assert.assertEquals(length - available, payload.getUnavailable());
+            Assert.assertEquals(offset + available, in.getConsumed());
+            Assert.assertArrayEquals(expectedMd.digest(), payload.getDigest());
+            if (offset + available < srcArr.length) {
+                Assert.assertEquals(srcArr[offset + available] & 255, in.read());
+            } else {
+                Assert.assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    public void test_bufferedwindowinputstream_digestworker() throws IOException, NoSuchAlgorithmException {
+        Random random = new Random(1);
+        byte[] tmpBuf = new byte[4096];
+        DigestWorker worker = new DigestWorker(4, 256);
+        int exchanged = 0;
+        for (int r=0; r<100; ++r) {
+            byte[] srcArr = new byte[random.nextInt(65536) + 1];
+            random.nextBytes(srcArr);
+            int offset = random.nextInt(srcArr.length);
+            long length = srcArr.length - offset - random.nextInt(srcArr.length - offset);
+            MessageDigest expectedMd = MessageDigest.getInstance("SHA1");
+            expectedMd.update(srcArr, offset, (int)length);
+            BufferedByteCountingPushBackInputStream in = new BufferedByteCountingPushBackInputStream(
+                    new ByteArrayInputStream(srcArr), 16, random.nextInt(8192) + 1);
+            Assert.assertEquals(offset, in.skip(offset));
+            byte[] buffer = in.buffer;
+            Payload payload = Payload.processPayloadDigests(in, length, 16, new String[] {"SHA1"}, worker);
+            Assert.assertNotNull(payload.in_window);
+            ByteCountingPushBackInputStream pin = payload.getInputStream();
+            int pos = 0;
+            int read;
+            while (pos < length) {
+                read = pin.read(tmpBuf, 0, random.nextInt(tmpBuf.length) + 1);
+                for (int i=0; i<read; ++i) {
+                    Assert.assertEquals(srcArr[offset + pos + i], tmpBuf[i]);
+                }
+                pos += read;
+                if (random.nextBoolean()) {
+                    // Push back into the buffer handed off to the worker.
+                    read = random.nextInt(Math.min(pos, 16) + 1);
+                    pin.unread(srcArr, offset + pos - read, read);
+                    pos -= read;
+                }
+            }
+            payload.close();
+            if (in.buffer != buffer) {
+                ++exchanged;
+            }
+            if (offset + length < srcArr.length) {
+                Assert.assertEquals(srcArr[offset + (int)length] & 255, in.read());
+                in.unread(srcArr[offset + (int)length]);
+                Assert.assertEquals(srcArr[offset + (int)length] & 255, in.read());
+            } else {
+                Assert.assertEquals(-1, in.read());
+            }
+            Assert.assertArrayEquals(expectedMd.digest(), payload.getDigest());
+        }
+        Assert.assertTrue(exchanged > 0);
+        worker.close();
+    }
+
+    @Test
+    public void test_bufferedwindowinputstream_pushback() throws IOException {
+        byte[] srcArr = new byte[300];
+        for (int i=0; i<srcArr.length; ++i) {
+            srcArr[i] = (byte)i;
+        }
+        BufferedByteCountingPushBackInputStream in = new BufferedByteCountingPushBackInputStream(
+                new ByteArrayInputStream(srcArr), 4, 10);
+        BufferedWindowInputStream win = new BufferedWindowInputStream(in, 200, 100, null);
+        byte[] tmpBuf = new byte[100];
+        // Read across several buffer refills and push back more than fits in
+        // front of the buffer.
+        Assert.assertEquals(100, win.readFully(tmpBuf));
+        win.unread(tmpBuf, 0, 100);
+        Assert.assertEquals(200, win.available());
+        Assert.assertEquals(0, win.getConsumed());
+        win.unread(tmpBuf, 0, 0);
+        try {
+            win.unread(0);
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        Assert.assertEquals(0, win.read());
+        Assert.assertEquals(150, win.skip(150));
+        Assert.assertEquals(151, win.read());
+        Assert.assertEquals(48, win.skip(1000));
+        Assert.assertEquals(-1, win.read());
+        Assert.assertEquals(-1, win.read(tmpBuf, 0, 10));
+        Assert.assertEquals(0, win.getRemaining());
+        Assert.assertEquals(200, in.getConsumed());
+        Assert.assertEquals(200, in.read());
+        try {
+            new BufferedWindowInputStream(in, -1, 100, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new BufferedWindowInputStream(in, 0, 0, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestCaseInsensitiveIndex {
+
+    static final String CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_";
+
+    static String randomName(Random random, int maxLength) {
+        int len = random.nextInt(maxLength) + 1;
+        StringBuilder sb = new StringBuilder(len);
+        for (int i=0; i<len; ++i) {
+            sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void test_caseinsensitiveindex() {
+        Random random = new Random(1);
+        for (int r=0; r<200; ++r) {
+            Map<String, Integer> map = new HashMap<String, Integer>();
+            int count = random.nextInt(64);
+            while (map.size() < count) {
+                String name = randomName(random, 24);
+                if (!map.containsKey(name.toLowerCase())) {
+                    map.put(name.toLowerCase(), random.nextInt(1000));
+                }
+            }
+            String[] names = new String[count];
+            int[] values = new int[count];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : map.entrySet()) {
+                names[i] = (random.nextBoolean()) ? entry.getKey().toUpperCase() : entry.getKey();
+                values[i++] = entry.getValue();
+            }
+            CaseInsensitiveIndex index = new CaseInsensitiveIndex(names, values);
+            Assert.assertEquals(count, index.size());
+            for (i=0; i<count * 2 + 10; ++i) {
+                String name = (i < count) ? names[i] : randomName(random, 24);
+                if (random.nextBoolean()) {
+                    name = name.toUpperCase();
+                }
+                Integer expected = map.get(name.toLowerCase());
+                int value = (expected != null) ? expected : -1;
+                Assert.assertEquals(value, index.get(name));
+                char[] chars = ("  " + name + " ").toCharArray();
+                Assert.assertEquals(value, index.get(chars, 2, name.length()));
+                byte[] bytes = ("  " + name + " ").getBytes();
+                Assert.assertEquals(value, index.get(bytes, 2, name.length()));
+                if (expected != null) {
+                    Assert.assertEquals(name.toLowerCase(), index.getKey(name));
+                    Assert.assertSame(index.getKey(name.toLowerCase()), index.getKey(name.toUpperCase()));
+                    Assert.assertSame(index.getKey(name), index.getKey(chars, 2, name.length()));
+                } else {
+                    Assert.assertNull(index.getKey(name));
+                    Assert.assertNull(index.getKey(chars, 2, name.length()));
+                }
+            }
+        }
+
+        CaseInsensitiveIndex index = CaseInsensitiveIndex.fromIdxStrings(new String[] {null, "Content-Type", "Date"});
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(1, index.get("content-type"));
+        Assert.assertEquals(2, index.get("DATE"));
+        Assert.assertEquals(-1, index.get("Dat"));
+        Assert.assertEquals(-1, index.get("Dates"));
+        Assert.assertEquals(-1, index.get(""));
+        Assert.assertEquals(-1, index.get((String)null));
+        Assert.assertEquals(-1, index.get((char[])null, 0, 0));
+        Assert.assertEquals(-1, index.get((byte[])null, 0, 0));
+        Assert.assertNull(index.getKey((char[])null, 0, 0));
+        // Only US-ASCII letters are folded.
+        Assert.assertEquals(-1, index.get("\u00c4ate"));
+        Assert.assertEquals(-1, index.get("D\u0130te"));
+
+        try {
+            new CaseInsensitiveIndex(null, new int[0]);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new CaseInsensitiveIndex(new String[0], null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new CaseInsensitiveIndex(new String[1], new int[2]);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new CaseInsensitiveIndex(new String[1], new int[1]);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new CaseInsensitiveIndex(new String[] {"Date", "DATE"}, new int[2]);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            CaseInsensitiveIndex.fromIdxStrings(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestCompressionCodecs {
+
+    @Test
+    public void test_compressioncodecs_order() {
+        // Codec standing in for one discovered by ServiceLoader.
+        List<CompressionCodec> loaded = CompressionCodecs.getCodecs();
+        NamedCodec discovered = new NamedCodec("test-discovered");
+        synchronized (CompressionCodecs.class) {
+            CompressionCodecs.codecs.add(discovered);
+        }
+        NamedCodec first = new NamedCodec("test-first");
+        NamedCodec second = new NamedCodec("test-second");
+        try {
+            // Registered after loading, still tried before discovered codecs.
+            Assert.assertTrue(CompressionCodecs.register(first));
+            Assert.assertTrue(CompressionCodecs.register(second));
+            Assert.assertFalse(CompressionCodecs.register(new NamedCodec("test-discovered")));
+            List<CompressionCodec> codecs = CompressionCodecs.getCodecs();
+            Assert.assertEquals(loaded.size() + 3, codecs.size());
+            Assert.assertTrue(codecs.indexOf(first) < codecs.indexOf(second));
+            Assert.assertTrue(codecs.indexOf(second) < codecs.indexOf(discovered));
+            Assert.assertSame(second, CompressionCodecs.getCodec("test-second"));
+        } finally {
+            synchronized (CompressionCodecs.class) {
+                CompressionCodecs.codecs.remove(discovered);
+                if (CompressionCodecs.codecs.remove(first)) {
+                    --CompressionCodecs.registered;
+                }
+                if (CompressionCodecs.codecs.remove(second)) {
+                    --CompressionCodecs.registered;
+                }
+            }
+        }
+        try {
+            CompressionCodecs.register(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Codec which only has a name.
+     */
+    static class NamedCodec implements CompressionCodec {
+
+        String name;
+
+        NamedCodec(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isCompressed(ByteCountingPushBackInputStream pbin) throws IOException {
+            return false;
+        }
+
+        @Override
+        public CompressedReader newReader(InputStream in) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompressedWriter newWriter(OutputStream out) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
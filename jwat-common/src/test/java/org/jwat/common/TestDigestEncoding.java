@@ -0,0 +1,133 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestDigestEncoding {
+
+    static final String[] ENCODINGS = {"base16", "base32", "base64"};
+
+    @Test
+    public void test_digestencoding() {
+        Random random = new Random(1);
+        String encoded;
+        for (int len=0; len<=64; ++len) {
+            byte[] digestBytes = new byte[len];
+            for (int r=0; r<20; ++r) {
+                random.nextBytes(digestBytes);
+                encoded = DigestEncoding.encode(digestBytes, "base16");
+                Assert.assertEquals(Base16.encodeArray(digestBytes), encoded);
+                assertDetect(encoded, len);
+                assertDetect(encoded.toLowerCase(), len);
+                encoded = DigestEncoding.encode(digestBytes, "base32");
+                Assert.assertEquals(Base32.encodeArray(digestBytes), encoded);
+                assertDetect(encoded, len);
+                assertDetect(encoded.toLowerCase(), len);
+                encoded = DigestEncoding.encode(digestBytes, "base64");
+                Assert.assertEquals(Base64.encodeArray(digestBytes), encoded);
+                assertDetect(encoded, len);
+                // Malformed variations.
+                for (int i=0; i<10; ++i) {
+                    assertDetect(mutate(random, encoded), len);
+                }
+            }
+        }
+        Assert.assertNull(DigestEncoding.encode(new byte[1], "base8"));
+        Assert.assertNull(DigestEncoding.encode(null, "base16"));
+        Assert.assertNull(DigestEncoding.decode("AB", "base8"));
+        Assert.assertNull(DigestEncoding.decode(null, "base16"));
+        Assert.assertFalse(DigestEncoding.matches("AB", "base8", new byte[] {(byte)0xab}));
+        Assert.assertFalse(DigestEncoding.matches("AB", "base16", null));
+        Assert.assertTrue(DigestEncoding.matches("AB", "base16", new byte[] {(byte)0xab}));
+        Assert.assertFalse(DigestEncoding.matches("AC", "base16", new byte[] {(byte)0xab}));
+        Assert.assertNull(DigestEncoding.detectEncoding(null, 20));
+        Assert.assertNull(DigestEncoding.detectEncoding("AB", -1));
+        Assert.assertNull(DigestEncoding.detectEncoding("A\u0100", 1));
+    }
+
+    static String mutate(Random random, String encoded) {
+        StringBuilder sb = new StringBuilder(encoded);
+        String chars = "=aZ0+/-\u00e6";
+        switch (random.nextInt(3)) {
+        case 0:
+            if (sb.length() > 0) {
+                sb.setCharAt(random.nextInt(sb.length()), chars.charAt(random.nextInt(chars.length())));
+            }
+            break;
+        case 1:
+            sb.insert(random.nextInt(sb.length() + 1), chars.charAt(random.nextInt(chars.length())));
+            break;
+        case 2:
+            if (sb.length() > 0) {
+                sb.deleteCharAt(random.nextInt(sb.length()));
+            }
+            break;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compare detection, verification and decoding with trial decoding using
+     * the strict decoders.
+     */
+    static void assertDetect(String encoded, int len) {
+        String expectedEncoding = null;
+        byte[] expectedBytes = null;
+        byte[] decoded;
+        for (String encoding : ENCODINGS) {
+            if ("base16".equals(encoding)) {
+                decoded = Base16.decodeToArray(encoded);
+            } else if ("base32".equals(encoding)) {
+                decoded = Base32.decodeToArray(encoded, true);
+            } else {
+                decoded = Base64.decodeToArray(encoded, true);
+            }
+            if (decoded != null && decoded.length == len && expectedEncoding == null) {
+                expectedEncoding = encoding;
+                expectedBytes = decoded;
+            }
+            byte[] bytes = DigestEncoding.decode(encoded, encoding);
+            if (decoded != null && bytes != null) {
+                Assert.assertArrayEquals(decoded, bytes);
+            }
+            if (decoded != null) {
+                Assert.assertTrue(DigestEncoding.matches(encoded, encoding, decoded));
+            }
+        }
+        if (len == 0) {
+            expectedEncoding = null;
+        }
+        Assert.assertEquals(expectedEncoding, DigestEncoding.detectEncoding(encoded, len));
+        if (expectedEncoding != null) {
+            Assert.assertArrayEquals(expectedBytes, DigestEncoding.decode(encoded, expectedEncoding));
+            Assert.assertTrue(DigestEncoding.matches(encoded, expectedEncoding, expectedBytes));
+            byte[] other = Arrays.copyOf(expectedBytes, len);
+            other[len - 1] ^= 1;
+            Assert.assertFalse(DigestEncoding.matches(encoded, expectedEncoding, other));
+        }
+    }
+
+}
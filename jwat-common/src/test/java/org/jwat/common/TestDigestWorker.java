@@ -0,0 +1,128 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestDigestWorker {
+
+    @Test
+    public void test_digestworker() throws NoSuchAlgorithmException {
+        Random random = new Random(1);
+        byte[] data = new byte[100000];
+        random.nextBytes(data);
+        // Small ring to make the producer wait for the worker.
+        DigestWorker worker = new DigestWorker(2, 64);
+        for (int r=0; r<20; ++r) {
+            MessageDigest expected1 = MessageDigest.getInstance("SHA1");
+            MessageDigest expected2 = MessageDigest.getInstance("MD5");
+            AsyncMessageDigest md1 = worker.wrap(MessageDigest.getInstance("SHA1"));
+            AsyncMessageDigest md2 = worker.wrap(MessageDigest.getInstance("MD5"));
+            Assert.assertEquals("SHA1", md1.getAlgorithm());
+            Assert.assertEquals(20, md1.getDigestLength());
+            int pos = 0;
+            int len;
+            while (pos < data.length) {
+                len = Math.min(random.nextInt(300), data.length - pos);
+                if (len == 0) {
+                    md1.update(data[pos]);
+                    expected1.update(data[pos]);
+                    ++pos;
+                } else {
+                    md1.update(data, pos, len);
+                    expected1.update(data, pos, len);
+                    // Same data interleaved with another digest.
+                    md2.update(data, pos, len);
+                    expected2.update(data, pos, len);
+                    pos += len;
+                }
+            }
+            Assert.assertArrayEquals(expected1.digest(), md1.digest());
+            md2.await();
+            Assert.assertArrayEquals(expected2.digest(), md2.getMessageDigest().digest());
+        }
+        AsyncMessageDigest md = worker.wrap(MessageDigest.getInstance("SHA1"));
+        md.update(data, 0, 1000);
+        md.reset();
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA1").digest(), md.digest());
+        md.update(data, 0, 5000);
+        worker.close();
+        // Data queued after close is digested on the calling thread.
+        md.update(data, 5000, 10);
+        md.update(data[5010]);
+        Assert.assertTrue(md.handOff(data, 5011, 4000) == false);
+        MessageDigest expected = MessageDigest.getInstance("SHA1");
+        expected.update(data, 0, 9011);
+        Assert.assertArrayEquals(expected.digest(), md.digest());
+        try {
+            worker.wrap(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new DigestWorker(0, 64);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_digestworker_handoff() throws NoSuchAlgorithmException {
+        Random random = new Random(1);
+        DigestWorker worker = new DigestWorker(4, 64);
+        MessageDigest expected = MessageDigest.getInstance("SHA1");
+        AsyncMessageDigest md = worker.wrap(MessageDigest.getInstance("SHA1"));
+        byte[] b = new byte[8192];
+        int handedOff = 0;
+        int len;
+        for (int r=0; r<200; ++r) {
+            random.nextBytes(b);
+            len = random.nextInt(b.length);
+            expected.update(b, 0, len);
+            if (md.handOff(b, 0, len)) {
+                Assert.assertTrue(len >= DigestWorker.MIN_HAND_OFF_SIZE);
+                ++handedOff;
+                // The handed off array must not be modified.
+                b = worker.exchange(b);
+                Assert.assertEquals(8192, b.length);
+            } else {
+                Assert.assertTrue(len < DigestWorker.MIN_HAND_OFF_SIZE);
+            }
+            // Arrays not handed off are returned as is.
+            Assert.assertSame(b, worker.exchange(b));
+        }
+        Assert.assertTrue(handedOff > 0);
+        Assert.assertArrayEquals(expected.digest(), md.digest());
+        // Digested arrays are reused.
+        md.handOff(b, 0, b.length);
+        md.await();
+        Assert.assertSame(b, worker.exchange(b));
+        Assert.assertTrue(worker.lent.size() <= 4);
+        Assert.assertTrue(worker.retired.size() <= 4);
+        worker.close();
+    }
+
+}
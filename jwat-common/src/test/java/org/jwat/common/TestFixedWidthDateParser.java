@@ -0,0 +1,77 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestFixedWidthDateParser {
+
+    @Test
+    public void test_fixedwidthdateparser() {
+        GregorianCalendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        cal.setLenient(false);
+        // Proleptic Gregorian calendar.
+        cal.setGregorianChange(new java.util.Date(Long.MIN_VALUE));
+        Random random = new Random(1);
+        int year, month, day, hour, minute, second;
+        long expected;
+        for (int i=0; i<100000; ++i) {
+            year = random.nextInt(10001) - 1;
+            month = random.nextInt(14) - 1;
+            day = random.nextInt(33) - 1;
+            hour = random.nextInt(26) - 1;
+            minute = random.nextInt(62) - 1;
+            second = random.nextInt(62) - 1;
+            cal.clear();
+            cal.set(Calendar.ERA, GregorianCalendar.AD);
+            cal.set(year, month - 1, day, hour, minute, second);
+            try {
+                expected = cal.getTimeInMillis();
+            } catch (IllegalArgumentException e) {
+                expected = Long.MIN_VALUE;
+            }
+            Assert.assertEquals(expected, FixedWidthDateParser.toMillis(year, month, day, hour, minute, second));
+        }
+        Assert.assertEquals(0, FixedWidthDateParser.toMillis(1970, 1, 1, 0, 0, 0));
+        Assert.assertEquals(951782400000L, FixedWidthDateParser.toMillis(2000, 2, 29, 0, 0, 0));
+        Assert.assertEquals(Long.MIN_VALUE, FixedWidthDateParser.toMillis(1900, 2, 29, 0, 0, 0));
+        Assert.assertTrue(FixedWidthDateParser.isLeapYear(2000));
+        Assert.assertFalse(FixedWidthDateParser.isLeapYear(2100));
+
+        Assert.assertEquals(1234, FixedWidthDateParser.parseDigits("x1234", 1, 4));
+        Assert.assertEquals(-1, FixedWidthDateParser.parseDigits("x12a4", 1, 4));
+        Assert.assertEquals(-1, FixedWidthDateParser.parseDigits("x12/4", 1, 4));
+        Assert.assertEquals(56, FixedWidthDateParser.parseDigits("x56".getBytes(), 1, 2));
+        Assert.assertEquals(-1, FixedWidthDateParser.parseDigits("x5:".getBytes(), 1, 2));
+
+        FixedWidthDateParser.CachedDate cached = new FixedWidthDateParser.CachedDate("abc", 42);
+        Assert.assertTrue(cached.equals("xabc".getBytes(), 1, 3));
+        Assert.assertFalse(cached.equals("xabd".getBytes(), 1, 3));
+        Assert.assertFalse(cached.equals("xab".getBytes(), 1, 2));
+    }
+
+}
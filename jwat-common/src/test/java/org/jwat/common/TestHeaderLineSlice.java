@@ -0,0 +1,205 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestHeaderLineSlice {
+
+    static final String[] INPUTS = {
+        "",
+        "WARC/1.0\r\nWARC-Type: response\r\nContent-Length:  42 \r\n\r\npayload",
+        "Name: value\r\n  folded\r\n\tagain\r\nNext:\r\n\r\n",
+        "Name: \"quoted \\\" text\"\r\nQ: \"open\r\n continued\"\r\nR: \"open\r\nS: x\r\n\r\n",
+        "Bad name: v\r\nNo colon line\r\nCR\rmisplaced: x\nLF: only\n\r\n",
+        "Utf8: æøå € æøåæøåæøå\r\n\r\n",
+        "Eof: \"quoted\\",
+        "Eof: value",
+        "Ctrl\u0001: \u0007\r\n\r\n"
+    };
+
+    static final byte[][] BINARY_INPUTS = {
+        {'A', ':', ' ', (byte)0xc3, '\r', '\n', '\r', '\n'},
+        {'A', ':', ' ', (byte)0xe2, (byte)0x82},
+        {'A', ':', ' ', (byte)0xff, (byte)0xc0, (byte)0x80, 'x', '\r', '\n', '\r', '\n'},
+        {(byte)0xf0, (byte)0x9f, (byte)0x98, (byte)0x80, ':', ' ', 'x', '\r', '\n'}
+    };
+
+    @Test
+    public void test_headerlineslice() throws IOException {
+        List<byte[]> inputs = new ArrayList<byte[]>();
+        for (int i=0; i<INPUTS.length; ++i) {
+            inputs.add(INPUTS[i].getBytes("UTF-8"));
+        }
+        for (int i=0; i<BINARY_INPUTS.length; ++i) {
+            inputs.add(BINARY_INPUTS[i]);
+        }
+        int[] pushbackSizes = {1, 2, 3, 16, 8192};
+        for (int r=0; r<3; ++r) {
+            for (int i=0; i<inputs.size(); ++i) {
+                byte[] bytes = inputs.get(i);
+                List<HeaderLine> expected = new ArrayList<HeaderLine>();
+                HeaderLineReader hlr = newReader(r);
+                ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(new ByteArrayInputStream(bytes), 16);
+                HeaderLine headerLine;
+                do {
+                    headerLine = hlr.readLine(pbin);
+                    expected.add(headerLine);
+                } while (!hlr.bEof && !isEnd(headerLine));
+                long consumed = pbin.getConsumed();
+                for (int p=0; p<pushbackSizes.length; ++p) {
+                    hlr = newReader(r);
+                    pbin = new ByteCountingPushBackInputStream(new ByteArrayInputStream(bytes), pushbackSizes[p]);
+                    HeaderLineSlice slice;
+                    int n = 0;
+                    do {
+                        slice = hlr.readLineSlice(pbin);
+                        assertEquals(expected.get(n++), slice);
+                        assertEquals(expected.get(n - 1), slice.toHeaderLine());
+                    } while (!hlr.bEof && !isEnd(slice.toHeaderLine()));
+                    Assert.assertEquals(expected.size(), n);
+                    Assert.assertEquals(consumed, pbin.getConsumed());
+                    // Bytes read ahead must have been pushed back.
+                    byte[] remaining = new byte[bytes.length];
+                    int read = 0;
+                    int c;
+                    while ((c = pbin.read()) != -1) {
+                        remaining[read++] = (byte)c;
+                    }
+                    Assert.assertEquals(bytes.length - consumed, read);
+                    for (int j=0; j<read; ++j) {
+                        Assert.assertEquals(bytes[(int)consumed + j], remaining[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_headerlineslice_maxlength() throws IOException {
+        byte[] bytes = "Name: value\r\n\r\n".getBytes("ISO-8859-1");
+        HeaderLineReader hlr = newReader(0);
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(new ByteArrayInputStream(bytes), 8192);
+        HeaderLineSlice slice = hlr.readLineSlice(pbin, 8);
+        Assert.assertFalse(hlr.bEof);
+        Assert.assertEquals(HeaderLine.HLT_HEADERLINE, slice.type);
+        Assert.assertTrue(slice.isName("NAME"));
+        Assert.assertFalse(slice.isName("Names"));
+        Assert.assertEquals("va", slice.getValue());
+        Assert.assertNull(slice.getLine());
+        Assert.assertEquals(8, slice.rawLength);
+        Assert.assertEquals(HeaderLineReader.E_BIT_EOF, slice.bfErrors & HeaderLineReader.E_BIT_EOF);
+        Assert.assertEquals(8, pbin.getConsumed());
+        slice = hlr.readLineSlice(pbin, 0);
+        Assert.assertTrue(hlr.bEof);
+        Assert.assertEquals(HeaderLine.HLT_LINE, slice.type);
+        Assert.assertEquals(0, slice.rawLength);
+        Assert.assertEquals(8, pbin.getConsumed());
+        Assert.assertEquals('l', pbin.read());
+    }
+
+    @Test
+    public void test_headerlineslice_unbuffered() throws IOException {
+        byte[] bytes = "Content-Type: text/plain\r\ncontent-type: a\r\n\r\nrest".getBytes("ISO-8859-1");
+        HeaderLineReader hlr = newReader(1);
+        PushbackInputStream pbin = new PushbackInputStream(new ByteArrayInputStream(bytes), 1);
+        String knownName = "Content-Type";
+        HeaderLineSlice slice = hlr.readLineSlice(pbin);
+        Assert.assertFalse(hlr.bEof);
+        Assert.assertSame(knownName, slice.getName(knownName));
+        Assert.assertEquals("Content-Type", slice.getName("Content-Types"));
+        Assert.assertEquals("Content-Type", slice.getName(null));
+        HeaderLine headerLine = slice.toHeaderLine(knownName);
+        Assert.assertEquals(HeaderLine.HLT_HEADERLINE, headerLine.type);
+        Assert.assertSame(knownName, headerLine.name);
+        Assert.assertEquals("text/plain", headerLine.value);
+        Assert.assertNull(headerLine.raw);
+        slice = hlr.readLineSlice(pbin);
+        headerLine = slice.toHeaderLine(knownName);
+        Assert.assertEquals("content-type", headerLine.name);
+        Assert.assertTrue(slice.isName(knownName));
+        Assert.assertEquals("a", headerLine.value);
+        slice = hlr.readLineSlice(pbin);
+        Assert.assertEquals(HeaderLine.HLT_LINE, slice.type);
+        Assert.assertEquals(0, slice.lineLength);
+        Assert.assertNull(slice.getName(knownName));
+        Assert.assertNull(slice.toHeaderLine(knownName));
+        // No bytes are read past the end of the line.
+        Assert.assertEquals('r', pbin.read());
+    }
+
+    static HeaderLineReader newReader(int r) {
+        HeaderLineReader hlr;
+        switch (r) {
+        case 0:
+            hlr = HeaderLineReader.getReader();
+            hlr.bNameValue = true;
+            hlr.encoding = HeaderLineReader.ENC_UTF8;
+            hlr.bLWS = true;
+            hlr.bQuotedText = true;
+            hlr.bEncodedWords = true;
+            break;
+        case 1:
+            hlr = HeaderLineReader.getHeaderLineReader();
+            break;
+        default:
+            hlr = HeaderLineReader.getLineReader();
+            break;
+        }
+        return hlr;
+    }
+
+    static boolean isEnd(HeaderLine headerLine) {
+        return headerLine.type == HeaderLine.HLT_LINE && headerLine.line.length() == 0;
+    }
+
+    static void assertEquals(HeaderLine expected, HeaderLineSlice slice) {
+        Assert.assertEquals(expected.type, slice.type);
+        Assert.assertEquals(expected.name, slice.getName());
+        Assert.assertEquals(expected.value, slice.getValue());
+        Assert.assertEquals(expected.line, slice.getLine());
+        Assert.assertEquals(expected.bfErrors, slice.bfErrors);
+        Assert.assertEquals(expected.raw.length, slice.rawLength);
+        for (int i=0; i<slice.rawLength; ++i) {
+            Assert.assertEquals(expected.raw[i], slice.raw[i]);
+        }
+        if (expected.name != null) {
+            Assert.assertTrue(slice.isName(expected.name.toUpperCase()));
+        }
+    }
+
+    static void assertEquals(HeaderLine expected, HeaderLine headerLine) {
+        Assert.assertEquals(expected.type, headerLine.type);
+        Assert.assertEquals(expected.name, headerLine.name);
+        Assert.assertEquals(expected.value, headerLine.value);
+        Assert.assertEquals(expected.line, headerLine.line);
+        Assert.assertEquals(expected.bfErrors, headerLine.bfErrors);
+        Assert.assertArrayEquals(expected.raw, headerLine.raw);
+    }
+
+}
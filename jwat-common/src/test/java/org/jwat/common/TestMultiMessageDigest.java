@@ -0,0 +1,89 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestMultiMessageDigest {
+
+    @Test
+    public void test_multimessagedigest() throws NoSuchAlgorithmException {
+        byte[] data = new byte[10000];
+        new Random(1).nextBytes(data);
+        String[] algorithms = {"SHA1", "sha1", null, "SHA-256", "unknown", "MD5"};
+        List<String> available = new ArrayList<String>();
+        MessageDigest md = MultiMessageDigest.getInstance(algorithms, available);
+        Assert.assertTrue(md instanceof MultiMessageDigest);
+        Assert.assertEquals(3, available.size());
+        Assert.assertEquals("SHA1", available.get(0));
+        Assert.assertEquals("SHA-256", available.get(1));
+        Assert.assertEquals("MD5", available.get(2));
+        MultiMessageDigest mmd = (MultiMessageDigest)md;
+        Assert.assertArrayEquals(available.toArray(), mmd.getAlgorithms());
+        Assert.assertEquals(20, mmd.getDigestLength());
+        mmd.update(data[0]);
+        mmd.update(data, 1, 4999);
+        mmd.update(ByteBuffer.wrap(data, 5000, 5000));
+        byte[] digest = mmd.digest();
+        for (int i=0; i<available.size(); ++i) {
+            byte[] expected = MessageDigest.getInstance(available.get(i)).digest(data);
+            Assert.assertArrayEquals(expected, mmd.getDigest(available.get(i).toLowerCase()));
+            if (i == 0) {
+                Assert.assertArrayEquals(expected, digest);
+            }
+        }
+        Assert.assertNull(mmd.getDigest("unknown"));
+        // Digests are reset after completion.
+        mmd.update(data);
+        Assert.assertArrayEquals(MessageDigest.getInstance("MD5").digest(data), mmd.getDigest("MD5"));
+        mmd.update(data);
+        mmd.reset();
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA1").digest(), mmd.digest());
+
+        available.clear();
+        md = MultiMessageDigest.getInstance(new String[] {"unknown", "md5"}, available);
+        Assert.assertFalse(md instanceof MultiMessageDigest);
+        Assert.assertEquals("md5", md.getAlgorithm());
+        Assert.assertEquals(1, available.size());
+        available.clear();
+        Assert.assertNull(MultiMessageDigest.getInstance(new String[] {"unknown"}, available));
+        Assert.assertEquals(0, available.size());
+        try {
+            MultiMessageDigest.getInstance(null, available);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            MultiMessageDigest.getInstance(algorithms, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
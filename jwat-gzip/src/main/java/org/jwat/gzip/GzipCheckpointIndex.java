@@ -0,0 +1,508 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.RandomAccessFileInputStream;
+
+/**
+ * Checkpoint index used to resume inflating a single GZip entry close to
+ * an arbitrary uncompressed offset, instead of inflating all the data in
+ * front of it.
+ * A checkpoint records a compressed offset, the corresponding uncompressed
+ * offset and the preceding 32K of uncompressed data used as the inflater
+ * dictionary.
+ * The index is built by a <code>GzipReader</code> while an entry is read,
+ * @see GzipReader#setCheckpointInterval(long). Since the inflater does not
+ * expose deflate block boundaries, checkpoints are only placed at the byte
+ * aligned empty stored blocks written by a sync or full flush, as written
+ * by pigz, most block based compressors and by <code>GzipWriter</code>
+ * when a full flush interval is set,
+ * @see GzipWriter#setFullFlushInterval(long). Each candidate is verified by
+ * resuming from it before it is added to the index.
+ *
+ * @author nicl
+ */
+public class GzipCheckpointIndex {
+
+    /** Sidecar file magic number, "JWGC". */
+    public static final int INDEX_MAGIC = 0x4a574743;
+
+    /** Sidecar file format version. */
+    public static final int INDEX_VERSION = 1;
+
+    /** Size of the deflate window. */
+    public static final int WINDOW_SIZE = 32768;
+
+    /** Number of uncompressed bytes compared when verifying a checkpoint. */
+    public static final int VERIFY_SIZE = 65536;
+
+    /** Start offset of the entry. */
+    protected long startOffset;
+
+    /** Checkpoints in the order of their offsets. */
+    protected List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+
+    /**
+     * Construct an empty checkpoint index for an entry.
+     * @param startOffset start offset of the entry
+     */
+    public GzipCheckpointIndex(long startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    /**
+     * Returns the start offset of the entry.
+     * @return start offset of the entry
+     */
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Returns the number of checkpoints.
+     * @return number of checkpoints
+     */
+    public int size() {
+        return checkpoints.size();
+    }
+
+    /**
+     * Returns checkpoint N.
+     * @param n checkpoint number
+     * @return checkpoint N
+     */
+    public Checkpoint getCheckpoint(int n) {
+        return checkpoints.get(n);
+    }
+
+    /**
+     * Add a checkpoint. Checkpoints must be added in the order of their
+     * offsets.
+     * @param checkpoint checkpoint
+     */
+    public void add(Checkpoint checkpoint) {
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("checkpoint is null!");
+        }
+        if (!checkpoints.isEmpty()) {
+            Checkpoint last = checkpoints.get(checkpoints.size() - 1);
+            if (checkpoint.compressedOffset <= last.compressedOffset
+                    || checkpoint.uncompressedOffset < last.uncompressedOffset) {
+                throw new IllegalArgumentException("checkpoint is out of order!");
+            }
+        }
+        checkpoints.add(checkpoint);
+    }
+
+    /**
+     * Find the last checkpoint at or before the given uncompressed offset.
+     * @param uncompressedOffset uncompressed offset in the entry
+     * @return checkpoint number or -1
+     */
+    public int findCheckpoint(long uncompressedOffset) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        int mid;
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            if (checkpoints.get(mid).uncompressedOffset <= uncompressedOffset) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Returns an input stream with the uncompressed data of the entry from
+     * the given uncompressed offset. Inflating resumes from the nearest
+     * checkpoint. The <code>RandomAccessFile</code> is repositioned but not
+     * closed by the returned input stream.
+     * @param raf GZip file
+     * @param uncompressedOffset uncompressed offset in the entry
+     * @return input stream with the uncompressed data from the given offset
+     * @throws IOException if an I/O error occurs while resuming inflation
+     */
+    public InputStream getInputStream(RandomAccessFile raf, long uncompressedOffset) throws IOException {
+        if (raf == null) {
+            throw new IllegalArgumentException("raf is null!");
+        }
+        if (uncompressedOffset < 0) {
+            throw new IllegalArgumentException("uncompressedOffset is negative!");
+        }
+        int n = findCheckpoint(uncompressedOffset);
+        if (n == -1) {
+            throw new IllegalStateException("No checkpoints!");
+        }
+        Checkpoint checkpoint = checkpoints.get(n);
+        raf.seek(checkpoint.compressedOffset);
+        final Inflater inf = new Inflater(true);
+        if (checkpoint.window.length > 0) {
+            inf.setDictionary(checkpoint.window);
+        }
+        InputStream in = new InflaterInputStream(new RandomAccessFileInputStream(raf), inf, GzipReader.DEFAULT_INPUT_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+        long remaining = uncompressedOffset - checkpoint.uncompressedOffset;
+        long skipped;
+        while (remaining > 0) {
+            skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                break;
+            }
+            remaining -= skipped;
+        }
+        return in;
+    }
+
+    /**
+     * Write the index in the binary sidecar format.
+     * The output stream is flushed but not closed.
+     * @param out output stream to write index to
+     * @throws IOException if an I/O error occurs while writing index
+     */
+    public void write(OutputStream out) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null!");
+        }
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+        dout.writeInt(INDEX_MAGIC);
+        dout.writeInt(INDEX_VERSION);
+        dout.writeLong(startOffset);
+        dout.writeInt(checkpoints.size());
+        Checkpoint checkpoint;
+        for (int i=0; i<checkpoints.size(); ++i) {
+            checkpoint = checkpoints.get(i);
+            dout.writeLong(checkpoint.compressedOffset);
+            dout.writeLong(checkpoint.uncompressedOffset);
+            dout.writeInt(checkpoint.window.length);
+            dout.write(checkpoint.window);
+        }
+        dout.flush();
+    }
+
+    /**
+     * Read an index in the binary sidecar format.
+     * The input stream is not closed.
+     * @param in input stream to read index from
+     * @return index read from input stream
+     * @throws IOException if an I/O error occurs while reading index or the format is invalid
+     */
+    public static GzipCheckpointIndex read(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("in is null!");
+        }
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+        if (din.readInt() != INDEX_MAGIC) {
+            throw new IOException("Invalid GZip checkpoint index magic!");
+        }
+        int version = din.readInt();
+        if (version != INDEX_VERSION) {
+            throw new IOException("Unsupported GZip checkpoint index version: " + version);
+        }
+        GzipCheckpointIndex index = new GzipCheckpointIndex(din.readLong());
+        int count = din.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid GZip checkpoint index count: " + count);
+        }
+        Checkpoint checkpoint;
+        int len;
+        try {
+            for (int i=0; i<count; ++i) {
+                checkpoint = new Checkpoint();
+                checkpoint.compressedOffset = din.readLong();
+                checkpoint.uncompressedOffset = din.readLong();
+                len = din.readInt();
+                if (len < 0 || len > WINDOW_SIZE) {
+                    throw new IOException("Invalid GZip checkpoint window size: " + len);
+                }
+                checkpoint.window = new byte[len];
+                din.readFully(checkpoint.window);
+                index.add(checkpoint);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid GZip checkpoint!", e);
+        }
+        return index;
+    }
+
+    /**
+     * Inflater resume point.
+     */
+    public static class Checkpoint {
+
+        /** Offset of the compressed data in the GZip file. */
+        public long compressedOffset;
+
+        /** Offset of the uncompressed data in the entry. */
+        public long uncompressedOffset;
+
+        /** Uncompressed data preceding the checkpoint, up to 32K. */
+        public byte[] window;
+    }
+
+    /**
+     * Checkpoint builder used by <code>GzipReader</code> while inflating an
+     * entry. Input chunks are cut right after a stored block marker when a
+     * checkpoint is due, so that all the uncompressed data in front of the
+     * marker has been inflated once the inflater needs more input.
+     */
+    static class Builder {
+
+        /** Index being built. */
+        GzipCheckpointIndex index;
+
+        /** Min number of uncompressed bytes between checkpoints. */
+        long interval;
+
+        /** Ring buffer with the latest uncompressed data. */
+        byte[] ring = new byte[WINDOW_SIZE];
+
+        /** Number of uncompressed bytes seen. */
+        long written;
+
+        /** Uncompressed offset of the last checkpoint. */
+        long lastUncompressedOffset;
+
+        /** Last input chunk ended right after a stored block marker. */
+        boolean bMarkerEnd;
+
+        /** Candidate checkpoint being verified. */
+        Checkpoint pending;
+
+        /** Inflater resumed from the candidate checkpoint. */
+        Inflater verifier;
+
+        /** Buffer used by the verifier. */
+        byte[] verifyBytes;
+
+        /** Checksum of the verifier output. */
+        CRC32 verifyCrc = new CRC32();
+
+        /** Number of bytes inflated by the verifier. */
+        long verifyCount;
+
+        /** Verifier is done, finished or failed. */
+        boolean bVerifyDone;
+
+        /** Checksum of the reader output following the candidate. */
+        CRC32 mainCrc = new CRC32();
+
+        /** Number of bytes inflated by the reader following the candidate. */
+        long mainCount;
+
+        /**
+         * Construct a builder and add the initial checkpoint.
+         * @param index index to build
+         * @param interval min number of uncompressed bytes between checkpoints
+         * @param dataOffset offset of the compressed data in the GZip file
+         */
+        Builder(GzipCheckpointIndex index, long interval, long dataOffset) {
+            this.index = index;
+            this.interval = interval;
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.compressedOffset = dataOffset;
+            checkpoint.uncompressedOffset = 0;
+            checkpoint.window = new byte[0];
+            index.add(checkpoint);
+        }
+
+        /**
+         * Called when the inflater needs more input. If the previous input
+         * chunk ended at a marker, all data in front of it has been inflated
+         * and a candidate checkpoint is created.
+         * @param compressedOffset current offset in the GZip file
+         */
+        void needsInput(long compressedOffset) {
+            if (bMarkerEnd) {
+                bMarkerEnd = false;
+                pending = new Checkpoint();
+                pending.compressedOffset = compressedOffset;
+                pending.uncompressedOffset = written;
+                int len = (int)Math.min(written, WINDOW_SIZE);
+                pending.window = new byte[len];
+                int pos = (int)(written % WINDOW_SIZE);
+                if (len == WINDOW_SIZE) {
+                    System.arraycopy(ring, pos, pending.window, 0, WINDOW_SIZE - pos);
+                    System.arraycopy(ring, 0, pending.window, WINDOW_SIZE - pos, pos);
+                } else {
+                    System.arraycopy(ring, 0, pending.window, 0, len);
+                }
+                verifier = new Inflater(true);
+                if (len > 0) {
+                    verifier.setDictionary(pending.window);
+                }
+                if (verifyBytes == null) {
+                    verifyBytes = new byte[GzipReader.DEFAULT_INPUT_BUFFER_SIZE];
+                }
+                verifyCrc.reset();
+                verifyCount = 0;
+                bVerifyDone = false;
+                mainCrc.reset();
+                mainCount = 0;
+            }
+        }
+
+        /**
+         * Called with each chunk of input read by the reader. A chunk is cut
+         * after the first marker if a checkpoint is due, the remaining input
+         * is pushed back.
+         * @param pbin input stream the chunk was read from
+         * @param b input buffer
+         * @param len length of input chunk
+         * @return length of input chunk to use
+         * @throws IOException if an I/O error occurs while pushing back input
+         */
+        int input(ByteCountingPushBackInputStream pbin, byte[] b, int len) throws IOException {
+            if (pending == null && written - lastUncompressedOffset >= interval) {
+                int end = findMarker(b, 0, len);
+                if (end != -1) {
+                    pbin.unread(b, end, len - end);
+                    len = end;
+                    bMarkerEnd = true;
+                }
+            }
+            if (pending != null && !bVerifyDone) {
+                verifier.setInput(b, 0, len);
+                int inflated;
+                try {
+                    while (!bVerifyDone && (inflated = verifier.inflate(verifyBytes, 0,
+                            (int)Math.min(verifyBytes.length, VERIFY_SIZE - verifyCount))) > 0) {
+                        verifyCrc.update(verifyBytes, 0, inflated);
+                        verifyCount += inflated;
+                        bVerifyDone = verifyCount == VERIFY_SIZE;
+                    }
+                    bVerifyDone |= verifier.finished() || verifier.needsDictionary();
+                } catch (DataFormatException e) {
+                    reject();
+                }
+                verify(false);
+            }
+            return len;
+        }
+
+        /**
+         * Called with the uncompressed data returned by the reader.
+         * @param b buffer with uncompressed data
+         * @param off offset of uncompressed data
+         * @param len length of uncompressed data
+         */
+        void output(byte[] b, int off, int len) {
+            if (pending != null && mainCount < VERIFY_SIZE) {
+                int verifyLen = (int)Math.min(len, VERIFY_SIZE - mainCount);
+                mainCrc.update(b, off, verifyLen);
+                mainCount += verifyLen;
+            }
+            written += len;
+            if (len > WINDOW_SIZE) {
+                off += len - WINDOW_SIZE;
+                len = WINDOW_SIZE;
+            }
+            int pos = (int)((written - len) % WINDOW_SIZE);
+            int part = Math.min(len, WINDOW_SIZE - pos);
+            System.arraycopy(b, off, ring, pos, part);
+            System.arraycopy(b, off + part, ring, 0, len - part);
+            if (pending != null) {
+                verify(false);
+            }
+        }
+
+        /**
+         * Called when the entry has been inflated.
+         */
+        void finish() {
+            if (pending != null) {
+                verify(true);
+            }
+            if (pending != null) {
+                reject();
+            }
+        }
+
+        /**
+         * Accept the candidate if the verifier and the reader agree on the
+         * following data.
+         * @param bEof all the data of the entry has been inflated
+         */
+        void verify(boolean bEof) {
+            if (pending != null && (bEof || (mainCount == VERIFY_SIZE && bVerifyDone))) {
+                if (mainCount == verifyCount && mainCrc.getValue() == verifyCrc.getValue()) {
+                    index.add(pending);
+                    lastUncompressedOffset = pending.uncompressedOffset;
+                    verifier.end();
+                    verifier = null;
+                    pending = null;
+                } else {
+                    reject();
+                }
+            }
+        }
+
+        /**
+         * Discard the candidate checkpoint.
+         */
+        void reject() {
+            if (verifier != null) {
+                verifier.end();
+                verifier = null;
+            }
+            pending = null;
+        }
+
+        /**
+         * Find the first sync or full flush marker, the LEN and NLEN values
+         * of an empty stored block.
+         * @param b input buffer
+         * @param off offset in input buffer
+         * @param len length of input
+         * @return offset following the marker or -1
+         */
+        static int findMarker(byte[] b, int off, int len) {
+            int end = off + len - 3;
+            for (int i=off; i<end; ++i) {
+                if (b[i] == 0 && b[i + 1] == 0 && b[i + 2] == (byte)0xff && b[i + 3] == (byte)0xff) {
+                    return i + 4;
+                }
+            }
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.CompressionCodec;
+
+/**
+ * GZip compression codec, the default codec of the ARC and WARC readers and
+ * writers. Each record is stored in its own GZip entry. Readers use the
+ * default resource pool for their inflaters and buffers.
+ *
+ * @author nicl
+ */
+public class GzipCodec implements CompressionCodec {
+
+    /** Codec name. */
+    public static final String NAME = "gzip";
+
+    /** Shared codec instance. */
+    protected static final GzipCodec defaultCodec = new GzipCodec();
+
+    /**
+     * Returns the shared GZip codec.
+     * @return shared GZip codec
+     */
+    public static GzipCodec getDefault() {
+        return defaultCodec;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isCompressed(ByteCountingPushBackInputStream pbin) throws IOException {
+        return GzipReader.isGzipped(pbin);
+    }
+
+    @Override
+    public GzipReader newReader(InputStream in) {
+        return new GzipReader(in, GzipResourcePool.getDefault());
+    }
+
+    @Override
+    public GzipWriter newWriter(OutputStream out) {
+        return new GzipWriter(out);
+    }
+
+}
@@ -79,6 +79,17 @@ public class GzipConstants {
     /** Reserved flag bits mask. */
     public static final int FLG_FRESERVED = 224;
 
+    /*
+     * Extra field subfields.
+     */
+
+    /** Compressed length subfield ID1. */
+    public static final byte SI1_COMPRESSED_LENGTH = 's';
+    /** Compressed length subfield ID2. */
+    public static final byte SI2_COMPRESSED_LENGTH = 'l';
+    /** Compressed length subfield data length, a little endian long. */
+    public static final int LEN_COMPRESSED_LENGTH = 8;
+
     /** FAT filesystem OS name. */
     public static final String OS_STRING_FAT_FS = "FAT filesystem (MS-DOS, OS/2, NT/Win32)";
     /** Amiga OS name. */
@@ -17,10 +17,10 @@
  */
 package org.jwat.gzip;
 
+import org.jwat.common.CompressedEntry;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.Diagnostics;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,7 +35,7 @@ import java.util.zip.DataFormatException;
  *
  * @author nicl
  */
-public class GzipEntry implements Closeable {
+public class GzipEntry implements CompressedEntry {
 
     /** Size of buffer used in writeFrom(). */
     public static final int WRITE_FROM_BUFFER_SIZE = 8192;
@@ -101,6 +101,18 @@ public class GzipEntry implements Closeable {
     /** Compressed size. */
     public long compressed_size;
 
+    /** Optional compressed data length read from the FEXTRA subfield. */
+    public Long compressed_length;
+
+    /** Optional checkpoint index built while the entry was inflated. */
+    public GzipCheckpointIndex checkpointIndex;
+
+    /** Offset of corrupt data skipped by a recovering reader before this entry, or -1. */
+    public long skippedOffset = -1;
+
+    /** Length of corrupt data skipped by a recovering reader before this entry. */
+    public long skippedLength;
+
     /** Input stream to read uncompressed data. */
     protected InputStream in;
 
@@ -169,6 +181,15 @@ public class GzipEntry implements Closeable {
         return startOffset;
     }
 
+    /**
+     * Returns the number of bytes consumed by this entry, once it has been
+     * closed.
+     * @return number of bytes consumed by this entry
+     */
+    public long getConsumed() {
+        return consumed;
+    }
+
     /**
      * Returns an input stream which must be used to read compressed data
      * after it has been uncompressed or null, if the entry is being written.
@@ -0,0 +1,282 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Index of the entries in a (multi-part) GZip file. For each entry the
+ * start offset, the compressed length of the whole entry, the uncompressed
+ * length and the CRC32 is recorded.
+ * The index can be persisted in a compact binary sidecar file and used to
+ * locate entry N or the entry which contains a given offset without
+ * scanning the GZip file. @see GzipIndexReader
+ *
+ * @author nicl
+ */
+public class GzipIndex {
+
+    /** Sidecar file magic number, "JWGI". */
+    public static final int INDEX_MAGIC = 0x4a574749;
+
+    /** Sidecar file format version. */
+    public static final int INDEX_VERSION = 1;
+
+    /** Initial capacity of the entry arrays. */
+    protected static final int INITIAL_CAPACITY = 256;
+
+    /** Number of entries in the index. */
+    protected int entries;
+
+    /** Start offset of each entry. */
+    protected long[] offsets;
+
+    /** Compressed length of each entry including header and trailer. */
+    protected long[] lengths;
+
+    /** Uncompressed length of each entry. */
+    protected long[] uncompressedLengths;
+
+    /** CRC32 of each entry. */
+    protected int[] crc32s;
+
+    /**
+     * Construct an empty index.
+     */
+    public GzipIndex() {
+        offsets = new long[INITIAL_CAPACITY];
+        lengths = new long[INITIAL_CAPACITY];
+        uncompressedLengths = new long[INITIAL_CAPACITY];
+        crc32s = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Build an index by reading all the entries of a GZip file.
+     * Entries are skipped without inflating if they include the compressed
+     * length subfield. The reader is closed before returning.
+     * @param reader GZip reader positioned at the first entry
+     * @return index of the entries read
+     * @throws IOException if an I/O error occurs while reading entries
+     */
+    public static GzipIndex build(GzipReader reader) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null!");
+        }
+        GzipIndex index = new GzipIndex();
+        GzipEntry entry;
+        try {
+            while ((entry = reader.getNextEntry()) != null) {
+                reader.skipEntry();
+                index.add(entry);
+            }
+        } finally {
+            reader.close();
+        }
+        return index;
+    }
+
+    /**
+     * Add a closed entry to the index.
+     * Entries must be added in the order of their offsets.
+     * @param entry closed GZip entry
+     */
+    public void add(GzipEntry entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("entry is null!");
+        }
+        add(entry.startOffset, entry.consumed, entry.uncompressed_size, entry.crc32);
+    }
+
+    /**
+     * Add an entry to the index.
+     * Entries must be added in the order of their offsets.
+     * @param offset start offset of entry
+     * @param length compressed length of entry including header and trailer
+     * @param uncompressedLength uncompressed length of entry
+     * @param crc32 CRC32 of entry
+     */
+    public void add(long offset, long length, long uncompressedLength, int crc32) {
+        if (entries > 0 && offset < offsets[entries - 1] + lengths[entries - 1]) {
+            throw new IllegalArgumentException("offset overlaps previous entry!");
+        }
+        if (entries == offsets.length) {
+            int capacity = entries * 2;
+            long[] tmpOffsets = new long[capacity];
+            long[] tmpLengths = new long[capacity];
+            long[] tmpUncompressedLengths = new long[capacity];
+            int[] tmpCrc32s = new int[capacity];
+            System.arraycopy(offsets, 0, tmpOffsets, 0, entries);
+            System.arraycopy(lengths, 0, tmpLengths, 0, entries);
+            System.arraycopy(uncompressedLengths, 0, tmpUncompressedLengths, 0, entries);
+            System.arraycopy(crc32s, 0, tmpCrc32s, 0, entries);
+            offsets = tmpOffsets;
+            lengths = tmpLengths;
+            uncompressedLengths = tmpUncompressedLengths;
+            crc32s = tmpCrc32s;
+        }
+        offsets[entries] = offset;
+        lengths[entries] = length;
+        uncompressedLengths[entries] = uncompressedLength;
+        crc32s[entries] = crc32;
+        ++entries;
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     * @return number of entries in the index
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Returns the start offset of entry N.
+     * @param n entry number
+     * @return start offset of entry N
+     */
+    public long getOffset(int n) {
+        checkIndex(n);
+        return offsets[n];
+    }
+
+    /**
+     * Returns the compressed length of entry N including header and trailer.
+     * @param n entry number
+     * @return compressed length of entry N
+     */
+    public long getLength(int n) {
+        checkIndex(n);
+        return lengths[n];
+    }
+
+    /**
+     * Returns the uncompressed length of entry N.
+     * @param n entry number
+     * @return uncompressed length of entry N
+     */
+    public long getUncompressedLength(int n) {
+        checkIndex(n);
+        return uncompressedLengths[n];
+    }
+
+    /**
+     * Returns the CRC32 of entry N.
+     * @param n entry number
+     * @return CRC32 of entry N
+     */
+    public int getCrc32(int n) {
+        checkIndex(n);
+        return crc32s[n];
+    }
+
+    /**
+     * Find the entry which contains the given offset.
+     * @param offset offset in GZip file
+     * @return entry number or -1 if no entry contains the offset
+     */
+    public int findEntry(long offset) {
+        int low = 0;
+        int high = entries - 1;
+        int mid;
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            if (offset < offsets[mid]) {
+                high = mid - 1;
+            } else if (offset >= offsets[mid] + lengths[mid]) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check entry number.
+     * @param n entry number
+     */
+    protected void checkIndex(int n) {
+        if (n < 0 || n >= entries) {
+            throw new IndexOutOfBoundsException("Entry " + n + " of " + entries);
+        }
+    }
+
+    /**
+     * Write the index in the binary sidecar format.
+     * The output stream is flushed but not closed.
+     * @param out output stream to write index to
+     * @throws IOException if an I/O error occurs while writing index
+     */
+    public void write(OutputStream out) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null!");
+        }
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+        dout.writeInt(INDEX_MAGIC);
+        dout.writeInt(INDEX_VERSION);
+        dout.writeInt(entries);
+        for (int i=0; i<entries; ++i) {
+            dout.writeLong(offsets[i]);
+            dout.writeLong(lengths[i]);
+            dout.writeLong(uncompressedLengths[i]);
+            dout.writeInt(crc32s[i]);
+        }
+        dout.flush();
+    }
+
+    /**
+     * Read an index in the binary sidecar format.
+     * The input stream is not closed.
+     * @param in input stream to read index from
+     * @return index read from input stream
+     * @throws IOException if an I/O error occurs while reading index or the format is invalid
+     */
+    public static GzipIndex read(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("in is null!");
+        }
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+        if (din.readInt() != INDEX_MAGIC) {
+            throw new IOException("Invalid GZip index magic!");
+        }
+        int version = din.readInt();
+        if (version != INDEX_VERSION) {
+            throw new IOException("Unsupported GZip index version: " + version);
+        }
+        int count = din.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid GZip index entry count: " + count);
+        }
+        GzipIndex index = new GzipIndex();
+        try {
+            for (int i=0; i<count; ++i) {
+                index.add(din.readLong(), din.readLong(), din.readLong(), din.readInt());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid GZip index entry!", e);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.jwat.common.RandomAccessFileInputStream;
+
+/**
+ * Random access reader for GZip files with a <code>GzipIndex</code>.
+ * Each entry is read by seeking to its offset and reading it with a single
+ * <code>GzipReader</code>, which uses a pooled inflater. The unread part of
+ * the previous entry is abandoned, not inflated. The start offset of the
+ * returned entries is relative to the seek position and therefore always 0,
+ * the index should be consulted for the absolute offset.
+ * The <code>RandomAccessFile</code> is not closed by this reader.
+ *
+ * @author nicl
+ */
+public class GzipIndexReader implements Closeable {
+
+    /** GZip file. */
+    protected RandomAccessFile raf;
+
+    /** Index of the GZip file. */
+    protected GzipIndex index;
+
+    /** Input stream reading from the current position of the GZip file. */
+    protected RandomAccessFileInputStream rafIn;
+
+    /** Reader used for all entries. */
+    protected GzipReader reader;
+
+    /**
+     * Construct a random access reader for an indexed GZip file.
+     * @param raf GZip file
+     * @param index index of the GZip file
+     */
+    public GzipIndexReader(RandomAccessFile raf, GzipIndex index) {
+        if (raf == null) {
+            throw new IllegalArgumentException("raf is null!");
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("index is null!");
+        }
+        this.raf = raf;
+        this.index = index;
+    }
+
+    /**
+     * Returns the index used by this reader.
+     * @return index used by this reader
+     */
+    public GzipIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Abandon the current entry and release the resources associated with
+     * this reader.
+     * @throws IOException if an I/O error occurs while closing reader
+     */
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.resetInput(rafIn);
+            reader.release();
+            reader = null;
+        }
+        rafIn = null;
+        raf = null;
+    }
+
+    /**
+     * Seek to entry N and return it. The previous entry is abandoned.
+     * @param n entry number
+     * @return GZip entry or null
+     * @throws IOException if an I/O error occurs while reading entry
+     */
+    public GzipEntry getEntry(int n) throws IOException {
+        long offset = index.getOffset(n);
+        raf.seek(offset);
+        if (reader == null) {
+            rafIn = new RandomAccessFileInputStream(raf);
+            reader = new GzipReader(rafIn, GzipResourcePool.getDefault());
+        } else {
+            reader.resetInput(rafIn);
+        }
+        return reader.getNextEntry();
+    }
+
+    /**
+     * Seek to the entry which contains the given offset and return it.
+     * The previous entry is abandoned.
+     * @param offset offset in GZip file
+     * @return GZip entry or null, if no entry contains the offset
+     * @throws IOException if an I/O error occurs while reading entry
+     */
+    public GzipEntry getEntryAt(long offset) throws IOException {
+        int n = index.findEntry(offset);
+        if (n == -1) {
+            return null;
+        }
+        return getEntry(n);
+    }
+
+}
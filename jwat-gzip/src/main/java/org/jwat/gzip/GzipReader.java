@@ -17,18 +17,19 @@
  */
 package org.jwat.gzip;
 
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.CompressedReader;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.ISO8859_1;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.zip.CRC32;
 import java.util.zip.DataFormatException;
@@ -42,13 +43,13 @@ import java.util.zip.Inflater;
  *
  * @author nicl
  */
-public class GzipReader implements Closeable {
+public class GzipReader implements CompressedReader {
 
     /** Buffer size to use when read skipping. */
     public static final int SKIP_READ_BUFFER_SIZE = 8192;
 
     /** Read buffer used by the skip method. */
-    protected byte[] skip_read_buffer = new byte[SKIP_READ_BUFFER_SIZE];
+    protected byte[] skip_read_buffer;
 
     /** Default input buffer size. */
     public static final int DEFAULT_INPUT_BUFFER_SIZE = 8192;
@@ -56,13 +57,18 @@ public class GzipReader implements Closeable {
     /** Input stream of GZip (multi-part) file. */
     protected ByteCountingPushBackInputStream pbin;
     /** Inflater used to uncompress GZip entries. */
-    protected Inflater inf = new Inflater( true );
+    protected Inflater inf;
     /** Checksum object used to calculate CRC16 and CRC32 values. */
     protected CRC32 crc = new CRC32();
     /** Last number of bytes read into the input buffer. */
     protected int lastInput;
     /** Input buffer used to feed the inflater. */
     protected byte[] inputBytes;
+    /** Offset of the compressed data of the current entry. */
+    protected long dataOffset;
+
+    /** Pool the inflater and buffers are taken from, if any. */
+    protected GzipResourcePool pool;
 
     /** ISO-8859-1 validating de-/encoder. */
     protected final ISO8859_1 iso8859_1 = new ISO8859_1();
@@ -88,6 +94,30 @@ public class GzipReader implements Closeable {
     /** Partial GZip entry which could not be completely read. */
     public GzipEntry partialEntry;
 
+    /** Min number of uncompressed bytes between checkpoints, 0 if disabled. */
+    protected long checkpointInterval = 0;
+
+    /** Checkpoint index builder for the current entry. */
+    protected GzipCheckpointIndex.Builder checkpointBuilder;
+
+    /** Output stream receiving the compressed input while copying an entry. */
+    protected OutputStream copyOut;
+
+    /** Scan for the next valid entry when corrupt data is encountered. */
+    protected boolean bRecoveryEnabled = false;
+
+    /** Number of corrupt bytes skipped while recovering. */
+    protected long skippedBytes;
+
+    /** Offset where the compressed data of the current entry was found corrupt, or -1. */
+    protected long corruptOffset = -1;
+
+    /** Buffer used to scan for entries while recovering. */
+    protected byte[] scanBytes;
+
+    /** Inflater used to verify candidate entries while recovering. */
+    protected Inflater scanInf;
+
     /** Buffer used to read header.  */
     protected byte[] headerBytes = new byte[10];
     /** Buffer used to read the XLEN value. */
@@ -136,7 +166,29 @@ public class GzipReader implements Closeable {
             throw new IllegalArgumentException("in is null!");
         }
         pbin = new ByteCountingPushBackInputStream(in, DEFAULT_INPUT_BUFFER_SIZE);
+        inf = new Inflater(true);
         inputBytes = new byte[DEFAULT_INPUT_BUFFER_SIZE];
+        skip_read_buffer = new byte[SKIP_READ_BUFFER_SIZE];
+    }
+
+    /**
+     * Construct a GZip reader which takes its inflater and buffers from a
+     * resource pool and returns them when it is closed or released.
+     * @param in input stream of GZip file
+     * @param pool pool to take inflater and buffers from
+     */
+    public GzipReader(InputStream in, GzipResourcePool pool) {
+        if (in == null) {
+            throw new IllegalArgumentException("in is null!");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool is null!");
+        }
+        pbin = new ByteCountingPushBackInputStream(in, DEFAULT_INPUT_BUFFER_SIZE);
+        this.pool = pool;
+        inf = pool.getInflater();
+        inputBytes = pool.getBuffer();
+        skip_read_buffer = pool.getBuffer();
     }
 
     /**
@@ -152,9 +204,10 @@ public class GzipReader implements Closeable {
             throw new IllegalArgumentException(
                     "buffer_size is less or equals to zero: " + buffer_size);
         }
-        in = new BufferedInputStream(in, buffer_size);
-        pbin = new ByteCountingPushBackInputStream(in, DEFAULT_INPUT_BUFFER_SIZE);
+        pbin = new BufferedByteCountingPushBackInputStream(in, DEFAULT_INPUT_BUFFER_SIZE, buffer_size);
+        inf = new Inflater(true);
         inputBytes = new byte[DEFAULT_INPUT_BUFFER_SIZE];
+        skip_read_buffer = new byte[SKIP_READ_BUFFER_SIZE];
     }
 
     /**
@@ -168,16 +221,74 @@ public class GzipReader implements Closeable {
             startOffset = pbin.getConsumed();
             gzipEntry = null;
         }
-        if (inf != null) {
-            inf.end();
-            inf = null;
-        }
+        releaseResources();
         if (pbin != null){
             pbin.close();
         }
         pbin = null;
     }
 
+    /**
+     * Close the current entry and release the resources associated with
+     * this reader without closing the <code>InputStream</code> supplied to
+     * the constructor. Used when the caller owns the input stream, e.g. for
+     * random access, so the inflater and buffers can be returned to the
+     * pool right away. The reader can not be used afterwards.
+     * @throws IOException if an I/O error occurs while closing entry
+     */
+    public void release() throws IOException {
+        if (gzipEntry != null) {
+            gzipEntry.close();
+            startOffset = pbin.getConsumed();
+            gzipEntry = null;
+        }
+        releaseResources();
+        pbin = null;
+    }
+
+    /**
+     * Abandon the current entry without reading the rest of it and continue
+     * reading from the given input stream, typically the same random access
+     * input after a seek. The inflater and buffers are kept, so one reader
+     * can read any number of entries. The input stream of an abandoned entry
+     * returns EOF afterwards.
+     * @param in input stream to continue reading from
+     */
+    protected void resetInput(InputStream in) {
+        if (gzipEntry != null) {
+            if (gzipEntry.in instanceof GzipEntryInputStream) {
+                ((GzipEntryInputStream)gzipEntry.in).bEof = true;
+            }
+            gzipEntry.bEof = true;
+            gzipEntry.reader = null;
+            gzipEntry = null;
+        }
+        checkpointBuilder = null;
+        pbin = new ByteCountingPushBackInputStream(in, DEFAULT_INPUT_BUFFER_SIZE);
+        startOffset = -1;
+        consumed = 0;
+    }
+
+    /**
+     * End the inflater or return it and the buffers to the pool.
+     */
+    protected void releaseResources() {
+        if (inf != null) {
+            if (pool != null) {
+                pool.releaseInflater(inf);
+                pool.releaseBuffer(inputBytes);
+                pool.releaseBuffer(skip_read_buffer);
+            } else {
+                inf.end();
+            }
+            inf = null;
+        }
+        if (scanInf != null) {
+            scanInf.end();
+            scanInf = null;
+        }
+    }
+
     /**
      * Returns a boolean indicating whether all entries parsed so far are compliant.
      * @return a boolean indicating whether all entries parsed so far are compliant
@@ -216,6 +327,60 @@ public class GzipReader implements Closeable {
         return consumed;
     }
 
+    /**
+     * Returns the min number of uncompressed bytes between checkpoints or 0
+     * if checkpoint indexing is disabled.
+     * @return min number of uncompressed bytes between checkpoints
+     */
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Enable or disable building a checkpoint index for each entry while it
+     * is inflated. The index is available from <code>GzipEntry</code> when
+     * the entry has been read. Only changed prior to reading an entry header.
+     * @see GzipCheckpointIndex
+     * @param interval min number of uncompressed bytes between checkpoints or 0 to disable
+     */
+    public void setCheckpointInterval(long interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval is negative!");
+        }
+        checkpointInterval = interval;
+    }
+
+    /**
+     * Returns a boolean indicating whether corrupt data is skipped by
+     * scanning for the next valid entry.
+     * @return a boolean indicating whether recovery is enabled
+     */
+    public boolean isRecoveryEnabled() {
+        return bRecoveryEnabled;
+    }
+
+    /**
+     * Enable or disable recovery from corrupt data. When enabled and the
+     * compressed data of an entry is corrupt, or the next entry header is
+     * not valid, the following data is scanned for the next plausible entry
+     * header which is verified by a trial inflate. Reading then resumes from
+     * that entry. Each skipped range is reported as an error in the reader
+     * diagnostics and in the <code>skippedOffset</code> and
+     * <code>skippedLength</code> fields of the next entry.
+     * @param enabled enable or disable recovery
+     */
+    public void setRecoveryEnabled(boolean enabled) {
+        bRecoveryEnabled = enabled;
+    }
+
+    /**
+     * Returns the number of corrupt bytes skipped while recovering.
+     * @return number of corrupt bytes skipped
+     */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+
     /**
      * Get the next GZip entry header and prepare the compressed data for
      * input stream retrieval.
@@ -223,11 +388,43 @@ public class GzipReader implements Closeable {
      * @throws IOException if an I/O error occurs while reading entry
      */
     public GzipEntry getNextEntry() throws IOException {
+        long skippedOffset = -1;
         if (gzipEntry != null) {
-            gzipEntry.close();
+            if (bRecoveryEnabled) {
+                skippedOffset = closeCorruptEntry();
+            } else {
+                gzipEntry.close();
+            }
             gzipEntry = null;
         }
-        int read = pbin.readFully(headerBytes);
+        boolean bScan = (skippedOffset != -1);
+        int read;
+        while (true) {
+            if (bScan) {
+                scanForEntry();
+            }
+            read = pbin.readFully(headerBytes);
+            if (!bRecoveryEnabled || read != 10 || GzipScanner.isPlausibleHeader(headerBytes, 0)) {
+                break;
+            }
+            // Invalid header, scan from the following byte.
+            if (skippedOffset == -1) {
+                skippedOffset = pbin.getConsumed() - 10;
+            }
+            pbin.unread(headerBytes, 1, 9);
+            bScan = true;
+        }
+        long skipped = 0;
+        if (skippedOffset != -1) {
+            skipped = pbin.getConsumed() - (read == 10 ? 10 : 0) - skippedOffset;
+        }
+        if (skipped > 0) {
+            skippedBytes += skipped;
+            consumed += skipped;
+            diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file",
+                    "Corrupt data skipped", Long.toString(skippedOffset), Long.toString(skipped)));
+            bIsCompliant = false;
+        }
         if (read == 10) {
             try {
                 crc.reset();
@@ -236,6 +433,10 @@ public class GzipReader implements Closeable {
                 gzipEntry = new GzipEntry();
                 gzipEntry.reader = this;
                 gzipEntry.startOffset = startOffset;
+                if (skipped > 0) {
+                    gzipEntry.skippedOffset = skippedOffset;
+                    gzipEntry.skippedLength = skipped;
+                }
                 /*
                  * Header.
                  */
@@ -342,6 +543,11 @@ public class GzipReader implements Closeable {
                                         System.arraycopy(gzipEntry.extraBytes, idx, extraData.data, 0, len);
                                         idx += len;
                                         gzipEntry.extraData.add(extraData);
+                                        if (extraData.si1 == GzipConstants.SI1_COMPRESSED_LENGTH
+                                                && extraData.si2 == GzipConstants.SI2_COMPRESSED_LENGTH
+                                                && len == GzipConstants.LEN_COMPRESSED_LENGTH) {
+                                            gzipEntry.compressed_length = getCompressedLength(extraData.data, 0);
+                                        }
                                     } else {
                                         b = false;
                                     }
@@ -443,7 +649,15 @@ public class GzipReader implements Closeable {
                  * Prepare Entry InputStream.
                  */
                 lastInput = 0;
+                dataOffset = pbin.getConsumed();
                 gzipEntry.in = new GzipEntryInputStream(this, gzipEntry);
+                if (checkpointInterval > 0) {
+                    gzipEntry.checkpointIndex = new GzipCheckpointIndex(startOffset);
+                    checkpointBuilder = new GzipCheckpointIndex.Builder(gzipEntry.checkpointIndex,
+                            checkpointInterval, pbin.getConsumed());
+                } else {
+                    checkpointBuilder = null;
+                }
                 // Compliance
                 if (gzipEntry.diagnostics.hasErrors() || gzipEntry.diagnostics.hasWarnings()) {
                     gzipEntry.bIsCompliant = false;
@@ -472,6 +686,305 @@ public class GzipReader implements Closeable {
         return gzipEntry;
     }
 
+    /**
+     * Close the current entry and return the offset where its compressed
+     * data was found to be corrupt, if so.
+     * @return offset where inflating failed or -1 if the entry is not corrupt
+     * @throws IOException if an I/O error occurs while closing entry
+     */
+    protected long closeCorruptEntry() throws IOException {
+        GzipEntry entry = gzipEntry;
+        try {
+            entry.close();
+        } catch (IOException e) {
+            if (corruptOffset == -1) {
+                throw e;
+            }
+            // Corrupt data found while the entry was closed.
+            entry.consumed = corruptOffset - entry.startOffset;
+            entry.reader = null;
+            consumed += entry.consumed;
+        }
+        long offset = corruptOffset;
+        corruptOffset = -1;
+        return offset;
+    }
+
+    /**
+     * Called when the compressed data of the current entry is found to be
+     * corrupt while recovery is enabled. The input not used by the inflater
+     * is pushed back, so scanning for the next entry starts where inflating
+     * failed.
+     * @throws IOException if an I/O error occurs while pushing back input
+     */
+    protected void markCorrupt() throws IOException {
+        if (lastInput > 0) {
+            returnRemainingInput();
+        }
+        checkpointBuilder = null;
+        corruptOffset = pbin.getConsumed();
+    }
+
+    /**
+     * Scan forward for the next plausible entry header which can be verified
+     * by a trial inflate and leave the input positioned at it. If no entry
+     * is found all the remaining input is consumed.
+     * Candidates are verified within the push back capacity of the input
+     * stream, using the same rule as <code>GzipScanner.findEntry</code>.
+     * @see GzipScanner#verifyCandidate(byte[], int, int, boolean, boolean, Inflater)
+     * @return boolean indicating whether an entry was found
+     * @throws IOException if an I/O error occurs while scanning
+     */
+    protected boolean scanForEntry() throws IOException {
+        if (scanBytes == null) {
+            scanBytes = new byte[pbin.getPushbackSize()];
+            scanInf = new Inflater(true);
+        }
+        int len;
+        int read;
+        boolean bEof;
+        int idx;
+        int result;
+        while (true) {
+            len = 0;
+            read = 0;
+            while (len < scanBytes.length && (read = pbin.read(scanBytes, len, scanBytes.length - len)) != -1) {
+                len += read;
+            }
+            bEof = (read == -1);
+            idx = 0;
+            result = GzipScanner.VERIFY_INVALID;
+            while (result == GzipScanner.VERIFY_INVALID
+                    && (idx = GzipScanner.indexOfHeader(scanBytes, idx, len - idx)) != -1) {
+                result = GzipScanner.verifyCandidate(scanBytes, idx, len - idx, bEof,
+                        idx == 0 && len == scanBytes.length, scanInf);
+                if (result == GzipScanner.VERIFY_INVALID) {
+                    ++idx;
+                }
+            }
+            if (result == GzipScanner.VERIFY_VALID) {
+                pbin.unread(scanBytes, idx, len - idx);
+                return true;
+            } else if (result == GzipScanner.VERIFY_MORE_DATA) {
+                // Read the candidate again with more data following it.
+                pbin.unread(scanBytes, idx, len - idx);
+            } else if (bEof) {
+                return false;
+            } else if (len >= 9) {
+                // Keep the bytes which may start a header in the next buffer.
+                pbin.unread(scanBytes, len - 9, 9);
+            }
+        }
+    }
+
+    /**
+     * Skip the current entry without inflating it, if its header includes
+     * the compressed length subfield and none of its data has been read.
+     * Otherwise the entry is closed which inflates the remaining data.
+     * The CRC32 and ISize trailer values of a skipped entry are read but
+     * can not be validated.
+     * @return boolean indicating whether the entry was skipped without inflating
+     * @throws IOException if an I/O error occurs while skipping entry
+     */
+    public boolean skipEntry() throws IOException {
+        if (gzipEntry == null) {
+            return false;
+        }
+        boolean bSkipped = false;
+        if (gzipEntry.compressed_length != null && gzipEntry.compressed_length >= 0
+                && isUnread()) {
+            skipData(null);
+            bSkipped = true;
+        }
+        gzipEntry.close();
+        gzipEntry = null;
+        return bSkipped;
+    }
+
+    /**
+     * Skip the rest of the current entry without inflating it and close it,
+     * if <code>isSkippable</code> returns true. Unlike <code>skipEntry</code>
+     * data which has already been read does not prevent skipping.
+     * Otherwise the entry is left open and nothing is skipped.
+     * The CRC32 and ISize trailer values of a skipped entry are read but
+     * can not be validated.
+     * @return boolean indicating whether the entry was skipped without inflating
+     * @throws IOException if an I/O error occurs while skipping entry
+     */
+    public boolean skipRemaining() throws IOException {
+        if (!isSkippable()) {
+            return false;
+        }
+        if (lastInput > 0) {
+            // Position the stream after the data used by the inflater.
+            returnRemainingInput();
+            lastInput = 0;
+        }
+        skipData(null);
+        gzipEntry.close();
+        gzipEntry = null;
+        return true;
+    }
+
+    /**
+     * Returns a boolean indicating whether the rest of the current entry can
+     * be skipped by <code>skipRemaining</code> without inflating it.
+     * @return a boolean indicating whether the rest of the current entry can be skipped
+     */
+    public boolean isSkippable() {
+        if (gzipEntry == null || gzipEntry.compressed_length == null
+                || gzipEntry.compressed_length < 0) {
+            return false;
+        }
+        if (isUnread()) {
+            return true;
+        }
+        return checkpointBuilder == null && copyOut == null
+                && gzipEntry.in instanceof GzipEntryInputStream
+                && !((GzipEntryInputStream)gzipEntry.in).bEof
+                && pbin.getConsumed() - inf.getRemaining() - dataOffset <= gzipEntry.compressed_length;
+    }
+
+    /**
+     * Copy the current entry verbatim, header, compressed data and trailer,
+     * to an output stream and close it. If verification is requested or
+     * the entry has no compressed length subfield the data is inflated
+     * while copying, to locate the trailer and validate the CRC32 and ISize.
+     * Otherwise the compressed data is copied without inflating.
+     * @param out output stream to copy entry to
+     * @param bVerify inflate the data to validate the CRC32 and ISize values
+     * @return number of bytes copied
+     * @throws IOException if an I/O error occurs while copying entry
+     */
+    public long copyEntry(OutputStream out, boolean bVerify) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null!");
+        }
+        if (gzipEntry == null) {
+            throw new IllegalStateException("No current entry!");
+        }
+        if (!isUnread()) {
+            throw new IllegalStateException("Entry data has already been read!");
+        }
+        writeRawHeader(out);
+        if (!bVerify && gzipEntry.compressed_length != null && gzipEntry.compressed_length >= 0) {
+            skipData(out);
+        } else {
+            copyOut = out;
+            try {
+                gzipEntry.in.close();
+            } finally {
+                copyOut = null;
+            }
+        }
+        GzipEntry entry = gzipEntry;
+        gzipEntry.close();
+        gzipEntry = null;
+        return entry.consumed;
+    }
+
+    /**
+     * Returns a boolean indicating whether the data of the current entry
+     * is still unread.
+     * @return a boolean indicating whether the data of the current entry is unread
+     */
+    protected boolean isUnread() {
+        return lastInput == 0
+                && gzipEntry.in instanceof GzipEntryInputStream
+                && !((GzipEntryInputStream)gzipEntry.in).bEof;
+    }
+
+    /**
+     * Write the header of the current entry as it was read.
+     * @param out output stream to write header to
+     * @throws IOException if an I/O error occurs while writing header
+     */
+    protected void writeRawHeader(OutputStream out) throws IOException {
+        out.write(headerBytes);
+        if ((gzipEntry.flg & GzipConstants.FLG_FEXTRA) == GzipConstants.FLG_FEXTRA) {
+            out.write(xlenBytes);
+            out.write(gzipEntry.extraBytes);
+        }
+        if ((gzipEntry.flg & GzipConstants.FLG_FNAME) == GzipConstants.FLG_FNAME) {
+            out.write(fnameBytes);
+            out.write(0);
+        }
+        if ((gzipEntry.flg & GzipConstants.FLG_FCOMMENT) == GzipConstants.FLG_FCOMMENT) {
+            out.write(fcommentBytes);
+            out.write(0);
+        }
+        if ((gzipEntry.flg & GzipConstants.FLG_FHCRC) == GzipConstants.FLG_FHCRC) {
+            out.write(crc16Bytes);
+        }
+    }
+
+    /**
+     * Skip or copy the remaining compressed data of the current entry using its
+     * compressed length subfield and read the trailer without validating it.
+     * @param out output stream to copy data and trailer to or null to skip
+     * @throws IOException if an I/O error occurs while skipping data
+     */
+    protected void skipData(OutputStream out) throws IOException {
+        ((GzipEntryInputStream)gzipEntry.in).bEof = true;
+        long remaining = gzipEntry.compressed_length - (pbin.getConsumed() - dataOffset);
+        long skipped;
+        int read;
+        while (remaining > 0) {
+            if (out == null) {
+                skipped = pbin.skip(remaining);
+                if (skipped > 0) {
+                    remaining -= skipped;
+                } else if (pbin.read() != -1) {
+                    --remaining;
+                } else {
+                    break;
+                }
+            } else {
+                read = pbin.read(skip_read_buffer, 0, (int)Math.min(remaining, skip_read_buffer.length));
+                if (read != -1) {
+                    out.write(skip_read_buffer, 0, read);
+                    remaining -= read;
+                } else {
+                    break;
+                }
+            }
+        }
+        read = 0;
+        if (remaining == 0) {
+            read = pbin.readFully(trailerBytes);
+        }
+        gzipEntry.consumed = pbin.getConsumed() - gzipEntry.startOffset;
+        gzipEntry.compressed_size = gzipEntry.compressed_length - remaining;
+        consumed += gzipEntry.consumed;
+        gzipEntry.reader = null;
+        if (read == 8) {
+            gzipEntry.crc32 = ((trailerBytes[3] & 255) << 24) | ((trailerBytes[2] & 255) << 16) | ((trailerBytes[1] & 255) << 8) | (trailerBytes[0] & 255);
+            gzipEntry.isize = ((trailerBytes[7] & 255) << 24) | ((trailerBytes[6] & 255) << 16) | ((trailerBytes[5] & 255) << 8) | (trailerBytes[4] & 255);
+            gzipEntry.uncompressed_size = gzipEntry.isize & 0xffffffffL;
+            if (out != null) {
+                out.write(trailerBytes);
+            }
+        } else {
+            gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
+            gzipEntry.bIsCompliant = false;
+            bIsCompliant = false;
+        }
+    }
+
+    /**
+     * Decode a little endian compressed length subfield value.
+     * @param b byte array
+     * @param off offset of the subfield data
+     * @return compressed length
+     */
+    public static long getCompressedLength(byte[] b, int off) {
+        long l = 0;
+        for (int i=GzipConstants.LEN_COMPRESSED_LENGTH-1; i>=0; --i) {
+            l = (l << 8) | (b[off + i] & 255);
+        }
+        return l;
+    }
+
     /**
      * Read non-compressed zero terminated data.
      * @return zero terminated data
@@ -499,6 +1012,9 @@ public class GzipReader implements Closeable {
         consumed += entry.consumed;
         entry.reader = null;
         if (read == 8) {
+            if (copyOut != null) {
+                copyOut.write(trailerBytes);
+            }
             entry.crc32 = ((trailerBytes[3] & 255) << 24) | ((trailerBytes[2] & 255) << 16) | ((trailerBytes[1] & 255) << 8) | (trailerBytes[0] & 255);
             entry.isize = ((trailerBytes[7] & 255) << 24) | ((trailerBytes[6] & 255) << 16) | ((trailerBytes[5] & 255) << 8) | (trailerBytes[4] & 255);
             entry.comp_crc32 = (int)(crc.getValue() & 0xffffffff);
@@ -556,13 +1072,11 @@ public class GzipReader implements Closeable {
                 bIsCompliant = false;
                 throw new DataFormatException("Dictionary needed!");
             } else if (inf.needsInput()) {
-                lastInput = pbin.read(inputBytes, 0, inputBytes.length);
-                if (lastInput == -1) {
+                if (!fillInput()) {
                     gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
                     bIsCompliant = false;
                     throw new DataFormatException("Data missing!");
                 }
-                inf.setInput(inputBytes, 0, lastInput);
             } else {
                 gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
                 bIsCompliant = false;
@@ -572,6 +1086,46 @@ public class GzipReader implements Closeable {
         return inflated;
     }
 
+    /**
+     * Read the next chunk of compressed data into the input buffer and feed
+     * it to the inflater.
+     * @return boolean indicating whether any input was read or EOF was reached
+     * @throws IOException if an I/O error occurs while reading data
+     */
+    protected boolean fillInput() throws IOException {
+        if (checkpointBuilder != null) {
+            checkpointBuilder.needsInput(pbin.getConsumed());
+        }
+        if (copyOut != null && lastInput > 0) {
+            copyOut.write(inputBytes, 0, lastInput);
+        }
+        lastInput = pbin.read(inputBytes, 0, inputBytes.length);
+        if (lastInput == -1) {
+            return false;
+        }
+        if (checkpointBuilder != null) {
+            lastInput = checkpointBuilder.input(pbin, inputBytes, lastInput);
+        }
+        inf.setInput(inputBytes, 0, lastInput);
+        return true;
+    }
+
+    /**
+     * Push the input not used by the inflater back into the input stream,
+     * so the trailer and next entry can be read from it.
+     * @throws IOException if an I/O error occurs while pushing back input
+     */
+    protected void returnRemainingInput() throws IOException {
+        int remaining = inf.getRemaining();
+        if (remaining > lastInput) {
+            throw new IOException("Remaining larger than lastInput!");
+        }
+        pbin.unread(inputBytes, lastInput - remaining, remaining);
+        if (copyOut != null) {
+            copyOut.write(inputBytes, 0, lastInput - remaining);
+        }
+    }
+
     /**
      * <code>InputStream</code> to expose GZip'ed data in a controlled fashion.
      *
@@ -639,18 +1193,24 @@ public class GzipReader implements Closeable {
             } catch (DataFormatException e) {
                 gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
                 reader.bIsCompliant = false;
+                if (reader.bRecoveryEnabled) {
+                    reader.markCorrupt();
+                    bEof = true;
+                }
                 throw new IOException(e);
             }
             if (read != -1) {
                 reader.crc.update(b, off, read);
+                if (reader.checkpointBuilder != null) {
+                    reader.checkpointBuilder.output(b, off, read);
+                }
             }
             else {
-                int remaining = reader.inf.getRemaining();
-                if (remaining > reader.lastInput) {
-                    throw new IOException("Remaining larger than lastInput!");
+                reader.returnRemainingInput();
+                if (reader.checkpointBuilder != null) {
+                    reader.checkpointBuilder.finish();
+                    reader.checkpointBuilder = null;
                 }
-                reader.pbin.unread(reader.inputBytes, reader.lastInput - remaining,
-                                   remaining);
                 bEof = true;
                 reader.readTrailer(gzipEntry);
             }
@@ -0,0 +1,319 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.Inflater;
+
+import org.jwat.common.ByteCountingPushBackInputStream;
+
+/**
+ * GZip reader which reads compressed data from a blocking
+ * <code>ReadableByteChannel</code> into a direct <code>ByteBuffer</code>.
+ * On JDKs where <code>Inflater</code> accepts a <code>ByteBuffer</code> as
+ * input the compressed data is inflated straight from the direct buffer,
+ * without copying it to the heap first. On older JDKs, and while copying
+ * entries or building checkpoint indexes, the inherited heap buffer path is
+ * used instead.
+ * Skipping entries with the compressed length subfield uses
+ * <code>FileChannel</code> positioning when possible.
+ *
+ * @author nicl
+ */
+public class GzipReaderChannel extends GzipReader {
+
+    /** Default size of the direct channel buffer. */
+    public static final int DEFAULT_CHANNEL_BUFFER_SIZE = 65536;
+
+    /** <code>Inflater.setInput(ByteBuffer)</code> or null if not available. */
+    protected static final Method inflaterSetInputMethod;
+
+    static {
+        Method method = null;
+        try {
+            method = Inflater.class.getMethod("setInput", ByteBuffer.class);
+        } catch (NoSuchMethodException e) {
+            // Older JDK, use the heap buffer path.
+        }
+        inflaterSetInputMethod = method;
+    }
+
+    /** Channel backed input stream. */
+    protected ChannelInputStream cin;
+
+    /** Push back stream on top of the channel backed input stream. */
+    protected ChannelPushBackInputStream cpbin;
+
+    /** Inflate straight from the direct buffer if supported. */
+    protected boolean bDirectInflateEnabled = true;
+
+    /** Is the direct buffer the current inflater input. */
+    protected boolean bDirectInput;
+
+    /** Direct buffer position up to which input has been counted. */
+    protected int directCounted;
+
+    /**
+     * Returns a boolean indicating whether this JDK supports inflating
+     * directly from a <code>ByteBuffer</code>.
+     * @return a boolean indicating whether direct inflating is supported
+     */
+    public static boolean isDirectInflateSupported() {
+        return inflaterSetInputMethod != null;
+    }
+
+    /**
+     * Construct a GZip reader with a direct buffer size of
+     * DEFAULT_CHANNEL_BUFFER_SIZE.
+     * @param channel blocking channel of GZip file
+     */
+    public GzipReaderChannel(ReadableByteChannel channel) {
+        this(channel, DEFAULT_CHANNEL_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a GZip reader with the specified direct buffer size.
+     * @param channel blocking channel of GZip file
+     * @param buffer_size direct buffer size to use
+     */
+    public GzipReaderChannel(ReadableByteChannel channel, int buffer_size) {
+        this(new ChannelInputStream(channel, buffer_size));
+    }
+
+    /**
+     * Construct a GZip reader on top of a channel backed input stream.
+     * @param cin channel backed input stream
+     */
+    protected GzipReaderChannel(ChannelInputStream cin) {
+        super(cin);
+        this.cin = cin;
+        cpbin = new ChannelPushBackInputStream(cin, DEFAULT_INPUT_BUFFER_SIZE);
+        pbin = cpbin;
+    }
+
+    /**
+     * Returns a boolean indicating whether data is inflated straight from
+     * the direct buffer, when supported by the JDK.
+     * @return a boolean indicating whether direct inflating is enabled
+     */
+    public boolean isDirectInflateEnabled() {
+        return bDirectInflateEnabled;
+    }
+
+    /**
+     * Enable or disable inflating straight from the direct buffer.
+     * Takes effect the next time the inflater needs input.
+     * @param enabled enable or disable direct inflating
+     */
+    public void setDirectInflateEnabled(boolean enabled) {
+        bDirectInflateEnabled = enabled;
+    }
+
+    @Override
+    protected boolean fillInput() throws IOException {
+        countDirectInput();
+        bDirectInput = false;
+        if (!bDirectInflateEnabled || inflaterSetInputMethod == null
+                || copyOut != null || checkpointBuilder != null
+                || cpbin.getPushbackLength() > 0) {
+            return super.fillInput();
+        }
+        ByteBuffer buffer = cin.buffer;
+        if (!buffer.hasRemaining() && cin.fill() == -1) {
+            return false;
+        }
+        lastInput = buffer.remaining();
+        directCounted = buffer.position();
+        try {
+            inflaterSetInputMethod.invoke(inf, buffer);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (InvocationTargetException e) {
+            throw new IOException(e.getCause());
+        }
+        bDirectInput = true;
+        return true;
+    }
+
+    @Override
+    protected void returnRemainingInput() throws IOException {
+        if (bDirectInput) {
+            // The unused input is left in the direct buffer.
+            countDirectInput();
+            bDirectInput = false;
+        } else {
+            super.returnRemainingInput();
+        }
+    }
+
+    /**
+     * Add the direct buffer input used by the inflater since last time to
+     * the consumed bytes of the push back stream.
+     */
+    protected void countDirectInput() {
+        if (bDirectInput) {
+            int position = cin.buffer.position();
+            cpbin.addConsumed(position - directCounted);
+            directCounted = position;
+        }
+    }
+
+    /**
+     * <code>InputStream</code> reading from a channel through a direct
+     * <code>ByteBuffer</code>. The unread part of the buffer is between its
+     * position and limit.
+     *
+     * @author nicl
+     */
+    protected static class ChannelInputStream extends InputStream {
+
+        /** Channel to read from. */
+        protected ReadableByteChannel channel;
+
+        /** Direct buffer with data read from the channel. */
+        protected ByteBuffer buffer;
+
+        /**
+         * Construct an input stream reading from a channel.
+         * @param channel blocking channel to read from
+         * @param buffer_size direct buffer size to use
+         */
+        public ChannelInputStream(ReadableByteChannel channel, int buffer_size) {
+            if (channel == null) {
+                throw new IllegalArgumentException("channel is null!");
+            }
+            if (buffer_size <= 0) {
+                throw new IllegalArgumentException(
+                        "buffer_size is less or equals to zero: " + buffer_size);
+            }
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(buffer_size);
+            buffer.flip();
+        }
+
+        /**
+         * Refill the empty buffer from the channel.
+         * @return number of bytes read or -1 on EOF
+         * @throws IOException if an I/O error occurs while reading channel
+         */
+        protected int fill() throws IOException {
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining() && fill() == -1) {
+                return -1;
+            }
+            return buffer.get() & 255;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining() && fill() == -1) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            long skipped = Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + (int)skipped);
+            if (skipped < n && channel instanceof FileChannel) {
+                FileChannel fc = (FileChannel)channel;
+                long position = fc.position();
+                long seek = Math.min(n - skipped, fc.size() - position);
+                if (seek > 0) {
+                    fc.position(position + seek);
+                    skipped += seek;
+                }
+            }
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+    /**
+     * Push back stream which exposes the number of pushed back bytes and
+     * allows bytes consumed directly from the underlying buffer to be
+     * counted.
+     *
+     * @author nicl
+     */
+    protected static class ChannelPushBackInputStream extends ByteCountingPushBackInputStream {
+
+        /**
+         * Construct a push back stream.
+         * @param in input stream to wrap
+         * @param size push back buffer size
+         */
+        public ChannelPushBackInputStream(InputStream in, int size) {
+            super(in, size);
+        }
+
+        /**
+         * Returns the number of bytes currently pushed back.
+         * @return number of bytes currently pushed back
+         */
+        public int getPushbackLength() {
+            return buf.length - pos;
+        }
+
+        /**
+         * Count bytes consumed directly from the underlying stream buffer.
+         * @param bytes number of bytes consumed
+         */
+        public void addConsumed(long bytes) {
+            consumed += bytes;
+            counter += bytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,891 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.jwat.common.ByteCountingPushBackInputStream;
+
+/**
+ * A reader for multi-part GZip files which inflates entries in parallel.
+ * Compressed data is read in blocks which are scanned for plausible GZip
+ * headers. Candidates are inflated and validated by worker threads, at
+ * most a bounded number ahead of the entry being returned.
+ * Entries are still returned in file order and with the same diagnostics
+ * as the sequential <code>GzipReader</code>.
+ * Entries which cross a block boundary, are too large to keep in memory or
+ * fail to inflate are read sequentially by the inherited code instead,
+ * directly from the block without copying it. Parallel inflation resumes
+ * on the same block once such an entry has been read.
+ * Blocks are reused once the last worker using them has finished.
+ *
+ * @author nicl
+ */
+public class GzipReaderParallel extends GzipReader {
+
+    /** Default size of compressed data blocks. */
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    /** Default max size of an inflated entry kept in memory. */
+    public static final int DEFAULT_MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+    /** Initial size of the buffer an entry is inflated into. */
+    protected static final int INITIAL_INFLATED_SIZE = 64 * 1024;
+
+    /** Size of compressed data blocks. */
+    protected int blockSize;
+
+    /** Max size of an inflated entry kept in memory. */
+    protected int maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
+
+    /** Executor used to inflate entries. */
+    protected ExecutorService executor;
+
+    /** Is the executor owned and shutdown by this reader. */
+    protected boolean bOwnExecutor;
+
+    /** Max number of inflate tasks queued ahead of the next entry. */
+    protected int maxPendingTasks;
+
+    /** Pool of block buffers. */
+    protected GzipResourcePool blockPool;
+
+    /** Input stream able to return the remainder of a block without copying. */
+    protected BlockPushBackInputStream bpbin;
+
+    /** Current block of compressed data. */
+    protected Block block;
+
+    /** Stream offset of the first byte in the current block. */
+    protected long blockOffset;
+
+    /** Position of the next entry in the current block. */
+    protected int blockPos;
+
+    /** Position to continue scanning for candidate headers from. */
+    protected int scanPos;
+
+    /** Is the current block being read sequentially. */
+    protected boolean bSuspended;
+
+    /** Pending inflate tasks in block position order. */
+    protected LinkedList<InflateTask> tasks = new LinkedList<InflateTask>();
+
+    /**
+     * Construct a parallel GZip reader using the specified number of threads
+     * and a default block size of DEFAULT_BLOCK_SIZE.
+     * @param in input stream of GZip file
+     * @param threads number of inflater threads
+     */
+    public GzipReaderParallel(InputStream in, int threads) {
+        this(in, newExecutor(threads), DEFAULT_BLOCK_SIZE);
+        bOwnExecutor = true;
+        maxPendingTasks = threads * 2;
+    }
+
+    /**
+     * Construct a parallel GZip reader using the supplied executor.
+     * The executor is not shutdown when the reader is closed.
+     * @param in input stream of GZip file
+     * @param executor executor used to inflate entries
+     * @param block_size size of compressed data blocks
+     */
+    public GzipReaderParallel(InputStream in, ExecutorService executor, int block_size) {
+        super(in);
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null!");
+        }
+        if (block_size <= 0) {
+            throw new IllegalArgumentException(
+                    "block_size is less or equals to zero: " + block_size);
+        }
+        this.executor = executor;
+        this.blockSize = block_size;
+        maxPendingTasks = Runtime.getRuntime().availableProcessors() * 2;
+        // One block being returned and one still used by lingering workers.
+        blockPool = new GzipResourcePool(1, block_size);
+        bpbin = new BlockPushBackInputStream(in, DEFAULT_INPUT_BUFFER_SIZE);
+        pbin = bpbin;
+    }
+
+    /**
+     * Create a fixed size pool of daemon threads.
+     * @param threads number of threads
+     * @return executor service
+     */
+    protected static ExecutorService newExecutor(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "threads is less or equals to zero: " + threads);
+        }
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "GzipReaderParallel");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Set the max size of an inflated entry kept in memory. Larger entries
+     * are read sequentially.
+     * @param size max inflated entry size
+     */
+    public void setMaxInflatedSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException(
+                    "size is less or equals to zero: " + size);
+        }
+        maxInflatedSize = size;
+    }
+
+    /**
+     * Returns the max size of an inflated entry kept in memory.
+     * @return max inflated entry size
+     */
+    public int getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+
+    /**
+     * Set the max number of inflate tasks queued ahead of the next entry.
+     * @param tasks max number of pending inflate tasks
+     */
+    public void setMaxPendingTasks(int tasks) {
+        if (tasks <= 0) {
+            throw new IllegalArgumentException(
+                    "tasks is less or equals to zero: " + tasks);
+        }
+        maxPendingTasks = tasks;
+    }
+
+    /**
+     * Returns the max number of inflate tasks queued ahead of the next entry.
+     * @return max number of pending inflate tasks
+     */
+    public int getMaxPendingTasks() {
+        return maxPendingTasks;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dropBlock();
+        if (executor != null) {
+            if (bOwnExecutor) {
+                executor.shutdownNow();
+            }
+            executor = null;
+        }
+        super.close();
+    }
+
+    @Override
+    public long getOffset() {
+        if (block != null && !bSuspended) {
+            return blockOffset + blockPos;
+        } else {
+            return super.getOffset();
+        }
+    }
+
+    @Override
+    public GzipEntry getNextEntry() throws IOException {
+        if (checkpointInterval > 0 || bRecoveryEnabled) {
+            // Checkpoints are recorded and corrupt data recovered while inflating sequentially.
+            if (block != null) {
+                if (gzipEntry != null) {
+                    gzipEntry.close();
+                    gzipEntry = null;
+                }
+                if (!bSuspended) {
+                    bpbin.pushBlock(block, blockPos, block.len - blockPos);
+                }
+                dropBlock();
+            }
+            return super.getNextEntry();
+        }
+        if (gzipEntry != null) {
+            gzipEntry.close();
+            gzipEntry = null;
+        }
+        if (bSuspended) {
+            // Resume on the block unless the sequential entry continued past it.
+            bSuspended = false;
+            int pos = bpbin.resumeBlock(block);
+            if (pos != -1) {
+                blockPos = pos;
+            } else {
+                dropBlock();
+            }
+        }
+        if (block == null || blockPos == block.len) {
+            fillBlock();
+        }
+        if (block.len == 0) {
+            // EOF, let the sequential reader handle diagnostics.
+            dropBlock();
+            return super.getNextEntry();
+        }
+        // Candidates inside entries already returned are never inflated.
+        while (!tasks.isEmpty() && tasks.getFirst().position < blockPos) {
+            tasks.removeFirst().future.cancel(true);
+        }
+        if (scanPos < blockPos) {
+            scanPos = blockPos;
+        }
+        submitTasks();
+        InflateResult result = null;
+        if (!tasks.isEmpty() && tasks.getFirst().position == blockPos) {
+            result = tasks.removeFirst().get();
+        }
+        if (result == null) {
+            // Read sequentially from the remainder of the block, keeping queued tasks.
+            bpbin.pushBlock(block, blockPos, block.len - blockPos);
+            bSuspended = true;
+            return super.getNextEntry();
+        }
+        startOffset = blockOffset + blockPos;
+        blockPos += (int)result.entry.consumed;
+        scanPos = blockPos;
+        submitTasks();
+        gzipEntry = result.entry;
+        gzipEntry.startOffset = startOffset;
+        gzipEntry.reader = this;
+        gzipEntry.in = new InflatedEntryInputStream(this, gzipEntry, result.data, result.length);
+        bIsCompliant &= gzipEntry.bIsCompliant;
+        ++entries;
+        return gzipEntry;
+    }
+
+    /**
+     * Copy the current entry verbatim to an output stream and close it.
+     * Entries inflated by a worker have already been validated and are
+     * copied from the block of compressed data.
+     * @param out output stream to copy entry to
+     * @param bVerify inflate the data to validate the CRC32 and ISize values
+     * @return number of bytes copied
+     * @throws IOException if an I/O error occurs while copying entry
+     */
+    @Override
+    public long copyEntry(OutputStream out, boolean bVerify) throws IOException {
+        if (gzipEntry == null || !(gzipEntry.in instanceof InflatedEntryInputStream)) {
+            return super.copyEntry(out, bVerify);
+        }
+        if (out == null) {
+            throw new IllegalArgumentException("out is null!");
+        }
+        if (gzipEntry.bEof) {
+            throw new IllegalStateException("Entry data has already been read!");
+        }
+        out.write(block.data, (int)(gzipEntry.startOffset - blockOffset), (int)gzipEntry.consumed);
+        GzipEntry entry = gzipEntry;
+        gzipEntry.close();
+        gzipEntry = null;
+        return entry.consumed;
+    }
+
+    /**
+     * Read the next block of compressed data into a pooled buffer.
+     * @throws IOException if an I/O error occurs while reading block
+     */
+    protected void fillBlock() throws IOException {
+        dropBlock();
+        blockOffset = pbin.getConsumed();
+        block = new Block(blockPool);
+        blockPos = 0;
+        scanPos = 0;
+        byte[] data = block.data;
+        int len = 0;
+        int read = 0;
+        while (len < blockSize && read != -1) {
+            read = pbin.read(data, len, blockSize - len);
+            if (read > 0) {
+                len += read;
+            }
+        }
+        block.len = len;
+        block.bEof = (read == -1);
+        block.limit = len;
+    }
+
+    /**
+     * Queue inflate tasks for the next plausible GZip headers in the current
+     * block until the max number of pending tasks is reached. Scanning stops
+     * at the limit set by a worker which found an entry continuing in the
+     * next block, since any later candidate lies inside that entry.
+     */
+    protected void submitTasks() {
+        int idx;
+        while (tasks.size() < maxPendingTasks && scanPos < block.len) {
+            idx = findHeader(block.data, scanPos, block.len);
+            if (idx == -1 || idx > block.limit) {
+                scanPos = block.len;
+            } else {
+                InflateTask task = new InflateTask(idx);
+                task.future = executor.submit(new InflateCallable(this, block, idx));
+                tasks.add(task);
+                scanPos = idx + 1;
+            }
+        }
+    }
+
+    /**
+     * Cancel all pending inflate tasks and release the current block.
+     */
+    protected void dropBlock() {
+        while (!tasks.isEmpty()) {
+            tasks.removeFirst().future.cancel(true);
+        }
+        if (block != null) {
+            block.release();
+            block = null;
+        }
+        bSuspended = false;
+    }
+
+    /**
+     * Find the next plausible GZip header in a byte array.
+     * Checks magic, compression method and reserved flag bits.
+     * @param b byte array
+     * @param off offset to start searching from
+     * @param len length of valid data in array
+     * @return index of header or -1
+     */
+    public static int findHeader(byte[] b, int off, int len) {
+        len -= 10;
+        while (off <= len) {
+            if (b[off] == (byte)0x1f
+                    && b[off + 1] == (byte)0x8b
+                    && b[off + 2] == GzipConstants.CM_DEFLATE
+                    && (b[off + 3] & GzipConstants.FLG_FRESERVED) == 0
+                    && (b[off + 8] & GzipConstants.DEFLATE_XLF_RESERVED) == 0) {
+                return off;
+            }
+            ++off;
+        }
+        return -1;
+    }
+
+    /**
+     * Block of compressed data shared by the reader, its workers and the
+     * input stream. The buffer is returned to the pool when the last user
+     * releases it.
+     */
+    protected static class Block {
+
+        /** Pool the buffer was taken from. */
+        GzipResourcePool pool;
+
+        /** Compressed data. */
+        byte[] data;
+
+        /** Number of bytes in block. */
+        int len;
+
+        /** Does the block end at EOF. */
+        boolean bEof;
+
+        /** Candidates after this position are not inflated in parallel. */
+        volatile int limit;
+
+        /** Number of users of the block. */
+        int refs;
+
+        /**
+         * Construct a block with a buffer from the pool, owned by the caller.
+         * @param pool pool to take buffer from
+         */
+        Block(GzipResourcePool pool) {
+            this.pool = pool;
+            data = pool.getBuffer();
+            refs = 1;
+        }
+
+        /**
+         * Register an additional user of the block.
+         * @return false if the block has already been released
+         */
+        synchronized boolean retain() {
+            if (refs == 0) {
+                return false;
+            }
+            ++refs;
+            return true;
+        }
+
+        /**
+         * Unregister a user and return the buffer to the pool if it was the last.
+         */
+        synchronized void release() {
+            if (refs > 0 && --refs == 0) {
+                pool.releaseBuffer(data);
+                data = null;
+            }
+        }
+
+        /**
+         * Lower the limit for candidates inflated in parallel.
+         * @param position position of an entry continuing in the next block
+         */
+        synchronized void lowerLimit(int position) {
+            if (position < limit) {
+                limit = position;
+            }
+        }
+    }
+
+    /**
+     * Pending inflate task for a block position.
+     */
+    protected static class InflateTask {
+
+        /** Position of candidate header in block. */
+        int position;
+
+        /** Future result of worker. */
+        Future<InflateResult> future;
+
+        /**
+         * Construct task for a block position.
+         * @param position position of candidate header in block
+         */
+        InflateTask(int position) {
+            this.position = position;
+        }
+
+        /**
+         * Wait for the worker and return its result.
+         * @return inflated entry or null, if the entry must be read sequentially
+         * @throws IOException if interrupted while waiting for worker
+         */
+        InflateResult get() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Worker result containing a validated entry and its inflated data.
+     */
+    protected static class InflateResult {
+
+        /** Entry with header, trailer and diagnostics. */
+        GzipEntry entry;
+
+        /** Inflated data. */
+        byte[] data;
+
+        /** Length of inflated data. */
+        int length;
+    }
+
+    /**
+     * Worker which inflates and validates a single entry from a block.
+     */
+    protected static class InflateCallable implements Callable<InflateResult> {
+
+        /** Parallel reader used for settings. */
+        GzipReaderParallel parallelReader;
+
+        /** Compressed data block. */
+        Block block;
+
+        /** Position of candidate header. */
+        int position;
+
+        /**
+         * Construct worker for a candidate header position.
+         * @param parallelReader parallel reader used for settings
+         * @param block compressed data block
+         * @param position position of candidate header
+         */
+        InflateCallable(GzipReaderParallel parallelReader, Block block, int position) {
+            this.parallelReader = parallelReader;
+            this.block = block;
+            this.position = position;
+        }
+
+        @Override
+        public InflateResult call() throws Exception {
+            if (position > block.limit || !block.retain()) {
+                return null;
+            }
+            try {
+                return inflate();
+            } finally {
+                block.release();
+            }
+        }
+
+        /**
+         * Inflate and validate the entry at the candidate position.
+         * @return inflated entry or null, if the entry must be read sequentially
+         * @throws IOException if an I/O error occurs while closing the worker reader
+         */
+        InflateResult inflate() throws IOException {
+            int maxInflatedSize = parallelReader.maxInflatedSize;
+            int remaining = block.len - position;
+            GzipReader reader = new GzipReader(new ByteArrayInputStream(block.data, position, remaining),
+                    GzipResourcePool.getDefault());
+            try {
+                GzipEntry entry = reader.getNextEntry();
+                if (entry == null || reader.diagnostics.hasErrors()) {
+                    checkTruncated(reader);
+                    return null;
+                }
+                // Start small and grow on demand, most entries are small.
+                byte[] data = new byte[Math.min(INITIAL_INFLATED_SIZE, maxInflatedSize)];
+                int length = 0;
+                InputStream in = entry.getInputStream();
+                int read;
+                while (true) {
+                    if (length == data.length) {
+                        if (length == maxInflatedSize) {
+                            // Read ahead to see if the entry is larger.
+                            if (in.read() != -1) {
+                                return null;
+                            }
+                            break;
+                        }
+                        byte[] tmp = new byte[(int)Math.min(2L * length, maxInflatedSize)];
+                        System.arraycopy(data, 0, tmp, 0, length);
+                        data = tmp;
+                    }
+                    read = in.read(data, length, data.length - length);
+                    if (read == -1) {
+                        break;
+                    }
+                    if (Thread.interrupted()) {
+                        return null;
+                    }
+                    length += read;
+                }
+                in.close();
+                if (remaining - entry.consumed < 8 && !block.bEof) {
+                    // Entry, or at least its trailer, may continue in the next block.
+                    // A truncated trailer is pushed back and not counted as consumed.
+                    block.lowerLimit(position);
+                    return null;
+                }
+                // Detach entry so closing the worker reader leaves it untouched.
+                reader.gzipEntry = null;
+                InflateResult result = new InflateResult();
+                result.entry = entry;
+                result.data = data;
+                result.length = length;
+                return result;
+            } catch (IOException e) {
+                checkTruncated(reader);
+                return null;
+            } finally {
+                reader.close();
+            }
+        }
+
+        /**
+         * Lower the block limit if the worker reader ran out of data, since
+         * the entry then continues in the next block and any later candidate
+         * lies inside it.
+         * @param reader worker reader
+         * @throws IOException if an I/O error occurs while examining the input
+         */
+        void checkTruncated(GzipReader reader) throws IOException {
+            if (!block.bEof && reader.pbin.available() == 0 && reader.inf.getRemaining() == 0) {
+                block.lowerLimit(position);
+            }
+        }
+    }
+
+    /**
+     * Push back input stream which returns the remainder of a block to the
+     * stream by referencing it instead of copying it to the unread buffer.
+     *
+     * @author nicl
+     */
+    protected static class BlockPushBackInputStream extends ByteCountingPushBackInputStream {
+
+        /** Input stream serving a block segment ahead of the wrapped stream. */
+        BlockSegmentInputStream segmentIn;
+
+        /**
+         * Construct a push back stream with the specified unread capacity.
+         * @param in input stream to wrap
+         * @param size unread capacity
+         */
+        public BlockPushBackInputStream(InputStream in, int size) {
+            super(new BlockSegmentInputStream(in), size);
+            segmentIn = (BlockSegmentInputStream)this.in;
+        }
+
+        /**
+         * Return part of a block to the stream so it is read again next.
+         * @param block block read from this stream
+         * @param off offset of data in block
+         * @param len length of data
+         * @throws IOException if an I/O error occurs while pushing back data
+         */
+        public void pushBlock(Block block, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            if (pos < buf.length) {
+                // The block was read from the unread buffer, so its remainder fits back in.
+                unread(block.data, off, len);
+                return;
+            }
+            if (segmentIn.remaining() > 0) {
+                // The block was read from the active segment.
+                segmentIn.rewind(len);
+            } else {
+                segmentIn.setSegment(block, off, off + len);
+            }
+            consumed -= len;
+            counter -= len;
+        }
+
+        /**
+         * Take back the unread part of a block returned by
+         * <code>pushBlock</code> if the stream has not yet been read past it.
+         * @param block block previously pushed back
+         * @return position in block of the next byte or -1 if it can not be resumed
+         */
+        public int resumeBlock(Block block) {
+            if (segmentIn.block != block || segmentIn.remaining() == 0) {
+                return -1;
+            }
+            // Unread bytes can only originate from the segment at this point.
+            int pending = (buf.length - pos) + segmentIn.remaining();
+            pos = buf.length;
+            segmentIn.clearSegment();
+            consumed += pending;
+            counter += pending;
+            return block.len - pending;
+        }
+    }
+
+    /**
+     * <code>InputStream</code> reading a segment of a block before
+     * continuing with the wrapped input stream.
+     *
+     * @author nicl
+     */
+    protected static class BlockSegmentInputStream extends FilterInputStream {
+
+        /** Block of current segment or null. */
+        Block block;
+
+        /** Position of the next byte in the segment. */
+        int segPos;
+
+        /** End position of the segment. */
+        int segLimit;
+
+        /**
+         * Construct a segment stream wrapping an input stream.
+         * @param in input stream to wrap
+         */
+        public BlockSegmentInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Set the segment to read before the wrapped stream.
+         * @param block block containing the segment
+         * @param off start position of the segment
+         * @param limit end position of the segment
+         */
+        void setSegment(Block block, int off, int limit) {
+            if (block.retain()) {
+                this.block = block;
+                segPos = off;
+                segLimit = limit;
+            }
+        }
+
+        /**
+         * Returns the number of bytes left in the segment.
+         * @return number of bytes left in the segment
+         */
+        int remaining() {
+            return block != null ? segLimit - segPos : 0;
+        }
+
+        /**
+         * Move the segment position back over bytes already read from it.
+         * @param n number of bytes
+         */
+        void rewind(int n) {
+            segPos -= n;
+        }
+
+        /**
+         * Release the current segment.
+         */
+        void clearSegment() {
+            if (block != null) {
+                block.release();
+                block = null;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (block == null) {
+                return in.read();
+            }
+            int b = block.data[segPos++] & 255;
+            if (segPos == segLimit) {
+                clearSegment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (block == null) {
+                return in.read(b, off, len);
+            }
+            if (len > segLimit - segPos) {
+                len = segLimit - segPos;
+            }
+            System.arraycopy(block.data, segPos, b, off, len);
+            segPos += len;
+            if (segPos == segLimit) {
+                clearSegment();
+            }
+            return len;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (block == null) {
+                return in.skip(n);
+            }
+            if (n > segLimit - segPos) {
+                n = segLimit - segPos;
+            }
+            segPos += (int)n;
+            if (segPos == segLimit) {
+                clearSegment();
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (block == null) {
+                return in.available();
+            }
+            return segLimit - segPos;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            clearSegment();
+            super.close();
+        }
+    }
+
+    /**
+     * <code>InputStream</code> exposing the data of an entry inflated by a
+     * worker thread.
+     *
+     * @author nicl
+     */
+    protected static class InflatedEntryInputStream extends ByteArrayInputStream {
+
+        /** GZip reader which returned the entry. */
+        GzipReader reader;
+
+        /** Associated GZip entry. */
+        GzipEntry gzipEntry;
+
+        /**
+         * Construct input stream bound to a specific reader and entry.
+         * @param reader GZip reader
+         * @param gzipEntry GZip entry
+         * @param buf inflated data
+         * @param length length of inflated data
+         */
+        public InflatedEntryInputStream(GzipReader reader, GzipEntry gzipEntry,
+                byte[] buf, int length) {
+            super(buf, 0, length);
+            this.reader = reader;
+            this.gzipEntry = gzipEntry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (gzipEntry != null) {
+                gzipEntry.reader = null;
+                reader.consumed += gzipEntry.consumed;
+                reader = null;
+                gzipEntry = null;
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public synchronized void reset() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
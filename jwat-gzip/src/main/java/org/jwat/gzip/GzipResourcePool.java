@@ -0,0 +1,267 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Thread safe pool of inflaters, deflaters and buffers shared by GZip
+ * readers and writers constructed with a pool. Each reader or writer takes
+ * what it needs when constructed and returns it when closed, which avoids
+ * allocating native zlib state and buffers for every short lived instance.
+ * Resources returned to a full pool are discarded, inflaters and deflaters
+ * are then ended immediately.
+ *
+ * @author nicl
+ */
+public class GzipResourcePool {
+
+    /** Default max number of pooled inflaters and deflaters. */
+    public static final int DEFAULT_MAX_POOLED = 32;
+
+    /** Pool shared by the readers and writers of this toolkit. */
+    protected static final GzipResourcePool defaultPool =
+            new GzipResourcePool(DEFAULT_MAX_POOLED, GzipReader.DEFAULT_INPUT_BUFFER_SIZE);
+
+    /** Max number of pooled inflaters and deflaters. */
+    protected final int maxPooled;
+
+    /** Size of pooled buffers. */
+    protected final int bufferSize;
+
+    /** Pooled inflaters. */
+    protected final Inflater[] inflaters;
+
+    /** Number of pooled inflaters. */
+    protected int inflaterCount;
+
+    /** Pooled deflaters. */
+    protected final Deflater[] deflaters;
+
+    /** Number of pooled deflaters. */
+    protected int deflaterCount;
+
+    /** Pooled buffers, a reader uses two. */
+    protected final byte[][] buffers;
+
+    /** Number of pooled buffers. */
+    protected int bufferCount;
+
+    /**
+     * Returns the pool shared by the readers and writers of this toolkit.
+     * @return the shared pool
+     */
+    public static GzipResourcePool getDefault() {
+        return defaultPool;
+    }
+
+    /**
+     * Construct a pool with the specified limit and buffer size.
+     * @param max_pooled max number of pooled inflaters and deflaters
+     * @param buffer_size size of pooled buffers
+     */
+    public GzipResourcePool(int max_pooled, int buffer_size) {
+        if (max_pooled < 0) {
+            throw new IllegalArgumentException("max_pooled is less than zero!");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException("buffer_size is less or equals to zero!");
+        }
+        maxPooled = max_pooled;
+        bufferSize = buffer_size;
+        inflaters = new Inflater[max_pooled];
+        deflaters = new Deflater[max_pooled];
+        buffers = new byte[max_pooled * 2][];
+    }
+
+    /**
+     * Returns the max number of pooled inflaters and deflaters.
+     * @return max number of pooled inflaters and deflaters
+     */
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+
+    /**
+     * Returns the size of pooled buffers.
+     * @return size of pooled buffers
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Take a raw inflater, without zlib header and checksum, from the pool
+     * or create a new one if the pool is empty.
+     * @return raw inflater ready for use
+     */
+    public Inflater getInflater() {
+        synchronized (inflaters) {
+            if (inflaterCount > 0) {
+                Inflater inf = inflaters[--inflaterCount];
+                inflaters[inflaterCount] = null;
+                return inf;
+            }
+        }
+        return new Inflater(true);
+    }
+
+    /**
+     * Reset an inflater and return it to the pool.
+     * @param inf inflater taken from this pool
+     */
+    public void releaseInflater(Inflater inf) {
+        if (inf == null) {
+            throw new IllegalArgumentException("inf is null!");
+        }
+        inf.reset();
+        synchronized (inflaters) {
+            if (inflaterCount < maxPooled) {
+                inflaters[inflaterCount++] = inf;
+                return;
+            }
+        }
+        inf.end();
+    }
+
+    /**
+     * Take a raw deflater, without zlib header and checksum, from the pool
+     * or create a new one if the pool is empty. The compression level is
+     * reset to the default level.
+     * @return raw deflater ready for use
+     */
+    public Deflater getDeflater() {
+        synchronized (deflaters) {
+            if (deflaterCount > 0) {
+                Deflater def = deflaters[--deflaterCount];
+                deflaters[deflaterCount] = null;
+                return def;
+            }
+        }
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Reset a deflater and return it to the pool.
+     * @param def deflater taken from this pool
+     */
+    public void releaseDeflater(Deflater def) {
+        if (def == null) {
+            throw new IllegalArgumentException("def is null!");
+        }
+        def.reset();
+        def.setLevel(Deflater.DEFAULT_COMPRESSION);
+        synchronized (deflaters) {
+            if (deflaterCount < maxPooled) {
+                deflaters[deflaterCount++] = def;
+                return;
+            }
+        }
+        def.end();
+    }
+
+    /**
+     * Take a buffer of the pool buffer size from the pool or allocate a new
+     * one if the pool is empty. The content of the buffer is undefined.
+     * @return buffer of the pool buffer size
+     */
+    public byte[] getBuffer() {
+        synchronized (buffers) {
+            if (bufferCount > 0) {
+                byte[] buffer = buffers[--bufferCount];
+                buffers[bufferCount] = null;
+                return buffer;
+            }
+        }
+        return new byte[bufferSize];
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers of another size are discarded.
+     * @param buffer buffer taken from this pool
+     */
+    public void releaseBuffer(byte[] buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer is null!");
+        }
+        if (buffer.length != bufferSize) {
+            return;
+        }
+        synchronized (buffers) {
+            if (bufferCount < buffers.length) {
+                buffers[bufferCount++] = buffer;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pooled inflaters.
+     * @return number of pooled inflaters
+     */
+    public int getPooledInflaters() {
+        synchronized (inflaters) {
+            return inflaterCount;
+        }
+    }
+
+    /**
+     * Returns the number of pooled deflaters.
+     * @return number of pooled deflaters
+     */
+    public int getPooledDeflaters() {
+        synchronized (deflaters) {
+            return deflaterCount;
+        }
+    }
+
+    /**
+     * Returns the number of pooled buffers.
+     * @return number of pooled buffers
+     */
+    public int getPooledBuffers() {
+        synchronized (buffers) {
+            return bufferCount;
+        }
+    }
+
+    /**
+     * End all pooled inflaters and deflaters and discard all pooled buffers.
+     * The pool can still be used afterwards.
+     */
+    public void clear() {
+        synchronized (inflaters) {
+            while (inflaterCount > 0) {
+                inflaters[--inflaterCount].end();
+                inflaters[inflaterCount] = null;
+            }
+        }
+        synchronized (deflaters) {
+            while (deflaterCount > 0) {
+                deflaters[--deflaterCount].end();
+                deflaters[deflaterCount] = null;
+            }
+        }
+        synchronized (buffers) {
+            while (bufferCount > 0) {
+                buffers[--bufferCount] = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Scanner used to locate GZip entries in damaged data. A candidate is a
+ * plausible entry header, the magic number, the deflate compression method
+ * and no reserved flags, which is then verified by a trial inflate of the
+ * data following the header.
+ * A candidate which still needs more data to be verified when it fills a
+ * whole scan buffer, e.g. because of a very long header, is rejected.
+ *
+ * @author nicl
+ */
+public class GzipScanner {
+
+    /** Candidate entry verified. */
+    public static final int VERIFY_VALID = 0;
+
+    /** Candidate entry rejected. */
+    public static final int VERIFY_INVALID = 1;
+
+    /** More data needed to verify candidate entry. */
+    public static final int VERIFY_MORE_DATA = 2;
+
+    /** Number of compressed bytes which must inflate without errors. */
+    public static final int VERIFY_INPUT_SIZE = 512;
+
+    /** Size of the fixed part of an entry header. */
+    protected static final int HEADER_SIZE = 10;
+
+    /** Size of the buffer used for trial inflated data. */
+    protected static final int VERIFY_OUTPUT_SIZE = 8192;
+
+    /** Size of the buffer used when scanning a stream for entries. */
+    protected static final int SCAN_BUFFER_SIZE = 131072;
+
+    /** Max size the scan buffer is grown to in order to verify a candidate. */
+    protected static final int MAX_SCAN_BUFFER_SIZE = 1048576;
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    protected GzipScanner() {
+    }
+
+    /**
+     * Returns a boolean indicating whether the 10 bytes at the supplied
+     * offset look like the fixed part of an entry header.
+     * @param b byte array
+     * @param off offset in byte array
+     * @return a boolean indicating whether the bytes look like an entry header
+     */
+    public static boolean isPlausibleHeader(byte[] b, int off) {
+        return (b[off] & 255) == (GzipConstants.GZIP_MAGIC & 255)
+                && (b[off + 1] & 255) == (GzipConstants.GZIP_MAGIC >> 8)
+                && (b[off + 2] & 255) == GzipConstants.CM_DEFLATE
+                && (b[off + 3] & GzipConstants.FLG_FRESERVED) == 0;
+    }
+
+    /**
+     * Find the first plausible entry header in a byte array range.
+     * Only headers which are fully contained in the range are considered.
+     * @param b byte array
+     * @param off offset of range
+     * @param len length of range
+     * @return index of the first plausible header or -1
+     */
+    public static int indexOfHeader(byte[] b, int off, int len) {
+        int last = off + len - HEADER_SIZE;
+        byte magic1 = (byte)GzipConstants.GZIP_MAGIC;
+        for (int i=off; i<=last; ++i) {
+            if (b[i] == magic1 && isPlausibleHeader(b, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Verify a candidate entry by parsing the variable part of its header
+     * and inflating the first VERIFY_INPUT_SIZE compressed bytes, or the
+     * whole entry if it is smaller. A CRC16 header value and the ISize of
+     * a completely inflated entry are also checked.
+     * @param b byte array
+     * @param off offset of the candidate entry
+     * @param len number of bytes available from the offset
+     * @param bEof is there no more data after the available bytes
+     * @param inf raw inflater used for the trial, it is reset before use
+     * @return VERIFY_VALID, VERIFY_INVALID or VERIFY_MORE_DATA
+     */
+    public static int verifyEntry(byte[] b, int off, int len, boolean bEof, Inflater inf) {
+        int more = bEof ? VERIFY_INVALID : VERIFY_MORE_DATA;
+        int end = off + len;
+        if (len < HEADER_SIZE) {
+            return more;
+        }
+        if (!isPlausibleHeader(b, off)) {
+            return VERIFY_INVALID;
+        }
+        int flg = b[off + 3] & 255;
+        int pos = off + HEADER_SIZE;
+        if ((flg & GzipConstants.FLG_FEXTRA) == GzipConstants.FLG_FEXTRA) {
+            if (pos + 2 > end) {
+                return more;
+            }
+            pos += 2 + (((b[pos + 1] & 255) << 8) | (b[pos] & 255));
+        }
+        if ((flg & GzipConstants.FLG_FNAME) == GzipConstants.FLG_FNAME) {
+            while (pos < end && b[pos] != 0) {
+                ++pos;
+            }
+            ++pos;
+        }
+        if ((flg & GzipConstants.FLG_FCOMMENT) == GzipConstants.FLG_FCOMMENT) {
+            while (pos < end && b[pos] != 0) {
+                ++pos;
+            }
+            ++pos;
+        }
+        if ((flg & GzipConstants.FLG_FHCRC) == GzipConstants.FLG_FHCRC) {
+            if (pos + 2 > end) {
+                return more;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(b, off, pos - off);
+            int crc16 = ((b[pos + 1] & 255) << 8) | (b[pos] & 255);
+            if (crc16 != (((int)crc.getValue()) & 0x0000ffff)) {
+                return VERIFY_INVALID;
+            }
+            pos += 2;
+        }
+        if (pos > end) {
+            return more;
+        }
+        byte[] out = new byte[VERIFY_OUTPUT_SIZE];
+        inf.reset();
+        inf.setInput(b, pos, end - pos);
+        try {
+            while (true) {
+                int inflated = inf.inflate(out);
+                if (inf.finished()) {
+                    int trailer = end - inf.getRemaining();
+                    if (trailer + 8 <= end) {
+                        int isize = ((b[trailer + 7] & 255) << 24) | ((b[trailer + 6] & 255) << 16)
+                                | ((b[trailer + 5] & 255) << 8) | (b[trailer + 4] & 255);
+                        if (isize != (int)inf.getBytesWritten()) {
+                            return VERIFY_INVALID;
+                        }
+                    }
+                    return VERIFY_VALID;
+                }
+                if (inf.getBytesRead() >= VERIFY_INPUT_SIZE) {
+                    return VERIFY_VALID;
+                }
+                if (inflated == 0) {
+                    if (inf.needsDictionary()) {
+                        return VERIFY_INVALID;
+                    }
+                    if (inf.needsInput()) {
+                        // Accept a truncated entry at EOF.
+                        return bEof ? VERIFY_VALID : VERIFY_MORE_DATA;
+                    }
+                    return VERIFY_INVALID;
+                }
+            }
+        } catch (DataFormatException e) {
+            return VERIFY_INVALID;
+        } finally {
+            inf.reset();
+        }
+    }
+
+    /**
+     * Verify a candidate entry found while scanning a buffer. This is the
+     * rule shared by <code>findEntry</code> and the recovery of
+     * <code>GzipReader</code>: a candidate which needs more data to be
+     * verified, although it starts at the beginning of a full buffer which
+     * can not be grown any further, is rejected.
+     * @param b byte array
+     * @param off offset of the candidate entry
+     * @param len number of bytes available from the offset
+     * @param bEof is there no more data after the available bytes
+     * @param bFull does the candidate fill a buffer which can not be grown
+     * @param inf raw inflater used for the trial, it is reset before use
+     * @return VERIFY_VALID, VERIFY_INVALID or VERIFY_MORE_DATA
+     */
+    public static int verifyCandidate(byte[] b, int off, int len, boolean bEof, boolean bFull, Inflater inf) {
+        int result = verifyEntry(b, off, len, bEof, inf);
+        if (result == VERIFY_MORE_DATA && bFull) {
+            result = VERIFY_INVALID;
+        }
+        return result;
+    }
+
+    /**
+     * Find the first verified entry starting in a range of a stream.
+     * The scan buffer is grown, up to MAX_SCAN_BUFFER_SIZE, when a candidate
+     * at its start needs more data to be verified.
+     * The stream must be positioned at the start of the range and is read
+     * until an entry is found or the end of the range has been passed.
+     * @param in input stream positioned at the start of the range
+     * @param from offset of the start of the range
+     * @param to offset of the end of the range
+     * @return offset of the first verified entry or -1 if none was found
+     * @throws IOException if an I/O error occurs while reading
+     */
+    public static long findEntry(InputStream in, long from, long to) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("in is null!");
+        }
+        byte[] buf = new byte[SCAN_BUFFER_SIZE];
+        Inflater inf = new Inflater(true);
+        try {
+            long bufOffset = from;
+            int len = 0;
+            int pos = 0;
+            boolean bEof = false;
+            int keep;
+            int idx;
+            int read;
+            while (true) {
+                while (!bEof && len < buf.length) {
+                    read = in.read(buf, len, buf.length - len);
+                    if (read == -1) {
+                        bEof = true;
+                    } else {
+                        len += read;
+                    }
+                }
+                keep = -1;
+                while (keep == -1) {
+                    idx = indexOfHeader(buf, pos, len - pos);
+                    if (idx == -1) {
+                        // Keep the bytes which could be the start of a header.
+                        keep = Math.max(pos, len - (HEADER_SIZE - 1));
+                    } else if (bufOffset + idx >= to) {
+                        return -1;
+                    } else {
+                        boolean bFull = (idx == 0 && buf.length >= MAX_SCAN_BUFFER_SIZE);
+                        switch (verifyCandidate(buf, idx, len - idx, bEof, bFull, inf)) {
+                        case VERIFY_VALID:
+                            return bufOffset + idx;
+                        case VERIFY_MORE_DATA:
+                            keep = idx;
+                            break;
+                        default:
+                            pos = idx + 1;
+                            break;
+                        }
+                    }
+                }
+                if (bEof || bufOffset + keep >= to) {
+                    return -1;
+                }
+                if (keep == 0) {
+                    // Grow the buffer to verify the candidate at its start.
+                    buf = Arrays.copyOf(buf, Math.min(buf.length * 2, MAX_SCAN_BUFFER_SIZE));
+                    continue;
+                }
+                System.arraycopy(buf, keep, buf, 0, len - keep);
+                len -= keep;
+                bufOffset += keep;
+                pos = 0;
+            }
+        } finally {
+            inf.end();
+        }
+    }
+
+}
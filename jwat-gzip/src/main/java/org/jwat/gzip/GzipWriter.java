@@ -17,12 +17,14 @@
  */
 package org.jwat.gzip;
 
+import org.jwat.common.CompressedWriter;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.ISO8859_1;
+import org.jwat.common.RandomAccessFileOutputStream;
 
 import java.io.BufferedOutputStream;
-import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -41,20 +43,26 @@ import java.util.zip.Deflater;
  *
  * @author nicl
  */
-public class GzipWriter implements Closeable {
+public class GzipWriter implements CompressedWriter {
 
     /** Default input buffer size. */
     public static final int DEFAULT_INPUT_BUFFER_SIZE = 8192;
 
+    /** Default max size of an entry buffered to fill in its compressed length. */
+    public static final int DEFAULT_MAX_MEMBER_BUFFER_SIZE = 4 * 1024 * 1024;
+
     /** Output stream for GZip (multi-part) file. */
     protected OutputStream out;
     /** Deflater used to compress GZip entries. */
-    protected Deflater def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    protected Deflater def;
     /** Checksum object used to calculate CRC16 and CRC32 values. */
     protected CRC32 crc = new CRC32();
     /** Input buffer used to feed the deflater. */
     protected byte[] inputBytes;
 
+    /** Pool the deflater and input buffer are taken from, if any. */
+    protected GzipResourcePool pool;
+
     /** Compression level to be used by deflater. */
     protected int compressionLevel = Deflater.DEFAULT_COMPRESSION;
 
@@ -64,6 +72,42 @@ public class GzipWriter implements Closeable {
     /** Compliance status for records parsed up to now. */
     protected boolean bIsCompliant = true;
 
+    /** Write the compressed length subfield in each entry header. */
+    protected boolean bCompressedLengthEnabled = false;
+
+    /** Output stream used while the current entry is buffered. */
+    protected OutputStream memberOut;
+
+    /** Buffer used to complete an entry before its compressed length is known. */
+    protected MemberOutputStream memberBuffer;
+
+    /** Output stream writing to the member buffer, up to its max size. */
+    protected MemberBufferOutputStream memberBufferOut;
+
+    /** Max size of an entry buffered to fill in its compressed length. */
+    protected int maxMemberBufferSize = DEFAULT_MAX_MEMBER_BUFFER_SIZE;
+
+    /** Seekable output stream, if the writer was constructed with one. */
+    protected RandomAccessFileOutputStream rafOut;
+
+    /** File position of the current entry if its header is patched in place, otherwise -1. */
+    protected long memberOffset = -1;
+
+    /** Number of uncompressed bytes between full flushes or 0 for none. */
+    protected long fullFlushInterval = 0;
+
+    /** Uncompressed offset of the last full flush in the current entry. */
+    protected long fullFlushOffset;
+
+    /** Is a full flush being written. */
+    protected boolean bFullFlushPending;
+
+    /** Offset of the compressed length subfield data in the extra field. */
+    protected int compressedLengthIdx;
+
+    /** Length of the buffered entry header. */
+    protected int headerLength;
+
     /** Current GZip entry object. */
     protected GzipEntry gzipEntry;
 
@@ -89,9 +133,35 @@ public class GzipWriter implements Closeable {
             throw new IllegalArgumentException("out is null!");
         }
         this.out = new BufferedOutputStream(out, DEFAULT_INPUT_BUFFER_SIZE);
+        if (out instanceof RandomAccessFileOutputStream) {
+            rafOut = (RandomAccessFileOutputStream)out;
+        }
+        def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
         inputBytes = new byte[DEFAULT_INPUT_BUFFER_SIZE];
     }
 
+    /**
+     * Construct a GZip writer which takes its deflater and input buffer from
+     * a resource pool and returns them when it is closed.
+     * @param out output stream of GZip file
+     * @param pool pool to take deflater and input buffer from
+     */
+    public GzipWriter(OutputStream out, GzipResourcePool pool) {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null!");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool is null!");
+        }
+        this.out = new BufferedOutputStream(out, DEFAULT_INPUT_BUFFER_SIZE);
+        if (out instanceof RandomAccessFileOutputStream) {
+            rafOut = (RandomAccessFileOutputStream)out;
+        }
+        this.pool = pool;
+        def = pool.getDeflater();
+        inputBytes = pool.getBuffer();
+    }
+
     /**
      * Construct a GZip writer with the specified input buffer size.
      * @param out output stream of GZip file
@@ -105,6 +175,10 @@ public class GzipWriter implements Closeable {
             throw new IllegalArgumentException("buffer_size is less or equals to zero!");
         }
         this.out = new BufferedOutputStream(out, buffer_size);
+        if (out instanceof RandomAccessFileOutputStream) {
+            rafOut = (RandomAccessFileOutputStream)out;
+        }
+        def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
         inputBytes = new byte[buffer_size];
     }
 
@@ -122,7 +196,12 @@ public class GzipWriter implements Closeable {
             out = null;
         }
         if (def != null) {
-            def.end();
+            if (pool != null) {
+                pool.releaseDeflater(def);
+                pool.releaseBuffer(inputBytes);
+            } else {
+                def.end();
+            }
             def = null;
         }
     }
@@ -160,6 +239,76 @@ public class GzipWriter implements Closeable {
         return compressionLevel;
     }
 
+    /**
+     * Returns a boolean indicating whether the compressed length subfield is
+     * written in the entry headers.
+     * @return a boolean indicating whether the compressed length is written
+     */
+    public boolean getCompressedLengthEnabled() {
+        return bCompressedLengthEnabled;
+    }
+
+    /**
+     * Enable or disable writing of the compressed length subfield in the
+     * entry headers. Readers can use it to skip entries without inflating
+     * them. Since the header is written before the compressed data, each
+     * entry is buffered in memory until it is closed, unless the writer was
+     * constructed with a <code>RandomAccessFileOutputStream</code> in which
+     * case the header is patched in place.
+     * Only changed prior to writing an entry header.
+     * @param enabled boolean to enable or disable the compressed length
+     */
+    public void setCompressedLengthEnabled(boolean enabled) {
+        bCompressedLengthEnabled = enabled;
+    }
+
+    /**
+     * Set the number of uncompressed bytes between full flushes of the
+     * deflater. Each flush ends with a byte aligned empty stored block and
+     * resets the compression state, which allows a
+     * <code>GzipCheckpointIndex</code> to resume inflating there at the
+     * expense of a slightly lower compression ratio.
+     * Only changed prior to writing an entry header.
+     * @param interval number of uncompressed bytes between flushes or 0 for none
+     */
+    public void setFullFlushInterval(long interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException(
+                    "interval is less than zero: " + interval);
+        }
+        fullFlushInterval = interval;
+    }
+
+    /**
+     * Returns the number of uncompressed bytes between full flushes or 0.
+     * @return number of uncompressed bytes between full flushes or 0
+     */
+    public long getFullFlushInterval() {
+        return fullFlushInterval;
+    }
+
+    /**
+     * Set the max size of an entry buffered to fill in its compressed
+     * length. The compressed length subfield is removed from larger entries
+     * which are then written directly.
+     * @param size max member buffer size
+     */
+    public void setMaxMemberBufferSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException(
+                    "size is less or equals to zero: " + size);
+        }
+        maxMemberBufferSize = size;
+    }
+
+    /**
+     * Returns the max size of an entry buffered to fill in its compressed length.
+     * @return max member buffer size
+     */
+    public int getMaxMemberBufferSize() {
+        return maxMemberBufferSize;
+    }
+
     /**
      * Write a GZip entry header and prepare for compressing input data.
      * @param entry GZip entry object
@@ -176,6 +325,8 @@ public class GzipWriter implements Closeable {
         crc.reset();
         def.reset();
         def.setLevel(compressionLevel);
+        fullFlushOffset = 0;
+        bFullFlushPending = false;
         gzipEntry = entry;
         /*
          * Header.
@@ -259,6 +410,10 @@ public class GzipWriter implements Closeable {
                         );
             }
         }
+        compressedLengthIdx = -1;
+        if (bCompressedLengthEnabled) {
+            compressedLengthIdx = addCompressedLength(entry);
+        }
         if (entry.extraBytes != null) {
             entry.flg |= GzipConstants.FLG_FEXTRA;
             entry.xlen = entry.extraBytes.length;
@@ -320,6 +475,15 @@ public class GzipWriter implements Closeable {
         headerBytes[7] = (byte)((entry.mtime >> 24) & 255);
         headerBytes[8] = (byte)entry.xfl;
         headerBytes[9] = (byte)entry.os;
+        if (compressedLengthIdx != -1) {
+            if (memberBuffer == null) {
+                memberBuffer = new MemberOutputStream();
+                memberBufferOut = new MemberBufferOutputStream(this);
+            }
+            headerLength = 0;
+            memberOut = out;
+            out = memberBufferOut;
+        }
         out.write(headerBytes);
         crc.update(headerBytes);
         if ((entry.flg & GzipConstants.FLG_FEXTRA) == GzipConstants.FLG_FEXTRA) {
@@ -347,6 +511,17 @@ public class GzipWriter implements Closeable {
             crc16Bytes[1] = (byte)((entry.crc16 >> 8) & 255);
             out.write(crc16Bytes);
         }
+        if (memberOut != null) {
+            headerLength = memberBuffer.size();
+            if (rafOut != null) {
+                // Write the header now and patch it in place when the entry is closed.
+                memberOut.flush();
+                memberOffset = rafOut.getFilePointer();
+                out = memberOut;
+                memberOut = null;
+                out.write(memberBuffer.getBuffer(), 0, headerLength);
+            }
+        }
         /*
          * Prepare Entry InputStream.
          */
@@ -364,6 +539,86 @@ public class GzipWriter implements Closeable {
         bIsCompliant &= entry.bIsCompliant;
     }
 
+    /**
+     * Append a complete pre-compressed GZip entry, or several, unchanged.
+     * The current entry is closed first. The data is not validated.
+     * @param in input stream with compressed GZip entries
+     * @return number of bytes appended
+     * @throws IOException if an I/O error occurs while appending entry
+     */
+    public long writeRawEntry(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("in is null!");
+        }
+        closePendingEntries();
+        long written = 0;
+        int read;
+        while ((read = in.read(inputBytes, 0, inputBytes.length)) != -1) {
+            out.write(inputBytes, 0, read);
+            written += read;
+        }
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Append the current entry of a GZip reader unchanged without inflating
+     * and deflating it. The current entry is closed first.
+     * @see GzipReader#copyEntry(OutputStream, boolean)
+     * @param reader GZip reader positioned at an unread entry
+     * @param bVerify inflate the data to validate the CRC32 and ISize values
+     * @return number of bytes appended
+     * @throws IOException if an I/O error occurs while appending entry
+     */
+    public long writeRawEntry(GzipReader reader, boolean bVerify) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null!");
+        }
+        closePendingEntries();
+        long written = reader.copyEntry(out, bVerify);
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Write the header of a new entry with default values and return the
+     * output stream used to compress its data. The current entry is closed
+     * first.
+     * @return output stream to write uncompressed data
+     * @throws IOException if an I/O error occurs while writing header
+     */
+    public OutputStream openEntry() throws IOException {
+        GzipEntry entry = new GzipEntry();
+        entry.magic = GzipConstants.GZIP_MAGIC;
+        entry.cm = GzipConstants.CM_DEFLATE;
+        entry.flg = 0;
+        entry.mtime = System.currentTimeMillis() / 1000;
+        entry.xfl = 0;
+        entry.os = GzipConstants.OS_UNKNOWN;
+        writeEntryHeader(entry);
+        return entry.getOutputStream();
+    }
+
+    /**
+     * Close the current entry, if any.
+     * @throws IOException if an I/O error occurs while closing entry
+     */
+    public void closeEntry() throws IOException {
+        if (gzipEntry != null) {
+            gzipEntry.close();
+            gzipEntry = null;
+        }
+    }
+
+    /**
+     * Close the current entry and write all entries still pending, so raw
+     * entries are appended in order.
+     * @throws IOException if an I/O error occurs while writing entries
+     */
+    protected void closePendingEntries() throws IOException {
+        closeEntry();
+    }
+
     /**
      * Computes the CRC32 and iSize values and then writes the GZip entry trailer.
      * @param entry GZip entry object
@@ -393,9 +648,164 @@ public class GzipWriter implements Closeable {
         trailerBytes[6] = (byte)((entry.isize >> 16) & 255);
         trailerBytes[7] = (byte)((entry.isize >> 24) & 255);
         out.write(trailerBytes);
+        if (compressedLengthIdx != -1) {
+            writeMember(entry);
+        }
         out.flush();
     }
 
+    /**
+     * Add the compressed length subfield to the extra field of an entry,
+     * unless it is already present.
+     * @param entry GZip entry object
+     * @return offset of the subfield data in the extra field or -1
+     */
+    protected int addCompressedLength(GzipEntry entry) {
+        int idx = 0;
+        int len;
+        if (entry.extraBytes != null) {
+            while (idx <= entry.extraBytes.length - 4) {
+                len = ((entry.extraBytes[idx + 3] & 255) << 8) | (entry.extraBytes[idx + 2] & 255);
+                if (entry.extraBytes[idx] == GzipConstants.SI1_COMPRESSED_LENGTH
+                        && entry.extraBytes[idx + 1] == GzipConstants.SI2_COMPRESSED_LENGTH
+                        && len == GzipConstants.LEN_COMPRESSED_LENGTH
+                        && idx + 4 + len <= entry.extraBytes.length) {
+                    return idx + 4;
+                }
+                idx += 4 + len;
+            }
+            idx = entry.extraBytes.length;
+        }
+        if (idx + 4 + GzipConstants.LEN_COMPRESSED_LENGTH > 65535) {
+            return -1;
+        }
+        byte[] extraBytes = new byte[idx + 4 + GzipConstants.LEN_COMPRESSED_LENGTH];
+        if (entry.extraBytes != null) {
+            System.arraycopy(entry.extraBytes, 0, extraBytes, 0, idx);
+        }
+        extraBytes[idx] = GzipConstants.SI1_COMPRESSED_LENGTH;
+        extraBytes[idx + 1] = GzipConstants.SI2_COMPRESSED_LENGTH;
+        extraBytes[idx + 2] = (byte)GzipConstants.LEN_COMPRESSED_LENGTH;
+        extraBytes[idx + 3] = 0;
+        entry.extraBytes = extraBytes;
+        entry.extraData.add(new GzipExtraData(GzipConstants.SI1_COMPRESSED_LENGTH,
+                GzipConstants.SI2_COMPRESSED_LENGTH, new byte[GzipConstants.LEN_COMPRESSED_LENGTH]));
+        return idx + 4;
+    }
+
+    /**
+     * Fill in the compressed length of the buffered entry, recompute the
+     * header CRC16 if present and write the entry to the output stream.
+     * If the entry has been written to a seekable output stream only the
+     * header is rewritten.
+     * @param entry GZip entry object
+     * @throws IOException if an I/O error occurs while writing entry
+     */
+    protected void writeMember(GzipEntry entry) throws IOException {
+        byte[] b = memberBuffer.getBuffer();
+        entry.compressed_length = entry.compressed_size;
+        long l = entry.compressed_size;
+        int idx = compressedLengthIdx;
+        for (int i=0; i<GzipConstants.LEN_COMPRESSED_LENGTH; ++i) {
+            entry.extraBytes[idx++] = (byte)(l & 255);
+            l >>>= 8;
+        }
+        System.arraycopy(entry.extraBytes, compressedLengthIdx, b, 12 + compressedLengthIdx, GzipConstants.LEN_COMPRESSED_LENGTH);
+        GzipExtraData extraData;
+        for (int i=0; i<entry.extraData.size(); ++i) {
+            extraData = entry.extraData.get(i);
+            if (extraData.si1 == GzipConstants.SI1_COMPRESSED_LENGTH
+                    && extraData.si2 == GzipConstants.SI2_COMPRESSED_LENGTH
+                    && extraData.data.length == GzipConstants.LEN_COMPRESSED_LENGTH) {
+                System.arraycopy(entry.extraBytes, compressedLengthIdx, extraData.data, 0, GzipConstants.LEN_COMPRESSED_LENGTH);
+            }
+        }
+        if ((entry.flg & GzipConstants.FLG_FHCRC) == GzipConstants.FLG_FHCRC) {
+            crc.reset();
+            crc.update(b, 0, headerLength - 2);
+            entry.comp_crc16 = ((int)crc.getValue()) & 0x0000ffff;
+            entry.crc16 = entry.comp_crc16;
+            b[headerLength - 2] = (byte)(entry.crc16 & 255);
+            b[headerLength - 1] = (byte)((entry.crc16 >> 8) & 255);
+        }
+        if (memberOffset != -1) {
+            out.flush();
+            long pos = rafOut.getFilePointer();
+            rafOut.seek(memberOffset);
+            rafOut.write(b, 0, headerLength);
+            rafOut.seek(pos);
+            memberOffset = -1;
+        } else {
+            out = memberOut;
+            memberOut = null;
+            out.write(b, 0, memberBuffer.size());
+        }
+        memberBuffer.reset();
+    }
+
+    /**
+     * Remove the compressed length subfield from the buffered entry when it
+     * grows beyond the max member buffer size. The header is rewritten
+     * without it and the buffered data written, after which the rest of the
+     * entry is written directly.
+     * @throws IOException if an I/O error occurs while writing entry
+     */
+    protected void dropCompressedLength() throws IOException {
+        GzipEntry entry = gzipEntry;
+        byte[] b = memberBuffer.getBuffer();
+        int xlen = entry.extraBytes.length;
+        int subfieldIdx = compressedLengthIdx - 4;
+        int subfieldLen = 4 + GzipConstants.LEN_COMPRESSED_LENGTH;
+        byte[] extraBytes = new byte[xlen - subfieldLen];
+        System.arraycopy(entry.extraBytes, 0, extraBytes, 0, subfieldIdx);
+        System.arraycopy(entry.extraBytes, subfieldIdx + subfieldLen, extraBytes, subfieldIdx, xlen - subfieldIdx - subfieldLen);
+        GzipExtraData extraData;
+        for (int i=entry.extraData.size() - 1; i>=0; --i) {
+            extraData = entry.extraData.get(i);
+            if (extraData.si1 == GzipConstants.SI1_COMPRESSED_LENGTH
+                    && extraData.si2 == GzipConstants.SI2_COMPRESSED_LENGTH) {
+                entry.extraData.remove(i);
+            }
+        }
+        // The CRC32 object is busy computing the entry data checksum.
+        CRC32 crc16 = new CRC32();
+        if (extraBytes.length > 0) {
+            entry.extraBytes = extraBytes;
+            entry.xlen = extraBytes.length;
+            xlenBytes[0] = (byte)(entry.xlen & 255);
+            xlenBytes[1] = (byte)((entry.xlen >> 8) & 255);
+        } else {
+            entry.flg &= ~GzipConstants.FLG_FEXTRA;
+            entry.extraBytes = null;
+            entry.xlen = null;
+            b[3] = (byte)entry.flg;
+        }
+        int crc16Length = ((entry.flg & GzipConstants.FLG_FHCRC) == GzipConstants.FLG_FHCRC) ? 2 : 0;
+        memberOut.write(b, 0, 10);
+        crc16.update(b, 0, 10);
+        if (entry.extraBytes != null) {
+            memberOut.write(xlenBytes);
+            memberOut.write(entry.extraBytes);
+            crc16.update(xlenBytes);
+            crc16.update(entry.extraBytes);
+        }
+        int idx = 12 + xlen;
+        memberOut.write(b, idx, headerLength - crc16Length - idx);
+        crc16.update(b, idx, headerLength - crc16Length - idx);
+        if (crc16Length > 0) {
+            entry.comp_crc16 = ((int)crc16.getValue()) & 0x0000ffff;
+            entry.crc16 = entry.comp_crc16;
+            crc16Bytes[0] = (byte)(entry.crc16 & 255);
+            crc16Bytes[1] = (byte)((entry.crc16 >> 8) & 255);
+            memberOut.write(crc16Bytes);
+        }
+        memberOut.write(b, headerLength, memberBuffer.size() - headerLength);
+        memberBuffer.reset();
+        out = memberOut;
+        memberOut = null;
+        compressedLengthIdx = -1;
+    }
+
     /**
      * Read data from input stream and fill buffer with compressed data.
      * @param in input stream with uncompressed data
@@ -408,11 +818,13 @@ public class GzipWriter implements Closeable {
      */
     protected int readCompressed(InputStream in, byte[] b, int off, int len) throws DataFormatException, IOException {
         int deflated = 0;
-        while ((deflated = def.deflate(b, off, len)) == 0) {
+        while ((deflated = deflate(b, off, len)) == 0) {
             if (def.finished()) {
                 return -1;
+            } else if (isFullFlushDue()) {
+                bFullFlushPending = true;
             } else if (def.needsInput()) {
-                int read = in.read(inputBytes, 0, inputBytes.length);
+                int read = in.read(inputBytes, 0, getInputLength());
                 if (read != -1) {
                     def.setInput(inputBytes, 0, read);
                     crc.update(inputBytes, 0, read);
@@ -440,14 +852,16 @@ public class GzipWriter implements Closeable {
      */
     protected int readCompressed(ByteBuffer bb, byte[] b, int off, int len, boolean bFinish) throws DataFormatException, IOException {
         int deflated = 0;
-        while ((deflated = def.deflate(b, off, len)) == 0) {
+        while ((deflated = deflate(b, off, len)) == 0) {
             if (def.finished()) {
                 return -1;
+            } else if (isFullFlushDue()) {
+                bFullFlushPending = true;
             } else if (def.needsInput()) {
                 int write = bb.remaining();
                 if (write > 0) {
-                    if (write > inputBytes.length) {
-                        write = inputBytes.length;
+                    if (write > getInputLength()) {
+                        write = getInputLength();
                     }
                     bb.get(inputBytes, 0, write);
                     def.setInput(inputBytes, 0, write);
@@ -467,6 +881,114 @@ public class GzipWriter implements Closeable {
         return deflated;
     }
 
+    /**
+     * Deflate into a buffer, completing a pending full flush first.
+     * @param b compressed data buffer
+     * @param off offset in compressed data buffer
+     * @param len length of compressed data buffer
+     * @return number of compressed bytes
+     */
+    protected int deflate(byte[] b, int off, int len) {
+        if (!bFullFlushPending) {
+            return def.deflate(b, off, len);
+        }
+        int deflated = def.deflate(b, off, len, Deflater.FULL_FLUSH);
+        if (deflated < len) {
+            // Flush completed, otherwise it continues on the next call.
+            bFullFlushPending = false;
+            fullFlushOffset = def.getBytesRead();
+        }
+        return deflated;
+    }
+
+    /**
+     * Returns true if all the input up to the next full flush offset has
+     * been consumed by the deflater.
+     * @return true if a full flush is due
+     */
+    protected boolean isFullFlushDue() {
+        return fullFlushInterval > 0 && def.needsInput()
+                && def.getBytesRead() - fullFlushOffset >= fullFlushInterval;
+    }
+
+    /**
+     * Returns the max number of bytes to feed the deflater, so input stops
+     * at the next full flush offset.
+     * @return max number of bytes to feed the deflater
+     */
+    protected int getInputLength() {
+        if (fullFlushInterval > 0) {
+            return (int)Math.min(inputBytes.length, fullFlushInterval - (def.getBytesRead() - fullFlushOffset));
+        }
+        return inputBytes.length;
+    }
+
+    /**
+     * Buffer used to complete an entry before writing it.
+     *
+     * @author nicl
+     */
+    protected static class MemberOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * Construct an empty member buffer.
+         */
+        public MemberOutputStream() {
+            super(DEFAULT_INPUT_BUFFER_SIZE);
+        }
+
+        /**
+         * Returns the internal buffer, valid up to <code>size()</code>.
+         * @return internal buffer
+         */
+        byte[] getBuffer() {
+            return buf;
+        }
+
+    }
+
+    /**
+     * <code>OutputStream</code> which writes to the member buffer until it
+     * would exceed the max member buffer size, after which the compressed
+     * length is dropped and the rest of the entry written directly.
+     *
+     * @author nicl
+     */
+    protected static class MemberBufferOutputStream extends OutputStream {
+
+        /** GZip writer owning the member buffer. */
+        GzipWriter writer;
+
+        /**
+         * Construct output stream bound to a specific writer.
+         * @param writer GZip writer
+         */
+        public MemberBufferOutputStream(GzipWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (writer.memberBuffer.size() + 1 > writer.maxMemberBufferSize && writer.headerLength > 0) {
+                writer.dropCompressedLength();
+                writer.out.write(b);
+            } else {
+                writer.memberBuffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (writer.memberBuffer.size() + len > writer.maxMemberBufferSize && writer.headerLength > 0) {
+                writer.dropCompressedLength();
+                writer.out.write(b, off, len);
+            } else {
+                writer.memberBuffer.write(b, off, len);
+            }
+        }
+
+    }
+
     /**
      * <code>OutputStream</code> to GZip compress data in a controlled fashion.
      *
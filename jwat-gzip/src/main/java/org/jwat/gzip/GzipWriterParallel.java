@@ -0,0 +1,548 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+
+/**
+ * A writer for multi-part GZip files which compresses entries in parallel.
+ * The uncompressed data of each entry is buffered in memory until the entry
+ * is closed. The entry is then compressed into a complete GZip member by a
+ * worker thread. Members are appended to the output stream in the order the
+ * entries were written.
+ * An entry which grows beyond the max buffered size is instead compressed
+ * on the caller's thread once the pending members have been appended.
+ * The writer waits for pending members while the total buffered size
+ * exceeds the max pending size.
+ * The header, trailer and diagnostics fields of an entry are updated when
+ * its member has been appended, at the latest when the writer is closed.
+ *
+ * @author nicl
+ */
+public class GzipWriterParallel extends GzipWriter {
+
+    /** Default max size of an entry buffered for compression by a worker. */
+    public static final int DEFAULT_MAX_BUFFERED_SIZE = 4 * 1024 * 1024;
+
+    /** Default max total size of the entries buffered for compression. */
+    public static final int DEFAULT_MAX_PENDING_SIZE = 32 * 1024 * 1024;
+
+    /** Executor used to compress entries. */
+    protected ExecutorService executor;
+
+    /** Is the executor owned and shutdown by this writer. */
+    protected boolean bOwnExecutor;
+
+    /** Max number of entries compressed or waiting to be appended. */
+    protected int maxPending;
+
+    /** Max size of an entry buffered for compression by a worker. */
+    protected int maxBufferedSize = DEFAULT_MAX_BUFFERED_SIZE;
+
+    /** Max total size of the entries compressed or waiting to be appended. */
+    protected int maxPendingSize = DEFAULT_MAX_PENDING_SIZE;
+
+    /** Total size of the entries compressed or waiting to be appended. */
+    protected long pendingSize;
+
+    /** Entries being compressed in the order they were written. */
+    protected LinkedList<PendingEntry> pending = new LinkedList<PendingEntry>();
+
+    /**
+     * Construct a parallel GZip writer using the specified number of threads.
+     * @param out output stream of GZip file
+     * @param threads number of deflater threads
+     */
+    public GzipWriterParallel(OutputStream out, int threads) {
+        this(out, DEFAULT_INPUT_BUFFER_SIZE, GzipReaderParallel.newExecutor(threads), threads * 2);
+        bOwnExecutor = true;
+    }
+
+    /**
+     * Construct a parallel GZip writer using the supplied executor.
+     * The executor is not shutdown when the writer is closed.
+     * @param out output stream of GZip file
+     * @param buffer_size output buffer size to use
+     * @param executor executor used to compress entries
+     * @param max_pending max number of entries compressed or waiting to be appended
+     */
+    public GzipWriterParallel(OutputStream out, int buffer_size, ExecutorService executor, int max_pending) {
+        super(out, buffer_size);
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null!");
+        }
+        if (max_pending <= 0) {
+            throw new IllegalArgumentException("max_pending is less or equals to zero!");
+        }
+        this.executor = executor;
+        this.maxPending = max_pending;
+    }
+
+    /**
+     * Set the max size of an entry buffered for compression by a worker.
+     * Larger entries are compressed on the caller's thread.
+     * @param size max buffered entry size
+     */
+    public void setMaxBufferedSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException(
+                    "size is less or equals to zero: " + size);
+        }
+        maxBufferedSize = size;
+    }
+
+    /**
+     * Returns the max size of an entry buffered for compression by a worker.
+     * @return max buffered entry size
+     */
+    public int getMaxBufferedSize() {
+        return maxBufferedSize;
+    }
+
+    /**
+     * Set the max total size of the uncompressed entries compressed or
+     * waiting to be appended.
+     * @param size max total pending size
+     */
+    public void setMaxPendingSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException(
+                    "size is less or equals to zero: " + size);
+        }
+        maxPendingSize = size;
+    }
+
+    /**
+     * Returns the max total size of the uncompressed entries compressed or
+     * waiting to be appended.
+     * @return max total pending size
+     */
+    public int getMaxPendingSize() {
+        return maxPendingSize;
+    }
+
+    /**
+     * Release resources associated with this writer.
+     * Waits for all pending entries to be compressed and appended.
+     * @throws IOException if an I/O error occurs while closing writer
+     */
+    @Override
+    public void close() throws IOException {
+        if (gzipEntry != null) {
+            gzipEntry.close();
+            gzipEntry = null;
+        }
+        try {
+            if (out != null) {
+                appendPending(0);
+            }
+        } finally {
+            while (!pending.isEmpty()) {
+                pending.removeFirst().future.cancel(true);
+            }
+            if (executor != null) {
+                if (bOwnExecutor) {
+                    executor.shutdownNow();
+                }
+                executor = null;
+            }
+            super.close();
+        }
+    }
+
+    /**
+     * Prepare an entry for buffering its uncompressed data. The header is
+     * written by the worker thread when the entry is closed.
+     * @param entry GZip entry object
+     * @throws IOException if an I/O error occurs while closing previous entry
+     */
+    @Override
+    public void writeEntryHeader(GzipEntry entry) throws IOException {
+        if (gzipEntry != null) {
+            gzipEntry.close();
+            gzipEntry = null;
+        }
+        if (entry == null) {
+            throw new IllegalArgumentException("entry is null!");
+        }
+        gzipEntry = entry;
+        entry.writer = this;
+        entry.bEof = false;
+        entry.out = new BufferedEntryOutputStream(this, entry);
+    }
+
+    /**
+     * Close the current entry and append all pending entries, so raw entries
+     * are appended in order.
+     * @throws IOException if an I/O error occurs while appending entries
+     */
+    @Override
+    protected void closePendingEntries() throws IOException {
+        super.closePendingEntries();
+        appendPending(0);
+    }
+
+    /**
+     * Used by <code>GzipEntry.writeFrom</code>, buffers all the data from the
+     * input stream instead of compressing it. The compressed data buffer is
+     * used to read the input, since the input buffer feeds the deflater when
+     * the entry is compressed on the caller's thread.
+     * @param in input stream with uncompressed data
+     * @param b compressed data buffer
+     * @param off offset in compressed data buffer
+     * @param len length of compressed data buffer
+     * @return -1 since all input has been buffered
+     * @throws DataFormatException never
+     * @throws IOException if an I/O error occurs while buffering
+     */
+    @Override
+    protected int readCompressed(InputStream in, byte[] b, int off, int len) throws DataFormatException, IOException {
+        BufferedEntryOutputStream bout = (BufferedEntryOutputStream)gzipEntry.out;
+        int read;
+        while ((read = in.read(b, off, len)) != -1) {
+            bout.write(b, off, read);
+        }
+        return -1;
+    }
+
+    /**
+     * Queue the buffered entry for compression and append any members which
+     * have been compressed in the meantime. An entry compressed on the
+     * caller's thread is finished and its trailer written instead.
+     * @param entry GZip entry object
+     * @throws IOException if an I/O error occurs while appending members
+     */
+    @Override
+    protected void writeTrailer(GzipEntry entry) throws IOException {
+        BufferedEntryOutputStream bout = (BufferedEntryOutputStream)entry.out;
+        if (bout.inlineOut != null) {
+            // Finishing the deflater ends up back here with the entry marked as inline.
+            OutputStream inlineOut = bout.inlineOut;
+            bout.inlineOut = null;
+            inlineOut.close();
+            return;
+        }
+        if (bout.bInline) {
+            super.writeTrailer(entry);
+            return;
+        }
+        PendingEntry pendingEntry = new PendingEntry();
+        pendingEntry.entry = entry;
+        pendingEntry.copy = copyHeader(entry);
+        pendingEntry.size = bout.size();
+        pendingEntry.future = executor.submit(new DeflateCallable(pendingEntry.copy,
+                bout.getBuffer(), bout.size(), compressionLevel, bCompressedLengthEnabled,
+                maxMemberBufferSize, fullFlushInterval));
+        pending.add(pendingEntry);
+        pendingSize += pendingEntry.size;
+        appendPending(maxPending);
+    }
+
+    /**
+     * Switch a buffered entry to compression on the caller's thread. All
+     * pending members are appended first so the entry follows them.
+     * @param bout buffered entry output stream
+     * @throws IOException if an I/O error occurs while writing entry
+     */
+    protected void deflateInline(BufferedEntryOutputStream bout) throws IOException {
+        appendPending(0);
+        GzipEntry entry = bout.gzipEntry;
+        // The entry is current, prevent it from being closed by the header code.
+        gzipEntry = null;
+        super.writeEntryHeader(entry);
+        bout.inlineOut = entry.out;
+        bout.bInline = true;
+        entry.out = bout;
+        bout.inlineOut.write(bout.getBuffer(), 0, bout.size());
+        bout.discardBuffer();
+    }
+
+    /**
+     * Append compressed members in order until no more than the given number
+     * of entries are pending. Members already compressed are always appended.
+     * @param max max number of pending entries to leave
+     * @throws IOException if an I/O error occurs while appending members
+     */
+    protected void appendPending(int max) throws IOException {
+        PendingEntry pendingEntry;
+        while (!pending.isEmpty() && (pending.size() > max || pendingSize > maxPendingSize
+                || pending.getFirst().future.isDone())) {
+            pendingEntry = pending.removeFirst();
+            pendingSize -= pendingEntry.size;
+            byte[] member;
+            try {
+                member = pendingEntry.future.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException("Deflater malfunction!", e.getCause());
+            }
+            out.write(member);
+            copyResult(pendingEntry.copy, pendingEntry.entry);
+            bIsCompliant &= pendingEntry.entry.bIsCompliant;
+        }
+        out.flush();
+    }
+
+    /**
+     * Copy the header values of an entry to a new entry used by a worker.
+     * @param entry GZip entry object
+     * @return copy of the entry header values
+     */
+    protected static GzipEntry copyHeader(GzipEntry entry) {
+        GzipEntry copy = new GzipEntry();
+        copy.cm = entry.cm;
+        copy.mtime = entry.mtime;
+        copy.date = entry.date;
+        copy.os = entry.os;
+        copy.bFText = entry.bFText;
+        copy.extraBytes = (entry.extraBytes != null) ? entry.extraBytes.clone() : null;
+        GzipExtraData extraData;
+        for (int i=0; i<entry.extraData.size(); ++i) {
+            extraData = entry.extraData.get(i);
+            copy.extraData.add(new GzipExtraData(extraData.si1, extraData.si2,
+                    (extraData.data != null) ? extraData.data.clone() : null));
+        }
+        copy.fname = entry.fname;
+        copy.fcomment = entry.fcomment;
+        copy.bFhCrc = entry.bFhCrc;
+        return copy;
+    }
+
+    /**
+     * Copy the values computed by a worker back to the original entry.
+     * @param copy entry used by the worker
+     * @param entry original GZip entry object
+     */
+    protected static void copyResult(GzipEntry copy, GzipEntry entry) {
+        entry.magic = copy.magic;
+        entry.flg = copy.flg;
+        entry.mtime = copy.mtime;
+        entry.date = copy.date;
+        entry.xfl = copy.xfl;
+        entry.extraBytes = copy.extraBytes;
+        entry.xlen = copy.xlen;
+        entry.extraData.clear();
+        entry.extraData.addAll(copy.extraData);
+        entry.fname = copy.fname;
+        entry.fcomment = copy.fcomment;
+        entry.crc16 = copy.crc16;
+        entry.comp_crc16 = copy.comp_crc16;
+        entry.crc32 = copy.crc32;
+        entry.comp_crc32 = copy.comp_crc32;
+        entry.isize = copy.isize;
+        entry.comp_isize = copy.comp_isize;
+        entry.uncompressed_size = copy.uncompressed_size;
+        entry.compressed_size = copy.compressed_size;
+        entry.compressed_length = copy.compressed_length;
+        entry.diagnostics.addAll(copy.diagnostics);
+        entry.bIsCompliant = copy.bIsCompliant;
+    }
+
+    /**
+     * Entry waiting to be compressed and appended.
+     */
+    protected static class PendingEntry {
+
+        /** Original GZip entry. */
+        GzipEntry entry;
+
+        /** Copy of entry used by the worker. */
+        GzipEntry copy;
+
+        /** Size of uncompressed data. */
+        int size;
+
+        /** Future compressed member. */
+        Future<byte[]> future;
+    }
+
+    /**
+     * Worker which compresses a buffered entry into a complete GZip member.
+     */
+    protected static class DeflateCallable implements Callable<byte[]> {
+
+        /** Entry used to write the member. */
+        GzipEntry entry;
+
+        /** Uncompressed data. */
+        byte[] data;
+
+        /** Length of uncompressed data. */
+        int length;
+
+        /** Compression level. */
+        int compressionLevel;
+
+        /** Write the compressed length subfield. */
+        boolean bCompressedLengthEnabled;
+
+        /** Max size of a member buffered to fill in its compressed length. */
+        int maxMemberBufferSize;
+
+        /** Number of uncompressed bytes between full flushes or 0. */
+        long fullFlushInterval;
+
+        /**
+         * Construct worker for an entry.
+         * @param entry entry used to write the member
+         * @param data uncompressed data
+         * @param length length of uncompressed data
+         * @param compressionLevel compression level
+         * @param bCompressedLengthEnabled write the compressed length subfield
+         * @param maxMemberBufferSize max size of a member buffered to fill in its compressed length
+         * @param fullFlushInterval number of uncompressed bytes between full flushes or 0
+         */
+        DeflateCallable(GzipEntry entry, byte[] data, int length, int compressionLevel,
+                boolean bCompressedLengthEnabled, int maxMemberBufferSize, long fullFlushInterval) {
+            this.entry = entry;
+            this.data = data;
+            this.length = length;
+            this.compressionLevel = compressionLevel;
+            this.bCompressedLengthEnabled = bCompressedLengthEnabled;
+            this.maxMemberBufferSize = maxMemberBufferSize;
+            this.fullFlushInterval = fullFlushInterval;
+        }
+
+        @Override
+        public byte[] call() throws Exception {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+            GzipWriter writer = new GzipWriter(out, GzipResourcePool.getDefault());
+            try {
+                writer.setCompressionLevel(compressionLevel);
+                writer.setCompressedLengthEnabled(bCompressedLengthEnabled);
+                writer.setMaxMemberBufferSize(maxMemberBufferSize);
+                writer.setFullFlushInterval(fullFlushInterval);
+                writer.writeEntryHeader(entry);
+                OutputStream entryOut = entry.getOutputStream();
+                entryOut.write(data, 0, length);
+                entryOut.close();
+            } finally {
+                writer.close();
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * <code>OutputStream</code> which buffers the uncompressed data of an
+     * entry until it is closed, or until it exceeds the max buffered size
+     * after which the data is compressed directly.
+     *
+     * @author nicl
+     */
+    protected static class BufferedEntryOutputStream extends OutputStream {
+
+        /** GZip writer the entry is queued on. */
+        GzipWriterParallel writer;
+
+        /** Associated GZip entry. */
+        GzipEntry gzipEntry;
+
+        /** Is the entry compressed on the caller's thread. */
+        boolean bInline;
+
+        /** Entry output stream of the writer while compressed inline. */
+        OutputStream inlineOut;
+
+        /** Buffered uncompressed data. */
+        MemberOutputStream buffer = new MemberOutputStream();
+
+        /**
+         * Construct output stream bound to a specific writer and entry.
+         * @param writer GZip writer
+         * @param gzipEntry GZip entry
+         */
+        public BufferedEntryOutputStream(GzipWriterParallel writer, GzipEntry gzipEntry) {
+            this.writer = writer;
+            this.gzipEntry = gzipEntry;
+        }
+
+        /**
+         * Returns the internal buffer, valid up to <code>size()</code>.
+         * @return internal buffer
+         */
+        byte[] getBuffer() {
+            return buffer.getBuffer();
+        }
+
+        /**
+         * Returns the number of buffered bytes.
+         * @return number of buffered bytes
+         */
+        int size() {
+            return buffer.size();
+        }
+
+        /**
+         * Release the internal buffer once its data has been compressed.
+         */
+        void discardBuffer() {
+            buffer = new MemberOutputStream();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (inlineOut == null && writer != null && buffer.size() + 1 > writer.maxBufferedSize) {
+                writer.deflateInline(this);
+            }
+            if (inlineOut != null) {
+                inlineOut.write(b);
+            } else {
+                buffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (inlineOut == null && writer != null && buffer.size() + len > writer.maxBufferedSize) {
+                writer.deflateInline(this);
+            }
+            if (inlineOut != null) {
+                inlineOut.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                try {
+                    writer.writeTrailer(gzipEntry);
+                } finally {
+                    writer = null;
+                    gzipEntry = null;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * The sync-flush.gz test file contains an entry with 1000000 bytes of text
+ * compressed with alternating sync and full flushes every 65536 bytes and
+ * an entry without flushes.
+ */
+@RunWith(JUnit4.class)
+public class TestGzipCheckpointIndex {
+
+    @Test
+    public void test_gzipcheckpointindex() throws IOException {
+        byte[] bytes = TestGzipReaderParallel.readAll(TestHelpers.getTestResourceAsStream("sync-flush.gz"));
+
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+        Assert.assertEquals(0, reader.getCheckpointInterval());
+        reader.setCheckpointInterval(100000);
+        Assert.assertEquals(100000, reader.getCheckpointInterval());
+        GzipEntry entry = reader.getNextEntry();
+        byte[] data = TestGzipReaderParallel.readAll(entry.getInputStream());
+        Assert.assertEquals(1000000, data.length);
+        Assert.assertTrue(entry.isCompliant());
+        GzipCheckpointIndex index = entry.checkpointIndex;
+        Assert.assertNotNull(index);
+        Assert.assertEquals(0, index.getStartOffset());
+        Assert.assertEquals(8, index.size());
+        GzipCheckpointIndex.Checkpoint checkpoint;
+        for (int i=1; i<index.size(); ++i) {
+            checkpoint = index.getCheckpoint(i);
+            Assert.assertEquals(0, checkpoint.uncompressedOffset % 65536);
+            Assert.assertTrue(checkpoint.uncompressedOffset - index.getCheckpoint(i - 1).uncompressedOffset >= 100000);
+            Assert.assertEquals(GzipCheckpointIndex.WINDOW_SIZE, checkpoint.window.length);
+        }
+        entry = reader.getNextEntry();
+        TestGzipReaderParallel.readAll(entry.getInputStream());
+        Assert.assertEquals(1, entry.checkpointIndex.size());
+        Assert.assertNull(reader.getNextEntry());
+        reader.close();
+        Assert.assertTrue(reader.isCompliant());
+
+        // Sidecar round trip.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        index = GzipCheckpointIndex.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(8, index.size());
+
+        File file = File.createTempFile("jwat-gzipcheckpointindex-", ".gz");
+        file.deleteOnExit();
+        FileOutputStream fout = new FileOutputStream(file);
+        fout.write(bytes);
+        fout.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        long[] offsets = {0, 1, 65535, 131072, 131073, 500000, 999999, 1000000};
+        for (int i=0; i<offsets.length; ++i) {
+            InputStream in = index.getInputStream(raf, offsets[i]);
+            byte[] tmpBuf = new byte[1000];
+            int len = 0;
+            int read;
+            while (len < tmpBuf.length && (read = in.read(tmpBuf, len, tmpBuf.length - len)) != -1) {
+                len += read;
+            }
+            in.close();
+            Assert.assertEquals(Math.min(1000, 1000000 - offsets[i]), len);
+            for (int j=0; j<len; ++j) {
+                Assert.assertEquals(data[(int)offsets[i] + j], tmpBuf[j]);
+            }
+        }
+        Assert.assertEquals(0, index.findCheckpoint(0));
+        Assert.assertEquals(index.size() - 1, index.findCheckpoint(Long.MAX_VALUE));
+        raf.close();
+        file.delete();
+
+        // Parallel reader falls back to sequential inflation.
+        reader = new GzipReaderParallel(new ByteArrayInputStream(bytes), 2);
+        reader.setCheckpointInterval(100000);
+        entry = reader.getNextEntry();
+        TestGzipReaderParallel.readAll(entry.getInputStream());
+        Assert.assertEquals(8, entry.checkpointIndex.size());
+        reader.close();
+    }
+
+    @Test
+    public void test_gzipcheckpointindex_gzipwriter() throws IOException {
+        ByteArrayOutputStream dataOut = new ByteArrayOutputStream();
+        int line = 0;
+        while (dataOut.size() < 1000000) {
+            dataOut.write(("Line " + line + " of " + (line * 7919 % 1000) + " checkpointed text.\n").getBytes("ISO-8859-1"));
+            ++line;
+        }
+        byte[] data = dataOut.toByteArray();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(out);
+        Assert.assertEquals(0, writer.getFullFlushInterval());
+        writer.setFullFlushInterval(65536);
+        Assert.assertEquals(65536, writer.getFullFlushInterval());
+        GzipEntry entry = new GzipEntry();
+        writer.writeEntryHeader(entry);
+        entry.writeFrom(new ByteArrayInputStream(data));
+        entry.close();
+        writer.setFullFlushInterval(0);
+        entry = new GzipEntry();
+        writer.writeEntryHeader(entry);
+        OutputStream entryOut = entry.getOutputStream();
+        entryOut.write(data);
+        entryOut.close();
+        entry.close();
+        writer.close();
+        byte[] bytes = out.toByteArray();
+
+        // Parallel writer output is identical.
+        out = new ByteArrayOutputStream();
+        writer = new GzipWriterParallel(out, 2);
+        writer.setFullFlushInterval(65536);
+        entry = new GzipEntry();
+        writer.writeEntryHeader(entry);
+        entry.writeFrom(new ByteArrayInputStream(data));
+        entry.close();
+        writer.setFullFlushInterval(0);
+        entry = new GzipEntry();
+        writer.writeEntryHeader(entry);
+        entry.writeFrom(new ByteArrayInputStream(data));
+        entry.close();
+        writer.close();
+        Assert.assertArrayEquals(bytes, out.toByteArray());
+
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+        reader.setCheckpointInterval(100000);
+        entry = reader.getNextEntry();
+        Assert.assertArrayEquals(data, TestGzipReaderParallel.readAll(entry.getInputStream()));
+        Assert.assertTrue(entry.isCompliant());
+        GzipCheckpointIndex index = entry.checkpointIndex;
+        Assert.assertEquals(data.length / 131072 + 1, index.size());
+        for (int i=1; i<index.size(); ++i) {
+            Assert.assertEquals(0, index.getCheckpoint(i).uncompressedOffset % 65536);
+        }
+        entry = reader.getNextEntry();
+        Assert.assertArrayEquals(data, TestGzipReaderParallel.readAll(entry.getInputStream()));
+        Assert.assertEquals(1, entry.checkpointIndex.size());
+        Assert.assertNull(reader.getNextEntry());
+        reader.close();
+        Assert.assertTrue(reader.isCompliant());
+
+        File file = File.createTempFile("jwat-gzipcheckpointindex-", ".gz");
+        file.deleteOnExit();
+        FileOutputStream fout = new FileOutputStream(file);
+        fout.write(bytes);
+        fout.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        long[] offsets = {0, 65536, 131071, 262144, 500000, data.length - 10};
+        for (int i=0; i<offsets.length; ++i) {
+            InputStream in = index.getInputStream(raf, offsets[i]);
+            byte[] tmpBuf = new byte[1000];
+            int len = 0;
+            int read;
+            while (len < tmpBuf.length && (read = in.read(tmpBuf, len, tmpBuf.length - len)) != -1) {
+                len += read;
+            }
+            in.close();
+            Assert.assertEquals(Math.min(1000, data.length - offsets[i]), len);
+            for (int j=0; j<len; ++j) {
+                Assert.assertEquals(data[(int)offsets[i] + j], tmpBuf[j]);
+            }
+        }
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void test_gzipcheckpointindex_noflush() throws IOException {
+        String fname = "IAH-20080430204825-00000-blackbook.warc.gz";
+        GzipReader reader = new GzipReader(TestHelpers.getTestResourceAsStream(fname));
+        reader.setCheckpointInterval(1);
+        GzipEntry entry;
+        int entries = 0;
+        while ((entry = reader.getNextEntry()) != null) {
+            TestGzipReaderParallel.readAll(entry.getInputStream());
+            Assert.assertEquals(1, entry.checkpointIndex.size());
+            Assert.assertTrue(entry.isCompliant());
+            ++entries;
+        }
+        reader.close();
+        Assert.assertEquals(822, entries);
+        Assert.assertTrue(reader.isCompliant());
+
+        byte[] sidecar = {0, 0, 0, 0};
+        try {
+            GzipCheckpointIndex.read(new ByteArrayInputStream(sidecar));
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        try {
+            reader.setCheckpointInterval(-1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
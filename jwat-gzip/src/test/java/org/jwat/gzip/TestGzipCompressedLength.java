@@ -0,0 +1,236 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jwat.common.RandomAccessFileOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipCompressedLength {
+
+    @Test
+    public void test_gzip_compressedlength() throws IOException {
+        List<byte[]> datas = new ArrayList<byte[]>();
+        for (int i=0; i<16; ++i) {
+            byte[] data = new byte[i * 4096 + 17];
+            for (int j=0; j<data.length; ++j) {
+                data[j] = (byte)((j * 31 + i) % (i + 2));
+            }
+            datas.add(data);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(out);
+        Assert.assertFalse(writer.getCompressedLengthEnabled());
+        writer.setCompressedLengthEnabled(true);
+        Assert.assertTrue(writer.getCompressedLengthEnabled());
+        List<GzipEntry> entries = writeEntries(writer, datas);
+        writer.close();
+        byte[] bytes = out.toByteArray();
+        for (int i=0; i<entries.size(); ++i) {
+            Assert.assertEquals(new Long(entries.get(i).compressed_size), entries.get(i).compressed_length);
+        }
+
+        // Parallel writer output is identical.
+        out = new ByteArrayOutputStream();
+        writer = new GzipWriterParallel(out, 2);
+        writer.setCompressedLengthEnabled(true);
+        writeEntries(writer, datas);
+        writer.close();
+        Assert.assertArrayEquals(bytes, out.toByteArray());
+
+        // Inflate and validate.
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+        List<Long> offsets = new ArrayList<Long>();
+        GzipEntry entry;
+        int idx = 0;
+        while ((entry = reader.getNextEntry()) != null) {
+            Assert.assertArrayEquals(datas.get(idx), TestGzipReaderParallel.readAll(entry.getInputStream()));
+            entry.close();
+            Assert.assertTrue(entry.isCompliant());
+            Assert.assertEquals(new Long(entry.compressed_size), entry.compressed_length);
+            Assert.assertEquals(entries.get(idx).crc32, entry.crc32);
+            offsets.add(entry.getStartOffset());
+            ++idx;
+        }
+        reader.close();
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertEquals(datas.size(), idx);
+
+        // Skip without inflating.
+        reader = new GzipReader(new ByteArrayInputStream(bytes));
+        idx = 0;
+        while ((entry = reader.getNextEntry()) != null) {
+            Assert.assertEquals(offsets.get(idx).longValue(), entry.getStartOffset());
+            Assert.assertTrue(reader.skipEntry());
+            Assert.assertTrue(entry.isCompliant());
+            Assert.assertEquals(entries.get(idx).crc32, entry.crc32);
+            Assert.assertEquals(entries.get(idx).isize, entry.isize);
+            Assert.assertEquals(datas.get(idx).length, entry.uncompressed_size);
+            Assert.assertFalse(reader.skipEntry());
+            ++idx;
+        }
+        reader.close();
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertEquals(datas.size(), idx);
+        Assert.assertEquals(bytes.length, reader.getConsumed());
+
+        // Skipping falls back to inflating once data has been read.
+        reader = new GzipReader(new ByteArrayInputStream(bytes));
+        entry = reader.getNextEntry();
+        Assert.assertEquals(datas.get(0)[0] & 255, entry.getInputStream().read());
+        Assert.assertFalse(reader.skipEntry());
+        Assert.assertEquals(entries.get(0).crc32, entry.comp_crc32);
+        entry = reader.getNextEntry();
+        Assert.assertEquals(offsets.get(1).longValue(), entry.getStartOffset());
+        reader.close();
+
+        // Truncated.
+        byte[] truncated = new byte[(int)(offsets.get(1) - 4)];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        reader = new GzipReader(new ByteArrayInputStream(truncated));
+        entry = reader.getNextEntry();
+        Assert.assertTrue(reader.skipEntry());
+        Assert.assertFalse(entry.isCompliant());
+        Assert.assertFalse(reader.isCompliant());
+        reader.close();
+    }
+
+    @Test
+    public void test_gzip_compressedlength_large() throws IOException {
+        List<byte[]> datas = new ArrayList<byte[]>();
+        for (int i=0; i<16; ++i) {
+            byte[] data = new byte[i * 4096 + 17];
+            for (int j=0; j<data.length; ++j) {
+                data[j] = (byte)((j * 31 + i) % (i + 2));
+            }
+            datas.add(data);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(out);
+        writer.setCompressedLengthEnabled(true);
+        List<GzipEntry> entries = writeEntries(writer, datas);
+        writer.close();
+        byte[] bytes = out.toByteArray();
+
+        // Seekable output has its headers patched in place instead of buffering entries.
+        File file = File.createTempFile("jwat-compressedlength-", ".gz");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            writer = new GzipWriter(new RandomAccessFileOutputStream(raf));
+            writer.setCompressedLengthEnabled(true);
+            List<GzipEntry> rafEntries = writeEntries(writer, datas);
+            Assert.assertEquals(GzipWriter.DEFAULT_INPUT_BUFFER_SIZE, writer.memberBuffer.getBuffer().length);
+            writer.close();
+            for (int i=0; i<entries.size(); ++i) {
+                Assert.assertEquals(entries.get(i).compressed_length, rafEntries.get(i).compressed_length);
+                Assert.assertEquals(entries.get(i).crc16, rafEntries.get(i).crc16);
+            }
+            byte[] rafBytes = new byte[(int)raf.length()];
+            raf.seek(0);
+            raf.readFully(rafBytes);
+            Assert.assertArrayEquals(bytes, rafBytes);
+        } finally {
+            raf.close();
+            file.delete();
+        }
+
+        // The compressed length is dropped from entries larger than the max member buffer size.
+        out = new ByteArrayOutputStream();
+        writer = new GzipWriter(out);
+        writer.setCompressedLengthEnabled(true);
+        writer.setMaxMemberBufferSize(64);
+        Assert.assertEquals(64, writer.getMaxMemberBufferSize());
+        entries = writeEntries(writer, datas);
+        writer.close();
+        Assert.assertTrue(writer.isCompliant());
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(out.toByteArray()));
+        GzipEntry entry;
+        int idx = 0;
+        int dropped = 0;
+        while ((entry = reader.getNextEntry()) != null) {
+            Assert.assertArrayEquals(datas.get(idx), TestGzipReaderParallel.readAll(entry.getInputStream()));
+            entry.close();
+            Assert.assertTrue(entry.isCompliant());
+            Assert.assertEquals(entries.get(idx).compressed_length, entry.compressed_length);
+            if (entry.compressed_length == null) {
+                ++dropped;
+            } else {
+                Assert.assertEquals(new Long(entry.compressed_size), entry.compressed_length);
+            }
+            Assert.assertEquals((idx % 4) == 1, entry.extraData.size() > 0 && entry.extraData.get(0).si1 == 'J');
+            ++idx;
+        }
+        reader.close();
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertEquals(datas.size(), idx);
+        Assert.assertTrue(dropped > 0 && dropped < datas.size());
+    }
+
+    @Test
+    public void test_gzip_compressedlength_noextra() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(out);
+        List<byte[]> datas = new ArrayList<byte[]>();
+        datas.add(new byte[1024]);
+        writeEntries(writer, datas);
+        writer.close();
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(out.toByteArray()));
+        GzipEntry entry = reader.getNextEntry();
+        Assert.assertNull(entry.compressed_length);
+        Assert.assertFalse(reader.skipEntry());
+        Assert.assertEquals(0, entry.comp_isize - 1024);
+        Assert.assertNull(reader.getNextEntry());
+        Assert.assertTrue(reader.isCompliant());
+        reader.close();
+    }
+
+    protected static List<GzipEntry> writeEntries(GzipWriter writer, List<byte[]> datas) throws IOException {
+        List<GzipEntry> entries = new ArrayList<GzipEntry>();
+        GzipEntry entry;
+        for (int i=0; i<datas.size(); ++i) {
+            entry = new GzipEntry();
+            entry.mtime = 1234567890;
+            entry.bFhCrc = (i % 3) == 0;
+            if ((i % 4) == 1) {
+                entry.extraData.add(new GzipExtraData((byte)'J', (byte)'W', new byte[] {1, 2, 3}));
+            }
+            writer.writeEntryHeader(entry);
+            OutputStream out = entry.getOutputStream();
+            out.write(datas.get(i));
+            out.close();
+            entry.close();
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipCopyEntry {
+
+    @Test
+    public void test_gzip_copyentry() throws IOException {
+        String fname = "IAH-20080430204825-00000-blackbook.warc.gz";
+        byte[] bytes = TestGzipReaderParallel.readAll(TestHelpers.getTestResourceAsStream(fname));
+
+        GzipReader[] readers = {
+                new GzipReader(new ByteArrayInputStream(bytes)),
+                new GzipReader(new ByteArrayInputStream(bytes)),
+                new GzipReaderParallel(new ByteArrayInputStream(bytes), 2)
+        };
+        for (int i=0; i<readers.length; ++i) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GzipWriter writer = new GzipWriter(out);
+            int entries = 0;
+            GzipEntry entry;
+            while ((entry = readers[i].getNextEntry()) != null) {
+                long copied = writer.writeRawEntry(readers[i], i == 0);
+                Assert.assertEquals(entry.consumed, copied);
+                Assert.assertTrue(entry.isCompliant());
+                Assert.assertEquals(entry.crc32, entry.comp_crc32);
+                ++entries;
+            }
+            readers[i].close();
+            writer.close();
+            Assert.assertEquals(822, entries);
+            Assert.assertTrue(readers[i].isCompliant());
+            Assert.assertEquals(bytes.length, readers[i].getConsumed());
+            Assert.assertArrayEquals(bytes, out.toByteArray());
+        }
+
+        // Corrupt CRC32 of the first entry.
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+        GzipEntry entry = reader.getNextEntry();
+        reader.skipEntry();
+        reader.close();
+        byte[] corrupt = bytes.clone();
+        ++corrupt[(int)entry.consumed - 8];
+        reader = new GzipReader(new ByteArrayInputStream(corrupt));
+        entry = reader.getNextEntry();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reader.copyEntry(out, true);
+        Assert.assertFalse(entry.isCompliant());
+        Assert.assertFalse(reader.isCompliant());
+        entry = reader.getNextEntry();
+        reader.copyEntry(out, true);
+        Assert.assertTrue(entry.isCompliant());
+        reader.close();
+        Assert.assertEquals(out.size(), reader.getConsumed());
+        for (int i=0; i<out.size(); ++i) {
+            Assert.assertEquals(corrupt[i], out.toByteArray()[i]);
+        }
+
+        // Entry already read from.
+        reader = new GzipReader(new ByteArrayInputStream(bytes));
+        entry = reader.getNextEntry();
+        entry.getInputStream().read();
+        try {
+            reader.copyEntry(out, true);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            reader.copyEntry(null, true);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        reader.close();
+        try {
+            reader.copyEntry(out, true);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void test_gzip_copyentry_compressedlength() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(expected);
+        writer.setCompressedLengthEnabled(true);
+        GzipEntry entry;
+        for (int i=0; i<10; ++i) {
+            entry = new GzipEntry();
+            entry.fname = "entry" + i;
+            entry.bFhCrc = (i & 1) == 0;
+            writer.writeEntryHeader(entry);
+            entry.getOutputStream().write(new byte[i * 1000]);
+            entry.close();
+        }
+        writer.close();
+        byte[] bytes = expected.toByteArray();
+
+        for (int v=0; v<2; ++v) {
+            GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer = new GzipWriterParallel(out, 2);
+            int i = 0;
+            while ((entry = reader.getNextEntry()) != null) {
+                writer.writeRawEntry(reader, v == 0);
+                Assert.assertEquals(i * 1000, entry.isize);
+                if (i > 0) {
+                    // Only inflated entries have a computed ISize.
+                    Assert.assertEquals(v == 0, entry.comp_isize == entry.isize);
+                }
+                // Interleave an entry compressed by the writer.
+                GzipEntry written = new GzipEntry();
+                writer.writeEntryHeader(written);
+                written.getOutputStream().write(new byte[10]);
+                ++i;
+            }
+            reader.close();
+            writer.close();
+            Assert.assertTrue(reader.isCompliant());
+
+            reader = new GzipReader(new ByteArrayInputStream(out.toByteArray()));
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            i = 0;
+            while ((entry = reader.getNextEntry()) != null) {
+                if ((i & 1) == 0) {
+                    reader.copyEntry(raw, false);
+                } else {
+                    Assert.assertEquals(10, TestGzipReaderParallel.readAll(entry.getInputStream()).length);
+                }
+                ++i;
+            }
+            reader.close();
+            Assert.assertEquals(20, i);
+            Assert.assertTrue(reader.isCompliant());
+            Assert.assertArrayEquals(bytes, raw.toByteArray());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer = new GzipWriter(out);
+        Assert.assertEquals(bytes.length, writer.writeRawEntry(new ByteArrayInputStream(bytes)));
+        writer.close();
+        Assert.assertArrayEquals(bytes, out.toByteArray());
+    }
+
+}
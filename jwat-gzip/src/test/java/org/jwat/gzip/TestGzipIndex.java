@@ -0,0 +1,153 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipIndex {
+
+    @Test
+    public void test_gzipindex() throws IOException {
+        String fname = "IAH-20080430204825-00000-blackbook.warc.gz";
+        byte[] bytes = TestGzipReaderParallel.readAll(TestHelpers.getTestResourceAsStream(fname));
+
+        List<byte[]> datas = new ArrayList<byte[]>();
+        List<GzipEntry> entries = new ArrayList<GzipEntry>();
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+        GzipEntry entry;
+        while ((entry = reader.getNextEntry()) != null) {
+            datas.add(TestGzipReaderParallel.readAll(entry.getInputStream()));
+            entry.close();
+            entries.add(entry);
+        }
+        reader.close();
+
+        GzipIndex index = GzipIndex.build(new GzipReader(new ByteArrayInputStream(bytes)));
+        Assert.assertEquals(822, index.size());
+        for (int i=0; i<entries.size(); ++i) {
+            entry = entries.get(i);
+            Assert.assertEquals(entry.getStartOffset(), index.getOffset(i));
+            Assert.assertEquals(entry.consumed, index.getLength(i));
+            Assert.assertEquals(datas.get(i).length, index.getUncompressedLength(i));
+            Assert.assertEquals(entry.crc32, index.getCrc32(i));
+            Assert.assertEquals(i, index.findEntry(index.getOffset(i)));
+            Assert.assertEquals(i, index.findEntry(index.getOffset(i) + index.getLength(i) - 1));
+        }
+        Assert.assertEquals(-1, index.findEntry(-1));
+        Assert.assertEquals(-1, index.findEntry(bytes.length));
+        try {
+            index.getOffset(822);
+            Assert.fail("Exception expected!");
+        } catch (IndexOutOfBoundsException e) {
+        }
+
+        // Sidecar round trip.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        Assert.assertEquals(12 + 822 * 28, out.size());
+        GzipIndex index2 = GzipIndex.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(index.size(), index2.size());
+        for (int i=0; i<index.size(); ++i) {
+            Assert.assertEquals(index.getOffset(i), index2.getOffset(i));
+            Assert.assertEquals(index.getLength(i), index2.getLength(i));
+            Assert.assertEquals(index.getUncompressedLength(i), index2.getUncompressedLength(i));
+            Assert.assertEquals(index.getCrc32(i), index2.getCrc32(i));
+        }
+        byte[] sidecar = out.toByteArray();
+        sidecar[0] = 0;
+        try {
+            GzipIndex.read(new ByteArrayInputStream(sidecar));
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+
+        // Random access.
+        File file = File.createTempFile("jwat-gzipindex-", ".gz");
+        file.deleteOnExit();
+        FileOutputStream fout = new FileOutputStream(file);
+        fout.write(bytes);
+        fout.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        GzipIndexReader indexReader = new GzipIndexReader(raf, index2);
+        Assert.assertSame(index2, indexReader.getIndex());
+        int[] ns = {821, 0, 411, 1, 411};
+        for (int i=0; i<ns.length; ++i) {
+            entry = indexReader.getEntry(ns[i]);
+            Assert.assertArrayEquals(datas.get(ns[i]), TestGzipReaderParallel.readAll(entry.getInputStream()));
+            Assert.assertTrue(entry.isCompliant());
+        }
+        // Partially read entries are abandoned when seeking to another entry.
+        entry = indexReader.getEntry(300);
+        InputStream entryIn = entry.getInputStream();
+        Assert.assertTrue(entryIn.read() != -1);
+        entry = indexReader.getEntry(200);
+        Assert.assertEquals(-1, entryIn.read());
+        Assert.assertEquals(0, entry.getStartOffset());
+        Assert.assertArrayEquals(datas.get(200), TestGzipReaderParallel.readAll(entry.getInputStream()));
+        entry = indexReader.getEntryAt(index.getOffset(100) + 5);
+        Assert.assertArrayEquals(datas.get(100), TestGzipReaderParallel.readAll(entry.getInputStream()));
+        Assert.assertNull(indexReader.getEntryAt(bytes.length + 1));
+        indexReader.close();
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void test_gzipindex_compressedlength() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(out);
+        writer.setCompressedLengthEnabled(true);
+        for (int i=0; i<10; ++i) {
+            GzipEntry entry = new GzipEntry();
+            writer.writeEntryHeader(entry);
+            entry.getOutputStream().write(new byte[i * 1000]);
+            entry.close();
+        }
+        writer.close();
+        byte[] bytes = out.toByteArray();
+        GzipIndex index = GzipIndex.build(new GzipReader(new ByteArrayInputStream(bytes)));
+        Assert.assertEquals(10, index.size());
+        long offset = 0;
+        for (int i=0; i<index.size(); ++i) {
+            Assert.assertEquals(offset, index.getOffset(i));
+            Assert.assertEquals(i * 1000, index.getUncompressedLength(i));
+            offset += index.getLength(i);
+        }
+        Assert.assertEquals(bytes.length, offset);
+        try {
+            index.add(offset - 1, 10, 10, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipReaderChannel {
+
+    @Test
+    public void test_gzipreaderchannel() throws IOException {
+        String[] files = {"IAH-20080430204825-00000-blackbook.warc.gz", "sync-flush.gz"};
+        for (int f=0; f<files.length; ++f) {
+            byte[] bytes = TestGzipReaderParallel.readAll(TestHelpers.getTestResourceAsStream(files[f]));
+            List<byte[]> datas = new ArrayList<byte[]>();
+            List<GzipEntry> entries = new ArrayList<GzipEntry>();
+            GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+            GzipEntry entry;
+            while ((entry = reader.getNextEntry()) != null) {
+                datas.add(TestGzipReaderParallel.readAll(entry.getInputStream()));
+                entry.close();
+                entries.add(entry);
+            }
+            reader.close();
+
+            int[] bufferSizes = {GzipReaderChannel.DEFAULT_CHANNEL_BUFFER_SIZE, 1000};
+            for (int i=0; i<bufferSizes.length * 2; ++i) {
+                GzipReaderChannel channelReader = new GzipReaderChannel(
+                        Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSizes[i / 2]);
+                Assert.assertTrue(channelReader.isDirectInflateEnabled());
+                channelReader.setDirectInflateEnabled((i & 1) == 0);
+                int n = 0;
+                while ((entry = channelReader.getNextEntry()) != null) {
+                    Assert.assertArrayEquals(datas.get(n), TestGzipReaderParallel.readAll(entry.getInputStream()));
+                    entry.close();
+                    Assert.assertTrue(entry.isCompliant());
+                    Assert.assertEquals(entries.get(n).getStartOffset(), entry.getStartOffset());
+                    Assert.assertEquals(entries.get(n).consumed, entry.consumed);
+                    ++n;
+                }
+                channelReader.close();
+                Assert.assertEquals(datas.size(), n);
+                Assert.assertTrue(channelReader.isCompliant());
+                Assert.assertEquals(bytes.length, channelReader.getConsumed());
+            }
+
+            // Copying entries uses the heap buffer path.
+            GzipReaderChannel channelReader = new GzipReaderChannel(
+                    Channels.newChannel(new ByteArrayInputStream(bytes)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entry = channelReader.getNextEntry();
+            channelReader.copyEntry(out, true);
+            Assert.assertTrue(entry.isCompliant());
+            entry = channelReader.getNextEntry();
+            Assert.assertArrayEquals(datas.get(1), TestGzipReaderParallel.readAll(entry.getInputStream()));
+            channelReader.close();
+            Assert.assertEquals(entries.get(0).consumed, out.size());
+            byte[] copied = out.toByteArray();
+            for (int i=0; i<copied.length; ++i) {
+                Assert.assertEquals(bytes[i], copied[i]);
+            }
+        }
+    }
+
+    @Test
+    public void test_gzipreaderchannel_filechannel() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(out);
+        writer.setCompressedLengthEnabled(true);
+        for (int i=0; i<10; ++i) {
+            GzipEntry entry = new GzipEntry();
+            writer.writeEntryHeader(entry);
+            byte[] data = new byte[i * 100000];
+            for (int j=0; j<data.length; ++j) {
+                data[j] = (byte)(j % 7 + i);
+            }
+            entry.getOutputStream().write(data);
+            entry.close();
+        }
+        writer.close();
+        byte[] bytes = out.toByteArray();
+
+        File file = File.createTempFile("jwat-gzipreaderchannel-", ".gz");
+        file.deleteOnExit();
+        FileOutputStream fout = new FileOutputStream(file);
+        fout.write(bytes);
+        fout.close();
+
+        GzipIndex expected = GzipIndex.build(new GzipReader(new ByteArrayInputStream(bytes)));
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        GzipIndex index = GzipIndex.build(new GzipReaderChannel(raf.getChannel(), 4096));
+        Assert.assertEquals(expected.size(), index.size());
+        for (int i=0; i<index.size(); ++i) {
+            Assert.assertEquals(expected.getOffset(i), index.getOffset(i));
+            Assert.assertEquals(expected.getLength(i), index.getLength(i));
+            Assert.assertEquals(i * 100000, index.getUncompressedLength(i));
+        }
+        raf.close();
+
+        raf = new RandomAccessFile(file, "r");
+        GzipReaderChannel reader = new GzipReaderChannel(raf.getChannel(), 4096);
+        GzipEntry entry;
+        int n = 0;
+        while ((entry = reader.getNextEntry()) != null) {
+            if ((n & 1) == 0) {
+                reader.skipEntry();
+            } else {
+                Assert.assertEquals(n * 100000, TestGzipReaderParallel.readAll(entry.getInputStream()).length);
+                Assert.assertTrue(entry.isCompliant());
+            }
+            ++n;
+        }
+        reader.close();
+        Assert.assertEquals(10, n);
+        Assert.assertEquals(bytes.length, reader.getConsumed());
+        Assert.assertTrue(reader.isCompliant());
+        file.delete();
+
+        try {
+            new GzipReaderChannel((ReadableByteChannel)null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
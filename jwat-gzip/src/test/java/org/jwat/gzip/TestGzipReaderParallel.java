@@ -0,0 +1,236 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipReaderParallel {
+
+    @Test
+    public void test_gzipreaderparallel_findheader() {
+        byte[] bytes = new byte[32];
+        Assert.assertEquals(-1, GzipReaderParallel.findHeader(bytes, 0, bytes.length));
+        bytes[5] = (byte)0x1f;
+        bytes[6] = (byte)0x8b;
+        bytes[7] = (byte)0x08;
+        Assert.assertEquals(5, GzipReaderParallel.findHeader(bytes, 0, bytes.length));
+        Assert.assertEquals(-1, GzipReaderParallel.findHeader(bytes, 6, bytes.length));
+        // Reserved flag bits.
+        bytes[8] = (byte)0x80;
+        Assert.assertEquals(-1, GzipReaderParallel.findHeader(bytes, 0, bytes.length));
+        bytes[8] = 0;
+        // Header truncated.
+        Assert.assertEquals(-1, GzipReaderParallel.findHeader(bytes, 0, 14));
+        Assert.assertEquals(5, GzipReaderParallel.findHeader(bytes, 0, 15));
+    }
+
+    @Test
+    public void test_gzipreaderparallel_compare() throws IOException {
+        String fname = "IAH-20080430204825-00000-blackbook.warc.gz";
+        byte[] bytes = readAll(TestHelpers.getTestResourceAsStream(fname));
+
+        List<Object[]> expected = readEntries(new GzipReader(new ByteArrayInputStream(bytes)));
+        Assert.assertEquals(822, expected.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int[] blockSizes = {64, 1024, 16384, 65536, GzipReaderParallel.DEFAULT_BLOCK_SIZE};
+            for (int i=0; i<blockSizes.length; ++i) {
+                GzipReaderParallel reader = new GzipReaderParallel(new ByteArrayInputStream(bytes), executor, blockSizes[i]);
+                compareEntries(expected, readEntries(reader));
+                Assert.assertTrue(reader.isCompliant());
+                Assert.assertEquals(bytes.length, reader.getConsumed());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        GzipReaderParallel reader = new GzipReaderParallel(new ByteArrayInputStream(bytes), 2);
+        reader.setMaxInflatedSize(1024);
+        Assert.assertEquals(1024, reader.getMaxInflatedSize());
+        compareEntries(expected, readEntries(reader));
+    }
+
+    @Test
+    public void test_gzipreaderparallel_sequential_fallback() throws IOException {
+        String fname = "IAH-20080430204825-00000-blackbook.warc.gz";
+        byte[] bytes = readAll(TestHelpers.getTestResourceAsStream(fname));
+        List<Object[]> expected = readEntries(new GzipReader(new ByteArrayInputStream(bytes)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            int[] blockSizes = {1024, 16384, 65536};
+            for (int i=0; i<blockSizes.length; ++i) {
+                GzipReaderParallel reader = new GzipReaderParallel(new ByteArrayInputStream(bytes), executor, blockSizes[i]);
+                reader.setMaxInflatedSize(2048);
+                reader.setMaxPendingTasks(1);
+                Assert.assertEquals(1, reader.getMaxPendingTasks());
+                List<Object[]> entries = new ArrayList<Object[]>();
+                GzipEntry entry;
+                while ((entry = reader.getNextEntry()) != null) {
+                    Assert.assertEquals(entry.getStartOffset(), reader.getStartOffset());
+                    entries.add(new Object[] {entry.getStartOffset(), readAll(entry.getInputStream()), entry.crc32, entry.comp_crc32, entry.isCompliant()});
+                    entry.close();
+                }
+                compareEntries(expected, entries);
+                Assert.assertTrue(reader.isCompliant());
+                Assert.assertEquals(bytes.length, reader.getConsumed());
+                Assert.assertEquals(bytes.length, reader.getOffset());
+                reader.close();
+                // Blocks are returned to the pool for reuse.
+                Assert.assertTrue(reader.blockPool.getPooledBuffers() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Switch to sequential reading after a number of entries.
+        GzipReaderParallel reader = new GzipReaderParallel(new ByteArrayInputStream(bytes), 2);
+        List<Object[]> entries = new ArrayList<Object[]>();
+        GzipEntry entry;
+        while ((entry = reader.getNextEntry()) != null) {
+            entries.add(new Object[] {entry.getStartOffset(), readAll(entry.getInputStream()), entry.crc32, entry.comp_crc32, entry.isCompliant()});
+            entry.close();
+            if (entries.size() == 100) {
+                reader.setRecoveryEnabled(true);
+            }
+        }
+        reader.close();
+        compareEntries(expected, entries);
+    }
+
+    @Test
+    public void test_gzipreaderparallel_pushblock() throws IOException {
+        byte[] bytes = new byte[256];
+        for (int i=0; i<bytes.length; ++i) {
+            bytes[i] = (byte)i;
+        }
+        GzipResourcePool pool = new GzipResourcePool(1, 64);
+        GzipReaderParallel.BlockPushBackInputStream pbin = new GzipReaderParallel.BlockPushBackInputStream(new ByteArrayInputStream(bytes), 16);
+        GzipReaderParallel.Block block = new GzipReaderParallel.Block(pool);
+        block.len = pbin.readFully(block.data);
+        Assert.assertEquals(64, block.len);
+        Assert.assertEquals(64, pbin.getConsumed());
+        // Remainder is read again without being copied to the unread buffer.
+        pbin.pushBlock(block, 16, 48);
+        Assert.assertEquals(16, pbin.getConsumed());
+        Assert.assertEquals(16, pbin.read());
+        byte[] tmpBuf = new byte[4];
+        Assert.assertEquals(4, pbin.readFully(tmpBuf));
+        Assert.assertEquals(17, tmpBuf[0]);
+        pbin.unread(tmpBuf, 2, 2);
+        Assert.assertEquals(19, pbin.getConsumed());
+        // Parallel reading resumes on the block.
+        Assert.assertEquals(19, pbin.resumeBlock(block));
+        Assert.assertEquals(64, pbin.getConsumed());
+        Assert.assertEquals(64, pbin.read());
+        block.release();
+        Assert.assertEquals(1, pool.getPooledBuffers());
+        // Segment read to the end can not be resumed.
+        block = new GzipReaderParallel.Block(pool);
+        block.len = pbin.readFully(block.data);
+        pbin.pushBlock(block, 60, 4);
+        Assert.assertEquals(4, pbin.readFully(tmpBuf));
+        Assert.assertEquals(-1, pbin.resumeBlock(block));
+        Assert.assertEquals(129, pbin.read());
+        block.release();
+        Assert.assertEquals(1, pool.getPooledBuffers());
+        pbin.close();
+    }
+
+    @Test
+    public void test_gzipreaderparallel_invalid() throws IOException {
+        GzipReaderParallel reader;
+        GzipEntry entry;
+        reader = new GzipReaderParallel(new ByteArrayInputStream(new byte[0]), 1);
+        Assert.assertNull(reader.getNextEntry());
+        Assert.assertFalse(reader.isCompliant());
+        Assert.assertEquals(1, reader.diagnostics.getErrors().size());
+        reader.close();
+
+        String fname = "invalid-entries.gz";
+        byte[] bytes = readAll(TestHelpers.getTestResourceAsStream(fname));
+        GzipReader expectedReader = new GzipReader(new ByteArrayInputStream(bytes));
+        reader = new GzipReaderParallel(new ByteArrayInputStream(bytes), 2);
+        GzipEntry expectedEntry;
+        while ((expectedEntry = expectedReader.getNextEntry()) != null) {
+            entry = reader.getNextEntry();
+            Assert.assertNotNull(entry);
+            Assert.assertEquals(expectedEntry.getStartOffset(), entry.getStartOffset());
+            Assert.assertArrayEquals(readAll(expectedEntry.getInputStream()), readAll(entry.getInputStream()));
+            Assert.assertEquals(expectedEntry.diagnostics.getErrors().size(), entry.diagnostics.getErrors().size());
+            Assert.assertEquals(expectedEntry.diagnostics.getWarnings().size(), entry.diagnostics.getWarnings().size());
+        }
+        Assert.assertNull(reader.getNextEntry());
+        Assert.assertEquals(expectedReader.isCompliant(), reader.isCompliant());
+        Assert.assertEquals(expectedReader.getConsumed(), reader.getConsumed());
+        expectedReader.close();
+        reader.close();
+    }
+
+    protected static List<Object[]> readEntries(GzipReader reader) throws IOException {
+        List<Object[]> entries = new ArrayList<Object[]>();
+        GzipEntry entry;
+        while ((entry = reader.getNextEntry()) != null) {
+            byte[] data = readAll(entry.getInputStream());
+            entries.add(new Object[] {entry.getStartOffset(), data, entry.crc32, entry.comp_crc32, entry.isCompliant()});
+            entry.close();
+            Assert.assertEquals(entry.getStartOffset(), reader.getStartOffset());
+        }
+        reader.close();
+        return entries;
+    }
+
+    protected static void compareEntries(List<Object[]> expected, List<Object[]> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); ++i) {
+            Object[] e = expected.get(i);
+            Object[] a = actual.get(i);
+            Assert.assertEquals(e[0], a[0]);
+            Assert.assertArrayEquals((byte[])e[1], (byte[])a[1]);
+            Assert.assertEquals(e[2], a[2]);
+            Assert.assertEquals(e[3], a[3]);
+            Assert.assertEquals(e[4], a[4]);
+        }
+    }
+
+    protected static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        while ((read = in.read(tmpBuf)) != -1) {
+            out.write(tmpBuf, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,247 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipRecovery {
+
+    static final String[] WORDS = {"archive", "record", "warc", "payload", "digest", "header", "crawl", "http"};
+
+    List<byte[]> datas = new ArrayList<byte[]>();
+
+    List<Long> offsets = new ArrayList<Long>();
+
+    byte[] buildFile(int entries) throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(out);
+        for (int i=0; i<entries; ++i) {
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 20000) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+                sb.append(random.nextInt(1000));
+                sb.append(' ');
+            }
+            byte[] data = sb.toString().getBytes("ISO-8859-1");
+            datas.add(data);
+            writer.out.flush();
+            offsets.add((long)out.size());
+            GzipEntry entry = new GzipEntry();
+            entry.fname = "entry" + i;
+            entry.bFhCrc = (i & 1) == 0;
+            writer.writeEntryHeader(entry);
+            entry.getOutputStream().write(data);
+            entry.close();
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void test_gzipscanner() throws IOException {
+        byte[] bytes = buildFile(2);
+        int second = offsets.get(1).intValue();
+        Inflater inf = new Inflater(true);
+        Assert.assertEquals(0, GzipScanner.indexOfHeader(bytes, 0, bytes.length));
+        Assert.assertEquals(second, GzipScanner.indexOfHeader(bytes, 1, bytes.length - 1));
+        Assert.assertEquals(-1, GzipScanner.indexOfHeader(bytes, second + 1, bytes.length - second - 1));
+        Assert.assertEquals(GzipScanner.VERIFY_VALID, GzipScanner.verifyEntry(bytes, 0, bytes.length, true, inf));
+        Assert.assertEquals(GzipScanner.VERIFY_VALID, GzipScanner.verifyEntry(bytes, second, bytes.length - second, true, inf));
+        Assert.assertEquals(GzipScanner.VERIFY_MORE_DATA, GzipScanner.verifyEntry(bytes, 0, 100, false, inf));
+        Assert.assertEquals(GzipScanner.VERIFY_INVALID, GzipScanner.verifyEntry(bytes, 0, 5, true, inf));
+        // Corrupt the CRC16 header value of the first entry.
+        byte[] corrupt = bytes.clone();
+        corrupt[10 + "entry0".length() + 1] ^= 1;
+        Assert.assertEquals(GzipScanner.VERIFY_INVALID, GzipScanner.verifyEntry(corrupt, 0, corrupt.length, true, inf));
+        // Fake header followed by random data.
+        byte[] fake = new byte[2048];
+        new Random(1).nextBytes(fake);
+        System.arraycopy(bytes, second, fake, 0, 10);
+        fake[3] = 0;
+        Assert.assertTrue(GzipScanner.isPlausibleHeader(fake, 0));
+        Assert.assertEquals(GzipScanner.VERIFY_INVALID, GzipScanner.verifyEntry(fake, 0, fake.length, false, inf));
+        // A candidate which can not be verified within a full buffer is rejected.
+        Assert.assertEquals(GzipScanner.VERIFY_MORE_DATA, GzipScanner.verifyCandidate(bytes, 0, 100, false, false, inf));
+        Assert.assertEquals(GzipScanner.VERIFY_INVALID, GzipScanner.verifyCandidate(bytes, 0, 100, false, true, inf));
+        Assert.assertEquals(GzipScanner.VERIFY_VALID, GzipScanner.verifyCandidate(bytes, 0, bytes.length, false, true, inf));
+        inf.end();
+    }
+
+    @Test
+    public void test_gzipscanner_findentry_longheader() throws IOException {
+        byte[] data = "long header entry".getBytes("ISO-8859-1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] garbage = new byte[1000];
+        new Random(5).nextBytes(garbage);
+        for (int i=0; i<garbage.length; ++i) {
+            if (garbage[i] == (byte)0x1f) {
+                garbage[i] = 0;
+            }
+        }
+        out.write(garbage);
+        GzipWriter writer = new GzipWriter(out);
+        GzipEntry entry = new GzipEntry();
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < GzipScanner.SCAN_BUFFER_SIZE * 2) {
+            sb.append("fname");
+        }
+        entry.fname = sb.toString();
+        entry.bFhCrc = true;
+        writer.writeEntryHeader(entry);
+        entry.getOutputStream().write(data);
+        entry.close();
+        writer.close();
+        byte[] bytes = out.toByteArray();
+        // The scan buffer is grown to verify the candidate.
+        Assert.assertEquals(garbage.length, GzipScanner.findEntry(new ByteArrayInputStream(bytes), 0, bytes.length));
+        Assert.assertEquals(-1, GzipScanner.findEntry(new ByteArrayInputStream(bytes, 1, bytes.length - 1), 1, garbage.length));
+    }
+
+    @Test
+    public void test_gzipscanner_findentry() throws IOException {
+        byte[] bytes = buildFile(30);
+        Assert.assertTrue(bytes.length > GzipScanner.SCAN_BUFFER_SIZE);
+        Random random = new Random(4);
+        for (int r=0; r<200; ++r) {
+            int from = random.nextInt(bytes.length);
+            int to = from + random.nextInt(bytes.length - from + 1);
+            long expected = -1;
+            for (int i=offsets.size() - 1; i>=0; --i) {
+                if (offsets.get(i) >= from && offsets.get(i) < to) {
+                    expected = offsets.get(i);
+                }
+            }
+            ByteArrayInputStream in = new ByteArrayInputStream(bytes, from, bytes.length - from);
+            Assert.assertEquals(expected, GzipScanner.findEntry(in, from, to));
+        }
+        Assert.assertEquals(-1, GzipScanner.findEntry(new ByteArrayInputStream(new byte[0]), 0, 10));
+        try {
+            GzipScanner.findEntry(null, 0, 10);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_gzipreader_recovery() throws IOException {
+        byte[] bytes = buildFile(20);
+        // Garbage, including a fake header, between entry 3 and 4.
+        byte[] garbage = new byte[1000];
+        new Random(2).nextBytes(garbage);
+        System.arraycopy(bytes, 0, garbage, 500, 10);
+        // Corrupt compressed data in the middle of entry 7.
+        int corruptOffset = (int)(offsets.get(7) + offsets.get(8)) / 2;
+        byte[] noise = new byte[200];
+        new Random(3).nextBytes(noise);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int entry4 = offsets.get(4).intValue();
+        out.write(bytes, 0, entry4);
+        out.write(garbage);
+        out.write(bytes, entry4, corruptOffset - entry4);
+        out.write(noise);
+        out.write(bytes, corruptOffset + noise.length, bytes.length - corruptOffset - noise.length);
+        // Truncated entry at EOF.
+        out.write(bytes, 0, offsets.get(1).intValue() / 2);
+        byte[] damaged = out.toByteArray();
+
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(damaged));
+        Assert.assertFalse(reader.isRecoveryEnabled());
+        GzipEntry entry;
+        int entries = 0;
+        boolean bFailed = false;
+        while (!bFailed && (entry = reader.getNextEntry()) != null) {
+            try {
+                TestGzipReaderParallel.readAll(entry.getInputStream());
+                ++entries;
+            } catch (IOException e) {
+                bFailed = true;
+            }
+        }
+        try {
+            reader.close();
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        // Without recovery the garbage header is returned as an invalid entry.
+        Assert.assertTrue(bFailed);
+        Assert.assertTrue(entries <= 5);
+
+        for (int r=0; r<3; ++r) {
+            switch (r) {
+            case 0:
+                reader = new GzipReader(new ByteArrayInputStream(damaged));
+                break;
+            case 1:
+                reader = new GzipReaderChannel(Channels.newChannel(new ByteArrayInputStream(damaged)));
+                break;
+            default:
+                reader = new GzipReaderParallel(new ByteArrayInputStream(damaged), 2);
+                break;
+            }
+            reader.setRecoveryEnabled(true);
+            Assert.assertTrue(reader.isRecoveryEnabled());
+            entries = 0;
+            int failed = 0;
+            while ((entry = reader.getNextEntry()) != null) {
+                if (entries == 4) {
+                    Assert.assertEquals(entry4, entry.skippedOffset);
+                    Assert.assertEquals(garbage.length, entry.skippedLength);
+                } else if (entries == 8) {
+                    Assert.assertTrue(entry.skippedOffset > offsets.get(7) + garbage.length);
+                    Assert.assertEquals(entry.getStartOffset(), entry.skippedOffset + entry.skippedLength);
+                    Assert.assertEquals(offsets.get(8) + garbage.length, entry.getStartOffset());
+                } else {
+                    Assert.assertEquals(-1, entry.skippedOffset);
+                }
+                try {
+                    byte[] data = TestGzipReaderParallel.readAll(entry.getInputStream());
+                    if (entries < 20) {
+                        Assert.assertArrayEquals(datas.get(entries), data);
+                        Assert.assertTrue(entry.isCompliant());
+                    }
+                } catch (IOException e) {
+                    ++failed;
+                }
+                ++entries;
+            }
+            reader.close();
+            // 20 entries plus the truncated entry at EOF.
+            Assert.assertEquals(21, entries);
+            Assert.assertEquals(2, failed);
+            Assert.assertFalse(reader.isCompliant());
+            Assert.assertEquals(2, reader.diagnostics.getErrors().size());
+            Assert.assertTrue(reader.getSkippedBytes() > garbage.length);
+            Assert.assertEquals(damaged.length, reader.getConsumed());
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipResourcePool {
+
+    @Test
+    public void test_gzipresourcepool() throws IOException {
+        GzipResourcePool pool = new GzipResourcePool(2, 1024);
+        Assert.assertEquals(2, pool.getMaxPooled());
+        Assert.assertEquals(1024, pool.getBufferSize());
+
+        Inflater inf1 = pool.getInflater();
+        Inflater inf2 = pool.getInflater();
+        Inflater inf3 = pool.getInflater();
+        pool.releaseInflater(inf1);
+        pool.releaseInflater(inf2);
+        pool.releaseInflater(inf3);
+        Assert.assertEquals(2, pool.getPooledInflaters());
+        Assert.assertSame(inf2, pool.getInflater());
+        Assert.assertSame(inf1, pool.getInflater());
+        Assert.assertEquals(0, pool.getPooledInflaters());
+
+        Deflater def = pool.getDeflater();
+        def.setLevel(Deflater.BEST_COMPRESSION);
+        pool.releaseDeflater(def);
+        Assert.assertEquals(1, pool.getPooledDeflaters());
+        Assert.assertSame(def, pool.getDeflater());
+
+        byte[] buffer = pool.getBuffer();
+        Assert.assertEquals(1024, buffer.length);
+        pool.releaseBuffer(buffer);
+        pool.releaseBuffer(new byte[10]);
+        Assert.assertEquals(1, pool.getPooledBuffers());
+        pool.releaseDeflater(def);
+        pool.releaseInflater(inf1);
+        pool.clear();
+        Assert.assertEquals(0, pool.getPooledInflaters());
+        Assert.assertEquals(0, pool.getPooledDeflaters());
+        Assert.assertEquals(0, pool.getPooledBuffers());
+
+        try {
+            new GzipResourcePool(1, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            pool.releaseInflater(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new GzipReader(new ByteArrayInputStream(new byte[0]), null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_gzipresourcepool_reader_writer() throws IOException {
+        GzipResourcePool pool = new GzipResourcePool(4, GzipReader.DEFAULT_INPUT_BUFFER_SIZE);
+        byte[] data = new byte[100000];
+        for (int i=0; i<data.length; ++i) {
+            data[i] = (byte)(i % 251);
+        }
+        byte[] expected = null;
+        for (int n=0; n<3; ++n) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GzipWriter writer = new GzipWriter(out, pool);
+            // The level of a pooled deflater must not leak into the next writer.
+            writer.setCompressionLevel(n == 1 ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION);
+            GzipEntry entry = new GzipEntry();
+            writer.writeEntryHeader(entry);
+            entry.getOutputStream().write(data);
+            entry.close();
+            writer.close();
+            Assert.assertEquals(1, pool.getPooledDeflaters());
+            if (n == 0) {
+                expected = out.toByteArray();
+            } else if (n == 2) {
+                Assert.assertArrayEquals(expected, out.toByteArray());
+            }
+
+            GzipReader reader = new GzipReader(new ByteArrayInputStream(out.toByteArray()), pool);
+            entry = reader.getNextEntry();
+            Assert.assertArrayEquals(data, TestGzipReaderParallel.readAll(entry.getInputStream()));
+            Assert.assertTrue(entry.isCompliant());
+            reader.close();
+            Assert.assertEquals(1, pool.getPooledInflaters());
+        }
+        Assert.assertEquals(2, pool.getPooledBuffers());
+
+        // Release leaves the input stream open.
+        final boolean[] closed = new boolean[1];
+        ByteArrayInputStream in = new ByteArrayInputStream(expected) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+            }
+        };
+        GzipReader reader = new GzipReader(in, pool);
+        Assert.assertEquals(0, pool.getPooledInflaters());
+        GzipEntry entry = reader.getNextEntry();
+        reader.release();
+        Assert.assertFalse(closed[0]);
+        Assert.assertTrue(entry.isCompliant());
+        Assert.assertEquals(expected.length, entry.consumed);
+        Assert.assertEquals(1, pool.getPooledInflaters());
+        reader.close();
+        Assert.assertEquals(1, pool.getPooledInflaters());
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipWriterParallel {
+
+    @Test
+    public void test_gzipwriterparallel_compare() throws IOException {
+        String fname = "IAH-20080430204825-00000-blackbook.warc.gz";
+        byte[] bytes = TestGzipReaderParallel.readAll(TestHelpers.getTestResourceAsStream(fname));
+        List<byte[]> datas = new ArrayList<byte[]>();
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+        GzipEntry entry;
+        while ((entry = reader.getNextEntry()) != null) {
+            datas.add(TestGzipReaderParallel.readAll(entry.getInputStream()));
+        }
+        reader.close();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        GzipWriter writer = new GzipWriter(expected);
+        List<GzipEntry> expectedEntries = writeEntries(writer, datas);
+        writer.close();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            int[] maxPendings = {1, 2, 64};
+            for (int i=0; i<maxPendings.length; ++i) {
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                writer = new GzipWriterParallel(actual, 8192, executor, maxPendings[i]);
+                List<GzipEntry> entries = writeEntries(writer, datas);
+                writer.close();
+                Assert.assertTrue(writer.isCompliant());
+                Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+                for (int j=0; j<entries.size(); ++j) {
+                    Assert.assertEquals(expectedEntries.get(j).crc32, entries.get(j).crc32);
+                    Assert.assertEquals(expectedEntries.get(j).isize, entries.get(j).isize);
+                    Assert.assertEquals(expectedEntries.get(j).compressed_size, entries.get(j).compressed_size);
+                    Assert.assertTrue(entries.get(j).isCompliant());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        writer = new GzipWriterParallel(actual, 2);
+        writeEntries(writer, datas);
+        writer.close();
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        reader = new GzipReader(new ByteArrayInputStream(actual.toByteArray()));
+        int idx = 0;
+        while ((entry = reader.getNextEntry()) != null) {
+            Assert.assertArrayEquals(datas.get(idx++), TestGzipReaderParallel.readAll(entry.getInputStream()));
+            Assert.assertTrue(entry.isCompliant());
+        }
+        reader.close();
+        Assert.assertEquals(datas.size(), idx);
+        Assert.assertTrue(reader.isCompliant());
+    }
+
+    @Test
+    public void test_gzipwriterparallel_bounded() throws IOException {
+        String fname = "IAH-20080430204825-00000-blackbook.warc.gz";
+        byte[] bytes = TestGzipReaderParallel.readAll(TestHelpers.getTestResourceAsStream(fname));
+        List<byte[]> datas = new ArrayList<byte[]>();
+        GzipReader reader = new GzipReader(new ByteArrayInputStream(bytes));
+        GzipEntry entry;
+        while ((entry = reader.getNextEntry()) != null) {
+            datas.add(TestGzipReaderParallel.readAll(entry.getInputStream()));
+        }
+        reader.close();
+
+        boolean[] compressedLengths = {false, true};
+        for (int i=0; i<compressedLengths.length; ++i) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            GzipWriter writer = new GzipWriter(expected);
+            writer.setCompressedLengthEnabled(compressedLengths[i]);
+            List<GzipEntry> expectedEntries = writeEntries(writer, datas);
+            writer.close();
+
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            GzipWriterParallel parallelWriter = new GzipWriterParallel(actual, 2);
+            parallelWriter.setCompressedLengthEnabled(compressedLengths[i]);
+            // Entries larger than 2048 bytes are compressed on the caller's thread.
+            parallelWriter.setMaxBufferedSize(2048);
+            Assert.assertEquals(2048, parallelWriter.getMaxBufferedSize());
+            parallelWriter.setMaxPendingSize(4096);
+            Assert.assertEquals(4096, parallelWriter.getMaxPendingSize());
+            List<GzipEntry> entries = writeEntries(parallelWriter, datas);
+            Assert.assertTrue(parallelWriter.pendingSize <= 4096);
+            parallelWriter.close();
+            Assert.assertTrue(parallelWriter.isCompliant());
+            Assert.assertEquals(0, parallelWriter.pendingSize);
+            Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+            for (int j=0; j<entries.size(); ++j) {
+                Assert.assertEquals(expectedEntries.get(j).crc32, entries.get(j).crc32);
+                Assert.assertEquals(expectedEntries.get(j).isize, entries.get(j).isize);
+                Assert.assertEquals(expectedEntries.get(j).compressed_size, entries.get(j).compressed_size);
+                Assert.assertEquals(expectedEntries.get(j).compressed_length, entries.get(j).compressed_length);
+                Assert.assertTrue(entries.get(j).isCompliant());
+            }
+        }
+    }
+
+    protected static List<GzipEntry> writeEntries(GzipWriter writer, List<byte[]> datas) throws IOException {
+        List<GzipEntry> entries = new ArrayList<GzipEntry>();
+        GzipEntry entry;
+        for (int i=0; i<datas.size(); ++i) {
+            entry = new GzipEntry();
+            entry.mtime = 1234567890;
+            entry.fname = "entry" + i;
+            writer.writeEntryHeader(entry);
+            if ((i & 1) == 0) {
+                entry.writeFrom(new ByteArrayInputStream(datas.get(i)));
+            } else {
+                OutputStream out = entry.getOutputStream();
+                out.write(datas.get(i));
+                out.close();
+            }
+            entry.close();
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+}
@@ -20,6 +20,8 @@ package org.jwat.warc;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.jwat.common.CaseInsensitiveIndex;
+
 /**
  * Class containing all relevant WARC constants and structures.
  * Including but not limited to field names and mime-types.
@@ -239,6 +241,9 @@ public class WarcConstants {
         fieldNameIdxMap.put(FN_WARC_REFERS_TO_DATE.toLowerCase(), FN_IDX_WARC_REFERS_TO_DATE);
     }
 
+    /** Table used to identify known warc field names without lower casing. */
+    public static final CaseInsensitiveIndex fieldNameIdxTable = CaseInsensitiveIndex.fromIdxStrings(FN_IDX_STRINGS);
+
     /** WARC String field datatype identifier. */
     public static final int FDT_STRING = 0;
     /** WARC Integer field datatype identifier. */
@@ -379,6 +384,9 @@ public class WarcConstants {
         recordTypeIdxMap.put(RT_CONTINUATION.toLowerCase(), RT_IDX_CONTINUATION);
     }
 
+    /** WARC-Type lookup table. */
+    public static final CaseInsensitiveIndex recordTypeIdxTable = CaseInsensitiveIndex.fromIdxStrings(RT_IDX_STRINGS);
+
     /*
      * Truncation reason types.
      */
@@ -426,6 +434,9 @@ public class WarcConstants {
         truncatedTypeIdxMap.put(TT_UNSPECIFIED.toLowerCase(), TT_IDX_UNSPECIFIED);
     }
 
+    /** Lookup table for known truncation reason id's. */
+    public static final CaseInsensitiveIndex truncatedTypeIdxTable = CaseInsensitiveIndex.fromIdxStrings(TT_IDX_STRINGS);
+
     /*
      * Warc revisit profile ids used in the WARC-Profile header (See ISO).
      */
@@ -471,6 +482,9 @@ public class WarcConstants {
                 PROFILE_IDX_SERVER_NOT_MODIFIED);
     }
 
+    /** Profile lookup table used to identify WARC-Profile values. */
+    public static final CaseInsensitiveIndex profileIdxTable = CaseInsensitiveIndex.fromIdxStrings(P_IDX_STRINGS);
+
     /*
      * The different requirement levels as per RFC 2119.
      * (See http://www.ietf.org/rfc/rfc2119.txt)
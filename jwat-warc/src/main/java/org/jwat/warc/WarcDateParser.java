@@ -22,14 +22,24 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
 
+import org.jwat.common.FixedWidthDateParser;
+import org.jwat.common.FixedWidthDateParser.CachedDate;
+
 /**
  * WARC-Date parser and format validator. The format "yyyy-MM-dd'T'HH:mm:ss'Z'"
  * is specified in the WARC ISO standard.
+ * Dates are parsed by a fixed width parser straight from characters or bytes
+ * and the last date parsed is cached, since consecutive records are usually
+ * written within the same second.
  *
  * @author lbihanic, selghissassi, nicl
  */
 public final class WarcDateParser {
 
+    /** Length of a WARC date. We subtract 4 from the format because of the
+     *  ' characters used to specify constants in the format string. */
+    private static final int DATE_LENGTH = WarcConstants.WARC_DATE_FORMAT.length() - 4;
+
     /** WARC <code>DateFormat</code> as specified in the WARC ISO standard. */
     private final DateFormat dateFormat;
 
@@ -42,6 +52,9 @@ public final class WarcDateParser {
         }
     };
 
+    /** Last valid date parsed. */
+    private static volatile CachedDate cachedDate;
+
     /**
      * Creates a new <code>DateParser</code>.
      */
@@ -51,25 +64,6 @@ public final class WarcDateParser {
         dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
-    /**
-     * Parses a date.
-     * @param dateStr date to parse
-     * @return the formatted date or null if unable to parse date
-     */
-    private Date parseDate(String dateStr) {
-        Date date = null;
-        try {
-            // We subtract 4 from the format because of the ' characters.
-            // These characters are to specify constants in the format string.
-            if ((dateStr != null) && dateStr.length()
-                            == WarcConstants.WARC_DATE_FORMAT.length() - 4) {
-                // Support upper/lower-case.
-                date = dateFormat.parse(dateStr.toUpperCase());
-            }
-        } catch (Exception e) { /* Ignore */ }
-        return date;
-    }
-
     /**
      * Parses the date using the format "yyyy-MM-ddTHH:mm:ssZ".
      * @param dateStr the date to parse
@@ -77,10 +71,90 @@ public final class WarcDateParser {
      * to parse is compliant with the format "yyyy-MM-ddTHH:mm:ssZ" or not
      */
     public static Date getDate(String dateStr) {
-        Date date = DateParserTL.get().parseDate(dateStr);
-        boolean isValid = (date == null) ? false
-                                         : (date.getTime() > 0);
-        return isValid ? date : null;
+        long millis = getDateMillis(dateStr);
+        return (millis > 0) ? new Date(millis) : null;
+    }
+
+    /**
+     * Parses the date using the format "yyyy-MM-ddTHH:mm:ssZ" without
+     * creating a <code>Date</code> object.
+     * @param dateStr the date to parse
+     * @return milliseconds since the epoch or -1 if the date is not
+     * compliant with the format "yyyy-MM-ddTHH:mm:ssZ"
+     */
+    public static long getDateMillis(String dateStr) {
+        if (dateStr == null || dateStr.length() != DATE_LENGTH) {
+            return -1;
+        }
+        CachedDate cached = cachedDate;
+        if (cached != null && cached.dateStr.equals(dateStr)) {
+            return cached.millis;
+        }
+        long millis = -1;
+        char c = dateStr.charAt(10);
+        if (dateStr.charAt(4) == '-' && dateStr.charAt(7) == '-'
+                && (c == 'T' || c == 't')
+                && dateStr.charAt(13) == ':' && dateStr.charAt(16) == ':') {
+            c = dateStr.charAt(19);
+            if (c == 'Z' || c == 'z') {
+                millis = FixedWidthDateParser.toMillis(
+                        FixedWidthDateParser.parseDigits(dateStr, 0, 4),
+                        FixedWidthDateParser.parseDigits(dateStr, 5, 2),
+                        FixedWidthDateParser.parseDigits(dateStr, 8, 2),
+                        FixedWidthDateParser.parseDigits(dateStr, 11, 2),
+                        FixedWidthDateParser.parseDigits(dateStr, 14, 2),
+                        FixedWidthDateParser.parseDigits(dateStr, 17, 2));
+            }
+        }
+        if (millis <= 0) {
+            return -1;
+        }
+        cachedDate = new CachedDate(dateStr, millis);
+        return millis;
+    }
+
+    /**
+     * Parses the date using the format "yyyy-MM-ddTHH:mm:ssZ" straight from
+     * an array of US-ASCII bytes.
+     * @param b byte array
+     * @param off offset of the date
+     * @param len length of the date
+     * @return milliseconds since the epoch or -1 if the date is not
+     * compliant with the format "yyyy-MM-ddTHH:mm:ssZ"
+     */
+    public static long getDateMillis(byte[] b, int off, int len) {
+        if (b == null || len != DATE_LENGTH) {
+            return -1;
+        }
+        CachedDate cached = cachedDate;
+        if (cached != null && cached.equals(b, off, len)) {
+            return cached.millis;
+        }
+        long millis = -1;
+        int c = b[off + 10];
+        if (b[off + 4] == '-' && b[off + 7] == '-'
+                && (c == 'T' || c == 't')
+                && b[off + 13] == ':' && b[off + 16] == ':') {
+            c = b[off + 19];
+            if (c == 'Z' || c == 'z') {
+                millis = FixedWidthDateParser.toMillis(
+                        FixedWidthDateParser.parseDigits(b, off, 4),
+                        FixedWidthDateParser.parseDigits(b, off + 5, 2),
+                        FixedWidthDateParser.parseDigits(b, off + 8, 2),
+                        FixedWidthDateParser.parseDigits(b, off + 11, 2),
+                        FixedWidthDateParser.parseDigits(b, off + 14, 2),
+                        FixedWidthDateParser.parseDigits(b, off + 17, 2));
+            }
+        }
+        if (millis <= 0) {
+            return -1;
+        }
+        char[] chars = new char[len];
+        for (int i=0; i<len; ++i) {
+            chars[i] = (char)b[off + i];
+        }
+        cachedDate = new CachedDate(new String(chars), millis);
+        return millis;
     }
 
     /**
@@ -94,4 +168,3 @@ public final class WarcDateParser {
     }
 
 }
-
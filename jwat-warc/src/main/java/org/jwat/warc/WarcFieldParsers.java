@@ -49,6 +49,17 @@ public class WarcFieldParsers {
      * @param information optional extra information
      */
     public void addInvalidExpectedError(String entity, String... information) {
+        addInvalidExpectedError(diagnostics, entity, information);
+    }
+
+    /**
+     * Add an error diagnosis on the given entity stating that it is invalid
+     * and something else was expected to the supplied diagnostics.
+     * @param diagnostics diagnostics used to report the diagnosis
+     * @param entity entity examined
+     * @param information optional extra information
+     */
+    public static void addInvalidExpectedError(Diagnostics<Diagnosis> diagnostics, String entity, String... information) {
         diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, entity, information));
     }
 
@@ -57,6 +68,16 @@ public class WarcFieldParsers {
      * @param entity entity examined
      */
     public void addEmptyWarning(String entity) {
+        addEmptyWarning(diagnostics, entity);
+    }
+
+    /**
+     * Add a warning diagnosis on the given entity stating that it is empty
+     * to the supplied diagnostics.
+     * @param diagnostics diagnostics used to report the diagnosis
+     * @param entity entity examined
+     */
+    public static void addEmptyWarning(Diagnostics<Diagnosis> diagnostics, String entity) {
         diagnostics.addWarning(new Diagnosis(DiagnosisType.EMPTY, entity));
     }
 
@@ -155,18 +176,30 @@ public class WarcFieldParsers {
      * IP-address
      */
     public InetAddress parseIpAddress(String ipAddress, String field) {
+        return parseIpAddress(ipAddress, field, diagnostics);
+    }
+
+    /**
+     * Parse and validate an IP address.
+     * @param ipAddress the IP address to parse
+     * @param field field name
+     * @param diagnostics diagnostics used to report diagnoses
+     * @return the IP address or null, if unable to parse the value as an
+     * IP-address
+     */
+    public static InetAddress parseIpAddress(String ipAddress, String field, Diagnostics<Diagnosis> diagnostics) {
         InetAddress inetAddr = null;
         if (ipAddress != null && ipAddress.length() > 0) {
             inetAddr = IPAddressParser.getAddress(ipAddress);
             if (inetAddr == null) {
                 // Invalid ip address.
-                addInvalidExpectedError("'" + field + "' value",
+                addInvalidExpectedError(diagnostics, "'" + field + "' value",
                         ipAddress,
                         "IPv4 or IPv6 format");
             }
         } else {
             // Missing ip address.
-            addEmptyWarning("'" + field + "' field");
+            addEmptyWarning(diagnostics, "'" + field + "' field");
         }
         return inetAddr;
     }
@@ -181,6 +214,20 @@ public class WarcFieldParsers {
      * if unable to parse the value as an URI object
      */
     public Uri parseUri(String uriStr, boolean bLtGt, UriProfile uriProfile, String field) {
+        return parseUri(uriStr, bLtGt, uriProfile, field, diagnostics);
+    }
+
+    /**
+     * Returns an URI object holding the value of the specified string.
+     * @param uriStr the URL to parse
+     * @param bLtGt switch indicating if we expected the uri inside '<' / '>' characters
+     * @param uriProfile the uri profile
+     * @param field field name
+     * @param diagnostics diagnostics used to report diagnoses
+     * @return an URI object holding the value of the specified string or null,
+     * if unable to parse the value as an URI object
+     */
+    public static Uri parseUri(String uriStr, boolean bLtGt, UriProfile uriProfile, String field, Diagnostics<Diagnosis> diagnostics) {
         Uri uri = null;
         String uriStrClean = uriStr;
         int ltGtBf = 0;
@@ -201,13 +248,13 @@ public class WarcFieldParsers {
             if (bLtGt) {
                 switch (ltGtBf) {
                 case 2:
-                    addInvalidExpectedError("'" + field + "' value", uriStr, "Missing trailing '>' character");
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value", uriStr, "Missing trailing '>' character");
                     break;
                 case 1:
-                    addInvalidExpectedError("'" + field + "' value", uriStr, "Missing leading '<' character");
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value", uriStr, "Missing leading '<' character");
                     break;
                 case 0:
-                    addInvalidExpectedError("'" + field + "' value", uriStr, "Missing encapsulating '<' and '>' characters");
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value", uriStr, "Missing encapsulating '<' and '>' characters");
                     break;
                 case 3:
                 default:
@@ -216,13 +263,13 @@ public class WarcFieldParsers {
             } else {
                 switch (ltGtBf) {
                 case 2:
-                    addInvalidExpectedError("'" + field + "' value", uriStr, "Unexpected leading '<' character");
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value", uriStr, "Unexpected leading '<' character");
                     break;
                 case 1:
-                    addInvalidExpectedError("'" + field + "' value", uriStr, "Unexpected trailing '>' character");
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value", uriStr, "Unexpected trailing '>' character");
                     break;
                 case 3:
-                    addInvalidExpectedError("'" + field + "' value", uriStr, "Unexpected encapsulating '<' and '>' characters");
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value", uriStr, "Unexpected encapsulating '<' and '>' characters");
                     break;
                 case 0:
                 default:
@@ -233,7 +280,7 @@ public class WarcFieldParsers {
                 uri = new Uri(uriStrClean, uriProfile);
             } catch (Exception e) {
                 // Invalid URI.
-                addInvalidExpectedError("'" + field + "' value",
+                addInvalidExpectedError(diagnostics, "'" + field + "' value",
                         uriStrClean,
                         e.getMessage());
             }
@@ -242,14 +289,14 @@ public class WarcFieldParsers {
                 if (scheme == null) {
                     uri = null;
                     // Relative URI.
-                    addInvalidExpectedError("'" + field + "' value",
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value",
                             uriStrClean,
                             "Absolute URI");
                 }
             }
         } else {
             // Missing URI.
-            addEmptyWarning("'" + field + "' field");
+            addEmptyWarning(diagnostics, "'" + field + "' field");
         }
         return uri;
     }
@@ -262,18 +309,30 @@ public class WarcFieldParsers {
      * WARC record date
      */
     public Date parseDate(String dateStr, String field) {
+        return parseDate(dateStr, field, diagnostics);
+    }
+
+    /**
+     * Parses WARC record date.
+     * @param dateStr the date to parse.
+     * @param field field name
+     * @param diagnostics diagnostics used to report diagnoses
+     * @return the formatted date or null, if unable to parse the value as a
+     * WARC record date
+     */
+    public static Date parseDate(String dateStr, String field, Diagnostics<Diagnosis> diagnostics) {
         Date date = null;
         if (dateStr != null && dateStr.length() > 0) {
                 date = WarcDateParser.getDate(dateStr);
                 if (date == null) {
                     // Invalid date.
-                    addInvalidExpectedError("'" + field + "' value",
+                    addInvalidExpectedError(diagnostics, "'" + field + "' value",
                             dateStr,
                             WarcConstants.WARC_DATE_FORMAT);
                 }
         } else {
             // Missing date.
-            addEmptyWarning("'" + field + "' field");
+            addEmptyWarning(diagnostics, "'" + field + "' field");
         }
         return date;
     }
@@ -28,15 +28,17 @@ import java.util.List;
 import java.util.Map;
 
 import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.CaseInsensitiveIndex;
 import org.jwat.common.ContentType;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.HeaderLine;
 import org.jwat.common.HeaderLineReader;
-import org.jwat.common.MaxLengthRecordingInputStream;
+import org.jwat.common.HeaderLineSlice;
 import org.jwat.common.Uri;
 import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
 
 /**
  * Central class for working with WARC headers. This class includes support for
@@ -114,6 +116,17 @@ public class WarcHeader {
     /** Array used for duplicate header detection. */
     protected boolean[] seen = new boolean[WarcConstants.FN_INDEX_OF_LAST];
 
+    /** Parse URI, date and IP address fields when first requested by a
+     *  getter instead of when the header is read. */
+    protected boolean bLazyParsing;
+
+    /** Array of fields whose raw value has not been parsed yet, only used
+     *  when lazy parsing is enabled. */
+    protected boolean[] parsePending;
+
+    /** Amount of validation done while reading. */
+    protected ValidationLevel validationLevel = ValidationLevel.FULL;
+
     /** Is the header missing one of the mandatory headers. */
     public boolean bMandatoryMissing;
 
@@ -304,6 +317,11 @@ public class WarcHeader {
         header.recordHeaderMaxSize = reader.recordHeaderMaxSize;
         header.lineReader = reader.lineReader;
         header.headerLineReader = reader.headerLineReader;
+        header.validationLevel = reader.validationLevel;
+        if (reader.bLazyHeaderParsing) {
+            header.bLazyParsing = true;
+            header.parsePending = new boolean[WarcConstants.FN_INDEX_OF_LAST];
+        }
         // This is only relevant for uncompressed sequentially read records
         header.startOffset = startOffset;
         return header;
@@ -372,24 +390,22 @@ public class WarcHeader {
                 default:
                     break;
                 }
-                if (!bValidVersion) {
+                if (!bValidVersion && validationLevel != ValidationLevel.NONE) {
                     diagnostics.addError(
                             new Diagnosis(DiagnosisType.UNKNOWN,
                                     "Magic version number", versionStr));
                 }
-            } else {
+            } else if (validationLevel != ValidationLevel.NONE) {
                 diagnostics.addError(
                         new Diagnosis(DiagnosisType.INVALID_DATA,
                                 "Magic Version string", versionStr));
             }
 
-            MaxLengthRecordingInputStream mrin = new MaxLengthRecordingInputStream(in, recordHeaderMaxSize);
-            ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(mrin, recordHeaderMaxSize);
+            parseHeaders(in, recordHeaderMaxSize);
 
-            parseHeaders(pbin);
-            pbin.close();
-
-            checkFields();
+            if (validationLevel == ValidationLevel.FULL) {
+                checkFields();
+            }
 
             headerBytes = headerBytesOut.toByteArray();
         }
@@ -407,18 +423,18 @@ public class WarcHeader {
         bVersionParsed = false;
         boolean bInvalidDataBeforeVersion = false;
         boolean bEmptyLinesBeforeVersion = false;
-        HeaderLine line;
+        HeaderLineSlice line;
         String tmpStr;
         boolean bSeekMagic = true;
         // Loop until when have found something that looks like a version line.
         while (bSeekMagic) {
             // This is only relevant for uncompressed sequentially read records
             startOffset = in.getConsumed();
-            line = lineReader.readLine(in);
+            line = lineReader.readLineSlice(in);
             if (!lineReader.bEof) {
                 switch (line.type) {
                 case HeaderLine.HLT_LINE:
-                    tmpStr = line.line;
+                    tmpStr = line.getLine();
                     // debug
                     //System.out.println(tmpStr);
                     if (tmpStr.length() > 0) {
@@ -441,7 +457,7 @@ public class WarcHeader {
                                 major = versionArr[0];
                                 minor = versionArr[1];
                             }
-                            headerBytesOut.write(line.raw);
+                            headerBytesOut.write(line.raw, 0, line.rawLength);
                             bSeekMagic = false;
                         } else {
                             // Invalid data aka Gibberish.
@@ -463,6 +479,9 @@ public class WarcHeader {
                 bSeekMagic = false;
             }
         }
+        if (validationLevel == ValidationLevel.NONE) {
+            return bMagicIdentified;
+        }
         if (bInvalidDataBeforeVersion) {
             addErrorDiagnosis(DiagnosisType.INVALID, "Data before WARC version");
         }
@@ -479,34 +498,48 @@ public class WarcHeader {
      * @throws IOException if an error occurs while reading the WARC header
      */
     public void parseHeaders(ByteCountingPushBackInputStream in) throws IOException {
-        HeaderLine headerLine;
+        parseHeaders(in, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads WARC header lines one line at a time until an empty line is
+     * encountered or the maximum header size has been read.
+     * @param in header input stream
+     * @param maxLength maximum number of header bytes to read
+     * @throws IOException if an error occurs while reading the WARC header
+     */
+    protected void parseHeaders(ByteCountingPushBackInputStream in, long maxLength) throws IOException {
+        HeaderLineSlice headerLine;
+        long remaining = maxLength;
+        boolean bDiagnose = (validationLevel != ValidationLevel.NONE);
         boolean bLoop = true;
         while (bLoop) {
-            headerLine = headerLineReader.readLine(in);
-            if ((headerLine.bfErrors & HeaderLineReader.E_BIT_INVALID_CHARSET) != 0) {
-                addErrorDiagnosis(DiagnosisType.INVALID_ENCODING, "Invalid encoding in header line", headerLine.value, "UNKNOWN");
+            headerLine = headerLineReader.readLineSlice(in, remaining);
+            remaining -= headerLine.rawLength;
+            if (bDiagnose && (headerLine.bfErrors & HeaderLineReader.E_BIT_INVALID_CHARSET) != 0) {
+                addErrorDiagnosis(DiagnosisType.INVALID_ENCODING, "Invalid encoding in header line", headerLine.getValue(), "UNKNOWN");
             }
             if (!headerLineReader.bEof) {
-                headerBytesOut.write(headerLine.raw);
+                headerBytesOut.write(headerLine.raw, 0, headerLine.rawLength);
                 switch (headerLine.type) {
                 case HeaderLine.HLT_HEADERLINE:
-                    if (headerLine.name != null && headerLine.name.length() > 0) {
+                    if (headerLine.nameLength > 0) {
                         // debug
-                        //System.out.println(headerLine.name);
-                        //System.out.println(headerLine.value);
+                        //System.out.println(headerLine.getName());
+                        //System.out.println(headerLine.getValue());
                         addHeader(headerLine);
-                    } else {
+                    } else if (bDiagnose) {
                         // Empty field name.
                         addWarningDiagnosis(DiagnosisType.EMPTY, "Header line");
                     }
                     break;
                 case HeaderLine.HLT_LINE:
-                    if (headerLine.line.length() == 0) {
+                    if (headerLine.lineLength == 0) {
                         // Empty line.
                         bLoop = false;
-                    } else {
+                    } else if (bDiagnose) {
                         // Unknown header line.
-                        addWarningDiagnosis(DiagnosisType.UNKNOWN, "Header line", headerLine.line);
+                        addWarningDiagnosis(DiagnosisType.UNKNOWN, "Header line", headerLine.getLine());
                     }
                     break;
                 default:
@@ -519,24 +552,77 @@ public class WarcHeader {
         }
     }
 
+    /**
+     * Look up an id in a case insensitive lookup table.
+     * @param table lookup table
+     * @param str string to look up
+     * @return id or null if the string is null or unknown
+     */
+    protected static Integer lookupIdx(CaseInsensitiveIndex table, String str) {
+        int idx = table.get(str);
+        return (idx != -1) ? Integer.valueOf(idx) : null;
+    }
+
+    /**
+     * Returns the lower case header map key of a header name. The shared
+     * key of a known WARC field name is used to avoid lower casing it.
+     * @param fieldName header name
+     * @return lower case header map key
+     */
+    protected static String headerKey(String fieldName) {
+        String key = WarcConstants.fieldNameIdxTable.getKey(fieldName);
+        return (key != null) ? key : fieldName.toLowerCase();
+    }
+
     /**
      * Identify a (WARC) header name, validate the value and set the header.
      * @param headerLine the headerLine
      */
     public void addHeader(HeaderLine headerLine) {
+        addHeader(headerLine, WarcConstants.fieldNameIdxTable.get(headerLine.name), headerKey(headerLine.name));
+    }
+
+    /**
+     * Identify a (WARC) header name read into a reusable slice, validate the
+     * value and set the header. The field name is looked up in the slice
+     * buffer and the header line object is created without a copy of the raw
+     * bytes, which are kept in the header bytes.
+     * @param headerLine header line slice
+     */
+    public void addHeader(HeaderLineSlice headerLine) {
+        CaseInsensitiveIndex table = WarcConstants.fieldNameIdxTable;
+        int fn_idx = table.get(headerLine.nv, 0, headerLine.nameLength);
+        HeaderLine line;
+        String key;
+        if (fn_idx != -1) {
+            line = headerLine.toHeaderLine(WarcConstants.FN_IDX_STRINGS[fn_idx]);
+            key = table.getKey(headerLine.nv, 0, headerLine.nameLength);
+        } else {
+            line = headerLine.toHeaderLine(null);
+            key = line.name.toLowerCase();
+        }
+        addHeader(line, fn_idx, key);
+    }
+
+    /**
+     * Validate the value of an identified (WARC) header and set the header.
+     * @param headerLine the headerLine
+     * @param fn_idx WARC field name index or -1 if not a WARC field
+     * @param key lower case header map key
+     */
+    protected void addHeader(HeaderLine headerLine, int fn_idx, String key) {
         String fieldName = headerLine.name;
         String fieldValue = headerLine.value;
         WarcConcurrentTo warcConcurrentTo;
-        Integer fn_idx = WarcConstants.fieldNameIdxMap.get(fieldName.toLowerCase());
-        if (fn_idx != null) {
+        if (fn_idx != -1) {
             // WARC field name defined in WARC specification.
             if (!seen[fn_idx] || WarcConstants.fieldNamesRepeatableLookup[fn_idx]) {
                 seen[fn_idx] = true;
-                switch (fn_idx.intValue()) {
+                switch (fn_idx) {
                 case WarcConstants.FN_IDX_WARC_TYPE:
                     warcTypeStr = fieldParsers.parseString(fieldValue, WarcConstants.FN_WARC_TYPE);
                     if (warcTypeStr != null) {
-                        warcTypeIdx = WarcConstants.recordTypeIdxMap.get(warcTypeStr.toLowerCase());
+                        warcTypeIdx = lookupIdx(WarcConstants.recordTypeIdxTable, warcTypeStr);
                     }
                     if (warcTypeIdx == null && warcTypeStr != null && warcTypeStr.length() > 0) {
                         warcTypeIdx = WarcConstants.RT_IDX_UNKNOWN;
@@ -544,11 +630,15 @@ public class WarcHeader {
                     break;
                 case WarcConstants.FN_IDX_WARC_RECORD_ID:
                     warcRecordIdStr = fieldValue;
-                    warcRecordIdUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_RECORD_ID);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_RECORD_ID)) {
+                        warcRecordIdUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_RECORD_ID);
+                    }
                     break;
                 case WarcConstants.FN_IDX_WARC_DATE:
                     warcDateStr = fieldValue;
-                    warcDate = fieldParsers.parseDate(fieldValue, WarcConstants.FN_WARC_DATE);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_DATE)) {
+                        warcDate = fieldParsers.parseDate(fieldValue, WarcConstants.FN_WARC_DATE);
+                    }
                     break;
                 case WarcConstants.FN_IDX_CONTENT_LENGTH:
                     contentLengthStr = fieldValue;
@@ -559,7 +649,11 @@ public class WarcHeader {
                     contentType = fieldParsers.parseContentType(fieldValue, WarcConstants.FN_CONTENT_TYPE);
                     break;
                 case WarcConstants.FN_IDX_WARC_CONCURRENT_TO:
-                    Uri tmpUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_CONCURRENT_TO);
+                    Uri tmpUri = null;
+                    if (fieldValue == null || fieldValue.trim().length() == 0
+                            || !deferParsing(WarcConstants.FN_IDX_WARC_CONCURRENT_TO)) {
+                        tmpUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_CONCURRENT_TO);
+                    }
                     if (fieldValue != null && fieldValue.trim().length() > 0) {
                         warcConcurrentTo = new WarcConcurrentTo();
                         warcConcurrentTo.warcConcurrentToStr = fieldValue;
@@ -577,20 +671,26 @@ public class WarcHeader {
                     break;
                 case WarcConstants.FN_IDX_WARC_IP_ADDRESS:
                     warcIpAddress = fieldValue;
-                    warcInetAddress = fieldParsers.parseIpAddress(fieldValue, WarcConstants.FN_WARC_IP_ADDRESS);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_IP_ADDRESS)) {
+                        warcInetAddress = fieldParsers.parseIpAddress(fieldValue, WarcConstants.FN_WARC_IP_ADDRESS);
+                    }
                     break;
                 case WarcConstants.FN_IDX_WARC_REFERS_TO:
                     warcRefersToStr = fieldValue;
-                    warcRefersToUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_REFERS_TO);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_REFERS_TO)) {
+                        warcRefersToUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_REFERS_TO);
+                    }
                     break;
                 case WarcConstants.FN_IDX_WARC_TARGET_URI:
                     warcTargetUriStr = fieldValue;
-                    warcTargetUriUri = fieldParsers.parseUri(fieldValue, URI_NAKED, warcTargetUriProfile, WarcConstants.FN_WARC_TARGET_URI);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_TARGET_URI)) {
+                        warcTargetUriUri = fieldParsers.parseUri(fieldValue, URI_NAKED, warcTargetUriProfile, WarcConstants.FN_WARC_TARGET_URI);
+                    }
                     break;
                 case WarcConstants.FN_IDX_WARC_TRUNCATED:
                     warcTruncatedStr = fieldParsers.parseString(fieldValue, WarcConstants.FN_WARC_TRUNCATED);
                     if (warcTruncatedStr != null) {
-                        warcTruncatedIdx = WarcConstants.truncatedTypeIdxMap.get(warcTruncatedStr.toLowerCase());
+                        warcTruncatedIdx = lookupIdx(WarcConstants.truncatedTypeIdxTable, warcTruncatedStr);
                     }
                     if (warcTruncatedIdx == null && warcTruncatedStr != null && warcTruncatedStr.length() > 0) {
                         warcTruncatedIdx = WarcConstants.TT_IDX_FUTURE_REASON;
@@ -598,16 +698,20 @@ public class WarcHeader {
                     break;
                 case WarcConstants.FN_IDX_WARC_WARCINFO_ID:
                     warcWarcinfoIdStr = fieldValue;
-                    warcWarcinfoIdUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_WARCINFO_ID);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_WARCINFO_ID)) {
+                        warcWarcinfoIdUri = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_WARCINFO_ID);
+                    }
                     break;
                 case WarcConstants.FN_IDX_WARC_FILENAME:
                     warcFilename = fieldParsers.parseString(fieldValue, WarcConstants.FN_WARC_FILENAME);
                     break;
                 case WarcConstants.FN_IDX_WARC_PROFILE:
                     warcProfileStr = fieldValue;
-                    warcProfileUri = fieldParsers.parseUri(fieldValue, URI_NAKED, uriProfile, WarcConstants.FN_WARC_PROFILE);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_PROFILE)) {
+                        warcProfileUri = fieldParsers.parseUri(fieldValue, URI_NAKED, uriProfile, WarcConstants.FN_WARC_PROFILE);
+                    }
                     if (warcProfileStr != null) {
-                        warcProfileIdx = WarcConstants.profileIdxMap.get(warcProfileStr.toLowerCase());
+                        warcProfileIdx = lookupIdx(WarcConstants.profileIdxTable, warcProfileStr);
                     }
                     if (warcProfileIdx == null && warcProfileStr != null && warcProfileStr.length() > 0) {
                         warcProfileIdx = WarcConstants.PROFILE_IDX_UNKNOWN;
@@ -619,7 +723,9 @@ public class WarcHeader {
                     break;
                 case WarcConstants.FN_IDX_WARC_SEGMENT_ORIGIN_ID:
                     warcSegmentOriginIdStr = fieldValue;
-                    warcSegmentOriginIdUrl = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_SEGMENT_ORIGIN_ID);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_SEGMENT_ORIGIN_ID)) {
+                        warcSegmentOriginIdUrl = fieldParsers.parseUri(fieldValue, URI_LTGT, uriProfile, WarcConstants.FN_WARC_SEGMENT_ORIGIN_ID);
+                    }
                     break;
                 case WarcConstants.FN_IDX_WARC_SEGMENT_NUMBER:
                     warcSegmentNumberStr = fieldValue;
@@ -631,27 +737,252 @@ public class WarcHeader {
                     break;
                 case WarcConstants.FN_IDX_WARC_REFERS_TO_TARGET_URI:
                     warcRefersToTargetUriStr = fieldValue;
-                    warcRefersToTargetUriUri = fieldParsers.parseUri(fieldValue, URI_NAKED, uriProfile, WarcConstants.FN_WARC_REFERS_TO_TARGET_URI);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_REFERS_TO_TARGET_URI)) {
+                        warcRefersToTargetUriUri = fieldParsers.parseUri(fieldValue, URI_NAKED, uriProfile, WarcConstants.FN_WARC_REFERS_TO_TARGET_URI);
+                    }
                     break;
                 case WarcConstants.FN_IDX_WARC_REFERS_TO_DATE:
                     warcRefersToDateStr = fieldValue;
-                    warcRefersToDate = fieldParsers.parseDate(fieldValue, WarcConstants.FN_WARC_REFERS_TO_DATE);
+                    if (!deferParsing(WarcConstants.FN_IDX_WARC_REFERS_TO_DATE)) {
+                        warcRefersToDate = fieldParsers.parseDate(fieldValue, WarcConstants.FN_WARC_REFERS_TO_DATE);
+                    }
                     break;
                 }
-            } else {
+            } else if (validationLevel != ValidationLevel.NONE) {
                 // Duplicate field.
                 addErrorDiagnosis(DiagnosisType.DUPLICATE, "'" + fieldName + "' header", fieldValue);
             }
         }
-        HeaderLine tmpLine = headerMap.get(fieldName.toLowerCase());
+        HeaderLine tmpLine = headerMap.get(key);
         if (tmpLine == null) {
-            headerMap.put(fieldName.toLowerCase(), headerLine);
+            headerMap.put(key, headerLine);
         } else {
             tmpLine.lines.add(headerLine);
         }
         headerList.add(headerLine);
     }
 
+    /**
+     * Returns true and marks the field as pending if lazy parsing is enabled,
+     * in which case the raw value is parsed by <code>parseField</code> when
+     * the field is requested.
+     * @param fn_idx WARC field name index
+     * @return boolean indicating whether the parsing of the field is deferred
+     */
+    protected boolean deferParsing(int fn_idx) {
+        if (bLazyParsing) {
+            parsePending[fn_idx] = true;
+        }
+        return bLazyParsing;
+    }
+
+    /**
+     * Parse the raw value of a field if its parsing has been deferred.
+     * Diagnoses are reported directly to the diagnostics of this header, so
+     * the field parsers shared with the reader are left untouched.
+     * @param fn_idx WARC field name index
+     */
+    protected void parseField(int fn_idx) {
+        if (parsePending == null || !parsePending[fn_idx]) {
+            return;
+        }
+        parsePending[fn_idx] = false;
+        switch (fn_idx) {
+        case WarcConstants.FN_IDX_WARC_RECORD_ID:
+            warcRecordIdUri = WarcFieldParsers.parseUri(warcRecordIdStr, URI_LTGT, uriProfile, WarcConstants.FN_WARC_RECORD_ID, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_DATE:
+            warcDate = WarcFieldParsers.parseDate(warcDateStr, WarcConstants.FN_WARC_DATE, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_CONCURRENT_TO:
+            for (WarcConcurrentTo warcConcurrentTo : warcConcurrentToList) {
+                if (warcConcurrentTo.warcConcurrentToUri == null) {
+                    warcConcurrentTo.warcConcurrentToUri = WarcFieldParsers.parseUri(warcConcurrentTo.warcConcurrentToStr,
+                            URI_LTGT, uriProfile, WarcConstants.FN_WARC_CONCURRENT_TO, diagnostics);
+                }
+            }
+            break;
+        case WarcConstants.FN_IDX_WARC_IP_ADDRESS:
+            warcInetAddress = WarcFieldParsers.parseIpAddress(warcIpAddress, WarcConstants.FN_WARC_IP_ADDRESS, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_REFERS_TO:
+            warcRefersToUri = WarcFieldParsers.parseUri(warcRefersToStr, URI_LTGT, uriProfile, WarcConstants.FN_WARC_REFERS_TO, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_TARGET_URI:
+            warcTargetUriUri = WarcFieldParsers.parseUri(warcTargetUriStr, URI_NAKED, warcTargetUriProfile, WarcConstants.FN_WARC_TARGET_URI, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_WARCINFO_ID:
+            warcWarcinfoIdUri = WarcFieldParsers.parseUri(warcWarcinfoIdStr, URI_LTGT, uriProfile, WarcConstants.FN_WARC_WARCINFO_ID, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_PROFILE:
+            warcProfileUri = WarcFieldParsers.parseUri(warcProfileStr, URI_NAKED, uriProfile, WarcConstants.FN_WARC_PROFILE, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_SEGMENT_ORIGIN_ID:
+            warcSegmentOriginIdUrl = WarcFieldParsers.parseUri(warcSegmentOriginIdStr, URI_LTGT, uriProfile, WarcConstants.FN_WARC_SEGMENT_ORIGIN_ID, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_REFERS_TO_TARGET_URI:
+            warcRefersToTargetUriUri = WarcFieldParsers.parseUri(warcRefersToTargetUriStr, URI_NAKED, uriProfile, WarcConstants.FN_WARC_REFERS_TO_TARGET_URI, diagnostics);
+            break;
+        case WarcConstants.FN_IDX_WARC_REFERS_TO_DATE:
+            warcRefersToDate = WarcFieldParsers.parseDate(warcRefersToDateStr, WarcConstants.FN_WARC_REFERS_TO_DATE, diagnostics);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Parse all the fields whose parsing has been deferred.
+     */
+    public void parseFields() {
+        if (parsePending != null) {
+            for (int i=0; i<parsePending.length; ++i) {
+                parseField(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the field object, or the raw value if the parsing of the field
+     * has been deferred, so field policies can be checked without parsing.
+     * @param fn_idx WARC field name index
+     * @param fieldObj parsed field object
+     * @param valueStr raw field value
+     * @return field object, raw field value if not parsed yet or null
+     */
+    protected Object fieldObject(int fn_idx, Object fieldObj, String valueStr) {
+        if (parsePending != null && parsePending[fn_idx]) {
+            return (valueStr != null && valueStr.trim().length() > 0) ? valueStr : null;
+        }
+        return fieldObj;
+    }
+
+    /**
+     * Get the WARC-Record-ID URI, parsing it if required.
+     * @return WARC-Record-ID URI or null
+     */
+    public Uri getWarcRecordIdUri() {
+        parseField(WarcConstants.FN_IDX_WARC_RECORD_ID);
+        return warcRecordIdUri;
+    }
+
+    /**
+     * Get the WARC-Date, parsing it if required.
+     * @return WARC-Date or null
+     */
+    public Date getWarcDate() {
+        parseField(WarcConstants.FN_IDX_WARC_DATE);
+        return warcDate;
+    }
+
+    /**
+     * Get the WARC-Concurrent-To list, parsing the URIs if required.
+     * @return WARC-Concurrent-To list
+     */
+    public List<WarcConcurrentTo> getWarcConcurrentToList() {
+        parseField(WarcConstants.FN_IDX_WARC_CONCURRENT_TO);
+        return warcConcurrentToList;
+    }
+
+    /**
+     * Get the WARC-IP-Address, parsing it if required.
+     * @return WARC-IP-Address or null
+     */
+    public InetAddress getWarcInetAddress() {
+        parseField(WarcConstants.FN_IDX_WARC_IP_ADDRESS);
+        return warcInetAddress;
+    }
+
+    /**
+     * Get the WARC-Refers-To URI, parsing it if required.
+     * @return WARC-Refers-To URI or null
+     */
+    public Uri getWarcRefersToUri() {
+        parseField(WarcConstants.FN_IDX_WARC_REFERS_TO);
+        return warcRefersToUri;
+    }
+
+    /**
+     * Get the WARC-Target-URI, parsing it if required.
+     * @return WARC-Target-URI or null
+     */
+    public Uri getWarcTargetUriUri() {
+        parseField(WarcConstants.FN_IDX_WARC_TARGET_URI);
+        return warcTargetUriUri;
+    }
+
+    /**
+     * Get the WARC-Warcinfo-ID URI, parsing it if required.
+     * @return WARC-Warcinfo-ID URI or null
+     */
+    public Uri getWarcWarcinfoIdUri() {
+        parseField(WarcConstants.FN_IDX_WARC_WARCINFO_ID);
+        return warcWarcinfoIdUri;
+    }
+
+    /**
+     * Get the WARC-Profile URI, parsing it if required.
+     * @return WARC-Profile URI or null
+     */
+    public Uri getWarcProfileUri() {
+        parseField(WarcConstants.FN_IDX_WARC_PROFILE);
+        return warcProfileUri;
+    }
+
+    /**
+     * Get the WARC-Segment-Origin-ID URI, parsing it if required.
+     * @return WARC-Segment-Origin-ID URI or null
+     */
+    public Uri getWarcSegmentOriginIdUrl() {
+        parseField(WarcConstants.FN_IDX_WARC_SEGMENT_ORIGIN_ID);
+        return warcSegmentOriginIdUrl;
+    }
+
+    /**
+     * Get the WARC-Refers-To-Target-URI, parsing it if required.
+     * @return WARC-Refers-To-Target-URI or null
+     */
+    public Uri getWarcRefersToTargetUriUri() {
+        parseField(WarcConstants.FN_IDX_WARC_REFERS_TO_TARGET_URI);
+        return warcRefersToTargetUriUri;
+    }
+
+    /**
+     * Get the WARC-Refers-To-Date, parsing it if required.
+     * @return WARC-Refers-To-Date or null
+     */
+    public Date getWarcRefersToDate() {
+        parseField(WarcConstants.FN_IDX_WARC_REFERS_TO_DATE);
+        return warcRefersToDate;
+    }
+
+    /**
+     * Get the WARC-Date as milliseconds since the epoch without creating a
+     * <code>Date</code> object, even if the field has not been parsed yet.
+     * @return WARC-Date in milliseconds since the epoch or -1 if the date
+     * is missing or invalid
+     */
+    public long getWarcDateMillis() {
+        if (warcDate != null) {
+            return warcDate.getTime();
+        }
+        return WarcDateParser.getDateMillis(warcDateStr);
+    }
+
+    /**
+     * Get the WARC-Refers-To-Date as milliseconds since the epoch without
+     * creating a <code>Date</code> object, even if the field has not been
+     * parsed yet.
+     * @return WARC-Refers-To-Date in milliseconds since the epoch or -1 if
+     * the date is missing or invalid
+     */
+    public long getWarcRefersToDateMillis() {
+        if (warcRefersToDate != null) {
+            return warcRefersToDate.getTime();
+        }
+        return WarcDateParser.getDateMillis(warcRefersToDateStr);
+    }
+
     /**
      * Get a <code>List</code> of all the headers found during parsing.
      * @return <code>List</code> of <code>HeaderLine</code>
@@ -668,7 +999,7 @@ public class WarcHeader {
      */
     public HeaderLine getHeader(String field) {
         if (field != null && field.length() > 0) {
-            return headerMap.get(field.toLowerCase());
+            return headerMap.get(headerKey(field));
         } else {
             return null;
         }
@@ -888,8 +1219,8 @@ public class WarcHeader {
             WarcDigest digestFieldValue, ContentType contentTypeFieldValue,
             Date dateFieldValue, InetAddress inetAddrFieldValue,
             Uri uriFieldValue) {
-        Integer fn_idx = WarcConstants.fieldNameIdxMap.get(fieldName.toLowerCase());
-        if (fn_idx != null) {
+        int fn_idx = WarcConstants.fieldNameIdxTable.get(fieldName);
+        if (fn_idx != -1) {
             // Implicit cast from integer to long, if needed.
             if (WarcConstants.FN_IDX_DT[fn_idx] == WarcConstants.FDT_LONG
                     && dt == WarcConstants.FDT_INTEGER) {
@@ -905,7 +1236,7 @@ public class WarcHeader {
                             fieldValueStr);
                 }
                 seen[fn_idx] = true;
-                switch (fn_idx.intValue()) {
+                switch (fn_idx) {
                 /*
                  * Integer.
                  */
@@ -995,7 +1326,7 @@ public class WarcHeader {
                     warcProfileStr = fieldValueStr;
                     warcProfileUri = uriFieldValue;
                     if (warcProfileStr != null) {
-                        warcProfileIdx = WarcConstants.profileIdxMap.get(warcProfileStr.toLowerCase());
+                        warcProfileIdx = lookupIdx(WarcConstants.profileIdxTable, warcProfileStr);
                     }
                     if (warcProfileIdx == null && warcProfileStr != null && warcProfileStr.length() > 0) {
                         warcProfileIdx = WarcConstants.PROFILE_IDX_UNKNOWN;
@@ -1024,9 +1355,10 @@ public class WarcHeader {
         HeaderLine headerLine = new HeaderLine();
         headerLine.name = fieldName;
         headerLine.value = fieldValueStr;
-        HeaderLine tmpLine = headerMap.get(fieldName.toLowerCase());
+        String key = headerKey(fieldName);
+        HeaderLine tmpLine = headerMap.get(key);
         if (tmpLine == null) {
-            headerMap.put(fieldName.toLowerCase(), headerLine);
+            headerMap.put(key, headerLine);
         } else {
             tmpLine.lines.add(headerLine);
         }
@@ -1064,12 +1396,12 @@ public class WarcHeader {
             addErrorDiagnosis(DiagnosisType.REQUIRED_INVALID, "'" + WarcConstants.FN_WARC_TYPE + "' header", warcTypeStr);
             bMandatoryMissing = true;
         }
-        if (warcRecordIdUri == null) {
+        if (fieldObject(WarcConstants.FN_IDX_WARC_RECORD_ID, warcRecordIdUri, warcRecordIdStr) == null) {
             // Mandatory valid Warc-Record-Id missing.
             addErrorDiagnosis(DiagnosisType.REQUIRED_INVALID, "'" + WarcConstants.FN_WARC_RECORD_ID + "' header", warcRecordIdStr);
             bMandatoryMissing = true;
         }
-        if (warcDate == null) {
+        if (fieldObject(WarcConstants.FN_IDX_WARC_DATE, warcDate, warcDateStr) == null) {
             // Mandatory valid Warc-Date missing.
             addErrorDiagnosis(DiagnosisType.REQUIRED_INVALID, "'" + WarcConstants.FN_WARC_DATE + "' header", warcDateStr);
             bMandatoryMissing = true;
@@ -1138,26 +1470,36 @@ public class WarcHeader {
             WarcConcurrentTo warcConcurrentTo;
             if (warcTypeIdx  > 0) {
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_CONTENT_TYPE, contentType, contentTypeStr);
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_IP_ADDRESS, warcInetAddress, warcIpAddress);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_IP_ADDRESS,
+                        fieldObject(WarcConstants.FN_IDX_WARC_IP_ADDRESS, warcInetAddress, warcIpAddress), warcIpAddress);
                 for (int i=0; i<warcConcurrentToList.size(); ++i) {
                     warcConcurrentTo = warcConcurrentToList.get(0);
-                    checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_CONCURRENT_TO, warcConcurrentTo.warcConcurrentToUri, warcConcurrentTo.warcConcurrentToStr);
+                    checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_CONCURRENT_TO,
+                            fieldObject(WarcConstants.FN_IDX_WARC_CONCURRENT_TO, warcConcurrentTo.warcConcurrentToUri, warcConcurrentTo.warcConcurrentToStr),
+                            warcConcurrentTo.warcConcurrentToStr);
                 }
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_REFERS_TO, warcRefersToUri, warcRefersToStr);
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_TARGET_URI, warcTargetUriUri, warcTargetUriStr);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_REFERS_TO,
+                        fieldObject(WarcConstants.FN_IDX_WARC_REFERS_TO, warcRefersToUri, warcRefersToStr), warcRefersToStr);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_TARGET_URI,
+                        fieldObject(WarcConstants.FN_IDX_WARC_TARGET_URI, warcTargetUriUri, warcTargetUriStr), warcTargetUriStr);
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_TRUNCATED, warcTruncatedIdx, warcTruncatedStr);
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_WARCINFO_ID, warcWarcinfoIdUri, warcWarcinfoIdStr);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_WARCINFO_ID,
+                        fieldObject(WarcConstants.FN_IDX_WARC_WARCINFO_ID, warcWarcinfoIdUri, warcWarcinfoIdStr), warcWarcinfoIdStr);
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_BLOCK_DIGEST, warcBlockDigest, warcBlockDigestStr);
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_PAYLOAD_DIGEST, warcPayloadDigest, warcPayloadDigestStr);
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_FILENAME, warcFilename, warcFilename);
                 // Could also use warcProfileIdx for really strict.
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_PROFILE, warcProfileUri, warcProfileStr);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_PROFILE,
+                        fieldObject(WarcConstants.FN_IDX_WARC_PROFILE, warcProfileUri, warcProfileStr), warcProfileStr);
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_IDENTIFIED_PAYLOAD_TYPE, warcIdentifiedPayloadType, warcIdentifiedPayloadTypeStr);
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_SEGMENT_NUMBER, warcSegmentNumber, warcSegmentNumberStr);
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_SEGMENT_ORIGIN_ID, warcSegmentOriginIdUrl, warcSegmentOriginIdStr);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_SEGMENT_ORIGIN_ID,
+                        fieldObject(WarcConstants.FN_IDX_WARC_SEGMENT_ORIGIN_ID, warcSegmentOriginIdUrl, warcSegmentOriginIdStr), warcSegmentOriginIdStr);
                 checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_SEGMENT_TOTAL_LENGTH, warcSegmentTotalLength, warcSegmentTotalLengthStr);
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_REFERS_TO_TARGET_URI, warcRefersToTargetUriUri, warcRefersToTargetUriStr);
-                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_REFERS_TO_DATE, warcRefersToDate, warcRefersToDateStr);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_REFERS_TO_TARGET_URI,
+                        fieldObject(WarcConstants.FN_IDX_WARC_REFERS_TO_TARGET_URI, warcRefersToTargetUriUri, warcRefersToTargetUriStr), warcRefersToTargetUriStr);
+                checkFieldPolicy(warcTypeIdx, WarcConstants.FN_IDX_WARC_REFERS_TO_DATE,
+                        fieldObject(WarcConstants.FN_IDX_WARC_REFERS_TO_DATE, warcRefersToDate, warcRefersToDateStr), warcRefersToDateStr);
             }
         }
     }
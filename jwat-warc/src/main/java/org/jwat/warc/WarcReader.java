@@ -25,8 +25,10 @@ import java.util.NoSuchElementException;
 
 import org.jwat.common.Diagnosis;
 import org.jwat.common.Diagnostics;
+import org.jwat.common.DigestWorker;
 import org.jwat.common.HeaderLineReader;
 import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
 
 /**
  * Base class for WARC reader implementations.
@@ -49,6 +51,10 @@ public abstract class WarcReader implements Closeable, Iterable<WarcRecord> {
      *  record. */
     protected String blockDigestAlgorithm;
 
+    /** Block digest algorithms computed in the same pass over every record,
+     *  the first is also the default block digest algorithm. */
+    protected String[] blockDigestAlgorithms;
+
     /** Default encoding scheme used to encode block digest into a string,
      *  if none is detected from the record. */
     protected String blockDigestEncoding = "base32";
@@ -60,10 +66,33 @@ public abstract class WarcReader implements Closeable, Iterable<WarcRecord> {
      *  record. */
     protected String payloadDigestAlgorithm;
 
+    /** Payload digest algorithms computed in the same pass over every record,
+     *  the first is also the default payload digest algorithm. */
+    protected String[] payloadDigestAlgorithms;
+
     /** Default encoding scheme used to encode payload digest into a string,
      *  if none is detected from the record. */
     protected String payloadDigestEncoding = "base32";
 
+    /** Digest worker computing digests on another thread, null unless
+     *  asynchronous digesting is enabled. */
+    protected DigestWorker digestWorker;
+
+    /** Parse URI, date and IP address header fields on demand. */
+    protected boolean bLazyHeaderParsing = false;
+
+    /** Amount of validation done while reading. */
+    protected ValidationLevel validationLevel = ValidationLevel.FULL;
+
+    /** Skip unread record data instead of reading it. */
+    protected boolean bHeaderScan = false;
+
+    /** Defer HTTP header parsing until it is requested. */
+    protected boolean bLazyHttpHeaderParsing = false;
+
+    /** Filter deciding which records are returned or null. */
+    protected WarcRecordFilter recordFilter;
+
     /** Block Digest enabled/disabled. */
     protected boolean bBlockDigest = false;
 
@@ -239,6 +268,155 @@ public abstract class WarcReader implements Closeable, Iterable<WarcRecord> {
         bPayloadDigest = enabled;
     }
 
+    /**
+     * Get the readers asynchronous digest on/off status.
+     * @return boolean indicating asynchronous digest on/off
+     */
+    public boolean getAsyncDigestEnabled() {
+        return digestWorker != null;
+    }
+
+    /**
+     * Set the readers asynchronous digest on/off status. When enabled block
+     * and payload digests are computed on a separate worker thread while
+     * the record is being read. The digests are awaited and validated when
+     * the record is closed.
+     * @param enabled boolean indicating asynchronous digest on/off
+     */
+    public void setAsyncDigestEnabled(boolean enabled) {
+        if (enabled) {
+            if (digestWorker == null) {
+                digestWorker = new DigestWorker();
+            }
+        } else {
+            closeDigestWorker();
+        }
+    }
+
+    /**
+     * Get the readers lazy header parsing on/off status.
+     * @return boolean indicating lazy header parsing on/off
+     */
+    public boolean getLazyHeaderParsingEnabled() {
+        return bLazyHeaderParsing;
+    }
+
+    /**
+     * Set the readers lazy header parsing on/off status. When enabled only
+     * the raw values of URI, date and IP address fields are stored while
+     * reading. They are parsed and validated the first time they are
+     * requested through the <code>WarcHeader</code> getters, or by
+     * <code>WarcHeader.parseFields()</code>. Until then the presence of the
+     * raw value is used when checking the field policies.
+     * @param enabled boolean indicating lazy header parsing on/off
+     */
+    public void setLazyHeaderParsingEnabled(boolean enabled) {
+        bLazyHeaderParsing = enabled;
+    }
+
+    /**
+     * Get the readers validation level.
+     * @return validation level
+     */
+    public ValidationLevel getValidationLevel() {
+        return validationLevel;
+    }
+
+    /**
+     * Set the readers validation level. Below <code>FULL</code> the field
+     * compliance checks are skipped. At <code>NONE</code> no structural
+     * diagnoses are reported for the record headers and trailing newlines,
+     * and encoded words in header values are kept as is. Parsing fields on
+     * demand is controlled by <code>setLazyHeaderParsingEnabled</code>.
+     * @param level validation level
+     */
+    public void setValidationLevel(ValidationLevel level) {
+        if (level == null) {
+            throw new IllegalArgumentException("level is null!");
+        }
+        validationLevel = level;
+        headerLineReader.bEncodedWords = (level != ValidationLevel.NONE);
+    }
+
+    /**
+     * Get the readers header scan on/off status.
+     * @return boolean indicating header scan on/off
+     */
+    public boolean isHeaderScanEnabled() {
+        return bHeaderScan;
+    }
+
+    /**
+     * Set the readers header scan on/off status. In header scan mode block
+     * and payload digests are not computed, so the unread data of a record
+     * is skipped instead of read when the record is closed.
+     * Uncompressed readers skip by seeking if the input stream supports it,
+     * as a <code>FileInputStream</code> or
+     * <code>RandomAccessFileInputStream</code> does.
+     * Compressed readers skip the rest of a GZip entry without inflating it
+     * if the entry header includes the compressed length subfield, the
+     * trailing newlines of such a record are not validated. Otherwise the
+     * rest of the entry is inflated and discarded.
+     * @param enabled boolean indicating header scan on/off
+     */
+    public void setHeaderScanEnabled(boolean enabled) {
+        bHeaderScan = enabled;
+    }
+
+    /**
+     * Get the readers lazy HTTP header parsing on/off status.
+     * @return boolean indicating lazy HTTP header parsing on/off
+     */
+    public boolean getLazyHttpHeaderParsingEnabled() {
+        return bLazyHttpHeaderParsing;
+    }
+
+    /**
+     * Set the readers lazy HTTP header parsing on/off status. When enabled
+     * the HTTP header of a record is parsed the first time it is requested
+     * through <code>getHttpHeader()</code> or the record payload, instead of
+     * when the record is read. If neither is requested, the HTTP header is
+     * only parsed when the record is closed if payload digests are enabled,
+     * so the computed payload digests are the same either way. An HTTP header
+     * which is never parsed is not validated.
+     * @param enabled boolean indicating lazy HTTP header parsing on/off
+     */
+    public void setLazyHttpHeaderParsingEnabled(boolean enabled) {
+        bLazyHttpHeaderParsing = enabled;
+    }
+
+    /**
+     * Returns the filter deciding which records are returned or null.
+     * @return the filter deciding which records are returned or null
+     */
+    public WarcRecordFilter getRecordFilter() {
+        return recordFilter;
+    }
+
+    /**
+     * Set the filter deciding which records are returned by
+     * <code>getNextRecord</code> and the iterator. The filter is evaluated
+     * right after a record header has been parsed. The data of a rejected
+     * record is skipped, without computing digests or parsing the HTTP
+     * header, and the next record is read. Records read by the
+     * <code>getNextRecordFrom</code> methods are not filtered.
+     * @param filter record filter or null to return all records
+     */
+    public void setRecordFilter(WarcRecordFilter filter) {
+        recordFilter = filter;
+    }
+
+    /**
+     * Stop the digest worker thread, if any, once the queued data has been
+     * digested.
+     */
+    protected void closeDigestWorker() {
+        if (digestWorker != null) {
+            digestWorker.close();
+            digestWorker = null;
+        }
+    }
+
     /**
      * Get the default block digest algorithm.
      * @return default block digest algorithm
@@ -258,15 +436,53 @@ public abstract class WarcReader implements Closeable, Iterable<WarcRecord> {
     public boolean setBlockDigestAlgorithm(String digestAlgorithm) {
         if (digestAlgorithm == null || digestAlgorithm.length() == 0) {
             blockDigestAlgorithm = null;
+            blockDigestAlgorithms = null;
             return true;
         }
         if (WarcDigest.digestAlgorithmLength(digestAlgorithm) > 0) {
             blockDigestAlgorithm = digestAlgorithm;
+            blockDigestAlgorithms = null;
             return true;
         }
         return false;
     }
 
+    /**
+     * Get the block digest algorithms computed for every record.
+     * @return block digest algorithms computed for every record or null
+     */
+    public String[] getBlockDigestAlgorithms() {
+        return (blockDigestAlgorithms != null) ? blockDigestAlgorithms.clone() : null;
+    }
+
+    /**
+     * Tries to set the block digest algorithms computed in the same pass over
+     * every record and returns a boolean indicating whether all the
+     * algorithms were accepted or not. The first algorithm is also used as
+     * the default block digest algorithm.
+     * The algorithm of a WARC block digest header present in a record
+     * is computed as well.
+     * @param digestAlgorithms block digest algorithms
+     * (null means no block digest algorithms are selected)
+     * @return boolean indicating the validity of the algorithms supplied
+     */
+    public boolean setBlockDigestAlgorithms(String[] digestAlgorithms) {
+        if (digestAlgorithms == null || digestAlgorithms.length == 0) {
+            blockDigestAlgorithm = null;
+            blockDigestAlgorithms = null;
+            return true;
+        }
+        for (int i=0; i<digestAlgorithms.length; ++i) {
+            if (digestAlgorithms[i] == null || digestAlgorithms[i].length() == 0
+                    || WarcDigest.digestAlgorithmLength(digestAlgorithms[i]) <= 0) {
+                return false;
+            }
+        }
+        blockDigestAlgorithm = digestAlgorithms[0];
+        blockDigestAlgorithms = digestAlgorithms.clone();
+        return true;
+    }
+
     /**
      * Get the default payload digest algorithm.
      * @return default payload digest algorithm
@@ -286,15 +502,53 @@ public abstract class WarcReader implements Closeable, Iterable<WarcRecord> {
     public boolean setPayloadDigestAlgorithm(String digestAlgorithm) {
         if (digestAlgorithm == null || digestAlgorithm.length() == 0) {
             payloadDigestAlgorithm = null;
+            payloadDigestAlgorithms = null;
             return true;
         }
         if (WarcDigest.digestAlgorithmLength(digestAlgorithm) > 0) {
             payloadDigestAlgorithm = digestAlgorithm;
+            payloadDigestAlgorithms = null;
             return true;
         }
         return false;
     }
 
+    /**
+     * Get the payload digest algorithms computed for every record.
+     * @return payload digest algorithms computed for every record or null
+     */
+    public String[] getPayloadDigestAlgorithms() {
+        return (payloadDigestAlgorithms != null) ? payloadDigestAlgorithms.clone() : null;
+    }
+
+    /**
+     * Tries to set the payload digest algorithms computed in the same pass over
+     * every record and returns a boolean indicating whether all the
+     * algorithms were accepted or not. The first algorithm is also used as
+     * the default payload digest algorithm.
+     * The algorithm of a WARC payload digest header present in a record
+     * is computed as well.
+     * @param digestAlgorithms payload digest algorithms
+     * (null means no payload digest algorithms are selected)
+     * @return boolean indicating the validity of the algorithms supplied
+     */
+    public boolean setPayloadDigestAlgorithms(String[] digestAlgorithms) {
+        if (digestAlgorithms == null || digestAlgorithms.length == 0) {
+            payloadDigestAlgorithm = null;
+            payloadDigestAlgorithms = null;
+            return true;
+        }
+        for (int i=0; i<digestAlgorithms.length; ++i) {
+            if (digestAlgorithms[i] == null || digestAlgorithms[i].length() == 0
+                    || WarcDigest.digestAlgorithmLength(digestAlgorithms[i]) <= 0) {
+                return false;
+            }
+        }
+        payloadDigestAlgorithm = digestAlgorithms[0];
+        payloadDigestAlgorithms = digestAlgorithms.clone();
+        return true;
+    }
+
     /**
      * Get the default block digest encoding scheme.
      * @return default block digest encoding scheme
@@ -381,6 +635,17 @@ public abstract class WarcReader implements Closeable, Iterable<WarcRecord> {
      */
     protected abstract void recordClosed();
 
+    /**
+     * Skip the rest of the current record without reading it, if possible.
+     * Called in header scan mode when a record is closed, the default
+     * implementation skips nothing.
+     * @return boolean indicating whether the rest of the record was skipped
+     * @throws IOException if an I/O error occurs while skipping
+     */
+    protected boolean skipRecordData() throws IOException {
+        return false;
+    }
+
     /**
      * Get the offset of the current WARC record or -1 if none have been read.
      * @return offset of the current WARC record or -1
@@ -17,16 +17,21 @@
  */
 package org.jwat.warc;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
-import org.jwat.gzip.GzipEntry;
+import org.jwat.common.CompressedEntry;
+import org.jwat.common.CompressedReader;
+import org.jwat.common.CompressionCodec;
+import org.jwat.gzip.GzipCodec;
 import org.jwat.gzip.GzipReader;
 
 /**
- * WARC Reader implementation for reading GZip compressed files.
+ * WARC Reader implementation for reading compressed files.
+ * GZip is the default compression codec, others can be plugged in using
+ * <code>CompressionCodec</code> implementations.
  * Use WarcReaderFactory to get an instance of this class.
  *
  * @author nicl
@@ -36,17 +41,20 @@ public class WarcReaderCompressed extends WarcReader {
     /** Buffer size used by <code>PushbackInputStream</code>. */
     public static final int PUSHBACK_BUFFER_SIZE = 32;
 
+    /** Compression codec of the records. */
+    protected CompressionCodec codec = GzipCodec.getDefault();
+
     /** WARC file <code>InputStream</code>. */
-    protected GzipReader reader;
+    protected CompressedReader reader;
 
     /** Buffer size, if any, to use on GZip entry <code>InputStream</code>. */
     protected int bufferSize;
 
-    /** GZip reader used for the current record, if random access methods used. */
-    protected GzipReader currentReader;
+    /** Compressed reader used for the current record, if random access methods used. */
+    protected CompressedReader currentReader;
 
-    /** GZip entry for the current record, if random access methods used. */
-    protected GzipEntry currentEntry;
+    /** Compressed entry for the current record, if random access methods used. */
+    protected CompressedEntry currentEntry;
 
     /**
      * This constructor is used to get random access to records.
@@ -92,11 +100,83 @@ public class WarcReaderCompressed extends WarcReader {
         init();
     }
 
+    /**
+     * Construct reader using the supplied codec and compressed reader.
+     * This method is primarily for sequential access to records.
+     * @param codec compression codec
+     * @param reader compressed reader returned by the codec
+     */
+    public WarcReaderCompressed(CompressionCodec codec, CompressedReader reader) {
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "'codec' is null");
+        }
+        if (reader == null) {
+            throw new IllegalArgumentException(
+                    "'reader' is null");
+        }
+        this.codec = codec;
+        this.reader = reader;
+        init();
+    }
+
+    /**
+     * Construct reader using the supplied codec and compressed reader.
+     * This method is primarily for sequential access to records.
+     * @param codec compression codec
+     * @param reader compressed reader returned by the codec
+     * @param buffer_size buffer size used on entries
+     */
+    public WarcReaderCompressed(CompressionCodec codec, CompressedReader reader, int buffer_size) {
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "'codec' is null");
+        }
+        if (reader == null) {
+            throw new IllegalArgumentException(
+                    "'reader' is null");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'buffer_size' is less than or equal to zero: "
+                    + buffer_size);
+        }
+        this.codec = codec;
+        this.reader = reader;
+        this.bufferSize = buffer_size;
+        init();
+    }
+
     @Override
     public boolean isCompressed() {
         return true;
     }
 
+    /**
+     * Returns the compression codec of the records.
+     * @return compression codec of the records
+     */
+    public CompressionCodec getCompressionCodec() {
+        return codec;
+    }
+
+    /**
+     * Set the compression codec used to read records with the
+     * getNextRecordFrom methods. GZip is used by default.
+     * @param codec compression codec
+     */
+    public void setCompressionCodec(CompressionCodec codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "The 'codec' parameter is null!");
+        }
+        if (reader != null) {
+            throw new IllegalStateException(
+                    "The codec of a sequential reader can not be changed");
+        }
+        this.codec = codec;
+    }
+
     @Override
     public void close() {
         if (currentRecord != null) {
@@ -113,6 +193,8 @@ public class WarcReaderCompressed extends WarcReader {
             } catch (IOException e) { /* ignore */ }
             reader = null;
         }
+        releaseCurrentReader();
+        closeDigestWorker();
     }
 
     @Override
@@ -120,21 +202,44 @@ public class WarcReaderCompressed extends WarcReader {
         if (currentEntry != null) {
             try {
                 currentEntry.close();
-                consumed += currentEntry.consumed;
+                consumed += currentEntry.getConsumed();
             } catch (IOException e) { /* ignore */ }
             currentEntry = null;
+            releaseCurrentReader();
         } else {
             throw new IllegalStateException("'currentEntry' is null, this should never happen!");
         }
     }
 
+    @Override
+    protected boolean skipRecordData() throws IOException {
+        if (currentEntry != null && currentReader instanceof GzipReader) {
+            return ((GzipReader)currentReader).skipRemaining();
+        }
+        return false;
+    }
+
+    /**
+     * Release the compressed reader used for random access, a GZip reader
+     * returns its inflater and buffers to the shared pool. The input stream
+     * belongs to the caller of the getNextRecordFrom methods and is left open.
+     */
+    protected void releaseCurrentReader() {
+        if (reader == null && currentReader != null) {
+            try {
+                currentReader.release();
+            } catch (IOException e) { /* ignore */ }
+            currentReader = null;
+        }
+    }
+
     /** Cached start offset used after the reader is closed. */
     protected long startOffset = -1;
 
     /**
-     * Get the offset of the current WARC record from the GZip entry or -1 if
+     * Get the offset of the current WARC record from the compressed entry or -1 if
      * no records have been read yet.
-     * @return offset of the current WARC record from the GZip entry or -1
+     * @return offset of the current WARC record from the compressed entry or -1
      */
     @Override
     public long getStartOffset() {
@@ -181,20 +286,24 @@ public class WarcReaderCompressed extends WarcReader {
         }
         currentRecord = null;
         currentReader = reader;
-        currentEntry = reader.getNextEntry();
-        if (currentEntry != null) {
+        while (currentRecord == null && (currentEntry = reader.getNextEntry()) != null) {
             ByteCountingPushBackInputStream pbin;
             if (bufferSize > 0) {
-                pbin = new ByteCountingPushBackInputStream(
-                        new BufferedInputStream(
-                                currentEntry.getInputStream(), bufferSize),
-                                PUSHBACK_BUFFER_SIZE);
+                pbin = new BufferedByteCountingPushBackInputStream(
+                        currentEntry.getInputStream(), PUSHBACK_BUFFER_SIZE, bufferSize);
             }
             else {
                 pbin = new ByteCountingPushBackInputStream(
                         currentEntry.getInputStream(), PUSHBACK_BUFFER_SIZE);
             }
-            currentRecord = WarcRecord.parseRecord(pbin, this);
+            currentRecord = WarcRecord.parseRecord(pbin, this, recordFilter);
+            if (currentRecord == null) {
+                break;
+            }
+            if (currentRecord.bFiltered) {
+                currentRecord.close();
+                currentRecord = null;
+            }
         }
         if (currentRecord != null) {
             startOffset = currentEntry.getStartOffset();
@@ -203,6 +312,44 @@ public class WarcReaderCompressed extends WarcReader {
         return currentRecord;
     }
 
+    /**
+     * Copy the next record unchanged to a compressed WARC writer, as the raw
+     * GZip entry it is stored in, without inflating and deflating it.
+     * The record is not parsed, so the record filter is not applied.
+     * Only supported when the records are read using GZip.
+     * @param writer compressed WARC writer to copy the record to
+     * @param bVerify inflate the data to validate the CRC32 and ISize values
+     * @return number of bytes copied or -1 if there are no more records
+     * @throws IOException if an I/O error occurs while copying record
+     */
+    public long copyNextRecord(WarcWriterCompressed writer, boolean bVerify) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException(
+                    "The 'writer' parameter is null!");
+        }
+        if (currentRecord != null) {
+            currentRecord.close();
+        }
+        if (reader == null) {
+            throw new IllegalStateException(
+                    "This reader has been initialized with an incompatible constructor, 'reader' is null");
+        }
+        if (!(reader instanceof GzipReader)) {
+            throw new IllegalStateException(
+                    "Records can only be copied unchanged from a GZip reader");
+        }
+        currentRecord = null;
+        currentReader = reader;
+        currentEntry = reader.getNextEntry();
+        if (currentEntry == null) {
+            return -1;
+        }
+        startOffset = currentEntry.getStartOffset();
+        long copied = writer.writeRawRecord((GzipReader)reader, bVerify);
+        currentEntry = null;
+        return copied;
+    }
+
     @Override
     public WarcRecord getNextRecordFrom(InputStream rin, long offset)
                                                         throws IOException {
@@ -221,8 +368,9 @@ public class WarcReaderCompressed extends WarcReader {
             throw new IllegalArgumentException(
                     "The 'offset' is less than -1: " + offset);
         }
+        releaseCurrentReader();
         currentRecord = null;
-        currentReader = new GzipReader(rin);
+        currentReader = codec.newReader(rin);
         currentEntry = currentReader.getNextEntry();
         if (currentEntry != null) {
             ByteCountingPushBackInputStream pbin =
@@ -260,15 +408,14 @@ public class WarcReaderCompressed extends WarcReader {
                     "The 'buffer_size' is less than or equal to zero: "
                     + buffer_size);
         }
+        releaseCurrentReader();
         currentRecord = null;
-        currentReader = new GzipReader(rin);
+        currentReader = codec.newReader(rin);
         currentEntry = currentReader.getNextEntry();
         if (currentEntry != null) {
             ByteCountingPushBackInputStream pbin =
-                    new ByteCountingPushBackInputStream(
-                            new BufferedInputStream(
-                                    currentEntry.getInputStream(), buffer_size),
-                                    PUSHBACK_BUFFER_SIZE);
+                    new BufferedByteCountingPushBackInputStream(
+                            currentEntry.getInputStream(), PUSHBACK_BUFFER_SIZE, buffer_size);
             currentRecord = WarcRecord.parseRecord(pbin, this);
         }
         if (currentRecord != null) {
@@ -17,10 +17,10 @@
  */
 package org.jwat.warc;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jwat.common.BufferedByteCountingPushBackInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
 
 /**
@@ -83,6 +83,7 @@ public class WarcReaderUncompressed extends WarcReader {
             } catch (IOException e) { /* ignore */ }
             in = null;
         }
+        closeDigestWorker();
     }
 
     @Override
@@ -126,7 +127,11 @@ public class WarcReaderUncompressed extends WarcReader {
             throw new IllegalStateException(
                     "This reader has been initialized with an incompatible constructor, 'in' is null");
         }
-        currentRecord = WarcRecord.parseRecord(in, this);
+        currentRecord = WarcRecord.parseRecord(in, this, recordFilter);
+        while (currentRecord != null && currentRecord.bFiltered) {
+            currentRecord.close();
+            currentRecord = WarcRecord.parseRecord(in, this, recordFilter);
+        }
         if (currentRecord != null) {
             startOffset = currentRecord.getStartOffset();
         }
@@ -185,9 +190,8 @@ public class WarcReaderUncompressed extends WarcReader {
                     + buffer_size);
         }
         ByteCountingPushBackInputStream pbin =
-                new ByteCountingPushBackInputStream(
-                        new BufferedInputStream(rin, buffer_size),
-                        PUSHBACK_BUFFER_SIZE);
+                new BufferedByteCountingPushBackInputStream(
+                        rin, PUSHBACK_BUFFER_SIZE, buffer_size);
         currentRecord = WarcRecord.parseRecord(pbin, this);
         if (currentRecord != null) {
             startOffset = offset;
@@ -20,22 +20,24 @@ package org.jwat.warc;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.jwat.common.Base16;
-import org.jwat.common.Base32;
-import org.jwat.common.Base64;
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
+import org.jwat.common.DigestEncoding;
 import org.jwat.common.HeaderLine;
 import org.jwat.common.HttpHeader;
 import org.jwat.common.NewlineParser;
 import org.jwat.common.Payload;
 import org.jwat.common.PayloadOnClosedHandler;
+import org.jwat.common.PayloadOnHeaderRequestedHandler;
+import org.jwat.common.ValidationLevel;
 
 /**
  * This class represents a parsed WARC record header block including
@@ -45,7 +47,7 @@ import org.jwat.common.PayloadOnClosedHandler;
  *
  * @author nicl
  */
-public class WarcRecord implements PayloadOnClosedHandler, Closeable {
+public class WarcRecord implements PayloadOnClosedHandler, PayloadOnHeaderRequestedHandler, Closeable {
 
     /** Reader instance used, required for file compliance. */
     protected WarcReader reader;
@@ -78,6 +80,12 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
     /** Number of trailing newlines after record. */
     public int trailingNewlines;
 
+    /** Was the rest of the record data skipped in header scan mode. */
+    protected boolean bDataSkipped;
+
+    /** Was the record rejected by the reader record filter. */
+    protected boolean bFiltered;
+
     /*
      * Header-Fields.
      */
@@ -101,12 +109,26 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
     /** HTTP header content parsed from payload. */
     protected HttpHeader httpHeader;
 
+    /** Type of the deferred HTTP header, or 0 if none. */
+    protected int httpHeaderType;
+
+    /** Payload digest algorithms of the deferred HTTP header, or null. */
+    protected String[] httpHeaderDigestAlgorithms;
+
     /** Computed block digest. */
     public WarcDigest computedBlockDigest;
 
     /** Computed payload digest. */
     public WarcDigest computedPayloadDigest;
 
+    /** All the computed block digests, the first is the computed block
+     *  digest. Null if no block digest was computed. */
+    public List<WarcDigest> computedBlockDigests;
+
+    /** All the computed payload digests, the first is the computed payload
+     *  digest. Null if no payload digest was computed. */
+    public List<WarcDigest> computedPayloadDigests;
+
     /**
      * Non public constructor to allow unit testing.
      */
@@ -136,6 +158,22 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
      */
     public static WarcRecord parseRecord(ByteCountingPushBackInputStream in,
                                     WarcReader reader) throws IOException {
+        return parseRecord(in, reader, null);
+    }
+
+    /**
+     * Given an <code>InputStream</code> it tries to read and validate a WARC
+     * header block. If the record is rejected by the filter, its payload is
+     * not processed and the record data is skipped when it is closed.
+     * @param in <code>InputStream</code> containing WARC record data
+     * @param reader <code>WarcReader</code> used, with access to user defined
+     * options
+     * @param filter record filter or null
+     * @return <code>WarcRecord</code> or <code>null</code>
+     * @throws IOException I/O exception in the process of reading record
+     */
+    public static WarcRecord parseRecord(ByteCountingPushBackInputStream in,
+                                    WarcReader reader, WarcRecordFilter filter) throws IOException {
         WarcRecord record = new WarcRecord();
         record.in = in;
         record.reader = reader;
@@ -153,25 +191,31 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
             /*
              * Payload processing.
              */
-            if (header.contentLength != null && header.contentLength > 0) {
+            if (filter != null && !filter.accept(reader,
+                    reader.isCompressed() ? reader.getStartOffset() : record.startOffset, header)) {
+                // Rejected, the record data is skipped when it is closed.
+                record.bFiltered = true;
+            } else if (header.contentLength != null && header.contentLength > 0) {
                 /*
                  * Payload.
                  */
-                String digestAlgorithm = null;
-                if (reader.bBlockDigest) {
+                String[] digestAlgorithms = null;
+                if (reader.bBlockDigest && !reader.bHeaderScan) {
                     if (header.warcBlockDigest != null && header.warcBlockDigest.algorithm != null) {
                         // If a WARC block digest header is present in the
                         // record, use that algorithm.
-                        digestAlgorithm = header.warcBlockDigest.algorithm;
+                        digestAlgorithms = digestAlgorithms(header.warcBlockDigest.algorithm,
+                                reader.blockDigestAlgorithms);
                     } else {
                         // If no WARC block digest header is present,
                         // use the optional user specified algorithm.
                         // Can be null in which case nothing is computed.
-                        digestAlgorithm = reader.blockDigestAlgorithm;
+                        digestAlgorithms = digestAlgorithms(reader.blockDigestAlgorithm,
+                                reader.blockDigestAlgorithms);
                     }
                 }
-                record.payload = Payload.processPayload(in, header.contentLength,
-                                         reader.payloadHeaderMaxSize, digestAlgorithm);
+                record.payload = Payload.processPayloadDigests(in, header.contentLength,
+                                         reader.payloadHeaderMaxSize, digestAlgorithms, reader.digestWorker);
                 record.payload.setOnClosedHandler(record);
                 /*
                  * HttpHeader.
@@ -188,32 +232,28 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
                         httpHeaderType = HttpHeader.HT_REQUEST;
                     }
                     if (httpHeaderType != 0) {
-                        digestAlgorithm = null;
-                        if (reader.bPayloadDigest) {
+                        digestAlgorithms = null;
+                        if (reader.bPayloadDigest && !reader.bHeaderScan) {
                             if (header.warcPayloadDigest != null && header.warcPayloadDigest.algorithm != null) {
                                 // If a WARC payload digest header is present in the
                                 // record, use that algorithm.
-                                digestAlgorithm = header.warcPayloadDigest.algorithm;
+                                digestAlgorithms = digestAlgorithms(header.warcPayloadDigest.algorithm,
+                                        reader.payloadDigestAlgorithms);
                             } else {
                                 // If no WARC payload digest header is present,
                                 // use the optional user specified algorithm.
                                 // Can be null in which case nothing is computed.
-                                digestAlgorithm = reader.payloadDigestAlgorithm;
+                                digestAlgorithms = digestAlgorithms(reader.payloadDigestAlgorithm,
+                                        reader.payloadDigestAlgorithms);
                             }
                         }
-                        // Try to read a valid HTTP request/response header from the payload.
-                        record.httpHeader = HttpHeader.processPayload(httpHeaderType,
-                                record.payload.getInputStream(), header.contentLength,
-                                digestAlgorithm);
-                        if (record.httpHeader != null) {
-                            if (record.httpHeader.isValid()) {
-                                record.payload.setPayloadHeaderWrapped(record.httpHeader);
-                            } else {
-                                record.diagnostics.addError(
-                                        new Diagnosis(DiagnosisType.ERROR,
-                                                "http header",
-                                                "Unable to parse http header!"));
-                            }
+                        if (reader.bLazyHttpHeaderParsing) {
+                            // Processed when the header or payload is requested.
+                            record.httpHeaderType = httpHeaderType;
+                            record.httpHeaderDigestAlgorithms = digestAlgorithms;
+                            record.payload.setOnHeaderRequestedHandler(record);
+                        } else {
+                            record.processHttpHeader(httpHeaderType, digestAlgorithms);
                         }
                     }
                 }
@@ -251,6 +291,83 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
         return record;
     }
 
+    /**
+     * Try to read a valid HTTP request/response header from the payload.
+     * @param httpHeaderType HTTP header type
+     * @param digestAlgorithms payload digest algorithms or null
+     * @throws IOException I/O exception while reading the HTTP header
+     */
+    protected void processHttpHeader(int httpHeaderType, String[] digestAlgorithms) throws IOException {
+        httpHeader = HttpHeader.processPayloadDigests(httpHeaderType,
+                payload.getInputStream(), header.contentLength,
+                digestAlgorithms, reader.digestWorker);
+        if (httpHeader != null) {
+            if (httpHeader.isValid()) {
+                payload.setPayloadHeaderWrapped(httpHeader);
+            } else if (reader.validationLevel != ValidationLevel.NONE) {
+                diagnostics.addError(
+                        new Diagnosis(DiagnosisType.ERROR,
+                                "http header",
+                                "Unable to parse http header!"));
+            }
+        }
+    }
+
+    /**
+     * Called the first time the deferred HTTP header or the payload is
+     * requested, or when the payload is closed. On close the HTTP header is
+     * only processed if payload digests are to be computed.
+     * @param bClosing true if the payload is being closed
+     * @throws IOException I/O exception while reading the HTTP header
+     */
+    @Override
+    public void payloadHeaderRequested(boolean bClosing) throws IOException {
+        if (httpHeaderType != 0 && (!bClosing || httpHeaderDigestAlgorithms != null)) {
+            processHttpHeader(httpHeaderType, httpHeaderDigestAlgorithms);
+        }
+        httpHeaderType = 0;
+        httpHeaderDigestAlgorithms = null;
+    }
+
+    /**
+     * Returns the digest algorithms to compute given the digest algorithm
+     * used for validation and the digest algorithms reader setting.
+     * @param digestAlgorithm header or default digest algorithm
+     * @param digestAlgorithms digest algorithms computed for every record
+     * @return digest algorithms to compute or null
+     */
+    protected static String[] digestAlgorithms(String digestAlgorithm, String[] digestAlgorithms) {
+        if (digestAlgorithms == null) {
+            return (digestAlgorithm != null) ? new String[] {digestAlgorithm} : null;
+        }
+        if (digestAlgorithm == null || digestAlgorithm.equalsIgnoreCase(digestAlgorithms[0])) {
+            return digestAlgorithms;
+        }
+        String[] algorithms = new String[digestAlgorithms.length + 1];
+        algorithms[0] = digestAlgorithm;
+        System.arraycopy(digestAlgorithms, 0, algorithms, 1, digestAlgorithms.length);
+        return algorithms;
+    }
+
+    /**
+     * Create a computed digest object and encode the digest using the
+     * supplied encoding scheme, if it is known.
+     * @param digestBytes computed digest bytes
+     * @param algorithm digest algorithm
+     * @param encoding encoding scheme or null
+     * @return computed digest object
+     */
+    protected static WarcDigest newComputedDigest(byte[] digestBytes, String algorithm, String encoding) {
+        WarcDigest digest = new WarcDigest();
+        digest.digestBytes = digestBytes;
+        digest.algorithm = algorithm;
+        digest.digestString = DigestEncoding.encode(digestBytes, encoding);
+        if (digest.digestString != null) {
+            digest.encoding = encoding;
+        }
+        return digest;
+    }
+
     /**
      * Called when the payload object is closed and final steps in the
      * validation process can be performed.
@@ -261,14 +378,21 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
         if (!bPayloadClosed) {
             if (payload != null) {
                 // Check for truncated payload.
-                if (payload.getUnavailable() > 0) {
+                if (payload.getUnavailable() > 0 && !bDataSkipped) {
                     // Payload length mismatch - Payload truncated
                     addErrorDiagnosis(DiagnosisType.INVALID_DATA, "Payload length mismatch", "Payload truncated");
                 }
                 /*
                  * Check block digest.
                  */
-                byte[] digest = payload.getDigest();
+                String digestAlgorithm = reader.blockDigestAlgorithm;
+                if (header.warcBlockDigest != null && header.warcBlockDigest.algorithm != null) {
+                    digestAlgorithm = header.warcBlockDigest.algorithm;
+                }
+                byte[] digest = null;
+                if (digestAlgorithm != null) {
+                    digest = payload.getDigest(digestAlgorithm);
+                }
                 // Check for computed block digest.
                 if (digest != null) {
                     computedBlockDigest = new WarcDigest();
@@ -283,12 +407,33 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
                     processComputedDigest(computedBlockDigest,
                             reader.blockDigestAlgorithm, reader.blockDigestEncoding, "block");
                 }
+                // Other digest algorithms computed in the same pass.
+                List<String> algorithms = payload.getDigestAlgorithms();
+                if (!algorithms.isEmpty()) {
+                    computedBlockDigests = new ArrayList<WarcDigest>(algorithms.size());
+                    if (computedBlockDigest != null) {
+                        computedBlockDigests.add(computedBlockDigest);
+                    }
+                    for (String algorithm : algorithms) {
+                        if (computedBlockDigest == null || !algorithm.equalsIgnoreCase(digestAlgorithm)) {
+                            computedBlockDigests.add(newComputedDigest(payload.getDigest(algorithm),
+                                    algorithm, reader.blockDigestEncoding));
+                        }
+                    }
+                }
                 // Revisit payload digest refers to the original. Continuation payload digest in first record also refers to original.
                 if ((header.warcTypeIdx != null && header.warcTypeIdx != WarcConstants.RT_IDX_REVISIT && header.warcTypeIdx != WarcConstants.RT_IDX_CONTINUATION) && httpHeader != null && httpHeader.isValid()) {
                     /*
                      * Check payload digest.
                      */
-                    digest = httpHeader.getDigest();
+                    digestAlgorithm = reader.payloadDigestAlgorithm;
+                    if (header.warcPayloadDigest != null && header.warcPayloadDigest.algorithm != null) {
+                        digestAlgorithm = header.warcPayloadDigest.algorithm;
+                    }
+                    digest = null;
+                    if (digestAlgorithm != null) {
+                        digest = httpHeader.getDigest(digestAlgorithm);
+                    }
                     // Check for computed payload digest.
                     if (digest != null) {
                         computedPayloadDigest = new WarcDigest();
@@ -303,11 +448,32 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
                         processComputedDigest(computedPayloadDigest,
                                 reader.payloadDigestAlgorithm, reader.payloadDigestEncoding, "payload");
                     }
+                    // Other digest algorithms computed in the same pass.
+                    algorithms = httpHeader.getDigestAlgorithms();
+                    if (!algorithms.isEmpty()) {
+                        computedPayloadDigests = new ArrayList<WarcDigest>(algorithms.size());
+                        if (computedPayloadDigest != null) {
+                            computedPayloadDigests.add(computedPayloadDigest);
+                        }
+                        for (String algorithm : algorithms) {
+                            if (computedPayloadDigest == null || !algorithm.equalsIgnoreCase(digestAlgorithm)) {
+                                computedPayloadDigests.add(newComputedDigest(httpHeader.getDigest(algorithm),
+                                        algorithm, reader.payloadDigestEncoding));
+                            }
+                        }
+                    }
                 }
             }
-            // Check for trailing newlines.
-            trailingNewlines = nlp.parseCRLFs(in, diagnostics);
-            if (trailingNewlines != WarcConstants.WARC_RECORD_TRAILING_NEWLINES) {
+            // Check for trailing newlines, unless skipped with the data.
+            if (bDataSkipped) {
+                trailingNewlines = 0;
+            } else if (reader.validationLevel != ValidationLevel.NONE) {
+                trailingNewlines = nlp.parseCRLFs(in, diagnostics);
+            } else {
+                trailingNewlines = nlp.parseCRLFs(in, null);
+            }
+            if (trailingNewlines != WarcConstants.WARC_RECORD_TRAILING_NEWLINES
+                    && reader.validationLevel != ValidationLevel.NONE && !bDataSkipped) {
                 addErrorDiagnosis(DiagnosisType.INVALID_EXPECTED,
                         "Trailing newlines",
                         Integer.toString(trailingNewlines),
@@ -340,26 +506,18 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
      * @return WARC digest validity indication
      */
     protected Boolean processWarcDigest(WarcDigest warcDigest, WarcDigest computedDigest, String digestName) {
-        byte[] digest;
         Boolean isValidDigest = null;
         int digestAlgorithmLength = WarcDigest.digestAlgorithmLength(warcDigest.algorithm);
-        digest = Base16.decodeToArray(warcDigest.digestString);
-        if (digest != null && digest.length == digestAlgorithmLength) {
-            warcDigest.digestBytes = digest;
-            warcDigest.encoding = "base16";
-        }
-        if (warcDigest.digestBytes == null) {
-            digest = Base32.decodeToArray(warcDigest.digestString, true);
-            if (digest != null && digest.length == digestAlgorithmLength) {
-                warcDigest.digestBytes = digest;
-                warcDigest.encoding = "base32";
-            }
-            if (warcDigest.digestBytes == null) {
-                digest = Base64.decodeToArray(warcDigest.digestString, true);
-                if (digest != null && digest.length == digestAlgorithmLength) {
-                    warcDigest.digestBytes = digest;
-                    warcDigest.encoding = "base64";
-                }
+        // Detect the encoding from the length and alphabet of the digest.
+        String encoding = DigestEncoding.detectEncoding(warcDigest.digestString, digestAlgorithmLength);
+        if (encoding != null) {
+            warcDigest.encoding = encoding;
+            if (computedDigest != null
+                    && DigestEncoding.matches(warcDigest.digestString, encoding, computedDigest.digestBytes)) {
+                // Identical to the computed digest, no need to decode.
+                warcDigest.digestBytes = computedDigest.digestBytes;
+            } else {
+                warcDigest.digestBytes = DigestEncoding.decode(warcDigest.digestString, encoding);
             }
         }
         if (warcDigest.encoding == null) {
@@ -415,13 +573,7 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
             }
         }
         if (computedDigest.encoding != null) {
-            if ("base32".equals(computedDigest.encoding)) {
-                computedDigest.digestString = Base32.encodeArray(computedDigest.digestBytes);
-            } else if ("base64".equals(computedDigest.encoding)) {
-                computedDigest.digestString = Base64.encodeArray(computedDigest.digestBytes);
-            } else if ("base16".equals(computedDigest.encoding)) {
-                computedDigest.digestString = Base16.encodeArray(computedDigest.digestBytes);
-            }
+            computedDigest.digestString = DigestEncoding.encode(computedDigest.digestBytes, computedDigest.encoding);
         }
     }
 
@@ -442,7 +594,23 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
         if (!bClosed) {
             // Ensure input stream is at the end of the record payload.
             if (payload != null) {
+                if (reader.bHeaderScan) {
+                    bDataSkipped = reader.skipRecordData();
+                }
                 payload.close();
+            } else if (bFiltered && header.contentLength != null && header.contentLength > 0) {
+                bDataSkipped = reader.skipRecordData();
+                if (!bDataSkipped) {
+                    long remaining = header.contentLength;
+                    long skipped;
+                    while (remaining > 0 && (skipped = in.skip(remaining)) > 0) {
+                        remaining -= skipped;
+                    }
+                    if (remaining > 0) {
+                        // Payload length mismatch - Payload truncated
+                        addErrorDiagnosis(DiagnosisType.INVALID_DATA, "Payload length mismatch", "Payload truncated");
+                    }
+                }
             }
             payloadClosed();
             reader = null;
@@ -525,10 +693,15 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
 
     /**
      * Returns the <code>HttpHeader</code> object if identified in the payload,
-     * or null.
+     * or null. A deferred HTTP header is processed by the first call, unless
+     * the record has already been closed.
      * @return the <code>HttpHeader</code> object if identified or null
      */
     public HttpHeader getHttpHeader() {
+        if (httpHeaderType != 0 && payload != null) {
+            // Processes the deferred HTTP header.
+            payload.getPayloadHeaderWrapped();
+        }
         return httpHeader;
     }
 
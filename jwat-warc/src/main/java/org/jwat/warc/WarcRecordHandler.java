@@ -0,0 +1,40 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.IOException;
+
+/**
+ * Receives the records read by a <code>WarcSplitReader</code>.
+ * Records are handled concurrently by the reader threads, so
+ * implementations must be thread safe.
+ *
+ * @author nicl
+ */
+public interface WarcRecordHandler {
+
+    /**
+     * Handle a record. The record is closed by the caller when this
+     * method returns, so its payload must be consumed here.
+     * @param reader reader used by the calling thread
+     * @param record record read
+     * @throws IOException if an I/O error occurs while handling the record
+     */
+    public void handleRecord(WarcReader reader, WarcRecord record) throws IOException;
+
+}
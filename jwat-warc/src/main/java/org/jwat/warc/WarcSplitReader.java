@@ -0,0 +1,214 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+
+import org.jwat.archive.common.SplitReaderAbstract;
+import org.jwat.common.ValidationLevel;
+import org.jwat.gzip.GzipEntry;
+import org.jwat.gzip.GzipReader;
+import org.jwat.gzip.GzipScanner;
+
+/**
+ * Reads a WARC file in parallel by dividing it into byte ranges which are
+ * parsed on separate threads. Records are passed to a thread safe
+ * <code>WarcRecordHandler</code> with offsets relative to the start of
+ * the file.
+ * GZip compressed files are split at entry boundaries, found by scanning
+ * for entry headers which inflate without errors.
+ * Uncompressed files are split at record boundaries, found by scanning for
+ * a <code>WARC/</code> version line at the start of a line and checking
+ * that the Content-Length of the candidate record ends with the trailing
+ * newlines followed by another version line or EOF.
+ * Boundaries are verified before any record is handled, as described in
+ * <code>SplitReaderAbstract</code>.
+ *
+ * @author nicl
+ */
+public class WarcSplitReader extends SplitReaderAbstract<WarcRecordHandler> {
+
+    /** WARC version line prefix. */
+    protected static final byte[] MAGIC = WarcConstants.WARC_MAGIC_HEADER.getBytes();
+
+    /**
+     * Construct a split reader using the specified number of threads and a
+     * default range size of DEFAULT_SPLIT_SIZE.
+     * @param file WARC file
+     * @param threads number of reader threads
+     * @throws IOException if an I/O error occurs while examining the file
+     */
+    public WarcSplitReader(File file, int threads) throws IOException {
+        this(file, newExecutor(threads), DEFAULT_SPLIT_SIZE);
+        bOwnExecutor = true;
+    }
+
+    /**
+     * Construct a split reader using the supplied executor.
+     * The executor is not shutdown when the reader is closed.
+     * @param file WARC file
+     * @param executor executor used to read ranges
+     * @param split_size size of the byte ranges
+     * @throws IOException if an I/O error occurs while examining the file
+     */
+    public WarcSplitReader(File file, ExecutorService executor, long split_size) throws IOException {
+        super(file, executor, split_size);
+    }
+
+    /**
+     * Create and configure the reader used to read from a record boundary.
+     * Override to change the reader settings, each thread uses its own reader.
+     * @param offset record boundary
+     * @return reader positioned at the record boundary
+     * @throws IOException if an I/O error occurs while creating the reader
+     */
+    protected WarcReader createReader(long offset) throws IOException {
+        if (bCompressed) {
+            return WarcReaderFactory.getReaderCompressed(openAt(offset), DEFAULT_BUFFER_SIZE);
+        } else {
+            return new WarcReaderUncompressed(openStream(offset, WarcReaderFactory.PUSHBACK_BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Create a reader which only frames records, used when looking for
+     * and verifying record boundaries.
+     * @param offset record boundary
+     * @return reader positioned at the record boundary
+     * @throws IOException if an I/O error occurs while creating the reader
+     */
+    protected WarcReader createFramingReader(long offset) throws IOException {
+        WarcReader reader = new WarcReaderUncompressed(openStream(offset, WarcReaderFactory.PUSHBACK_BUFFER_SIZE));
+        reader.setValidationLevel(ValidationLevel.NONE);
+        return reader;
+    }
+
+    @Override
+    protected long findRecordStart(long from, long to) throws IOException {
+        if (bCompressed) {
+            InputStream in = openAt(from);
+            try {
+                return GzipScanner.findEntry(in, from, to);
+            } finally {
+                in.close();
+            }
+        }
+        return super.findRecordStart(from, to);
+    }
+
+    @Override
+    protected boolean isCandidateLine(byte[] line, int len) {
+        if (len < MAGIC.length) {
+            return false;
+        }
+        for (int i=0; i<MAGIC.length; ++i) {
+            if (line[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean isRecordStart(long offset) throws IOException {
+        WarcReader reader = createFramingReader(offset);
+        try {
+            WarcRecord record = reader.getNextRecord();
+            if (record == null || record.getStartOffset() != offset
+                    || !record.header.bValidVersion || record.header.contentLength == null) {
+                return false;
+            }
+            record.close();
+            if (record.trailingNewlines != WarcConstants.WARC_RECORD_TRAILING_NEWLINES) {
+                return false;
+            }
+            long end = offset + record.getConsumed();
+            if (end == length) {
+                return true;
+            }
+            record = reader.getNextRecord();
+            return record != null && record.getStartOffset() == end;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Override
+    protected long nextRecordStart(long from, long limit) throws IOException {
+        long offset;
+        if (bCompressed) {
+            GzipReader reader = new GzipReader(openAt(from));
+            try {
+                GzipEntry entry;
+                while ((entry = reader.getNextEntry()) != null) {
+                    offset = from + entry.getStartOffset();
+                    if (offset >= limit) {
+                        return offset;
+                    }
+                    reader.skipEntry();
+                }
+            } finally {
+                reader.close();
+            }
+        } else {
+            WarcReader reader = createFramingReader(from);
+            try {
+                WarcRecord record;
+                while ((record = reader.getNextRecord()) != null) {
+                    offset = record.getStartOffset();
+                    if (offset >= limit) {
+                        return offset;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return length;
+    }
+
+    @Override
+    protected long readRange(long from, long to, WarcRecordHandler handler) throws IOException {
+        WarcReader reader = createReader(from);
+        long records = 0;
+        try {
+            WarcRecord record;
+            long offset;
+            while ((record = reader.getNextRecord()) != null) {
+                if (bCompressed) {
+                    // Entry offsets are relative to the start of the range.
+                    record.header.startOffset += from;
+                }
+                offset = record.getStartOffset();
+                if (offset >= to) {
+                    break;
+                }
+                handler.handleRecord(reader, record);
+                record.close();
+                ++records;
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+}
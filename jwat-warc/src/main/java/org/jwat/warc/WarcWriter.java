@@ -285,6 +285,8 @@ public abstract class WarcWriter implements Closeable {
      */
     protected byte[] writeHeader_impl(WarcRecord record) throws IOException {
         header = record.header;
+        // Fields of a lazily parsed header are parsed before they are written.
+        header.parseFields();
         headerContentLength = header.contentLength;
         if (headerContentLength == null && header.contentLengthStr != null) {
             try {
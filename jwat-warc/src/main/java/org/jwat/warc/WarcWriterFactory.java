@@ -19,6 +19,8 @@ package org.jwat.warc;
 
 import java.io.OutputStream;
 
+import org.jwat.common.CompressionCodec;
+
 /**
  * Factory used for creating <code>WarcWriter</code> instances.
  * Factory methods are available for creating <code>WarcWriter</code>
@@ -146,4 +148,72 @@ public class WarcWriterFactory {
         return new WarcWriterCompressed(out, buffer_size);
     }
 
+    /**
+     * Creates a new buffered compressing <code>WarcWriter</code> from an
+     * <code>OutputStream</code>. Each record is compressed by one of the
+     * supplied number of threads and appended in the order it was written.
+     * @param out output stream to write to
+     * @param buffer_size buffer size to use
+     * @param threads number of compressing threads
+     * @return buffered parallel compressing <code>WarcWriter</code>
+     */
+    public static WarcWriter getWriterCompressedParallel(OutputStream out, int buffer_size, int threads) {
+        if (out == null) {
+            throw new IllegalArgumentException(
+                    "The 'out' parameter is null!");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'buffer_size' parameter is less than or equal to zero!");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'threads' parameter is less than or equal to zero!");
+        }
+        return new WarcWriterCompressed(out, buffer_size, threads);
+    }
+
+    /**
+     * Creates a new unbuffered <code>WarcWriter</code> from an
+     * <code>OutputStream</code> compressing records with the supplied codec.
+     * @param out output stream to write to
+     * @param codec compression codec
+     * @return unbuffered compressing <code>WarcWriter</code>
+     */
+    public static WarcWriter getWriterCompressed(OutputStream out, CompressionCodec codec) {
+        if (out == null) {
+            throw new IllegalArgumentException(
+                    "The 'out' parameter is null!");
+        }
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "The 'codec' parameter is null!");
+        }
+        return new WarcWriterCompressed(out, codec);
+    }
+
+    /**
+     * Creates a new buffered <code>WarcWriter</code> from an
+     * <code>OutputStream</code> compressing records with the supplied codec.
+     * @param out output stream to write to
+     * @param buffer_size buffer size to use
+     * @param codec compression codec
+     * @return buffered compressing <code>WarcWriter</code>
+     */
+    public static WarcWriter getWriterCompressed(OutputStream out, int buffer_size, CompressionCodec codec) {
+        if (out == null) {
+            throw new IllegalArgumentException(
+                    "The 'out' parameter is null!");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'buffer_size' parameter is less than or equal to zero!");
+        }
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "The 'codec' parameter is null!");
+        }
+        return new WarcWriterCompressed(out, buffer_size, codec);
+    }
+
 }
@@ -0,0 +1,310 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.CompressedEntry;
+import org.jwat.common.CompressedReader;
+import org.jwat.common.CompressedWriter;
+import org.jwat.common.CompressionCodec;
+import org.jwat.common.CompressionCodecs;
+import org.jwat.common.FixedLengthInputStream;
+import org.jwat.gzip.GzipCodec;
+
+@RunWith(JUnit4.class)
+public class TestWarcCompressionCodec {
+
+    @Test
+    public void test_warc_compressioncodec() throws IOException {
+        StoredCodec codec = new StoredCodec();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TestWarcWriterCompressedParallel.copy(WarcWriterFactory.getWriterCompressed(out, 8192, codec));
+        byte[] bytes = out.toByteArray();
+        Assert.assertTrue(Arrays.equals(StoredCodec.MAGIC, Arrays.copyOf(bytes, StoredCodec.MAGIC.length)));
+
+        Assert.assertTrue(CompressionCodecs.register(codec));
+        Assert.assertFalse(CompressionCodecs.register(new StoredCodec()));
+        Assert.assertSame(codec, CompressionCodecs.getCodec(StoredCodec.NAME));
+        Assert.assertSame(GzipCodec.getDefault(), CompressionCodecs.getCodec(GzipCodec.NAME));
+
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> ids = new ArrayList<String>();
+        WarcReader reader = WarcReaderFactory.getReader(new ByteArrayInputStream(bytes));
+        Assert.assertTrue(reader.isCompressed());
+        Assert.assertSame(codec, ((WarcReaderCompressed)reader).getCompressionCodec());
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            offsets.add(record.getStartOffset());
+            ids.add(record.header.warcRecordIdStr);
+        }
+        reader.close();
+        Assert.assertEquals(822, offsets.size());
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertEquals(bytes.length, reader.getConsumed());
+
+        WarcReaderCompressed readerCompressed = WarcReaderFactory.getReaderCompressed();
+        Assert.assertSame(GzipCodec.getDefault(), readerCompressed.getCompressionCodec());
+        readerCompressed.setCompressionCodec(codec);
+        for (int i=0; i<offsets.size(); i+=37) {
+            int offset = offsets.get(i).intValue();
+            record = readerCompressed.getNextRecordFrom(
+                    new ByteArrayInputStream(bytes, offset, bytes.length - offset), offset, 1024);
+            Assert.assertEquals(ids.get(i), record.header.warcRecordIdStr);
+            Assert.assertEquals(offset, record.getStartOffset());
+        }
+        readerCompressed.close();
+
+        readerCompressed = WarcReaderFactory.getReaderCompressed(codec, new ByteArrayInputStream(bytes), 8192);
+        int records = 0;
+        while (readerCompressed.getNextRecord() != null) {
+            ++records;
+        }
+        readerCompressed.close();
+        Assert.assertEquals(822, records);
+        try {
+            readerCompressed = WarcReaderFactory.getReaderCompressed(codec, new ByteArrayInputStream(bytes));
+            readerCompressed.setCompressionCodec(codec);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            WarcReaderFactory.getReaderCompressed(null, new ByteArrayInputStream(bytes));
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcWriterFactory.getWriterCompressed(out, (CompressionCodec)null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcWriterFactory.getWriterCompressed(out, 0, codec);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Test codec storing each record uncompressed after a magic number and
+     * its length.
+     */
+    static class StoredCodec implements CompressionCodec {
+
+        static final String NAME = "stored";
+
+        static final byte[] MAGIC = {'J', 'W', 'S', '1'};
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public boolean isCompressed(ByteCountingPushBackInputStream pbin) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            return pbin.peek(magic) == MAGIC.length && Arrays.equals(MAGIC, magic);
+        }
+
+        @Override
+        public CompressedReader newReader(InputStream in) {
+            return new StoredReader(in);
+        }
+
+        @Override
+        public CompressedWriter newWriter(OutputStream out) {
+            return new StoredWriter(out);
+        }
+
+    }
+
+    static class StoredReader implements CompressedReader {
+
+        ByteCountingPushBackInputStream pbin;
+
+        StoredEntry entry;
+
+        long consumed;
+
+        StoredReader(InputStream in) {
+            pbin = new ByteCountingPushBackInputStream(in, 16);
+        }
+
+        @Override
+        public CompressedEntry getNextEntry() throws IOException {
+            if (entry != null) {
+                entry.close();
+                entry = null;
+            }
+            long startOffset = pbin.getConsumed();
+            int b = pbin.read();
+            if (b == -1) {
+                return null;
+            }
+            pbin.unread(b);
+            DataInputStream din = new DataInputStream(pbin);
+            byte[] magic = new byte[MAGIC_LENGTH];
+            din.readFully(magic);
+            if (!Arrays.equals(StoredCodec.MAGIC, magic)) {
+                throw new IOException("Invalid magic number!");
+            }
+            entry = new StoredEntry(this, startOffset, din.readLong());
+            return entry;
+        }
+
+        static final int MAGIC_LENGTH = StoredCodec.MAGIC.length;
+
+        @Override
+        public long getStartOffset() {
+            return entry != null ? entry.startOffset : -1;
+        }
+
+        @Override
+        public long getOffset() {
+            return pbin.getConsumed();
+        }
+
+        @Override
+        public long getConsumed() {
+            return consumed;
+        }
+
+        @Override
+        public boolean isCompliant() {
+            return true;
+        }
+
+        @Override
+        public void release() throws IOException {
+            if (entry != null) {
+                entry.close();
+                entry = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            release();
+            pbin.close();
+        }
+
+    }
+
+    static class StoredEntry implements CompressedEntry {
+
+        StoredReader reader;
+
+        long startOffset;
+
+        long consumed;
+
+        InputStream in;
+
+        StoredEntry(StoredReader reader, long startOffset, long length) {
+            this.reader = reader;
+            this.startOffset = startOffset;
+            in = new FixedLengthInputStream(reader.pbin, length);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        @Override
+        public long getConsumed() {
+            return consumed;
+        }
+
+        @Override
+        public boolean isCompliant() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                in.close();
+                consumed = reader.pbin.getConsumed() - startOffset;
+                reader.consumed += consumed;
+                reader = null;
+            }
+        }
+
+    }
+
+    static class StoredWriter implements CompressedWriter {
+
+        DataOutputStream out;
+
+        ByteArrayOutputStream entry;
+
+        StoredWriter(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        public OutputStream openEntry() throws IOException {
+            closeEntry();
+            entry = new ByteArrayOutputStream();
+            return entry;
+        }
+
+        @Override
+        public void closeEntry() throws IOException {
+            if (entry != null) {
+                out.write(StoredCodec.MAGIC);
+                out.writeLong(entry.size());
+                entry.writeTo(out);
+                entry = null;
+            }
+        }
+
+        @Override
+        public boolean isCompliant() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeEntry();
+            out.flush();
+        }
+
+    }
+
+}
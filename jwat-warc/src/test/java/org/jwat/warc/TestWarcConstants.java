@@ -37,6 +37,28 @@ public class TestWarcConstants {
         Assert.assertEquals(WarcConstants.RT_INDEX_OF_LAST, WarcConstants.RT_IDX_STRINGS.length);
         Assert.assertEquals(WarcConstants.RT_NUMBER, WarcConstants.recordTypeIdxMap.size());
         Assert.assertEquals(WarcConstants.RT_INDEX_OF_LAST, WarcConstants.field_policy.length);
+
+        Assert.assertEquals(WarcConstants.FN_NUMBER, WarcConstants.fieldNameIdxTable.size());
+        Assert.assertEquals(WarcConstants.RT_NUMBER, WarcConstants.recordTypeIdxTable.size());
+        Assert.assertEquals(WarcConstants.truncatedTypeIdxMap.size(), WarcConstants.truncatedTypeIdxTable.size());
+        Assert.assertEquals(WarcConstants.profileIdxMap.size(), WarcConstants.profileIdxTable.size());
+        for (int i=1; i<WarcConstants.FN_IDX_STRINGS.length; ++i) {
+            String name = WarcConstants.FN_IDX_STRINGS[i];
+            Assert.assertEquals(i, WarcConstants.fieldNameIdxTable.get(name.toUpperCase()));
+            Assert.assertEquals(WarcConstants.fieldNameIdxMap.get(name.toLowerCase()).intValue(),
+                    WarcConstants.fieldNameIdxTable.get(name));
+            Assert.assertEquals(name.toLowerCase(), WarcConstants.fieldNameIdxTable.getKey(name));
+        }
+        for (int i=1; i<WarcConstants.RT_IDX_STRINGS.length; ++i) {
+            Assert.assertEquals(i, WarcConstants.recordTypeIdxTable.get(WarcConstants.RT_IDX_STRINGS[i].toUpperCase()));
+        }
+        for (int i=1; i<WarcConstants.TT_IDX_STRINGS.length; ++i) {
+            Assert.assertEquals(i, WarcConstants.truncatedTypeIdxTable.get(WarcConstants.TT_IDX_STRINGS[i]));
+        }
+        for (int i=1; i<WarcConstants.P_IDX_STRINGS.length; ++i) {
+            Assert.assertEquals(i, WarcConstants.profileIdxTable.get(WarcConstants.P_IDX_STRINGS[i].toUpperCase()));
+        }
+        Assert.assertEquals(-1, WarcConstants.fieldNameIdxTable.get("WARC-Unknown"));
     }
 
 }
@@ -0,0 +1,90 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestWarcDateParser {
+
+    @Test
+    public void test_warcdateparser() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat(WarcConstants.WARC_DATE_FORMAT);
+        dateFormat.setLenient(false);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(1);
+        String dateStr;
+        Date expected;
+        for (int i=0; i<20000; ++i) {
+            dateStr = String.format("%04d-%02d-%02dT%02d:%02d:%02dZ",
+                    1960 + random.nextInt(100), random.nextInt(14), random.nextInt(33),
+                    random.nextInt(25), random.nextInt(61), random.nextInt(61));
+            if (random.nextInt(10) == 0) {
+                dateStr = dateStr.toLowerCase();
+            }
+            try {
+                expected = dateFormat.parse(dateStr.toUpperCase());
+                if (expected.getTime() <= 0) {
+                    expected = null;
+                }
+            } catch (Exception e) {
+                expected = null;
+            }
+            Assert.assertEquals(expected, WarcDateParser.getDate(dateStr));
+            // Twice to hit the cache.
+            Assert.assertEquals(expected, WarcDateParser.getDate(dateStr));
+            long millis = (expected != null) ? expected.getTime() : -1;
+            Assert.assertEquals(millis, WarcDateParser.getDateMillis(dateStr));
+            byte[] bytes = ("_" + dateStr + "_").getBytes();
+            Assert.assertEquals(millis, WarcDateParser.getDateMillis(bytes, 1, dateStr.length()));
+            Assert.assertEquals(millis, WarcDateParser.getDateMillis(bytes, 1, dateStr.length()));
+        }
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis((String)null));
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis(null, 0, 20));
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis("2011-12-24T19:30:00"));
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis("2011-12-24 19:30:00Z"));
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis("2011/12-24T19:30:00Z"));
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis("2011-12-24T19:30:00X"));
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis("2011-12-24T19-30:00Z"));
+        Assert.assertEquals(-1, WarcDateParser.getDateMillis("1970-01-01T00:00:00Z"));
+        Assert.assertEquals(1000, WarcDateParser.getDateMillis("1970-01-01T00:00:01Z"));
+        Assert.assertEquals(1000, WarcDateParser.getDateMillis("1970-01-01T00:00:01Z".getBytes(), 0, 20));
+
+        WarcHeader header = WarcHeader.initHeader(8192, null, null, new WarcFieldParsers(), null, null);
+        Assert.assertEquals(-1, header.getWarcDateMillis());
+        Assert.assertEquals(-1, header.getWarcRefersToDateMillis());
+        header.warcDateStr = "2011-12-24T19:30:00Z";
+        header.warcRefersToDateStr = "2011-12-24T19:30:01Z";
+        Assert.assertEquals(1324755000000L, header.getWarcDateMillis());
+        Assert.assertEquals(1324755001000L, header.getWarcRefersToDateMillis());
+        header.warcDate = new Date(1000);
+        header.warcRefersToDate = new Date(2000);
+        Assert.assertEquals(1000, header.getWarcDateMillis());
+        Assert.assertEquals(2000, header.getWarcRefersToDateMillis());
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.Uri;
+
+@RunWith(JUnit4.class)
+public class TestWarcHeaderLazyParsing {
+
+    static final String[] FILES = {
+        "IAH-20080430204825-00000-blackbook.warc.gz",
+        "valid-warcfile-duplicate-concurrentto.warc",
+        "valid-warcfile-fields-continuation.warc",
+        "valid-warcfile-fields-metainfo.warc",
+        "valid-warcfile-fields-warcinfo.warc",
+        "invalid-warcfile-fields-invalidformat.warc",
+        "invalid-warcfile-fields-empty.warc"
+    };
+
+    @Test
+    public void test_warcheader_lazyparsing() throws IOException {
+        for (String file : FILES) {
+            WarcReader eagerReader = WarcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(file));
+            WarcReader lazyReader = WarcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(file));
+            Assert.assertFalse(lazyReader.getLazyHeaderParsingEnabled());
+            lazyReader.setLazyHeaderParsingEnabled(true);
+            Assert.assertTrue(lazyReader.getLazyHeaderParsingEnabled());
+            WarcRecord eager;
+            WarcRecord lazy;
+            int records = 0;
+            while ((eager = eagerReader.getNextRecord()) != null) {
+                lazy = lazyReader.getNextRecord();
+                Assert.assertNotNull(lazy);
+                WarcHeader e = eager.header;
+                WarcHeader l = lazy.header;
+                // Eagerly parsed fields.
+                Assert.assertEquals(e.warcTypeIdx, l.warcTypeIdx);
+                Assert.assertEquals(e.contentLength, l.contentLength);
+                Assert.assertEquals(e.contentTypeStr, l.contentTypeStr);
+                // Deferred fields are only parsed when requested.
+                if (l.warcRecordIdStr != null && l.warcRecordIdStr.trim().length() > 0) {
+                    Assert.assertNull(l.warcRecordIdUri);
+                }
+                if (l.warcDateStr != null && l.warcDateStr.trim().length() > 0) {
+                    Assert.assertNull(l.warcDate);
+                }
+                eager.close();
+                lazy.close();
+                if (eager.isCompliant()) {
+                    Assert.assertTrue(lazy.isCompliant());
+                }
+                // Parsing the fields later reports to the record's diagnostics.
+                int errors = lazy.diagnostics.getErrors().size();
+                assertUriEquals(e.warcRecordIdUri, l.getWarcRecordIdUri());
+                Assert.assertEquals(e.warcDate, l.getWarcDate());
+                Assert.assertEquals(e.warcInetAddress, l.getWarcInetAddress());
+                assertUriEquals(e.warcRefersToUri, l.getWarcRefersToUri());
+                assertUriEquals(e.warcTargetUriUri, l.getWarcTargetUriUri());
+                assertUriEquals(e.warcWarcinfoIdUri, l.getWarcWarcinfoIdUri());
+                assertUriEquals(e.warcProfileUri, l.getWarcProfileUri());
+                assertUriEquals(e.warcSegmentOriginIdUrl, l.getWarcSegmentOriginIdUrl());
+                assertUriEquals(e.warcRefersToTargetUriUri, l.getWarcRefersToTargetUriUri());
+                Assert.assertEquals(e.warcRefersToDate, l.getWarcRefersToDate());
+                List<WarcConcurrentTo> eList = e.warcConcurrentToList;
+                List<WarcConcurrentTo> lList = l.getWarcConcurrentToList();
+                Assert.assertEquals(eList.size(), lList.size());
+                for (int i=0; i<eList.size(); ++i) {
+                    Assert.assertEquals(eList.get(i).warcConcurrentToStr, lList.get(i).warcConcurrentToStr);
+                    assertUriEquals(eList.get(i).warcConcurrentToUri, lList.get(i).warcConcurrentToUri);
+                }
+                l.parseFields();
+                if (eager.isCompliant()) {
+                    Assert.assertEquals(errors, lazy.diagnostics.getErrors().size());
+                }
+                Assert.assertTrue(lazy.diagnostics.getErrors().size() <= eager.diagnostics.getErrors().size());
+                // Getters on an eagerly parsed header return the fields.
+                Assert.assertSame(e.warcRecordIdUri, e.getWarcRecordIdUri());
+                Assert.assertSame(e.warcDate, e.getWarcDate());
+                ++records;
+            }
+            Assert.assertNull(lazyReader.getNextRecord());
+            Assert.assertTrue(records > 0);
+            eagerReader.close();
+            lazyReader.close();
+        }
+    }
+
+    @Test
+    public void test_warcheader_lazyparsing_invalid() throws IOException {
+        WarcReader reader = WarcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream("invalid-warcfile-fields-invalidformat.warc"));
+        reader.setLazyHeaderParsingEnabled(true);
+        WarcRecord record;
+        int deferredErrors = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            int errors = record.diagnostics.getErrors().size();
+            record.header.parseFields();
+            deferredErrors += record.diagnostics.getErrors().size() - errors;
+        }
+        reader.close();
+        Assert.assertTrue(deferredErrors > 0);
+    }
+
+    @Test
+    public void test_warcheader_lazyparsing_writeheader() throws IOException {
+        String file = "IAH-20080430204825-00000-blackbook.warc.gz";
+        WarcReader eagerReader = WarcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(file));
+        WarcReader lazyReader = WarcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(file));
+        lazyReader.setLazyHeaderParsingEnabled(true);
+        WarcRecord eager;
+        WarcRecord lazy;
+        int records = 0;
+        while ((eager = eagerReader.getNextRecord()) != null) {
+            lazy = lazyReader.getNextRecord();
+            Assert.assertNotNull(lazy);
+            // Writing a lazily read header must not reuse the raw URI values.
+            byte[] eagerBytes = WarcWriterFactory.getWriter(new ByteArrayOutputStream(), false).writeHeader(eager);
+            byte[] lazyBytes = WarcWriterFactory.getWriter(new ByteArrayOutputStream(), false).writeHeader(lazy);
+            String lazyStr = new String(lazyBytes, "ISO-8859-1");
+            Assert.assertEquals(-1, lazyStr.indexOf("<<"));
+            Assert.assertEquals(new String(eagerBytes, "ISO-8859-1"), lazyStr);
+            eager.close();
+            lazy.close();
+            ++records;
+        }
+        Assert.assertNull(lazyReader.getNextRecord());
+        Assert.assertTrue(records > 0);
+        eagerReader.close();
+        lazyReader.close();
+    }
+
+    static void assertUriEquals(Uri expected, Uri uri) {
+        if (expected == null) {
+            Assert.assertNull(uri);
+        } else {
+            Assert.assertNotNull(uri);
+            Assert.assertEquals(expected.toString(), uri.toString());
+        }
+    }
+
+}
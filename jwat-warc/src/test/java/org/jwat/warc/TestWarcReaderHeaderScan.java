@@ -0,0 +1,172 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.gzip.GzipEntry;
+import org.jwat.gzip.GzipWriter;
+
+@RunWith(JUnit4.class)
+public class TestWarcReaderHeaderScan {
+
+    @Test
+    public void test_warcreader_headerscan() throws IOException {
+        List<byte[]> records = new ArrayList<byte[]>();
+        WarcReader reader = WarcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream("IAH-20080430204825-00000-blackbook.warc.gz"));
+        WarcRecord record;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        while ((record = reader.getNextRecord()) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(record.header.headerBytes);
+            if (record.getPayload() != null) {
+                InputStream in = record.getPayload().getInputStreamComplete();
+                while ((read = in.read(tmpBuf)) != -1) {
+                    out.write(tmpBuf, 0, read);
+                }
+            }
+            out.write("\r\n\r\n".getBytes());
+            records.add(out.toByteArray());
+        }
+        reader.close();
+        Assert.assertEquals(822, records.size());
+
+        // Uncompressed, unread payloads are skipped by seeking.
+        File file = File.createTempFile("jwat-", ".warc");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        for (int i=0; i<records.size(); ++i) {
+            out.write(records.get(i));
+        }
+        out.close();
+        assertHeaderScan(file, 822, false);
+
+        // Compressed with the compressed length subfield, skipped without
+        // inflating the payloads.
+        File gzFile = File.createTempFile("jwat-", ".warc.gz");
+        gzFile.deleteOnExit();
+        out = new FileOutputStream(gzFile);
+        GzipWriter writer = new GzipWriter(out);
+        writer.setCompressedLengthEnabled(true);
+        writeEntries(writer, records);
+        writer.close();
+        assertHeaderScan(gzFile, 822, true);
+
+        // Compressed without the compressed length subfield, inflated and
+        // discarded.
+        out = new FileOutputStream(gzFile);
+        writer = new GzipWriter(out);
+        writeEntries(writer, records);
+        writer.close();
+        assertHeaderScan(gzFile, 822, false);
+
+        // Truncated last record is still reported.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - records.get(records.size() - 1).length / 2);
+        raf.close();
+        List<Object[]> expected = readRecords(WarcReaderFactory.getReader(new FileInputStream(file), 8192));
+        Assert.assertFalse((Boolean)expected.get(expected.size() - 1)[2]);
+        raf = new RandomAccessFile(file, "r");
+        reader = WarcReaderFactory.getHeaderScanReader(raf, 8192);
+        assertRecords(expected, readRecords(reader));
+        raf.close();
+    }
+
+    static void writeEntries(GzipWriter writer, List<byte[]> records) throws IOException {
+        GzipEntry entry;
+        for (int i=0; i<records.size(); ++i) {
+            entry = new GzipEntry();
+            writer.writeEntryHeader(entry);
+            OutputStream out = entry.getOutputStream();
+            out.write(records.get(i));
+            out.close();
+            entry.close();
+        }
+    }
+
+    static void assertHeaderScan(File file, int count, boolean bSkipped) throws IOException {
+        List<Object[]> expected = readRecords(WarcReaderFactory.getReader(new FileInputStream(file), 8192));
+        Assert.assertEquals(count, expected.size());
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        WarcReader reader = WarcReaderFactory.getHeaderScanReader(raf, 8192);
+        Assert.assertTrue(reader.isHeaderScanEnabled());
+        reader.setBlockDigestEnabled(true);
+        reader.setPayloadDigestEnabled(true);
+        WarcRecord record;
+        List<Object[]> actual = new ArrayList<Object[]>();
+        int skipped = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            actual.add(new Object[] {record.getStartOffset(), new String(record.header.headerBytes), record.isCompliant()});
+            Assert.assertNull(record.computedBlockDigest);
+            Assert.assertNull(record.computedPayloadDigest);
+            if (record.bDataSkipped) {
+                ++skipped;
+            }
+        }
+        reader.close();
+        assertRecords(expected, actual);
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertEquals(raf.length(), raf.getFilePointer());
+        raf.close();
+        if (bSkipped) {
+            Assert.assertEquals(count, skipped);
+        } else {
+            Assert.assertEquals(0, skipped);
+        }
+        try {
+            WarcReaderFactory.getHeaderScanReader(null, 8192);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    static List<Object[]> readRecords(WarcReader reader) throws IOException {
+        List<Object[]> records = new ArrayList<Object[]>();
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            records.add(new Object[] {record.getStartOffset(), new String(record.header.headerBytes), record.isCompliant()});
+        }
+        reader.close();
+        return records;
+    }
+
+    static void assertRecords(List<Object[]> expected, List<Object[]> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); ++i) {
+            Assert.assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.Diagnosis;
+import org.jwat.common.DiagnosisType;
+import org.jwat.common.ValidationLevel;
+
+@RunWith(JUnit4.class)
+public class TestWarcReaderValidationLevel {
+
+    static final String[] FILES = {
+        "IAH-20080430204825-00000-blackbook.warc.gz",
+        "valid-warcfile-upper-lower-case.warc",
+        "valid-warcfile-fields-continuation.warc",
+        "invalid-warcfile-fields-invalidformat.warc",
+        "invalid-warcfile-fields-empty.warc",
+        "invalid-warcfile-record-then-garbage.warc",
+        "invalid-warcfile-encoding-headers.warc.gz"
+    };
+
+    @Test
+    public void test_warcreader_validationlevel() throws IOException {
+        for (String file : FILES) {
+            List<Object[]> full = readRecords(file, ValidationLevel.FULL);
+            int fullErrors = errors;
+            List<Object[]> structural = readRecords(file, ValidationLevel.STRUCTURAL);
+            int structuralErrors = errors;
+            List<Object[]> none = readRecords(file, ValidationLevel.NONE);
+            int noneErrors = errors;
+            Assert.assertTrue(full.size() > 0);
+            Assert.assertEquals(full.size(), structural.size());
+            Assert.assertEquals(full.size(), none.size());
+            for (int i=0; i<full.size(); ++i) {
+                Assert.assertArrayEquals(full.get(i), structural.get(i));
+                Assert.assertArrayEquals(full.get(i), none.get(i));
+            }
+            Assert.assertTrue(structuralErrors <= fullErrors);
+            Assert.assertTrue(noneErrors <= structuralErrors);
+        }
+        WarcReader reader = WarcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream(FILES[0]));
+        Assert.assertEquals(ValidationLevel.FULL, reader.getValidationLevel());
+        reader.setValidationLevel(ValidationLevel.NONE);
+        Assert.assertEquals(ValidationLevel.NONE, reader.getValidationLevel());
+        try {
+            reader.setValidationLevel(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        reader.close();
+    }
+
+    @Test
+    public void test_warcreader_validationlevel_diagnoses() throws IOException {
+        readRecords("invalid-warcfile-fields-empty.warc", ValidationLevel.FULL);
+        Assert.assertTrue(mandatoryMissing > 0);
+        readRecords("invalid-warcfile-fields-empty.warc", ValidationLevel.STRUCTURAL);
+        Assert.assertEquals(0, mandatoryMissing);
+        readRecords("invalid-warcfile-record-then-garbage.warc", ValidationLevel.FULL);
+        int fullErrors = errors;
+        Assert.assertTrue(fullErrors > 0);
+        readRecords("invalid-warcfile-record-then-garbage.warc", ValidationLevel.NONE);
+        Assert.assertTrue(errors < fullErrors);
+    }
+
+    @Test
+    public void test_warcreader_validationlevel_fields() throws IOException {
+        // The validation level does not defer the parsing of the fields.
+        WarcReader reader = WarcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream(FILES[0]));
+        reader.setValidationLevel(ValidationLevel.STRUCTURAL);
+        WarcRecord record;
+        int records = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            Assert.assertNull(record.header.parsePending);
+            Assert.assertNotNull(record.header.warcRecordIdUri);
+            Assert.assertNotNull(record.header.warcDate);
+            record.close();
+            ++records;
+        }
+        reader.close();
+        Assert.assertTrue(records > 0);
+        // Duplicate fields are not diagnosed at NONE.
+        Assert.assertTrue(countDuplicates(ValidationLevel.STRUCTURAL) > 0);
+        Assert.assertEquals(0, countDuplicates(ValidationLevel.NONE));
+    }
+
+    int countDuplicates(ValidationLevel level) throws IOException {
+        WarcReader reader = WarcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream("invalid-warcfile-duplicate-fields.warc"));
+        reader.setValidationLevel(level);
+        WarcRecord record;
+        int duplicates = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            for (Diagnosis diagnosis : record.diagnostics.getErrors()) {
+                if (diagnosis.type == DiagnosisType.DUPLICATE) {
+                    ++duplicates;
+                }
+            }
+        }
+        reader.close();
+        return duplicates;
+    }
+
+    int errors;
+
+    int mandatoryMissing;
+
+    /**
+     * Read all the records of a file and return the framing and the fields
+     * which must not depend on the validation level.
+     */
+    List<Object[]> readRecords(String file, ValidationLevel level) throws IOException {
+        WarcReader reader = WarcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(file));
+        reader.setValidationLevel(level);
+        List<Object[]> records = new ArrayList<Object[]>();
+        WarcRecord record;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        errors = 0;
+        mandatoryMissing = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (record.getPayload() != null) {
+                InputStream in = record.getPayload().getInputStreamComplete();
+                while ((read = in.read(tmpBuf)) != -1) {
+                    out.write(tmpBuf, 0, read);
+                }
+            }
+            record.close();
+            WarcHeader header = record.header;
+            records.add(new Object[] {
+                    record.getStartOffset(),
+                    record.getConsumed(),
+                    header.warcTypeIdx,
+                    header.warcRecordIdStr,
+                    header.contentLength,
+                    header.contentTypeStr,
+                    (header.getWarcDate() != null) ? header.getWarcDate().getTime() : null,
+                    (header.getWarcTargetUriUri() != null) ? header.getWarcTargetUriUri().toString() : null,
+                    record.getHttpHeader() != null,
+                    new String(out.toByteArray(), "ISO-8859-1")
+            });
+            errors += record.diagnostics.getErrors().size();
+            if (header.bMandatoryMissing) {
+                ++mandatoryMissing;
+            }
+        }
+        errors += reader.diagnostics.getErrors().size();
+        reader.close();
+        return records;
+    }
+
+}
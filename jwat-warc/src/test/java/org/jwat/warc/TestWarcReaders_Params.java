@@ -77,6 +77,26 @@ public class TestWarcReaders_Params {
             Assert.assertFalse(readerUncompressed.setPayloadDigestAlgorithm("shaft1"));
             Assert.assertNull(readerUncompressed.getPayloadDigestAlgorithm());
 
+            Assert.assertNull(readerUncompressed.getBlockDigestAlgorithms());
+            Assert.assertTrue(readerUncompressed.setBlockDigestAlgorithms(new String[] {"sha1", "sha-256"}));
+            Assert.assertArrayEquals(new String[] {"sha1", "sha-256"}, readerUncompressed.getBlockDigestAlgorithms());
+            Assert.assertEquals("sha1", readerUncompressed.getBlockDigestAlgorithm());
+            Assert.assertFalse(readerUncompressed.setBlockDigestAlgorithms(new String[] {"md5", "shaft1"}));
+            Assert.assertArrayEquals(new String[] {"sha1", "sha-256"}, readerUncompressed.getBlockDigestAlgorithms());
+            Assert.assertTrue(readerUncompressed.setBlockDigestAlgorithm("md5"));
+            Assert.assertNull(readerUncompressed.getBlockDigestAlgorithms());
+            Assert.assertTrue(readerUncompressed.setBlockDigestAlgorithms(null));
+            Assert.assertNull(readerUncompressed.getBlockDigestAlgorithm());
+
+            Assert.assertNull(readerUncompressed.getPayloadDigestAlgorithms());
+            Assert.assertTrue(readerUncompressed.setPayloadDigestAlgorithms(new String[] {"sha1", "md5"}));
+            Assert.assertArrayEquals(new String[] {"sha1", "md5"}, readerUncompressed.getPayloadDigestAlgorithms());
+            Assert.assertEquals("sha1", readerUncompressed.getPayloadDigestAlgorithm());
+            Assert.assertFalse(readerUncompressed.setPayloadDigestAlgorithms(new String[] {null}));
+            Assert.assertTrue(readerUncompressed.setPayloadDigestAlgorithms(new String[0]));
+            Assert.assertNull(readerUncompressed.getPayloadDigestAlgorithms());
+            Assert.assertNull(readerUncompressed.getPayloadDigestAlgorithm());
+
             Assert.assertEquals("base32", readerUncompressed.getBlockDigestEncoding());
             readerUncompressed.setBlockDigestEncoding("BASE16");
             Assert.assertEquals("base16", readerUncompressed.getBlockDigestEncoding());
@@ -0,0 +1,142 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestWarcRecordFilter {
+
+    @Test
+    public void test_warcrecordfilter() throws IOException {
+        File gzFile = TestHelpers.getTestResourceFile("IAH-20080430204825-00000-blackbook.warc.gz");
+        File file = File.createTempFile("jwat-", ".warc");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        WarcReader reader = WarcReaderFactory.getReader(new FileInputStream(gzFile));
+        WarcRecord record;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        while ((record = reader.getNextRecord()) != null) {
+            out.write(record.header.headerBytes);
+            if (record.getPayload() != null) {
+                InputStream in = record.getPayload().getInputStreamComplete();
+                while ((read = in.read(tmpBuf)) != -1) {
+                    out.write(tmpBuf, 0, read);
+                }
+            }
+            out.write("\r\n\r\n".getBytes());
+        }
+        reader.close();
+        out.close();
+
+        File[] files = {gzFile, file};
+        for (int i=0; i<files.length; ++i) {
+            // Records and offsets expected without filtering.
+            List<Long> offsets = new ArrayList<Long>();
+            List<String> expected = new ArrayList<String>();
+            reader = WarcReaderFactory.getReader(new FileInputStream(files[i]), 8192);
+            reader.setBlockDigestEnabled(true);
+            reader.setPayloadDigestEnabled(true);
+            while ((record = reader.getNextRecord()) != null) {
+                offsets.add(record.getStartOffset());
+                if ("response".equals(record.header.warcTypeStr)) {
+                    expected.add(toString(record));
+                }
+                record.close();
+            }
+            reader.close();
+            Assert.assertEquals(822, offsets.size());
+            Assert.assertTrue(expected.size() > 0 && expected.size() < offsets.size());
+
+            final List<Long> filterOffsets = new ArrayList<Long>();
+            WarcRecordFilter filter = new WarcRecordFilter() {
+                @Override
+                public boolean accept(WarcReader reader, long startOffset, WarcHeader header) {
+                    filterOffsets.add(startOffset);
+                    return "response".equals(header.warcTypeStr);
+                }
+            };
+            reader = WarcReaderFactory.getReader(new FileInputStream(files[i]), 8192);
+            Assert.assertNull(reader.getRecordFilter());
+            reader.setRecordFilter(filter);
+            Assert.assertSame(filter, reader.getRecordFilter());
+            reader.setBlockDigestEnabled(true);
+            reader.setPayloadDigestEnabled(true);
+            List<String> actual = new ArrayList<String>();
+            while ((record = reader.getNextRecord()) != null) {
+                Assert.assertFalse(record.bFiltered);
+                actual.add(toString(record));
+                record.close();
+            }
+            reader.close();
+            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(offsets, filterOffsets);
+            Assert.assertTrue(reader.isCompliant());
+            Assert.assertEquals(files[i].length(), reader.getConsumed());
+
+            // Iterator.
+            filterOffsets.clear();
+            actual.clear();
+            reader = WarcReaderFactory.getReader(new FileInputStream(files[i]));
+            reader.setRecordFilter(filter);
+            Iterator<WarcRecord> iter = reader.iterator();
+            while (iter.hasNext()) {
+                actual.add(toString(iter.next()));
+            }
+            reader.close();
+            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(offsets, filterOffsets);
+        }
+    }
+
+    static String toString(WarcRecord record) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Long.toString(record.getStartOffset()).getBytes());
+        out.write(record.header.headerBytes);
+        if (record.getPayload() != null) {
+            InputStream in = record.getPayload().getInputStreamComplete();
+            byte[] tmpBuf = new byte[8192];
+            int read;
+            while ((read = in.read(tmpBuf)) != -1) {
+                out.write(tmpBuf, 0, read);
+            }
+        }
+        record.close();
+        Assert.assertTrue(record.isCompliant());
+        if (record.computedPayloadDigest != null && record.header.warcPayloadDigest != null) {
+            Assert.assertTrue(record.isValidPayloadDigest);
+        }
+        return new String(out.toByteArray(), "ISO-8859-1");
+    }
+
+}
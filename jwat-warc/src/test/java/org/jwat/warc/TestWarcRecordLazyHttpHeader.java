@@ -0,0 +1,127 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.Base16;
+
+@RunWith(JUnit4.class)
+public class TestWarcRecordLazyHttpHeader {
+
+    static final String FILE = "IAH-20080430204825-00000-blackbook.warc.gz";
+
+    @Test
+    public void test_warcrecord_lazyhttpheader() throws IOException {
+        List<String> expected = readRecords(false, 0);
+        Assert.assertEquals(822, expected.size());
+        // HTTP header requested first.
+        Assert.assertEquals(expected, readRecords(true, 0));
+        // Payload stream requested first.
+        Assert.assertEquals(expected, readRecords(true, 1));
+        // Nothing requested, digests are still computed on close.
+        List<String> actual = readRecords(true, 2);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); ++i) {
+            Assert.assertTrue(expected.get(i).startsWith(actual.get(i)));
+        }
+
+        // Not parsed at all without payload digests.
+        WarcReader reader = WarcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(FILE));
+        Assert.assertFalse(reader.getLazyHttpHeaderParsingEnabled());
+        reader.setLazyHttpHeaderParsingEnabled(true);
+        Assert.assertTrue(reader.getLazyHttpHeaderParsingEnabled());
+        WarcRecord record;
+        int deferred = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            if (record.httpHeaderType != 0) {
+                ++deferred;
+            }
+            record.close();
+            Assert.assertNull(record.httpHeader);
+            Assert.assertNull(record.getHttpHeader());
+            Assert.assertTrue(record.isCompliant());
+        }
+        reader.close();
+        Assert.assertTrue(deferred > 0);
+        Assert.assertTrue(reader.isCompliant());
+    }
+
+    /**
+     * Read the records and return a string per record with the computed
+     * payload digest, the HTTP header and the payload.
+     * @param bLazy lazy HTTP header parsing on/off
+     * @param request 0 to request the HTTP header first, 1 to request the
+     * payload stream first, 2 to request nothing before closing the record
+     * @return string per record
+     * @throws IOException if an I/O error occurs while reading
+     */
+    static List<String> readRecords(boolean bLazy, int request) throws IOException {
+        List<String> records = new ArrayList<String>();
+        WarcReader reader = WarcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(FILE));
+        reader.setLazyHttpHeaderParsingEnabled(bLazy);
+        reader.setPayloadDigestEnabled(true);
+        WarcRecord record;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        int digests = 0;
+        while ((record = reader.getNextRecord()) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (request != 2) {
+                InputStream in = null;
+                if (request == 1 && record.getPayload() != null) {
+                    in = record.getPayloadContent();
+                }
+                if (record.getHttpHeader() != null) {
+                    out.write(record.getHttpHeader().getHeader());
+                }
+                if (request == 0 && record.getPayload() != null) {
+                    in = record.getPayloadContent();
+                }
+                if (in != null) {
+                    while ((read = in.read(tmpBuf)) != -1) {
+                        out.write(tmpBuf, 0, read);
+                    }
+                }
+            }
+            record.close();
+            Assert.assertTrue(record.isCompliant());
+            String digest = "";
+            if (record.computedPayloadDigest != null) {
+                digest = Base16.encodeArray(record.computedPayloadDigest.digestBytes);
+                Assert.assertTrue(record.isValidPayloadDigest);
+                ++digests;
+            }
+            records.add(record.getStartOffset() + ":" + digest + ":"
+                    + new String(out.toByteArray(), "ISO-8859-1"));
+        }
+        reader.close();
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertTrue(digests > 0);
+        return records;
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestWarcRecordMultiDigest {
+
+    static final String[] ALGORITHMS = {"sha1", "sha-256", "md5"};
+
+    @Test
+    public void test_warcrecord_multidigest() throws IOException, NoSuchAlgorithmException {
+        readAndAssertDigests(false);
+    }
+
+    @Test
+    public void test_warcrecord_asyncdigest() throws IOException, NoSuchAlgorithmException {
+        readAndAssertDigests(true);
+    }
+
+    static void readAndAssertDigests(boolean bAsync) throws IOException, NoSuchAlgorithmException {
+        WarcReader reader = WarcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream("IAH-20080430204825-00000-blackbook.warc.gz"));
+        reader.setAsyncDigestEnabled(bAsync);
+        Assert.assertEquals(bAsync, reader.getAsyncDigestEnabled());
+        reader.setBlockDigestEnabled(true);
+        reader.setPayloadDigestEnabled(true);
+        Assert.assertTrue(reader.setBlockDigestAlgorithms(ALGORITHMS));
+        Assert.assertTrue(reader.setPayloadDigestAlgorithms(ALGORITHMS));
+        WarcRecord record;
+        int records = 0;
+        int payloadDigests = 0;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        while ((record = reader.getNextRecord()) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (record.getPayload() != null) {
+                InputStream in = record.getPayload().getInputStreamComplete();
+                while ((read = in.read(tmpBuf)) != -1) {
+                    out.write(tmpBuf, 0, read);
+                }
+            }
+            record.close();
+            Assert.assertTrue(record.isCompliant());
+            byte[] block = out.toByteArray();
+            if (record.getPayload() == null) {
+                Assert.assertNull(record.computedBlockDigests);
+            } else {
+                assertDigests(record.computedBlockDigests, block, 0);
+                Assert.assertSame(record.computedBlockDigest, record.computedBlockDigests.get(0));
+            }
+            if (record.header.warcPayloadDigest != null) {
+                Assert.assertTrue(record.isValidPayloadDigest);
+                Assert.assertSame(record.computedPayloadDigest, record.computedPayloadDigests.get(0));
+                assertDigests(record.computedPayloadDigests, block, record.getHttpHeader().getHeader().length);
+                ++payloadDigests;
+            }
+            ++records;
+        }
+        reader.close();
+        Assert.assertFalse(reader.getAsyncDigestEnabled());
+        Assert.assertEquals(822, records);
+        Assert.assertTrue(payloadDigests > 0);
+        Assert.assertTrue(reader.isCompliant());
+    }
+
+    static void assertDigests(List<WarcDigest> digests, byte[] bytes, int offset) throws NoSuchAlgorithmException {
+        Assert.assertEquals(ALGORITHMS.length, digests.size());
+        for (int i=0; i<ALGORITHMS.length; ++i) {
+            WarcDigest digest = digests.get(i);
+            MessageDigest md = MessageDigest.getInstance(digest.algorithm);
+            md.update(bytes, offset, bytes.length - offset);
+            Assert.assertArrayEquals(md.digest(), digest.digestBytes);
+            Assert.assertNotNull(digest.digestString);
+        }
+        Assert.assertEquals("sha-256", digests.get(1).algorithm);
+        Assert.assertEquals("md5", digests.get(2).algorithm);
+    }
+
+}
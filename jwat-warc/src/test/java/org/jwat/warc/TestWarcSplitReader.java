@@ -0,0 +1,262 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestWarcSplitReader {
+
+    @Test
+    public void test_warcsplitreader() throws IOException {
+        File file = File.createTempFile("jwat-", ".warc");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        WarcReader reader = WarcReaderFactory.getReader(
+                TestHelpers.getTestResourceAsStream("IAH-20080430204825-00000-blackbook.warc.gz"));
+        WarcRecord record;
+        InputStream in;
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        // Uncompress the GZip members into one plain WARC file.
+        while ((record = reader.getNextRecord()) != null) {
+            out.write(record.header.headerBytes);
+            if (record.getPayload() != null) {
+                in = record.getPayload().getInputStreamComplete();
+                while ((read = in.read(tmpBuf)) != -1) {
+                    out.write(tmpBuf, 0, read);
+                }
+            }
+            out.write("\r\n\r\n".getBytes());
+        }
+        reader.close();
+        out.close();
+        List<String> expected = readSequential(file);
+        Assert.assertEquals(822, expected.size());
+        long[] splitSizes = {file.length() + 1, 1024 * 1024, 65536, 12345};
+        for (int i=0; i<splitSizes.length; ++i) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            WarcSplitReader splitReader = new WarcSplitReader(file, executor, splitSizes[i]);
+            Assert.assertEquals(expected, readSplit(splitReader));
+            long[] boundaries = splitReader.getBoundaries();
+            Assert.assertEquals(0, boundaries[0]);
+            Assert.assertTrue(boundaries.length <= file.length() / splitSizes[i] + 1);
+            if (splitSizes[i] < file.length() / 4) {
+                Assert.assertTrue(boundaries.length > 1);
+            }
+            splitReader.close();
+            Assert.assertFalse(executor.isShutdown());
+            executor.shutdown();
+        }
+        WarcSplitReader splitReader = new WarcSplitReader(file, 2);
+        Assert.assertEquals(expected, readSplit(splitReader));
+        Assert.assertFalse(splitReader.isCompressed());
+        splitReader.close();
+        // Boundaries are kept after the reader is closed.
+        Assert.assertEquals(0, splitReader.getBoundaries()[0]);
+        try {
+            readSplit(splitReader);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        file.delete();
+    }
+
+    @Test
+    public void test_warcsplitreader_compressed() throws IOException {
+        File file = TestHelpers.getTestResourceFile("IAH-20080430204825-00000-blackbook.warc.gz");
+        List<String> expected = readSequential(file);
+        Assert.assertEquals(822, expected.size());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        long[] splitSizes = {file.length() + 1, 65536, 4321, 100};
+        for (int i=0; i<splitSizes.length; ++i) {
+            WarcSplitReader splitReader = new WarcSplitReader(file, executor, splitSizes[i]);
+            Assert.assertTrue(splitReader.isCompressed());
+            Assert.assertEquals(expected, readSplit(splitReader));
+            if (splitSizes[i] < file.length() / 4) {
+                Assert.assertTrue(splitReader.getBoundaries().length > 1);
+            }
+            splitReader.close();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void test_warcsplitreader_embedded_record() throws IOException {
+        String embedded =
+                "WARC/1.0\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:00000000-0000-0000-0000-000000000002>\r\n"
+                + "Content-Length: 5\r\n"
+                + "\r\n"
+                + "fake!";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeRecord(bytes, 1, "first");
+        // The embedded record is followed by the trailing newlines of the
+        // outer record and the next record, so it looks like a real record.
+        writeRecord(bytes, 2, embedded);
+        writeRecord(bytes, 3, "last\r\n" + embedded + "\r\n\r\n");
+        writeRecord(bytes, 4, "");
+        File file = File.createTempFile("jwat-", ".warc");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write(bytes.toByteArray());
+        out.close();
+        List<String> expected = readSequential(file);
+        Assert.assertEquals(4, expected.size());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        WarcSplitReader splitReader;
+        for (long splitSize=1; splitSize<=file.length(); splitSize+=3) {
+            splitReader = new WarcSplitReader(file, executor, splitSize);
+            Assert.assertEquals(expected, readSplit(splitReader));
+            Assert.assertTrue(splitReader.getBoundaries().length <= 4);
+            splitReader.close();
+        }
+        // The embedded record is found by the scan but rejected.
+        splitReader = new WarcSplitReader(file, executor, 10);
+        long fake = bytes.toString("ISO-8859-1").indexOf(embedded);
+        Assert.assertEquals(fake, splitReader.findRecordStart(fake - 5, fake + 5));
+        Assert.assertTrue(splitReader.isRecordStart(fake));
+        Assert.assertFalse(splitReader.isRecordStart(fake + 1));
+        Assert.assertEquals(-1, splitReader.findRecordStart(fake + 1, fake + 50));
+        for (long offset : splitReader.getBoundaries()) {
+            Assert.assertTrue(offset != fake);
+        }
+        executor.shutdown();
+        file.delete();
+    }
+
+    @Test
+    public void test_warcsplitreader_invalid() throws IOException {
+        File file = File.createTempFile("jwat-", ".warc");
+        file.deleteOnExit();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Object[][] cases = {
+                {null, executor, 1L},
+                {new File("does-not-exist.warc"), executor, 1L},
+                {file, null, 1L},
+                {file, executor, 0L}
+        };
+        for (int i=0; i<cases.length; ++i) {
+            try {
+                new WarcSplitReader((File)cases[i][0], (ExecutorService)cases[i][1], (Long)cases[i][2]);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        try {
+            new WarcSplitReader(file, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        WarcSplitReader splitReader = new WarcSplitReader(file, executor, 1);
+        try {
+            splitReader.read(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        // Empty file.
+        Assert.assertEquals(0, readSplit(splitReader).size());
+        splitReader.close();
+        splitReader = new WarcSplitReader(file, executor, 1);
+        splitReader.close();
+        try {
+            splitReader.getBoundaries();
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        Assert.assertFalse(executor.isShutdown());
+        executor.shutdown();
+        file.delete();
+    }
+
+    static void writeRecord(OutputStream out, int id, String content) throws IOException {
+        byte[] contentBytes = content.getBytes("ISO-8859-1");
+        String header = "WARC/1.0\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:00000000-0000-0000-0001-00000000000" + id + ">\r\n"
+                + "Content-Length: " + contentBytes.length + "\r\n"
+                + "\r\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        out.write(contentBytes);
+        out.write("\r\n\r\n".getBytes());
+    }
+
+    static String describe(WarcRecord record) throws IOException {
+        long length = 0;
+        if (record.getPayload() != null) {
+            InputStream in = record.getPayload().getInputStreamComplete();
+            byte[] tmpBuf = new byte[8192];
+            int read;
+            while ((read = in.read(tmpBuf)) != -1) {
+                length += read;
+            }
+        }
+        return record.getStartOffset() + " " + record.header.warcRecordIdStr + " " + length;
+    }
+
+    static List<String> readSequential(File file) throws IOException {
+        List<String> records = new ArrayList<String>();
+        InputStream in = new FileInputStream(file);
+        WarcReader reader = WarcReaderFactory.getReader(in, 8192);
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            records.add(describe(record));
+        }
+        reader.close();
+        in.close();
+        return records;
+    }
+
+    static List<String> readSplit(WarcSplitReader splitReader) throws IOException {
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        splitReader.read(new WarcRecordHandler() {
+            @Override
+            public void handleRecord(WarcReader reader, WarcRecord record) throws IOException {
+                records.add(describe(record));
+            }
+        });
+        List<String> sorted = new ArrayList<String>(records);
+        Collections.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                return Long.valueOf(s1.substring(0, s1.indexOf(' '))).compareTo(
+                        Long.valueOf(s2.substring(0, s2.indexOf(' '))));
+            }
+        });
+        return sorted;
+    }
+
+}
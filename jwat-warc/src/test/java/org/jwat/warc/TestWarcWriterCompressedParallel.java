@@ -0,0 +1,86 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestWarcWriterCompressedParallel {
+
+    @Test
+    public void test_warcwritercompressedparallel() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        copy(WarcWriterFactory.getWriterCompressed(expected, 8192));
+        copy(WarcWriterFactory.getWriterCompressedParallel(actual, 8192, 4));
+        Assert.assertEquals(expected.size(), actual.size());
+
+        WarcReader reader = WarcReaderFactory.getReader(new ByteArrayInputStream(actual.toByteArray()));
+        Assert.assertTrue(reader.isCompressed());
+        int records = 0;
+        while (reader.getNextRecord() != null) {
+            ++records;
+        }
+        reader.close();
+        Assert.assertEquals(822, records);
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertEquals(actual.size(), reader.getConsumed());
+
+        try {
+            WarcWriterFactory.getWriterCompressedParallel(null, 8192, 4);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcWriterFactory.getWriterCompressedParallel(actual, 0, 4);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcWriterFactory.getWriterCompressedParallel(actual, 8192, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    protected static void copy(WarcWriter writer) throws IOException {
+        InputStream in = TestHelpers.getTestResourceAsStream("IAH-20080430204825-00000-blackbook.warc.gz");
+        WarcReader reader = WarcReaderFactory.getReader(in);
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            writer.writeHeader(record);
+            if (record.hasPayload()) {
+                writer.streamPayload(record.getPayload().getInputStreamComplete());
+            }
+            writer.closeRecord();
+        }
+        reader.close();
+        in.close();
+        writer.close();
+        Assert.assertTrue(writer.isCompressed());
+    }
+
+}